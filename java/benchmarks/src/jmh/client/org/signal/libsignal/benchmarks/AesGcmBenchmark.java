@@ -0,0 +1,72 @@
+//
+// Copyright 2026 Signal Messenger, LLC.
+// SPDX-License-Identifier: AGPL-3.0-only
+//
+
+package org.signal.libsignal.benchmarks;
+
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.signal.libsignal.crypto.Aes256GcmDecryption;
+import org.signal.libsignal.crypto.Aes256GcmEncryption;
+
+/** Streaming AES-256-GCM, fed in 64 KiB pieces as an attachment would be. */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class AesGcmBenchmark {
+  private static final int WRITE_SIZE = 64 * 1024;
+
+  @Param({"1024", "65536", "1048576"})
+  public int dataSize;
+
+  private final byte[] key = new byte[32];
+  private final byte[] nonce = new byte[12];
+  private final byte[] associatedData = new byte[0];
+  private byte[] plaintext;
+  private byte[] ciphertext;
+  private byte[] tag;
+
+  @Setup
+  public void setUp() throws Exception {
+    plaintext = new byte[dataSize];
+    ciphertext = plaintext.clone();
+    Aes256GcmEncryption encryption = new Aes256GcmEncryption(key, nonce, associatedData);
+    encryption.encrypt(ciphertext);
+    tag = encryption.computeTag();
+  }
+
+  @Benchmark
+  public byte[] encrypt() throws Exception {
+    // Encrypts in place, so the contents drift between calls; that doesn't affect the cost.
+    Aes256GcmEncryption encryption = new Aes256GcmEncryption(key, nonce, associatedData);
+    for (int offset = 0; offset < dataSize; offset += WRITE_SIZE) {
+      encryption.encrypt(plaintext, offset, Math.min(WRITE_SIZE, dataSize - offset));
+    }
+    return encryption.computeTag();
+  }
+
+  @Benchmark
+  public boolean decrypt() throws Exception {
+    // Decrypt a fresh copy each time, so that the tag still matches.
+    byte[] buffer = ciphertext.clone();
+    Aes256GcmDecryption decryption = new Aes256GcmDecryption(key, nonce, associatedData);
+    for (int offset = 0; offset < dataSize; offset += WRITE_SIZE) {
+      decryption.decrypt(buffer, offset, Math.min(WRITE_SIZE, dataSize - offset));
+    }
+    return decryption.verifyTag(tag);
+  }
+}
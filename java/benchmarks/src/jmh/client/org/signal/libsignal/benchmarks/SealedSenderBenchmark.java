@@ -0,0 +1,131 @@
+//
+// Copyright 2026 Signal Messenger, LLC.
+// SPDX-License-Identifier: AGPL-3.0-only
+//
+
+package org.signal.libsignal.benchmarks;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Optional;
+import java.util.UUID;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.signal.libsignal.metadata.SealedSessionCipher;
+import org.signal.libsignal.metadata.certificate.SenderCertificate;
+import org.signal.libsignal.metadata.protocol.UnidentifiedSenderMessageContent;
+import org.signal.libsignal.protocol.IdentityKeyPair;
+import org.signal.libsignal.protocol.SignalProtocolAddress;
+import org.signal.libsignal.protocol.ecc.ECKeyPair;
+import org.signal.libsignal.protocol.groups.GroupCipher;
+import org.signal.libsignal.protocol.groups.GroupSessionBuilder;
+import org.signal.libsignal.protocol.message.CiphertextMessage;
+import org.signal.libsignal.protocol.state.impl.InMemorySignalProtocolStore;
+
+/** Sealed sender encryption, for a single recipient (v1) and for many recipients at once (v2). */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class SealedSenderBenchmark {
+  private static final UUID ALICE_UUID = UUID.fromString("9d0652a3-dcc3-4d11-975f-74d61598733f");
+  private static final String ALICE_E164 = "+14151111111";
+
+  private static SenderCertificate certificateFor(InMemorySignalProtocolStore store)
+      throws Exception {
+    return Fixtures.createCertificateFor(
+        ECKeyPair.generate(),
+        ALICE_UUID,
+        ALICE_E164,
+        1,
+        store.getIdentityKeyPair().getPublicKey().getPublicKey(),
+        Long.MAX_VALUE);
+  }
+
+  @State(Scope.Thread)
+  public static class V1 {
+    final InMemorySignalProtocolStore aliceStore =
+        new InMemorySignalProtocolStore(IdentityKeyPair.generate(), 0xAA);
+    final SignalProtocolAddress bobAddress =
+        new SignalProtocolAddress("796abedb-ca4e-4f18-8803-1fde5b921f9f", 1);
+    final byte[] plaintext = new byte[256];
+    SealedSessionCipher aliceCipher;
+    SenderCertificate senderCertificate;
+
+    @Setup
+    public void setUp() throws Exception {
+      InMemorySignalProtocolStore bobStore =
+          new InMemorySignalProtocolStore(IdentityKeyPair.generate(), 0xBB);
+      Fixtures.initializeSessions(
+          aliceStore, bobStore, bobAddress, new SignalProtocolAddress(ALICE_UUID.toString(), 1));
+      aliceCipher = new SealedSessionCipher(aliceStore, ALICE_UUID, ALICE_E164, 1);
+      senderCertificate = certificateFor(aliceStore);
+    }
+  }
+
+  @State(Scope.Thread)
+  public static class V2 {
+    @Param({"1", "10", "100", "1000", "5000"})
+    public int recipientCount;
+
+    final InMemorySignalProtocolStore aliceStore =
+        new InMemorySignalProtocolStore(IdentityKeyPair.generate(), 0xAA);
+    final List<SignalProtocolAddress> recipients = new ArrayList<>();
+    SealedSessionCipher aliceCipher;
+    UnidentifiedSenderMessageContent content;
+
+    @Setup
+    public void setUp() throws Exception {
+      SignalProtocolAddress aliceAddress = new SignalProtocolAddress(ALICE_UUID.toString(), 1);
+      for (int i = 0; i < recipientCount; ++i) {
+        InMemorySignalProtocolStore bobStore =
+            new InMemorySignalProtocolStore(IdentityKeyPair.generate(), i + 1);
+        SignalProtocolAddress bobAddress =
+            new SignalProtocolAddress(UUID.randomUUID().toString(), i % 127 + 1);
+        Fixtures.initializeSessions(aliceStore, bobStore, bobAddress, aliceAddress);
+        recipients.add(bobAddress);
+      }
+
+      UUID distributionId = UUID.randomUUID();
+      new GroupSessionBuilder(aliceStore).create(aliceAddress, distributionId);
+      CiphertextMessage ciphertext =
+          new GroupCipher(aliceStore, aliceAddress).encrypt(distributionId, new byte[256]);
+      content =
+          new UnidentifiedSenderMessageContent(
+              ciphertext,
+              certificateFor(aliceStore),
+              UnidentifiedSenderMessageContent.CONTENT_HINT_DEFAULT,
+              Optional.empty());
+      aliceCipher = new SealedSessionCipher(aliceStore, ALICE_UUID, ALICE_E164, 1);
+    }
+  }
+
+  @Benchmark
+  public byte[] v1Encrypt(V1 state) throws Exception {
+    return state.aliceCipher.encrypt(state.bobAddress, state.senderCertificate, state.plaintext);
+  }
+
+  @Benchmark
+  public byte[] v2Encrypt(V2 state) throws Exception {
+    return state.aliceCipher.multiRecipientEncrypt(state.recipients, state.content);
+  }
+
+  @Benchmark
+  public byte[] v2EncryptWithParallelSessionLoading(V2 state) throws Exception {
+    return state.aliceCipher.multiRecipientEncrypt(
+        state.recipients, state.content, Collections.emptyList(), ForkJoinPool.commonPool());
+  }
+}
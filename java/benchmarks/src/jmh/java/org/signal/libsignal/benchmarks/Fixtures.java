@@ -0,0 +1,106 @@
+//
+// Copyright 2026 Signal Messenger, LLC.
+// SPDX-License-Identifier: AGPL-3.0-only
+//
+
+package org.signal.libsignal.benchmarks;
+
+import java.util.Optional;
+import java.util.UUID;
+import org.signal.libsignal.metadata.certificate.InvalidCertificateException;
+import org.signal.libsignal.metadata.certificate.SenderCertificate;
+import org.signal.libsignal.metadata.certificate.ServerCertificate;
+import org.signal.libsignal.protocol.IdentityKeyPair;
+import org.signal.libsignal.protocol.InvalidKeyException;
+import org.signal.libsignal.protocol.SessionBuilder;
+import org.signal.libsignal.protocol.SignalProtocolAddress;
+import org.signal.libsignal.protocol.UntrustedIdentityException;
+import org.signal.libsignal.protocol.ecc.ECKeyPair;
+import org.signal.libsignal.protocol.ecc.ECPublicKey;
+import org.signal.libsignal.protocol.kem.KEMKeyPair;
+import org.signal.libsignal.protocol.kem.KEMKeyType;
+import org.signal.libsignal.protocol.state.KyberPreKeyRecord;
+import org.signal.libsignal.protocol.state.PreKeyBundle;
+import org.signal.libsignal.protocol.state.PreKeyRecord;
+import org.signal.libsignal.protocol.state.SignedPreKeyRecord;
+import org.signal.libsignal.protocol.state.impl.InMemorySignalProtocolStore;
+
+/** Setup helpers shared by the benchmarks, adapted from the protocol tests. */
+public final class Fixtures {
+  private Fixtures() {}
+
+  public static SignedPreKeyRecord generateSignedPreKey(
+      IdentityKeyPair identityKeyPair, int signedPreKeyId) throws InvalidKeyException {
+    ECKeyPair keyPair = ECKeyPair.generate();
+    byte[] signature =
+        identityKeyPair.getPrivateKey().calculateSignature(keyPair.getPublicKey().serialize());
+
+    return new SignedPreKeyRecord(signedPreKeyId, System.currentTimeMillis(), keyPair, signature);
+  }
+
+  public static KyberPreKeyRecord generateKyberPreKey(
+      IdentityKeyPair identityKeyPair, int kyberPreKeyId) throws InvalidKeyException {
+    KEMKeyPair keyPair = KEMKeyPair.generate(KEMKeyType.KYBER_1024);
+    byte[] signature =
+        identityKeyPair.getPrivateKey().calculateSignature(keyPair.getPublicKey().serialize());
+
+    return new KyberPreKeyRecord(kyberPreKeyId, System.currentTimeMillis(), keyPair, signature);
+  }
+
+  public static SenderCertificate createCertificateFor(
+      ECKeyPair trustRoot,
+      UUID uuid,
+      String e164,
+      int deviceId,
+      ECPublicKey identityKey,
+      long expires)
+      throws InvalidKeyException, InvalidCertificateException {
+    ECKeyPair serverKey = ECKeyPair.generate();
+    ServerCertificate serverCertificate =
+        new ServerCertificate(trustRoot.getPrivateKey(), 1, serverKey.getPublicKey());
+    return serverCertificate.issue(
+        serverKey.getPrivateKey(),
+        uuid.toString(),
+        Optional.ofNullable(e164),
+        deviceId,
+        identityKey,
+        expires);
+  }
+
+  /**
+   * Has Alice process a prekey bundle for Bob, so that she can start sending to him.
+   *
+   * <p>Alice's messages will be PreKeySignalMessages until Bob has replied at least once.
+   */
+  public static void initializeSessions(
+      InMemorySignalProtocolStore aliceStore,
+      InMemorySignalProtocolStore bobStore,
+      SignalProtocolAddress bobAddress,
+      SignalProtocolAddress aliceAddress)
+      throws InvalidKeyException, UntrustedIdentityException {
+    ECKeyPair bobPreKey = ECKeyPair.generate();
+    IdentityKeyPair bobIdentityKey = bobStore.getIdentityKeyPair();
+    SignedPreKeyRecord bobSignedPreKey = generateSignedPreKey(bobIdentityKey, 2);
+    KyberPreKeyRecord bobKyberPreKey = generateKyberPreKey(bobIdentityKey, 12);
+
+    PreKeyBundle bobBundle =
+        new PreKeyBundle(
+            bobStore.getLocalRegistrationId(),
+            bobAddress.getDeviceId(),
+            1,
+            bobPreKey.getPublicKey(),
+            2,
+            bobSignedPreKey.getKeyPair().getPublicKey(),
+            bobSignedPreKey.getSignature(),
+            bobIdentityKey.getPublicKey(),
+            12,
+            bobKyberPreKey.getKeyPair().getPublicKey(),
+            bobKyberPreKey.getSignature());
+    SessionBuilder aliceSessionBuilder = new SessionBuilder(aliceStore, bobAddress, aliceAddress);
+    aliceSessionBuilder.process(bobBundle);
+
+    bobStore.storeSignedPreKey(2, bobSignedPreKey);
+    bobStore.storeKyberPreKey(12, bobKyberPreKey);
+    bobStore.storePreKey(1, new PreKeyRecord(1, bobPreKey));
+  }
+}
@@ -0,0 +1,74 @@
+//
+// Copyright 2026 Signal Messenger, LLC.
+// SPDX-License-Identifier: AGPL-3.0-only
+//
+
+package org.signal.libsignal.benchmarks;
+
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.signal.libsignal.protocol.SignalProtocolAddress;
+import org.signal.libsignal.protocol.groups.GroupCipher;
+import org.signal.libsignal.protocol.groups.GroupSessionBuilder;
+import org.signal.libsignal.protocol.groups.state.InMemorySenderKeyStore;
+import org.signal.libsignal.protocol.message.CiphertextMessage;
+import org.signal.libsignal.protocol.message.SenderKeyDistributionMessage;
+
+/**
+ * Sender key (group) encryption.
+ *
+ * <p>As with {@link SessionCipherBenchmark}, decryption is only measured as part of a round trip.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class GroupCipherBenchmark {
+  @Param({"64", "1024", "16384"})
+  public int messageSize;
+
+  private final UUID distributionId = UUID.fromString("d1d1d1d1-7000-11eb-b32a-33b8a8a487a6");
+  private byte[] plaintext;
+  private GroupCipher aliceCipher;
+  private GroupCipher bobCipher;
+
+  @Setup
+  public void setUp() throws Exception {
+    SignalProtocolAddress aliceAddress =
+        new SignalProtocolAddress("9d0652a3-dcc3-4d11-975f-74d61598733f", 1);
+    InMemorySenderKeyStore aliceStore = new InMemorySenderKeyStore();
+    InMemorySenderKeyStore bobStore = new InMemorySenderKeyStore();
+
+    SenderKeyDistributionMessage distributionMessage =
+        new GroupSessionBuilder(aliceStore).create(aliceAddress, distributionId);
+    new GroupSessionBuilder(bobStore)
+        .process(aliceAddress, new SenderKeyDistributionMessage(distributionMessage.serialize()));
+
+    aliceCipher = new GroupCipher(aliceStore, aliceAddress);
+    bobCipher = new GroupCipher(bobStore, aliceAddress);
+    plaintext = new byte[messageSize];
+  }
+
+  @Benchmark
+  public CiphertextMessage encrypt() throws Exception {
+    return aliceCipher.encrypt(distributionId, plaintext);
+  }
+
+  @Benchmark
+  public byte[] roundTrip() throws Exception {
+    return bobCipher.decrypt(aliceCipher.encrypt(distributionId, plaintext).serialize());
+  }
+}
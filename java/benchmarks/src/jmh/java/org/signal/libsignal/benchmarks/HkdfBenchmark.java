@@ -0,0 +1,40 @@
+//
+// Copyright 2026 Signal Messenger, LLC.
+// SPDX-License-Identifier: AGPL-3.0-only
+//
+
+package org.signal.libsignal.benchmarks;
+
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.signal.libsignal.protocol.kdf.HKDF;
+
+/** HKDF-SHA256, which is dominated by the cost of crossing into Rust for small outputs. */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class HkdfBenchmark {
+  @Param({"32", "80", "1024"})
+  public int outputLength;
+
+  private final byte[] inputKeyMaterial = new byte[32];
+  private final byte[] salt = new byte[32];
+  private final byte[] info = "libsignal benchmark".getBytes();
+
+  @Benchmark
+  public byte[] deriveSecrets() {
+    return HKDF.deriveSecrets(inputKeyMaterial, salt, info, outputLength);
+  }
+}
@@ -0,0 +1,58 @@
+//
+// Copyright 2026 Signal Messenger, LLC.
+// SPDX-License-Identifier: AGPL-3.0-only
+//
+
+package org.signal.libsignal.benchmarks;
+
+import java.io.ByteArrayOutputStream;
+import java.io.OutputStream;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.signal.libsignal.protocol.incrementalmac.ChunkSizeChoice;
+import org.signal.libsignal.protocol.incrementalmac.IncrementalMacOutputStream;
+
+/** Computing an incremental MAC over an attachment, written in 64 KiB pieces. */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class IncrementalMacBenchmark {
+  private static final int WRITE_SIZE = 64 * 1024;
+
+  @Param({"65536", "1048576", "16777216"})
+  public int dataSize;
+
+  private final byte[] key = new byte[32];
+  private final byte[] buffer = new byte[WRITE_SIZE];
+  private ChunkSizeChoice chunkSize;
+
+  @Setup
+  public void setUp() {
+    chunkSize = ChunkSizeChoice.inferChunkSize(dataSize);
+  }
+
+  @Benchmark
+  public byte[] digest() throws Exception {
+    ByteArrayOutputStream digest = new ByteArrayOutputStream();
+    try (IncrementalMacOutputStream stream =
+        new IncrementalMacOutputStream(OutputStream.nullOutputStream(), key, chunkSize, digest)) {
+      for (int written = 0; written < dataSize; written += WRITE_SIZE) {
+        stream.write(buffer, 0, Math.min(WRITE_SIZE, dataSize - written));
+      }
+    }
+    return digest.toByteArray();
+  }
+}
@@ -0,0 +1,80 @@
+//
+// Copyright 2026 Signal Messenger, LLC.
+// SPDX-License-Identifier: AGPL-3.0-only
+//
+
+package org.signal.libsignal.benchmarks;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.signal.libsignal.protocol.state.impl.KyberPreKeyReplayIndex;
+
+/**
+ * Checking and recording last-resort pre-key uses in a {@link KyberPreKeyReplayIndex} that
+ * already holds many entries, as a long-lived server-side store's would.
+ *
+ * <p>Base keys are derived from a counter rather than kept around, so that the benchmark itself
+ * doesn't hold tens of millions of arrays.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = "-Xmx2g")
+public class KyberPreKeyReplayIndexBenchmark {
+  @Param({"1000000", "20000000"})
+  public int entryCount;
+
+  private static final int KYBER_PRE_KEY_ID = 1;
+  private static final int SIGNED_PRE_KEY_ID = 2;
+
+  private KyberPreKeyReplayIndex index;
+  private final Random random = new Random(1234);
+  private final byte[] baseKey = new byte[33];
+  private int nextFresh;
+
+  private byte[] baseKey(int i) {
+    baseKey[0] = 0x05;
+    baseKey[1] = (byte) (i >>> 24);
+    baseKey[2] = (byte) (i >>> 16);
+    baseKey[3] = (byte) (i >>> 8);
+    baseKey[4] = (byte) i;
+    return baseKey;
+  }
+
+  @Setup
+  public void setUp() {
+    index = new KyberPreKeyReplayIndex();
+    for (int i = 0; i < entryCount; ++i) {
+      index.add(KYBER_PRE_KEY_ID, SIGNED_PRE_KEY_ID, baseKey(i));
+    }
+    nextFresh = entryCount;
+  }
+
+  @Benchmark
+  public boolean addNew() {
+    return index.add(KYBER_PRE_KEY_ID, SIGNED_PRE_KEY_ID, baseKey(nextFresh++));
+  }
+
+  @Benchmark
+  public boolean addReplay() {
+    return index.add(KYBER_PRE_KEY_ID, SIGNED_PRE_KEY_ID, baseKey(random.nextInt(entryCount)));
+  }
+
+  @Benchmark
+  public boolean containsMissing() {
+    return index.contains(KYBER_PRE_KEY_ID, SIGNED_PRE_KEY_ID, baseKey(-1 - random.nextInt(1000)));
+  }
+}
@@ -0,0 +1,90 @@
+//
+// Copyright 2026 Signal Messenger, LLC.
+// SPDX-License-Identifier: AGPL-3.0-only
+//
+
+package org.signal.libsignal.benchmarks;
+
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.signal.libsignal.protocol.IdentityKeyPair;
+import org.signal.libsignal.protocol.SessionCipher;
+import org.signal.libsignal.protocol.SignalProtocolAddress;
+import org.signal.libsignal.protocol.message.CiphertextMessage;
+import org.signal.libsignal.protocol.message.PreKeySignalMessage;
+import org.signal.libsignal.protocol.message.SignalMessage;
+import org.signal.libsignal.protocol.state.impl.InMemorySignalProtocolStore;
+
+/**
+ * 1:1 session encryption.
+ *
+ * <p>A Signal message can only be decrypted once, so decryption is measured as part of a round
+ * trip; subtract {@link #encrypt} to estimate it on its own.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class SessionCipherBenchmark {
+  @Param({"64", "1024", "16384"})
+  public int messageSize;
+
+  private byte[] plaintext;
+  private SessionCipher aliceCipher;
+  private SessionCipher bobCipher;
+
+  @Setup
+  public void setUp() throws Exception {
+    InMemorySignalProtocolStore aliceStore =
+        new InMemorySignalProtocolStore(IdentityKeyPair.generate(), 0xAA);
+    InMemorySignalProtocolStore bobStore =
+        new InMemorySignalProtocolStore(IdentityKeyPair.generate(), 0xBB);
+    SignalProtocolAddress aliceAddress =
+        new SignalProtocolAddress("9d0652a3-dcc3-4d11-975f-74d61598733f", 1);
+    SignalProtocolAddress bobAddress =
+        new SignalProtocolAddress("796abedb-ca4e-4f18-8803-1fde5b921f9f", 1);
+
+    Fixtures.initializeSessions(aliceStore, bobStore, bobAddress, aliceAddress);
+    aliceCipher = new SessionCipher(aliceStore, aliceAddress, bobAddress);
+    bobCipher = new SessionCipher(bobStore, bobAddress, aliceAddress);
+
+    plaintext = new byte[messageSize];
+
+    // Complete the handshake, so that the benchmarks only see whisper messages.
+    bobCipher.decrypt(new PreKeySignalMessage(aliceCipher.encrypt(plaintext).serialize()));
+    aliceCipher.decrypt(new SignalMessage(bobCipher.encrypt(plaintext).serialize()));
+  }
+
+  @Benchmark
+  public CiphertextMessage encrypt() throws Exception {
+    return aliceCipher.encrypt(plaintext);
+  }
+
+  /** Alice sends to Bob along the same sending chain each time. */
+  @Benchmark
+  public byte[] roundTrip() throws Exception {
+    CiphertextMessage ciphertext = aliceCipher.encrypt(plaintext);
+    return bobCipher.decrypt(new SignalMessage(ciphertext.serialize()));
+  }
+
+  /** Alice and Bob take turns, so that every message performs a DH ratchet step. */
+  @Benchmark
+  public byte[] pingPong() throws Exception {
+    CiphertextMessage ping = aliceCipher.encrypt(plaintext);
+    bobCipher.decrypt(new SignalMessage(ping.serialize()));
+    CiphertextMessage pong = bobCipher.encrypt(plaintext);
+    return aliceCipher.decrypt(new SignalMessage(pong.serialize()));
+  }
+}
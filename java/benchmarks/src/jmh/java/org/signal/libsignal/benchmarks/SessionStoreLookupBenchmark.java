@@ -0,0 +1,76 @@
+//
+// Copyright 2026 Signal Messenger, LLC.
+// SPDX-License-Identifier: AGPL-3.0-only
+//
+
+package org.signal.libsignal.benchmarks;
+
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.signal.libsignal.protocol.ServiceId;
+import org.signal.libsignal.protocol.SignalProtocolAddress;
+import org.signal.libsignal.protocol.state.SessionRecord;
+import org.signal.libsignal.protocol.state.impl.InMemorySessionStore;
+
+/**
+ * Looking up sessions by address, which exercises {@link SignalProtocolAddress#hashCode} and
+ * {@link SignalProtocolAddress#equals} the way every store does.
+ *
+ * <p>Each lookup uses a freshly constructed address, as a store callback from Rust or an app
+ * building addresses from its own database would.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class SessionStoreLookupBenchmark {
+  @Param({"10", "1000"})
+  public int sessionCount;
+
+  private final InMemorySessionStore store = new InMemorySessionStore();
+  private String[] names;
+  private int next = 0;
+
+  @Setup
+  public void setUp() {
+    final SessionRecord record = new SessionRecord();
+    names = new String[sessionCount];
+    for (int i = 0; i < sessionCount; ++i) {
+      names[i] = new ServiceId.Aci(UUID.randomUUID()).toServiceIdString();
+      store.storeSession(new SignalProtocolAddress(names[i], 1), record);
+    }
+  }
+
+  private SignalProtocolAddress nextAddress() {
+    next = (next + 1) % names.length;
+    return new SignalProtocolAddress(names[next], 1);
+  }
+
+  @Benchmark
+  public int hashAddress() {
+    return nextAddress().hashCode();
+  }
+
+  @Benchmark
+  public boolean containsSession() {
+    return store.containsSession(nextAddress());
+  }
+
+  @Benchmark
+  public SessionRecord loadSession() {
+    return store.loadSession(nextAddress());
+  }
+}
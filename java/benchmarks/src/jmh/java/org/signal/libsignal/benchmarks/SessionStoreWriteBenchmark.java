@@ -0,0 +1,109 @@
+//
+// Copyright 2026 Signal Messenger, LLC.
+// SPDX-License-Identifier: AGPL-3.0-only
+//
+
+package org.signal.libsignal.benchmarks;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+import org.signal.libsignal.protocol.ServiceId;
+import org.signal.libsignal.protocol.SignalProtocolAddress;
+import org.signal.libsignal.protocol.state.SessionRecord;
+import org.signal.libsignal.protocol.state.SessionStore;
+import org.signal.libsignal.protocol.state.impl.CachingSessionStore;
+import org.signal.libsignal.protocol.state.impl.ConcurrentInMemorySessionStore;
+import org.signal.libsignal.protocol.state.impl.FileProtocolStore;
+import org.signal.libsignal.protocol.state.impl.InMemorySessionStore;
+
+/**
+ * The load-then-store cycle every encrypted or decrypted message puts a {@link SessionStore}
+ * through, across the store implementations in this library.
+ *
+ * <p>Runs on four threads, so that the file store's writers can share syncs.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@Threads(4)
+public class SessionStoreWriteBenchmark {
+  @Param({"memory", "concurrent", "file", "cachedFile"})
+  public String storeType;
+
+  private static final int SESSION_COUNT = 100;
+
+  private SessionStore store;
+  private FileProtocolStore fileStore;
+  private File file;
+  private SignalProtocolAddress[] addresses;
+
+  @Setup
+  public void setUp() throws IOException {
+    switch (storeType) {
+      case "memory":
+        store = new InMemorySessionStore();
+        break;
+      case "concurrent":
+        store = new ConcurrentInMemorySessionStore();
+        break;
+      case "file":
+      case "cachedFile":
+        file = File.createTempFile("libsignal-benchmark", ".log");
+        file.delete();
+        fileStore = FileProtocolStore.open(file);
+        store =
+            storeType.equals("file")
+                ? fileStore
+                : new CachingSessionStore(fileStore, SESSION_COUNT);
+        break;
+      default:
+        throw new IllegalArgumentException(storeType);
+    }
+
+    final SessionRecord record = new SessionRecord();
+    addresses = new SignalProtocolAddress[SESSION_COUNT];
+    for (int i = 0; i < SESSION_COUNT; ++i) {
+      final String name = new ServiceId.Aci(UUID.randomUUID()).toServiceIdString();
+      addresses[i] = new SignalProtocolAddress(name, 1);
+      store.storeSession(addresses[i], record);
+    }
+  }
+
+  @TearDown
+  public void tearDown() throws IOException {
+    if (fileStore != null) {
+      fileStore.close();
+      file.delete();
+    }
+  }
+
+  @State(Scope.Thread)
+  public static class Cursor {
+    int next = 0;
+  }
+
+  @Benchmark
+  public void loadAndStore(Cursor cursor) {
+    cursor.next = (cursor.next + 1) % SESSION_COUNT;
+    final SignalProtocolAddress address = addresses[cursor.next];
+    store.storeSession(address, store.loadSession(address));
+  }
+}
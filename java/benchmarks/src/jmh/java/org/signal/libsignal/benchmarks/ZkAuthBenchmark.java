@@ -0,0 +1,89 @@
+//
+// Copyright 2026 Signal Messenger, LLC.
+// SPDX-License-Identifier: AGPL-3.0-only
+//
+
+package org.signal.libsignal.benchmarks;
+
+import java.time.Instant;
+import java.time.temporal.ChronoUnit;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.signal.libsignal.protocol.ServiceId;
+import org.signal.libsignal.zkgroup.ServerPublicParams;
+import org.signal.libsignal.zkgroup.ServerSecretParams;
+import org.signal.libsignal.zkgroup.auth.AuthCredentialPresentation;
+import org.signal.libsignal.zkgroup.auth.AuthCredentialWithPni;
+import org.signal.libsignal.zkgroup.auth.AuthCredentialWithPniResponse;
+import org.signal.libsignal.zkgroup.auth.ClientZkAuthOperations;
+import org.signal.libsignal.zkgroup.auth.ServerZkAuthOperations;
+import org.signal.libsignal.zkgroup.groups.GroupPublicParams;
+import org.signal.libsignal.zkgroup.groups.GroupSecretParams;
+
+/** The full life cycle of a zkgroup auth credential, from issuance to verification. */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class ZkAuthBenchmark {
+  private final Instant now = Instant.now().truncatedTo(ChronoUnit.DAYS);
+  private final ServiceId.Aci aci = new ServiceId.Aci(UUID.randomUUID());
+  private final ServiceId.Pni pni = new ServiceId.Pni(UUID.randomUUID());
+
+  private ServerZkAuthOperations serverOperations;
+  private ClientZkAuthOperations clientOperations;
+  private GroupSecretParams groupParams;
+  private GroupPublicParams groupPublicParams;
+  private AuthCredentialWithPniResponse response;
+  private AuthCredentialWithPni credential;
+  private AuthCredentialPresentation presentation;
+
+  @Setup
+  public void setUp() throws Exception {
+    ServerSecretParams serverParams = ServerSecretParams.generate();
+    ServerPublicParams serverPublicParams = serverParams.getPublicParams();
+    serverOperations = new ServerZkAuthOperations(serverParams);
+    clientOperations = new ClientZkAuthOperations(serverPublicParams);
+    groupParams = GroupSecretParams.generate();
+    groupPublicParams = groupParams.getPublicParams();
+
+    response = serverOperations.issueAuthCredentialWithPniZkc(aci, pni, now);
+    credential =
+        clientOperations.receiveAuthCredentialWithPniAsServiceId(
+            aci, pni, now.getEpochSecond(), response);
+    presentation = clientOperations.createAuthCredentialPresentation(groupParams, credential);
+  }
+
+  @Benchmark
+  public AuthCredentialWithPniResponse issue() {
+    return serverOperations.issueAuthCredentialWithPniZkc(aci, pni, now);
+  }
+
+  @Benchmark
+  public AuthCredentialWithPni receive() throws Exception {
+    return clientOperations.receiveAuthCredentialWithPniAsServiceId(
+        aci, pni, now.getEpochSecond(), response);
+  }
+
+  @Benchmark
+  public AuthCredentialPresentation present() {
+    return clientOperations.createAuthCredentialPresentation(groupParams, credential);
+  }
+
+  @Benchmark
+  public void verify() throws Exception {
+    serverOperations.verifyAuthCredentialPresentation(groupPublicParams, presentation, now);
+  }
+}
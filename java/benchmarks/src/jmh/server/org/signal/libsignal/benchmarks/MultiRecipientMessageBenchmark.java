@@ -0,0 +1,146 @@
+//
+// Copyright 2026 Signal Messenger, LLC.
+// SPDX-License-Identifier: AGPL-3.0-only
+//
+
+package org.signal.libsignal.benchmarks;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+import org.signal.libsignal.protocol.SealedSenderMultiRecipientMessage;
+import org.signal.libsignal.protocol.ServiceId;
+
+/**
+ * Server-side handling of a sealed sender v2 message: parsing it, then producing the message for
+ * each recipient.
+ *
+ * <p>The input is synthetic; parsing doesn't look inside the key material or the shared payload.
+ *
+ * <p>The {@code Buffer} variants use {@link SealedSenderMultiRecipientMessage#parse(ByteBuffer)}
+ * on a direct buffer, and its compact recipient map, instead of the native parser and the HashMap
+ * it builds. Run with {@code -prof gc} to compare memory as well: for the parse benchmarks, {@code
+ * gc.alloc.rate.norm} is roughly what each parsed message holds on to.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class MultiRecipientMessageBenchmark {
+  private static final int SERVICE_ID_AWARE_VERSION = 0x23;
+  private static final int KEY_MATERIAL_LENGTH = 48;
+  private static final int SHARED_DATA_LENGTH = 1024;
+
+  @Param({"1", "100", "1000", "5000"})
+  public int recipientCount;
+
+  private byte[] serialized;
+  private ByteBuffer direct;
+  private SealedSenderMultiRecipientMessage parsed;
+  private SealedSenderMultiRecipientMessage parsedFromBuffer;
+  // Equal to the recipients' service IDs, but separate instances, in a different order.
+  private List<ServiceId> lookups;
+
+  @Setup
+  public void setUp() throws Exception {
+    serialized = generate(recipientCount, new Random(recipientCount));
+    direct = ByteBuffer.allocateDirect(serialized.length).put(serialized).flip();
+    parsed = SealedSenderMultiRecipientMessage.parse(serialized);
+    parsedFromBuffer = SealedSenderMultiRecipientMessage.parse(direct);
+
+    lookups = new ArrayList<>();
+    for (ServiceId serviceId : parsed.getRecipients().keySet()) {
+      lookups.add(ServiceId.parseFromFixedWidthBinary(serviceId.toServiceIdFixedWidthBinary()));
+    }
+    Collections.shuffle(lookups, new Random(recipientCount));
+  }
+
+  @Benchmark
+  public SealedSenderMultiRecipientMessage parse() throws Exception {
+    return SealedSenderMultiRecipientMessage.parse(serialized);
+  }
+
+  @Benchmark
+  public SealedSenderMultiRecipientMessage parseBuffer() throws Exception {
+    return SealedSenderMultiRecipientMessage.parse(direct);
+  }
+
+  @Benchmark
+  public void lookUpEachRecipient(Blackhole blackhole) {
+    final Map<ServiceId, SealedSenderMultiRecipientMessage.Recipient> recipients =
+        parsed.getRecipients();
+    for (ServiceId serviceId : lookups) {
+      blackhole.consume(recipients.get(serviceId));
+    }
+  }
+
+  @Benchmark
+  public void lookUpEachRecipientBuffer(Blackhole blackhole) {
+    final Map<ServiceId, SealedSenderMultiRecipientMessage.Recipient> recipients =
+        parsedFromBuffer.getRecipients();
+    for (ServiceId serviceId : lookups) {
+      blackhole.consume(recipients.get(serviceId));
+    }
+  }
+
+  @Benchmark
+  public void messageForEachRecipient(Blackhole blackhole) {
+    for (SealedSenderMultiRecipientMessage.Recipient recipient : parsed.getRecipients().values()) {
+      blackhole.consume(parsed.messageForRecipient(recipient));
+    }
+  }
+
+  /** Builds a message with one device per recipient, alternating ACIs and PNIs. */
+  static byte[] generate(int recipientCount, Random random) {
+    ByteArrayOutputStream out = new ByteArrayOutputStream();
+    out.write(SERVICE_ID_AWARE_VERSION);
+    writeVarint(out, recipientCount);
+
+    byte[] uuid = new byte[16];
+    byte[] keyMaterial = new byte[KEY_MATERIAL_LENGTH];
+    for (int i = 0; i < recipientCount; ++i) {
+      out.write(i % 2); // ACI or PNI
+      random.nextBytes(uuid);
+      out.writeBytes(uuid);
+      out.write(1); // device ID
+      // Registration ID; the high bit would mean another device for the same recipient follows.
+      int registrationId = 1 + random.nextInt(0x3FFF);
+      out.write(registrationId >> 8);
+      out.write(registrationId);
+      random.nextBytes(keyMaterial);
+      out.writeBytes(keyMaterial);
+    }
+
+    byte[] shared = new byte[SHARED_DATA_LENGTH];
+    random.nextBytes(shared);
+    out.writeBytes(shared);
+    return out.toByteArray();
+  }
+
+  private static void writeVarint(ByteArrayOutputStream out, int value) {
+    while ((value & ~0x7F) != 0) {
+      out.write((value & 0x7F) | 0x80);
+      value >>>= 7;
+    }
+    out.write(value);
+  }
+}
@@ -115,6 +115,17 @@ check_for_debug_level_logs_if_needed () {
     fi
 }
 
+# usage: write_library_digests lib_dir
+# Records each library's SHA-256 next to it, so Native can check its extraction cache against the
+# digest without hashing the jar entry on every start.
+write_library_digests () {
+    for lib in "$1"/*.so "$1"/*.dylib "$1"/*.dll; do
+        if [[ -e "$lib" ]]; then
+            python3 -c 'import hashlib, sys; print(hashlib.sha256(open(sys.argv[1], "rb").read()).hexdigest())' "$lib" > "$lib.sha256"
+        fi
+    done
+}
+
 # usage: build_desktop_for_arch target_triple host_triple output_dir
 build_desktop_for_arch () {
     local CC
@@ -152,6 +163,7 @@ build_desktop_for_arch () {
     copy_built_library "target/${1}/${RUST_RELEASE:-debug}" signal_jni_testing "$lib_dir" "signal_jni_testing_${suffix}"
     check_for_debug_level_logs_if_needed "$lib_dir"
     check_for_attest_testutil "$lib_dir"
+    write_library_digests "$lib_dir"
 }
 
 android_abis=()
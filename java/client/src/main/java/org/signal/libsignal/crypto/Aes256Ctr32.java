@@ -7,6 +7,7 @@ package org.signal.libsignal.crypto;
 
 import static org.signal.libsignal.internal.FilterExceptions.filterExceptions;
 
+import java.nio.ByteBuffer;
 import org.signal.libsignal.internal.Native;
 import org.signal.libsignal.internal.NativeHandleGuard;
 import org.signal.libsignal.protocol.InvalidKeyException;
@@ -22,12 +23,8 @@ public class Aes256Ctr32 extends NativeHandleGuard.SimpleOwner {
   public Aes256Ctr32(byte[] key, byte[] nonce, int initialCtr) throws InvalidKeyException {
     super(
         filterExceptions(
-            InvalidKeyException.class, () -> Native.Aes256Ctr32_New(key, nonce, initialCtr)));
-  }
-
-  @Override
-  protected void release(long nativeHandle) {
-    Native.Aes256Ctr32_Destroy(nativeHandle);
+            InvalidKeyException.class, () -> Native.Aes256Ctr32_New(key, nonce, initialCtr)),
+        Native::Aes256Ctr32_Destroy);
   }
 
   /**
@@ -47,4 +44,36 @@ public class Aes256Ctr32 extends NativeHandleGuard.SimpleOwner {
   public void process(byte[] data, int offset, int length) {
     guardedRun((nativeHandle) -> Native.Aes256Ctr32_Process(nativeHandle, data, offset, length));
   }
+
+  /**
+   * Encrypts the plaintext, or decrypts the ciphertext, in the remaining bytes of {@code data}, in
+   * place, advancing the state of the cipher and the position of the buffer.
+   *
+   * <p>Direct buffers are processed without copying.
+   *
+   * @throws java.nio.ReadOnlyBufferException if {@code data} is read-only
+   */
+  public void process(ByteBuffer data) {
+    ByteBuffers.transform(data, this::process, this::processDirect);
+  }
+
+  /**
+   * Encrypts the plaintext, or decrypts the ciphertext, in the remaining bytes of {@code src},
+   * writing the result to {@code dst} and advancing the state of the cipher and the positions of
+   * both buffers.
+   *
+   * <p>{@code src} and {@code dst} may be the same buffer.
+   *
+   * @throws java.nio.BufferOverflowException if {@code dst} has less space remaining than {@code
+   *     src} has data
+   * @throws java.nio.ReadOnlyBufferException if {@code dst} is read-only
+   */
+  public void process(ByteBuffer src, ByteBuffer dst) {
+    ByteBuffers.transform(src, dst, this::process, this::processDirect);
+  }
+
+  private void processDirect(ByteBuffer data, int offset, int length) {
+    guardedRun(
+        (nativeHandle) -> Native.Aes256Ctr32_ProcessDirect(nativeHandle, data, offset, length));
+  }
 }
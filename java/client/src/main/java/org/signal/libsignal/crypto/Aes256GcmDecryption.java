@@ -7,6 +7,7 @@ package org.signal.libsignal.crypto;
 
 import static org.signal.libsignal.internal.FilterExceptions.filterExceptions;
 
+import java.nio.ByteBuffer;
 import org.signal.libsignal.internal.Native;
 import org.signal.libsignal.internal.NativeHandleGuard;
 import org.signal.libsignal.protocol.InvalidKeyException;
@@ -37,12 +38,8 @@ public class Aes256GcmDecryption extends NativeHandleGuard.SimpleOwner {
     super(
         filterExceptions(
             InvalidKeyException.class,
-            () -> Native.Aes256GcmDecryption_New(key, nonce, associatedData)));
-  }
-
-  @Override
-  protected void release(long nativeHandle) {
-    Native.Aes256GcmDecryption_Destroy(nativeHandle);
+            () -> Native.Aes256GcmDecryption_New(key, nonce, associatedData)),
+        Native::Aes256GcmDecryption_Destroy);
   }
 
   /**
@@ -69,6 +66,42 @@ public class Aes256GcmDecryption extends NativeHandleGuard.SimpleOwner {
             Native.Aes256GcmDecryption_Update(nativeHandle, ciphertext, offset, length));
   }
 
+  /**
+   * Decrypts the remaining bytes of {@code ciphertext} in place, advancing the state of the cipher
+   * and the position of the buffer.
+   *
+   * <p>Direct buffers are processed without copying.
+   *
+   * <p>Don't forget to call {@link #verifyTag} when decryption is complete.
+   *
+   * @throws java.nio.ReadOnlyBufferException if {@code ciphertext} is read-only
+   */
+  public void decrypt(ByteBuffer ciphertext) {
+    ByteBuffers.transform(ciphertext, this::decrypt, this::decryptDirect);
+  }
+
+  /**
+   * Decrypts the remaining bytes of {@code ciphertext} into {@code plaintext}, advancing the state
+   * of the cipher and the positions of both buffers.
+   *
+   * <p>{@code ciphertext} and {@code plaintext} may be the same buffer.
+   *
+   * <p>Don't forget to call {@link #verifyTag} when decryption is complete.
+   *
+   * @throws java.nio.BufferOverflowException if {@code plaintext} has less space remaining than
+   *     {@code ciphertext} has data
+   * @throws java.nio.ReadOnlyBufferException if {@code plaintext} is read-only
+   */
+  public void decrypt(ByteBuffer ciphertext, ByteBuffer plaintext) {
+    ByteBuffers.transform(ciphertext, plaintext, this::decrypt, this::decryptDirect);
+  }
+
+  private void decryptDirect(ByteBuffer ciphertext, int offset, int length) {
+    guardedRun(
+        (nativeHandle) ->
+            Native.Aes256GcmDecryption_UpdateDirect(nativeHandle, ciphertext, offset, length));
+  }
+
   /**
    * Returns {@code true} if and only if {@code tag} matches the ciphertext that has been processed.
    *
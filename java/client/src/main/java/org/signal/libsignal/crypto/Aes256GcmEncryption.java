@@ -7,6 +7,7 @@ package org.signal.libsignal.crypto;
 
 import static org.signal.libsignal.internal.FilterExceptions.filterExceptions;
 
+import java.nio.ByteBuffer;
 import org.signal.libsignal.internal.Native;
 import org.signal.libsignal.internal.NativeHandleGuard;
 import org.signal.libsignal.protocol.InvalidKeyException;
@@ -35,12 +36,8 @@ public class Aes256GcmEncryption extends NativeHandleGuard.SimpleOwner {
     super(
         filterExceptions(
             InvalidKeyException.class,
-            () -> Native.Aes256GcmEncryption_New(key, nonce, associatedData)));
-  }
-
-  @Override
-  protected void release(long nativeHandle) {
-    Native.Aes256GcmEncryption_Destroy(nativeHandle);
+            () -> Native.Aes256GcmEncryption_New(key, nonce, associatedData)),
+        Native::Aes256GcmEncryption_Destroy);
   }
 
   /**
@@ -67,6 +64,42 @@ public class Aes256GcmEncryption extends NativeHandleGuard.SimpleOwner {
             Native.Aes256GcmEncryption_Update(nativeHandle, plaintext, 0, plaintext.length));
   }
 
+  /**
+   * Encrypts the remaining bytes of {@code plaintext} in place, advancing the state of the cipher
+   * and the position of the buffer.
+   *
+   * <p>Direct buffers are processed without copying.
+   *
+   * <p>Don't forget to call {@link #computeTag} when encryption is complete.
+   *
+   * @throws java.nio.ReadOnlyBufferException if {@code plaintext} is read-only
+   */
+  public void encrypt(ByteBuffer plaintext) {
+    ByteBuffers.transform(plaintext, this::encrypt, this::encryptDirect);
+  }
+
+  /**
+   * Encrypts the remaining bytes of {@code plaintext} into {@code ciphertext}, advancing the state
+   * of the cipher and the positions of both buffers.
+   *
+   * <p>{@code plaintext} and {@code ciphertext} may be the same buffer.
+   *
+   * <p>Don't forget to call {@link #computeTag} when encryption is complete.
+   *
+   * @throws java.nio.BufferOverflowException if {@code ciphertext} has less space remaining than
+   *     {@code plaintext} has data
+   * @throws java.nio.ReadOnlyBufferException if {@code ciphertext} is read-only
+   */
+  public void encrypt(ByteBuffer plaintext, ByteBuffer ciphertext) {
+    ByteBuffers.transform(plaintext, ciphertext, this::encrypt, this::encryptDirect);
+  }
+
+  private void encryptDirect(ByteBuffer plaintext, int offset, int length) {
+    guardedRun(
+        (nativeHandle) ->
+            Native.Aes256GcmEncryption_UpdateDirect(nativeHandle, plaintext, offset, length));
+  }
+
   /**
    * Produces an authentication tag for the plaintext that has been processed.
    *
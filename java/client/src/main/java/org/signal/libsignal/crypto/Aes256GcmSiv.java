@@ -22,12 +22,9 @@ import org.signal.libsignal.protocol.InvalidMessageException;
 public class Aes256GcmSiv extends NativeHandleGuard.SimpleOwner {
 
   public Aes256GcmSiv(byte[] key) throws InvalidKeyException {
-    super(filterExceptions(InvalidKeyException.class, () -> Native.Aes256GcmSiv_New(key)));
-  }
-
-  @Override
-  protected void release(long nativeHandle) {
-    Native.Aes256GcmSiv_Destroy(nativeHandle);
+    super(
+        filterExceptions(InvalidKeyException.class, () -> Native.Aes256GcmSiv_New(key)),
+        Native::Aes256GcmSiv_Destroy);
   }
 
   /**
@@ -0,0 +1,109 @@
+//
+// Copyright 2026 Signal Messenger, LLC.
+// SPDX-License-Identifier: AGPL-3.0-only
+//
+
+package org.signal.libsignal.crypto;
+
+import java.nio.BufferOverflowException;
+import java.nio.ByteBuffer;
+import java.nio.ReadOnlyBufferException;
+
+/**
+ * Feeds the remaining bytes of a {@link ByteBuffer} to an operation that has both a {@code byte[]}
+ * form and a direct-buffer form.
+ *
+ * <p>Direct buffers are passed to Rust as-is, and array-backed buffers are passed as their backing
+ * array, so in neither case are the contents copied. Only read-only heap buffers, whose arrays
+ * aren't accessible, are copied, and only when they're being read from.
+ */
+final class ByteBuffers {
+  private static final int READ_ONLY_CHUNK_SIZE = 8 * 1024;
+
+  private ByteBuffers() {}
+
+  interface RegionOperation<T> {
+    void apply(T buffer, int offset, int length);
+  }
+
+  /**
+   * Passes the remaining bytes of {@code input} to {@code onArray} or {@code onDirect}, then
+   * advances its position to its limit.
+   */
+  static void read(
+      ByteBuffer input,
+      RegionOperation<byte[]> onArray,
+      RegionOperation<ByteBuffer> onDirect) {
+    final int position = input.position();
+    final int length = input.remaining();
+    if (input.isDirect()) {
+      onDirect.apply(input, position, length);
+    } else if (input.hasArray()) {
+      onArray.apply(input.array(), input.arrayOffset() + position, length);
+    } else {
+      final byte[] chunk = new byte[Math.min(length, READ_ONLY_CHUNK_SIZE)];
+      final ByteBuffer source = input.duplicate();
+      while (source.hasRemaining()) {
+        final int chunkLength = Math.min(chunk.length, source.remaining());
+        source.get(chunk, 0, chunkLength);
+        onArray.apply(chunk, 0, chunkLength);
+      }
+    }
+    input.position(position + length);
+  }
+
+  /**
+   * Transforms the remaining bytes of {@code data} in place using {@code onArray} or {@code
+   * onDirect}, then advances its position to its limit.
+   *
+   * @throws ReadOnlyBufferException if {@code data} is read-only
+   */
+  static void transform(
+      ByteBuffer data, RegionOperation<byte[]> onArray, RegionOperation<ByteBuffer> onDirect) {
+    if (data.isReadOnly()) {
+      throw new ReadOnlyBufferException();
+    }
+    final int position = data.position();
+    final int length = data.remaining();
+    if (data.isDirect()) {
+      onDirect.apply(data, position, length);
+    } else {
+      onArray.apply(data.array(), data.arrayOffset() + position, length);
+    }
+    data.position(position + length);
+  }
+
+  /**
+   * Copies the remaining bytes of {@code src} into {@code dst} and transforms them there, advancing
+   * the positions of both buffers by the number of bytes processed.
+   *
+   * <p>If {@code src} and {@code dst} are the same buffer, this is the same as {@link #transform}.
+   *
+   * @throws BufferOverflowException if {@code dst} has less space remaining than {@code src} has
+   *     data
+   * @throws ReadOnlyBufferException if {@code dst} is read-only
+   */
+  static void transform(
+      ByteBuffer src,
+      ByteBuffer dst,
+      RegionOperation<byte[]> onArray,
+      RegionOperation<ByteBuffer> onDirect) {
+    if (src == dst) {
+      transform(dst, onArray, onDirect);
+      return;
+    }
+    if (dst.isReadOnly()) {
+      throw new ReadOnlyBufferException();
+    }
+    final int length = src.remaining();
+    if (dst.remaining() < length) {
+      throw new BufferOverflowException();
+    }
+    final ByteBuffer region = dst.duplicate();
+    region.limit(region.position() + length);
+    region.put(src);
+    region.position(dst.position());
+    transform(region, onArray, onDirect);
+    dst.position(region.position());
+  }
+}
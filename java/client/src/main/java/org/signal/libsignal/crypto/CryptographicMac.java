@@ -7,17 +7,15 @@ package org.signal.libsignal.crypto;
 
 import static org.signal.libsignal.internal.FilterExceptions.filterExceptions;
 
+import java.nio.ByteBuffer;
 import org.signal.libsignal.internal.Native;
 import org.signal.libsignal.internal.NativeHandleGuard;
 
 public class CryptographicMac extends NativeHandleGuard.SimpleOwner {
   public CryptographicMac(String algo, byte[] key) {
-    super(filterExceptions(() -> Native.CryptographicMac_New(algo, key)));
-  }
-
-  @Override
-  protected void release(long nativeHandle) {
-    Native.CryptographicMac_Destroy(nativeHandle);
+    super(
+        filterExceptions(() -> Native.CryptographicMac_New(algo, key)),
+        Native::CryptographicMac_Destroy);
   }
 
   public void update(byte[] input, int offset, int len) {
@@ -30,6 +28,20 @@ public class CryptographicMac extends NativeHandleGuard.SimpleOwner {
     guardedRun((nativeHandle) -> Native.CryptographicMac_Update(nativeHandle, input));
   }
 
+  /**
+   * Processes the remaining bytes of {@code input}, advancing its position to its limit.
+   *
+   * <p>Direct and array-backed buffers are read without copying.
+   */
+  public void update(ByteBuffer input) {
+    ByteBuffers.read(input, this::update, this::updateDirect);
+  }
+
+  private void updateDirect(ByteBuffer input, int offset, int len) {
+    guardedRun(
+        (nativeHandle) -> Native.CryptographicMac_UpdateDirect(nativeHandle, input, offset, len));
+  }
+
   public byte[] finish() {
     return guardedMap(Native::CryptographicMac_Finalize);
   }
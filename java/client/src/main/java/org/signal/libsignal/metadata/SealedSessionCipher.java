@@ -7,10 +7,15 @@ package org.signal.libsignal.metadata;
 
 import static org.signal.libsignal.internal.FilterExceptions.filterExceptions;
 
+import java.util.ArrayList;
 import java.util.Collections;
 import java.util.List;
 import java.util.Optional;
 import java.util.UUID;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
 import org.signal.libsignal.internal.Native;
 import org.signal.libsignal.internal.NativeHandleGuard;
 import org.signal.libsignal.metadata.certificate.CertificateValidator;
@@ -39,7 +44,11 @@ public class SealedSessionCipher {
 
   private static final String TAG = SealedSessionCipher.class.getSimpleName();
 
+  // Recipients per loadExistingSessions call when loading sessions in parallel.
+  private static final int SESSION_LOAD_CHUNK_SIZE = 128;
+
   private final SignalProtocolStore signalProtocolStore;
+  private final org.signal.libsignal.protocol.state.internal.IdentityKeyStore identityKeyStore;
   private final String localE164Address;
   private final String localUuidAddress;
   private final int localDeviceId;
@@ -50,6 +59,7 @@ public class SealedSessionCipher {
       String localE164Address,
       int localDeviceId) {
     this.signalProtocolStore = signalProtocolStore;
+    this.identityKeyStore = SessionCipher._bridge(signalProtocolStore);
     this.localUuidAddress = localUuid.toString();
     this.localE164Address = localE164Address;
     this.localDeviceId = localDeviceId;
@@ -86,7 +96,7 @@ public class SealedSessionCipher {
               Native.SealedSessionCipher_Encrypt(
                   addressGuard.nativeHandle(),
                   contentGuard.nativeHandle(),
-                  SessionCipher._bridge(this.signalProtocolStore)));
+                  this.identityKeyStore));
     }
   }
 
@@ -112,6 +122,60 @@ public class SealedSessionCipher {
     return multiRecipientEncrypt(recipients, recipientSessions, content, excludedRecipients);
   }
 
+  /**
+   * Like {@link #multiRecipientEncrypt(List, UnidentifiedSenderMessageContent, List)}, but loads
+   * the recipients' sessions in parallel on {@code sessionLoader}.
+   *
+   * <p>The per-recipient key agreements are already spread across cores by libsignal itself, which
+   * leaves loading (and deserializing) every recipient's session as the part of encrypting for a
+   * large group that grows with its size. This splits the recipients into chunks and loads each
+   * with its own {@link SignalProtocolStore#loadExistingSessions} call, so the store must allow
+   * concurrent loads.
+   *
+   * @throws InterruptedException if interrupted while waiting for the sessions to load
+   */
+  public byte[] multiRecipientEncrypt(
+      List<SignalProtocolAddress> recipients,
+      UnidentifiedSenderMessageContent content,
+      List<ServiceId> excludedRecipients,
+      ExecutorService sessionLoader)
+      throws InvalidKeyException,
+          InvalidRegistrationIdException,
+          NoSessionException,
+          UntrustedIdentityException,
+          InterruptedException {
+    if (recipients.size() <= SESSION_LOAD_CHUNK_SIZE) {
+      return multiRecipientEncrypt(recipients, content, excludedRecipients);
+    }
+
+    final List<Callable<List<SessionRecord>>> chunks = new ArrayList<>();
+    for (int start = 0; start < recipients.size(); start += SESSION_LOAD_CHUNK_SIZE) {
+      final List<SignalProtocolAddress> chunk =
+          recipients.subList(start, Math.min(recipients.size(), start + SESSION_LOAD_CHUNK_SIZE));
+      chunks.add(() -> this.signalProtocolStore.loadExistingSessions(chunk));
+    }
+
+    final List<SessionRecord> recipientSessions = new ArrayList<>(recipients.size());
+    for (Future<List<SessionRecord>> chunk : sessionLoader.invokeAll(chunks)) {
+      try {
+        recipientSessions.addAll(chunk.get());
+      } catch (ExecutionException e) {
+        final Throwable cause = e.getCause();
+        if (cause instanceof NoSessionException) {
+          throw (NoSessionException) cause;
+        }
+        if (cause instanceof RuntimeException) {
+          throw (RuntimeException) cause;
+        }
+        if (cause instanceof Error) {
+          throw (Error) cause;
+        }
+        throw new AssertionError(cause);
+      }
+    }
+    return multiRecipientEncrypt(recipients, recipientSessions, content, excludedRecipients);
+  }
+
   public byte[] multiRecipientEncrypt(
       List<SignalProtocolAddress> recipients,
       List<SessionRecord> recipientSessions,
@@ -164,7 +228,7 @@ public class SealedSessionCipher {
                       recipientSessionHandles,
                       ServiceId.toConcatenatedFixedWidthBinary(excludedRecipients),
                       contentGuard.nativeHandle(),
-                      SessionCipher._bridge(this.signalProtocolStore)));
+                      this.identityKeyStore));
       // Manually keep the lists of recipients and sessions from being garbage collected
       // while we're using their native handles.
       Native.keepAlive(recipients);
@@ -195,8 +259,7 @@ public class SealedSessionCipher {
     try {
       content =
           new UnidentifiedSenderMessageContent(
-              Native.SealedSessionCipher_DecryptToUsmc(
-                  ciphertext, SessionCipher._bridge(this.signalProtocolStore)));
+              Native.SealedSessionCipher_DecryptToUsmc(ciphertext, this.identityKeyStore));
       validator.validate(content.getSenderCertificate(), timestamp);
     } catch (Exception e) {
       throw new InvalidMetadataMessageException(e);
@@ -21,18 +21,13 @@ public class UnidentifiedSenderMessageContent extends NativeHandleGuard.SimpleOw
   public static final int CONTENT_HINT_RESENDABLE = 1;
   public static final int CONTENT_HINT_IMPLICIT = 2;
 
-  @Override
-  protected void release(long nativeHandle) {
-    Native.UnidentifiedSenderMessageContent_Destroy(nativeHandle);
-  }
-
   public UnidentifiedSenderMessageContent(long nativeHandle) {
-    super(nativeHandle);
+    super(nativeHandle, Native::UnidentifiedSenderMessageContent_Destroy);
   }
 
   public UnidentifiedSenderMessageContent(byte[] serialized)
       throws InvalidMetadataMessageException, InvalidCertificateException {
-    super(createNativeFrom(serialized));
+    super(createNativeFrom(serialized), Native::UnidentifiedSenderMessageContent_Destroy);
   }
 
   private static long createNativeFrom(byte[] serialized)
@@ -51,7 +46,8 @@ public class UnidentifiedSenderMessageContent extends NativeHandleGuard.SimpleOw
       Optional<byte[]> groupId) {
     super(
         UnidentifiedSenderMessageContent.createNativeFrom(
-            message, senderCertificate, contentHint, groupId));
+            message, senderCertificate, contentHint, groupId),
+        Native::UnidentifiedSenderMessageContent_Destroy);
   }
 
   private static long createNativeFrom(
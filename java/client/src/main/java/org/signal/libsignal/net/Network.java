@@ -91,7 +91,24 @@ public class Network {
       String userAgent,
       Map<String, String> remoteConfig,
       BuildVariant buildVariant) {
-    this.tokioAsyncContext = new TokioAsyncContext();
+    this(env, userAgent, remoteConfig, buildVariant, new TokioAsyncContext());
+  }
+
+  /**
+   * Like {@link #Network(Environment, String, Map, BuildVariant)}, but runs all of this instance's
+   * async work on {@code asyncContext} rather than on a runtime of its own.
+   *
+   * <p>Any number of {@code Network} instances can share a runtime. Pass {@link
+   * TokioAsyncContext#shared()} to use the process-wide one, or build one with {@link
+   * TokioAsyncContext.Builder} to control its threads.
+   */
+  public Network(
+      Environment env,
+      String userAgent,
+      Map<String, String> remoteConfig,
+      BuildVariant buildVariant,
+      TokioAsyncContext asyncContext) {
+    this.tokioAsyncContext = asyncContext;
     this.connectionManager = new ConnectionManager(env, userAgent, remoteConfig, buildVariant);
   }
 
@@ -273,7 +290,7 @@ public class Network {
       "org.signal.libsignal.net.ChatServiceException",
       "org.signal.libsignal.protocol.ServiceId",
     };
-    TokioAsyncContext context = new TokioAsyncContext();
+    TokioAsyncContext context = TokioAsyncContext.shared();
 
     for (String className : classesToLoad) {
       // No need to do anything with the result; if it doesn't throw, it succeeded.
@@ -8,6 +8,7 @@ package org.signal.libsignal.crypto;
 import static org.junit.Assert.assertEquals;
 
 import java.io.IOException;
+import java.nio.ByteBuffer;
 import org.junit.Test;
 import org.signal.libsignal.protocol.InvalidKeyException;
 import org.signal.libsignal.protocol.util.Hex;
@@ -37,5 +38,14 @@ public class Aes256Ctr32Tests {
     byte[] ciphertext = plaintext.clone();
     ctr.process(ciphertext);
     assertEquals(Hex.toStringCondensed(ciphertext), hex_ciphertext);
+
+    Aes256Ctr32 ctr2 = new Aes256Ctr32(key, nonce, initialCtr);
+    ByteBuffer directCiphertext = ByteBuffer.allocateDirect(plaintext.length);
+    ctr2.process(ByteBuffer.wrap(plaintext), directCiphertext);
+    assertEquals(0, directCiphertext.remaining());
+    directCiphertext.flip();
+    byte[] directCiphertextBytes = new byte[plaintext.length];
+    directCiphertext.get(directCiphertextBytes);
+    assertEquals(Hex.toStringCondensed(directCiphertextBytes), hex_ciphertext);
   }
 }
@@ -6,8 +6,12 @@
 package org.signal.libsignal.crypto;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertThrows;
 
 import java.io.IOException;
+import java.nio.BufferOverflowException;
+import java.nio.ByteBuffer;
+import java.nio.ReadOnlyBufferException;
 import org.junit.Test;
 import org.signal.libsignal.protocol.InvalidKeyException;
 import org.signal.libsignal.protocol.util.Hex;
@@ -65,5 +69,42 @@ public class Aes256GcmEncryptionTests {
     gcmDec2.decrypt(decryptedSplit, 1, ciphertext.length - 1);
     assertEquals(Hex.toStringCondensed(decryptedSplit), hex_plaintext);
     assertEquals(gcmDec2.verifyTag(tag), true);
+
+    Aes256GcmEncryption gcmEnc3 = new Aes256GcmEncryption(key, nonce, ad);
+    ByteBuffer directBuffer = ByteBuffer.allocateDirect(plaintext.length);
+    directBuffer.put(plaintext).flip();
+    gcmEnc3.encrypt(directBuffer);
+    assertEquals(directBuffer.limit(), directBuffer.position());
+    assertEquals(Hex.toStringCondensed(bytesOf(directBuffer)), hex_ciphertext);
+    assertEquals(Hex.toStringCondensed(gcmEnc3.computeTag()), hex_tag);
+
+    Aes256GcmDecryption gcmDec3 = new Aes256GcmDecryption(key, nonce, ad);
+    ByteBuffer heapPlaintext = ByteBuffer.allocate(plaintext.length + 2);
+    heapPlaintext.position(2);
+    directBuffer.flip();
+    ByteBuffer firstByte = directBuffer.duplicate();
+    firstByte.limit(1);
+    gcmDec3.decrypt(firstByte, heapPlaintext);
+    directBuffer.position(1);
+    gcmDec3.decrypt(directBuffer, heapPlaintext);
+    assertEquals(0, directBuffer.remaining());
+    assertEquals(0, heapPlaintext.remaining());
+    heapPlaintext.position(2);
+    assertEquals(Hex.toStringCondensed(bytesOf(heapPlaintext)), hex_plaintext);
+    assertEquals(gcmDec3.verifyTag(tag), true);
+
+    Aes256GcmEncryption gcmEnc4 = new Aes256GcmEncryption(key, nonce, ad);
+    assertThrows(
+        BufferOverflowException.class,
+        () -> gcmEnc4.encrypt(ByteBuffer.wrap(plaintext), ByteBuffer.allocate(1)));
+    assertThrows(
+        ReadOnlyBufferException.class,
+        () -> gcmEnc4.encrypt(ByteBuffer.wrap(plaintext).asReadOnlyBuffer()));
+  }
+
+  private static byte[] bytesOf(ByteBuffer buffer) {
+    byte[] result = new byte[buffer.limit() - buffer.position()];
+    buffer.duplicate().get(result);
+    return result;
   }
 }
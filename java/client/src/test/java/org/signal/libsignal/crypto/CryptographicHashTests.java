@@ -7,6 +7,7 @@ package org.signal.libsignal.crypto;
 
 import static org.junit.Assert.assertEquals;
 
+import java.nio.ByteBuffer;
 import org.junit.Test;
 import org.signal.libsignal.protocol.util.Hex;
 
@@ -33,6 +34,12 @@ public class CryptographicHashTests {
       byte[] digestSplit2 = hash.finish();
       assertEquals(Hex.toStringCondensed(digestSplit2), hexExpectedOutput);
     }
+
+    ByteBuffer directInput = ByteBuffer.allocateDirect(input.length);
+    directInput.put(input).flip();
+    hash.update(directInput);
+    assertEquals(0, directInput.remaining());
+    assertEquals(Hex.toStringCondensed(hash.finish()), hexExpectedOutput);
   }
 
   @Test
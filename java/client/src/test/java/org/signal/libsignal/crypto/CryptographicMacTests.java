@@ -7,6 +7,7 @@ package org.signal.libsignal.crypto;
 
 import static org.junit.Assert.assertEquals;
 
+import java.nio.ByteBuffer;
 import org.junit.Test;
 import org.signal.libsignal.protocol.util.Hex;
 
@@ -33,6 +34,15 @@ public class CryptographicMacTests {
       byte[] macSplit2 = hmac.finish();
       assertEquals(Hex.toStringCondensed(macSplit2), hexExpectedOutput);
     }
+
+    ByteBuffer directInput = ByteBuffer.allocateDirect(input.length);
+    directInput.put(input).flip();
+    hmac.update(directInput);
+    assertEquals(0, directInput.remaining());
+    assertEquals(Hex.toStringCondensed(hmac.finish()), hexExpectedOutput);
+
+    hmac.update(ByteBuffer.wrap(input).asReadOnlyBuffer());
+    assertEquals(Hex.toStringCondensed(hmac.finish()), hexExpectedOutput);
   }
 
   @Test
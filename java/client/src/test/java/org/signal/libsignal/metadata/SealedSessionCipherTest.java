@@ -7,13 +7,17 @@ package org.signal.libsignal.metadata;
 
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertNotNull;
 import static org.junit.Assert.assertTrue;
 import static org.junit.Assert.fail;
 
+import java.nio.ByteBuffer;
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Collections;
 import java.util.Optional;
 import java.util.UUID;
+import java.util.concurrent.ForkJoinPool;
 import org.junit.Test;
 import org.signal.libsignal.metadata.SealedSessionCipher.DecryptionResult;
 import org.signal.libsignal.metadata.certificate.CertificateValidator;
@@ -456,7 +460,8 @@ public class SealedSessionCipherTest {
           ProtocolInvalidMessageException,
           ProtocolInvalidKeyIdException,
           ProtocolNoSessionException,
-          SelfSendException {
+          SelfSendException,
+          InterruptedException {
     TestInMemorySignalProtocolStore aliceStore = new TestInMemorySignalProtocolStore();
     TestInMemorySignalProtocolStore bobStore = new TestInMemorySignalProtocolStore();
     TestInMemorySignalProtocolStore carolStore = new TestInMemorySignalProtocolStore();
@@ -531,6 +536,10 @@ public class SealedSessionCipherTest {
     GroupSessionBuilder aliceGroupSessionBuilder = new GroupSessionBuilder(aliceStore);
     SenderKeyDistributionMessage sentAliceDistributionMessage =
         aliceGroupSessionBuilder.create(senderAddress, distributionId);
+    new GroupSessionBuilder(bobStore)
+        .process(
+            senderAddress,
+            new SenderKeyDistributionMessage(sentAliceDistributionMessage.serialize()));
 
     GroupCipher aliceGroupCipher = new GroupCipher(aliceStore, senderAddress);
     CiphertextMessage ciphertextFromAlice =
@@ -552,6 +561,29 @@ public class SealedSessionCipherTest {
 
     // Just check that we don't throw an error or crash.
     byte[] aliceMessage = aliceCipher.multiRecipientEncrypt(addresses, usmcFromAlice);
+
+    ForkJoinPool pool = new ForkJoinPool(4);
+    try {
+      byte[] parallelMessage =
+          aliceCipher.multiRecipientEncrypt(
+              addresses, usmcFromAlice, Collections.emptyList(), pool);
+      // The keys are random, but the layout only depends on the recipients.
+      assertEquals(aliceMessage.length, parallelMessage.length);
+
+      SealedSessionCipher bobCipher =
+          new SealedSessionCipher(
+              bobStore, UUID.fromString(bobAddress.getName()), "+14152222222", 1);
+      DecryptionResult plaintext =
+          bobCipher.decrypt(
+              new CertificateValidator(trustRoot.getPublicKey()),
+              messageForRecipient(
+                  parallelMessage, new ServiceId.Aci(UUID.fromString(bobAddress.getName()))),
+              31335);
+      assertEquals("smert ze smert", new String(plaintext.getPaddedMessage()));
+      assertEquals("9d0652a3-dcc3-4d11-975f-74d61598733f", plaintext.getSenderUuid());
+    } finally {
+      pool.shutdown();
+    }
   }
 
   @Test
@@ -573,7 +605,8 @@ public class SealedSessionCipherTest {
           ProtocolInvalidMessageException,
           ProtocolInvalidKeyIdException,
           ProtocolNoSessionException,
-          SelfSendException {
+          SelfSendException,
+          InterruptedException {
     TestInMemorySignalProtocolStore aliceStore = new TestInMemorySignalProtocolStore();
     TestInMemorySignalProtocolStore bobStore = new TestInMemorySignalProtocolStore();
     SignalProtocolAddress bobAddress =
@@ -650,6 +683,13 @@ public class SealedSessionCipherTest {
     } catch (NoSessionException e) {
       assertEquals(e.getAddress(), carolAddress);
     }
+    try {
+      aliceCipher.multiRecipientEncrypt(
+          addresses, usmcFromAlice, Collections.emptyList(), ForkJoinPool.commonPool());
+      fail("should have thrown");
+    } catch (NoSessionException e) {
+      assertEquals(e.getAddress(), carolAddress);
+    }
   }
 
   @Test
@@ -949,6 +989,53 @@ public class SealedSessionCipherTest {
     assert (bobSessionWithAlice.currentRatchetKeyMatches(bobErrorMessage.getRatchetKey().get()));
   }
 
+  /**
+   * Extracts the message the server would deliver to {@code recipient} from a multi-recipient
+   * message, like {@link SealedSessionCipher#multiRecipientMessageForSingleRecipient} but for
+   * messages with more than one recipient.
+   */
+  private static byte[] messageForRecipient(byte[] message, ServiceId recipient) {
+    ByteBuffer buffer = ByteBuffer.wrap(message);
+    assertEquals(0x23, buffer.get());
+    int recipientCount = 0;
+    for (int shift = 0; ; shift += 7) {
+      byte next = buffer.get();
+      recipientCount |= (next & 0x7F) << shift;
+      if ((next & 0x80) == 0) {
+        break;
+      }
+    }
+
+    byte[] expectedServiceId = recipient.toServiceIdFixedWidthBinary();
+    byte[] serviceId = new byte[expectedServiceId.length];
+    byte[] keyMaterial = null;
+    for (int i = 0; i < recipientCount; ++i) {
+      buffer.get(serviceId);
+      // Each device is an ID and a registration ID, whose high bit means another device follows.
+      // An excluded recipient has a single 0 instead, and no key material.
+      boolean excluded = true;
+      while (buffer.get() != 0) {
+        excluded = false;
+        if ((buffer.getShort() & 0x8000) == 0) {
+          break;
+        }
+      }
+      if (excluded) {
+        continue;
+      }
+      byte[] recipientKeyMaterial = new byte[48];
+      buffer.get(recipientKeyMaterial);
+      if (keyMaterial == null && Arrays.equals(serviceId, expectedServiceId)) {
+        keyMaterial = recipientKeyMaterial;
+      }
+    }
+    assertNotNull(keyMaterial);
+
+    ByteBuffer result = ByteBuffer.allocate(1 + keyMaterial.length + buffer.remaining());
+    result.put((byte) 0x22).put(keyMaterial).put(buffer);
+    return result.array();
+  }
+
   private SenderCertificate createCertificateFor(
       ECKeyPair trustRoot,
       UUID uuid,
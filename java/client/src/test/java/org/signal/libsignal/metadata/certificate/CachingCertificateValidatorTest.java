@@ -0,0 +1,111 @@
+//
+// Copyright 2026 Signal Messenger, LLC.
+// SPDX-License-Identifier: AGPL-3.0-only
+//
+
+package org.signal.libsignal.metadata.certificate;
+
+import static org.junit.Assert.*;
+
+import java.util.Optional;
+import java.util.UUID;
+import org.junit.Test;
+import org.signal.libsignal.protocol.ecc.ECKeyPair;
+
+public class CachingCertificateValidatorTest {
+  private final ECKeyPair trustRoot = ECKeyPair.generate();
+
+  private SenderCertificate createCertificate(ECKeyPair trustRoot, int deviceId, long expires)
+      throws Exception {
+    ECKeyPair serverKey = ECKeyPair.generate();
+    ServerCertificate serverCertificate =
+        new ServerCertificate(trustRoot.getPrivateKey(), 1, serverKey.getPublicKey());
+    return serverCertificate.issue(
+        serverKey.getPrivateKey(),
+        UUID.fromString("9d0652a3-dcc3-4d11-975f-74d61598733f").toString(),
+        Optional.of("+14151111111"),
+        deviceId,
+        ECKeyPair.generate().getPublicKey(),
+        expires);
+  }
+
+  @Test
+  public void testRepeatValidationsHitTheCache() throws Exception {
+    CachingCertificateValidator validator =
+        new CachingCertificateValidator(trustRoot.getPublicKey(), 10);
+    SenderCertificate certificate = createCertificate(trustRoot, 1, 31337);
+
+    validator.validate(certificate, 31335);
+    assertEquals(0, validator.getHitCount());
+    assertEquals(1, validator.getMissCount());
+
+    validator.validate(certificate, 31336);
+    validator.validate(new SenderCertificate(certificate.getSerialized()), 31337);
+    assertEquals(2, validator.getHitCount());
+    assertEquals(1, validator.getMissCount());
+    assertEquals(1, validator.getCachedCertificateCount());
+
+    validator.clear();
+    validator.validate(certificate, 31336);
+    assertEquals(2, validator.getMissCount());
+  }
+
+  @Test
+  public void testCachedCertificatesStillExpire() throws Exception {
+    CachingCertificateValidator validator =
+        new CachingCertificateValidator(trustRoot.getPublicKey(), 10);
+    SenderCertificate certificate = createCertificate(trustRoot, 1, 31337);
+    validator.validate(certificate, 31336);
+
+    assertThrows(InvalidCertificateException.class, () -> validator.validate(certificate, 31338));
+    assertEquals(0, validator.getHitCount());
+    assertEquals(0, validator.getCachedCertificateCount());
+  }
+
+  @Test
+  public void testInvalidCertificatesAreNotCached() throws Exception {
+    CachingCertificateValidator validator =
+        new CachingCertificateValidator(trustRoot.getPublicKey(), 10);
+    SenderCertificate otherRoot = createCertificate(ECKeyPair.generate(), 1, 31337);
+
+    byte[] badSignature = createCertificate(trustRoot, 2, 31337).getSerialized();
+    badSignature[badSignature.length - 1] ^= 1;
+    SenderCertificate badCertificate = new SenderCertificate(badSignature);
+
+    for (int i = 0; i < 2; ++i) {
+      assertThrows(InvalidCertificateException.class, () -> validator.validate(otherRoot, 31336));
+      assertThrows(
+          InvalidCertificateException.class, () -> validator.validate(badCertificate, 31336));
+    }
+    assertEquals(0, validator.getHitCount());
+    assertEquals(4, validator.getMissCount());
+    assertEquals(0, validator.getCachedCertificateCount());
+  }
+
+  @Test
+  public void testLeastRecentlyUsedCertificatesAreEvicted() throws Exception {
+    CachingCertificateValidator validator =
+        new CachingCertificateValidator(trustRoot.getPublicKey(), 2);
+    SenderCertificate first = createCertificate(trustRoot, 1, 31337);
+    SenderCertificate second = createCertificate(trustRoot, 2, 31337);
+    SenderCertificate third = createCertificate(trustRoot, 3, 31337);
+
+    validator.validate(first, 31336);
+    validator.validate(second, 31336);
+    validator.validate(first, 31336);
+    validator.validate(third, 31336);
+    assertEquals(2, validator.getCachedCertificateCount());
+    assertEquals(1, validator.getHitCount());
+
+    // The second certificate was least recently used, so it's the one that was dropped.
+    validator.validate(first, 31336);
+    validator.validate(second, 31336);
+    assertEquals(2, validator.getHitCount());
+    assertEquals(4, validator.getMissCount());
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void testRejectsEmptyCache() {
+    new CachingCertificateValidator(trustRoot.getPublicKey(), 0);
+  }
+}
@@ -13,6 +13,8 @@ import static org.junit.Assert.assertThrows;
 
 import java.util.UUID;
 import org.junit.Test;
+import org.signal.libsignal.internal.Native;
+import org.signal.libsignal.internal.NativeArena;
 
 public class ProtocolAddressTest {
   @Test
@@ -39,4 +41,47 @@ public class ProtocolAddressTest {
     assertThat(exception.getMessage(), containsString(aci.toServiceIdString()));
     assertThat(exception.getMessage(), containsString("1234"));
   }
+
+  @Test
+  public void testZeroDeviceId() {
+    assertThrows(IllegalArgumentException.class, () -> new SignalProtocolAddress("name", 0));
+  }
+
+  @Test
+  public void testEqualityDoesNotNeedNativeHandle() {
+    SignalProtocolAddress address = new SignalProtocolAddress("name", 3);
+    assertEquals(new SignalProtocolAddress("name", 3), address);
+    assertEquals(new SignalProtocolAddress("name", 3).hashCode(), address.hashCode());
+    assertNotEquals(new SignalProtocolAddress("name", 4), address);
+    assertNotEquals(new SignalProtocolAddress("other", 3), address);
+  }
+
+  @Test
+  public void testNativeHandleCreatedOnDemand() {
+    SignalProtocolAddress address = new SignalProtocolAddress("name", 3);
+    assertEquals("name", address.guardedMap(Native::ProtocolAddress_Name));
+    assertEquals(3, (int) address.guardedMap(Native::ProtocolAddress_DeviceId));
+  }
+
+  @Test
+  public void testAddressFromNativeHandle() throws Exception {
+    SignalProtocolAddress fromNative =
+        new SignalProtocolAddress(Native.ProtocolAddress_New("other", 5));
+    assertEquals("other", fromNative.getName());
+    assertEquals(5, fromNative.getDeviceId());
+    assertEquals(new SignalProtocolAddress("other", 5), fromNative);
+  }
+
+  @Test
+  public void testLazyNativeHandleOutlivesArena() {
+    SignalProtocolAddress address = new SignalProtocolAddress("name", 3);
+    final long handle;
+    try (NativeArena arena = NativeArena.open()) {
+      handle = address.unsafeNativeHandleWithoutGuard();
+      assertEquals("name", address.guardedMap(Native::ProtocolAddress_Name));
+      assertEquals(0, arena.size());
+    }
+    assertEquals(handle, address.unsafeNativeHandleWithoutGuard());
+    assertEquals("name", address.guardedMap(Native::ProtocolAddress_Name));
+  }
 }
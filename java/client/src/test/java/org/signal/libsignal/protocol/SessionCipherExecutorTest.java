@@ -0,0 +1,123 @@
+//
+// Copyright 2026 Signal Messenger, LLC.
+// SPDX-License-Identifier: AGPL-3.0-only
+//
+
+package org.signal.libsignal.protocol;
+
+import static org.junit.Assert.*;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.junit.Test;
+import org.signal.libsignal.internal.CompletableFuture;
+
+public class SessionCipherExecutorTest {
+  @Test
+  public void testSameAddressRunsInOrder() throws Exception {
+    final ExecutorService pool = Executors.newFixedThreadPool(4);
+    try {
+      final SessionCipherExecutor executor = new SessionCipherExecutor(pool);
+      final SignalProtocolAddress address = new SignalProtocolAddress("alice", 1);
+      final List<Integer> order = Collections.synchronizedList(new ArrayList<>());
+      final AtomicInteger running = new AtomicInteger();
+
+      final List<CompletableFuture<Integer>> futures = new ArrayList<>();
+      for (int i = 0; i < 100; ++i) {
+        final int value = i;
+        futures.add(
+            executor.submit(
+                address,
+                () -> {
+                  assertEquals(1, running.incrementAndGet());
+                  order.add(value);
+                  running.decrementAndGet();
+                  return value;
+                }));
+      }
+      for (int i = 0; i < futures.size(); ++i) {
+        assertEquals(i, (int) futures.get(i).get(5, TimeUnit.SECONDS));
+      }
+
+      for (int i = 0; i < order.size(); ++i) {
+        assertEquals(i, (int) order.get(i));
+      }
+      final SessionCipherExecutor.Metrics metrics = executor.metrics();
+      assertEquals(100, metrics.completedTasks());
+      assertEquals(0, metrics.queuedTasks());
+      assertEquals(0, metrics.activeAddresses());
+      assertTrue(metrics.maxQueueLatencyNanos() <= metrics.totalQueueLatencyNanos());
+    } finally {
+      pool.shutdown();
+    }
+  }
+
+  @Test
+  public void testDifferentAddressesRunInParallel() throws Exception {
+    final ExecutorService pool = Executors.newFixedThreadPool(2);
+    try {
+      final SessionCipherExecutor executor = new SessionCipherExecutor(pool);
+      // Each task waits for the other, so this only finishes if they run at the same time.
+      final CountDownLatch bothStarted = new CountDownLatch(2);
+      final List<CompletableFuture<Boolean>> futures = new ArrayList<>();
+      for (String name : new String[] {"alice", "bob"}) {
+        futures.add(
+            executor.submit(
+                new SignalProtocolAddress(name, 1),
+                () -> {
+                  bothStarted.countDown();
+                  return bothStarted.await(5, TimeUnit.SECONDS);
+                }));
+      }
+      for (CompletableFuture<Boolean> future : futures) {
+        assertTrue(future.get(10, TimeUnit.SECONDS));
+      }
+    } finally {
+      pool.shutdown();
+    }
+  }
+
+  @Test
+  public void testFailuresDontBlockLaterTasks() throws Exception {
+    final SessionCipherExecutor executor = new SessionCipherExecutor(Runnable::run);
+    final SignalProtocolAddress address = new SignalProtocolAddress("alice", 1);
+
+    final CompletableFuture<Object> failed =
+        executor.submit(
+            address,
+            () -> {
+              throw new NoSessionException(address, "no session");
+            });
+    try {
+      failed.get();
+      fail("should have thrown");
+    } catch (ExecutionException e) {
+      assertTrue(e.getCause() instanceof NoSessionException);
+    }
+
+    assertEquals("ok", executor.submit(address, () -> "ok").get());
+  }
+
+  @Test
+  public void testRejectedTasksFail() throws Exception {
+    final ExecutorService pool = Executors.newSingleThreadExecutor();
+    pool.shutdown();
+    final SessionCipherExecutor executor = new SessionCipherExecutor(pool);
+    try {
+      executor.submit(new SignalProtocolAddress("alice", 1), () -> "unused").get();
+      fail("should have thrown");
+    } catch (ExecutionException e) {
+      assertTrue(e.getCause() instanceof RejectedExecutionException);
+    }
+    assertEquals(0, executor.metrics().activeAddresses());
+    assertEquals(0, executor.metrics().queuedTasks());
+  }
+}
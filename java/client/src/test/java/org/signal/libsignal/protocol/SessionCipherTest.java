@@ -5,9 +5,11 @@
 
 package org.signal.libsignal.protocol;
 
+import static org.junit.Assert.assertArrayEquals;
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
 
 import java.security.NoSuchAlgorithmException;
 import java.util.ArrayList;
@@ -17,11 +19,14 @@ import java.util.LinkedList;
 import java.util.List;
 import java.util.Random;
 import org.junit.Test;
+import org.signal.libsignal.internal.NativeArena;
 import org.signal.libsignal.protocol.ecc.ECKeyPair;
 import org.signal.libsignal.protocol.message.CiphertextMessage;
+import org.signal.libsignal.protocol.message.PreKeySignalMessage;
 import org.signal.libsignal.protocol.message.SignalMessage;
 import org.signal.libsignal.protocol.state.SessionRecord;
 import org.signal.libsignal.protocol.state.SignalProtocolStore;
+import org.signal.libsignal.protocol.state.impl.InMemorySessionStore;
 
 public class SessionCipherTest {
 
@@ -82,6 +87,167 @@ public class SessionCipherTest {
     }
   }
 
+  @Test
+  public void testBatchDecrypt() throws Exception {
+    PairOfSessions sessions = initializeSessionsV4();
+
+    SignalProtocolStore aliceStore = new TestInMemorySignalProtocolStore();
+    SignalProtocolStore bobStore = new TestInMemorySignalProtocolStore();
+    SignalProtocolAddress aliceAddress = new SignalProtocolAddress("+14159999999", 1);
+    SignalProtocolAddress bobAddress = new SignalProtocolAddress("+14158888888", 1);
+
+    aliceStore.storeSession(bobAddress, sessions.aliceSession);
+    final int[] sessionLoads = {0};
+    final int[] sessionStores = {0};
+    InMemorySessionStore bobSessionStore =
+        new InMemorySessionStore() {
+          @Override
+          public synchronized SessionRecord loadSession(SignalProtocolAddress address) {
+            ++sessionLoads[0];
+            return super.loadSession(address);
+          }
+
+          @Override
+          public synchronized void storeSession(
+              SignalProtocolAddress address, SessionRecord record) {
+            ++sessionStores[0];
+            super.storeSession(address, record);
+          }
+        };
+    bobSessionStore.storeSession(aliceAddress, sessions.bobSession);
+    sessionStores[0] = 0;
+
+    SessionCipher aliceCipher = new SessionCipher(aliceStore, aliceAddress, bobAddress);
+    SessionCipher bobCipher =
+        new SessionCipher(
+            bobSessionStore, bobStore, bobStore, bobStore, bobStore, bobAddress, aliceAddress);
+
+    List<SignalMessage> messages = new ArrayList<>();
+    for (int i = 0; i < 5; i++) {
+      messages.add(new SignalMessage(aliceCipher.encrypt(new byte[] {(byte) i}).serialize()));
+    }
+    // Deliver one message twice.
+    messages.add(3, messages.get(1));
+
+    List<DecryptionResult> results = bobCipher.decrypt(messages);
+    assertEquals(6, results.size());
+    assertEquals(1, sessionLoads[0]);
+    assertEquals(1, sessionStores[0]);
+
+    assertArrayEquals(new byte[] {0}, results.get(0).plaintext());
+    assertArrayEquals(new byte[] {1}, results.get(1).plaintext());
+    assertArrayEquals(new byte[] {2}, results.get(2).plaintext());
+    assertFalse(results.get(3).isSuccess());
+    assertTrue(results.get(3).error() instanceof DuplicateMessageException);
+    assertArrayEquals(new byte[] {3}, results.get(4).plaintext());
+    assertArrayEquals(new byte[] {4}, results.get(5).plaintext());
+
+    // The stored session reflects every message.
+    try {
+      bobCipher.decrypt(messages.get(5));
+      fail("should have thrown");
+    } catch (DuplicateMessageException e) {
+      // Expected.
+    }
+  }
+
+  @Test
+  public void testBatchDecryptStoresSessionBeforeRemovingPreKey() throws Exception {
+    SignalProtocolAddress aliceAddress = new SignalProtocolAddress("+14159999999", 1);
+    SignalProtocolAddress bobAddress = new SignalProtocolAddress("+14158888888", 1);
+    SignalProtocolStore aliceStore = new TestInMemorySignalProtocolStore();
+    InMemorySessionStore bobSessionStore = new InMemorySessionStore();
+    final List<Boolean> sessionStoredAtRemoval = new ArrayList<>();
+    SignalProtocolStore bobStore =
+        new TestInMemorySignalProtocolStore() {
+          @Override
+          public void removePreKey(int preKeyId) {
+            sessionStoredAtRemoval.add(bobSessionStore.containsSession(aliceAddress));
+            super.removePreKey(preKeyId);
+          }
+        };
+
+    new SessionBuilder(aliceStore, bobAddress, aliceAddress)
+        .process(new PQXDHBundleFactory().createBundle(bobStore));
+    SessionCipher aliceCipher = new SessionCipher(aliceStore, aliceAddress, bobAddress);
+    List<CiphertextMessage> messages =
+        Arrays.asList(
+            new PreKeySignalMessage(aliceCipher.encrypt(new byte[] {0}).serialize()),
+            new PreKeySignalMessage(aliceCipher.encrypt(new byte[] {1}).serialize()));
+
+    SessionCipher bobCipher =
+        new SessionCipher(
+            bobSessionStore, bobStore, bobStore, bobStore, bobStore, bobAddress, aliceAddress);
+    List<DecryptionResult> results = bobCipher.decrypt(messages);
+    assertArrayEquals(new byte[] {0}, results.get(0).plaintext());
+    assertArrayEquals(new byte[] {1}, results.get(1).plaintext());
+    // Only the first message used the one-time pre-key.
+    assertEquals(List.of(true), sessionStoredAtRemoval);
+  }
+
+  @Test
+  public void testStoresOutliveArena() throws Exception {
+    SignalProtocolAddress aliceAddress = new SignalProtocolAddress("+14159999999", 1);
+    SignalProtocolAddress bobAddress = new SignalProtocolAddress("+14158888888", 1);
+    SignalProtocolStore aliceStore = new TestInMemorySignalProtocolStore();
+    SignalProtocolStore bobStore = new TestInMemorySignalProtocolStore();
+    new SessionBuilder(aliceStore, bobAddress, aliceAddress)
+        .process(new PQXDHBundleFactory().createBundle(bobStore));
+    SessionCipher aliceCipher = new SessionCipher(aliceStore, aliceAddress, bobAddress);
+    SessionCipher bobCipher = new SessionCipher(bobStore, bobAddress, aliceAddress);
+
+    try (NativeArena arena = NativeArena.open()) {
+      // Bob saves Alice's identity key, which libsignal hands to the store as a new wrapper.
+      byte[] message = aliceCipher.encrypt(new byte[] {0}).serialize();
+      assertArrayEquals(new byte[] {0}, bobCipher.decrypt(new PreKeySignalMessage(message)));
+    }
+
+    // Replying checks Alice's identity against the key the store kept.
+    CiphertextMessage reply = bobCipher.encrypt(new byte[] {1});
+    assertArrayEquals(new byte[] {1}, aliceCipher.decrypt(new SignalMessage(reply.serialize())));
+    assertEquals(
+        aliceStore.getIdentityKeyPair().getPublicKey(), bobStore.getIdentity(aliceAddress));
+  }
+
+  @Test
+  public void testEncryptToAllDevices() throws Exception {
+    SignalProtocolStore aliceStore = new TestInMemorySignalProtocolStore();
+    SignalProtocolAddress aliceAddress = new SignalProtocolAddress("+14159999999", 1);
+    String bobName = "+14158888888";
+
+    List<SessionCipher> bobCiphers = new ArrayList<>();
+    List<Integer> bobRegistrationIds = new ArrayList<>();
+    for (int deviceId : new int[] {1, 2, 3}) {
+      PairOfSessions sessions = initializeSessionsV4();
+      SignalProtocolAddress bobAddress = new SignalProtocolAddress(bobName, deviceId);
+      aliceStore.storeSession(bobAddress, sessions.aliceSession);
+      bobRegistrationIds.add(sessions.aliceSession.getRemoteRegistrationId());
+
+      SignalProtocolStore bobStore = new TestInMemorySignalProtocolStore();
+      bobStore.storeSession(aliceAddress, sessions.bobSession);
+      bobCiphers.add(new SessionCipher(bobStore, bobAddress, aliceAddress));
+    }
+
+    byte[] plaintext = "to all of you".getBytes();
+    List<SessionCipher.DeviceMessage> messages =
+        SessionCipher.encryptToAllDevices(aliceStore, aliceAddress, bobName, plaintext);
+    assertEquals(3, messages.size());
+    for (int i = 0; i < messages.size(); i++) {
+      SessionCipher.DeviceMessage message = messages.get(i);
+      assertEquals(i + 1, message.deviceId());
+      assertEquals((int) bobRegistrationIds.get(i), message.registrationId());
+      assertArrayEquals(
+          plaintext, bobCiphers.get(i).decrypt(new SignalMessage(message.message().serialize())));
+    }
+
+    try {
+      SessionCipher.encryptToAllDevices(aliceStore, aliceAddress, "+14157777777", plaintext);
+      fail("should have thrown");
+    } catch (NoSessionException e) {
+      // Expected.
+    }
+  }
+
   @Test
   public void testDecryptAfterReset() throws Exception {
     PairOfSessions sessions = initializeSessionsV4();
@@ -0,0 +1,137 @@
+//
+// Copyright 2026 Signal Messenger, LLC.
+// SPDX-License-Identifier: AGPL-3.0-only
+//
+
+package org.signal.libsignal.protocol.groups;
+
+import static org.junit.Assert.*;
+
+import java.util.UUID;
+import java.util.concurrent.CountDownLatch;
+import org.junit.Test;
+import org.signal.libsignal.protocol.SignalProtocolAddress;
+import org.signal.libsignal.protocol.groups.state.CachingSenderKeyStore;
+import org.signal.libsignal.protocol.groups.state.InMemorySenderKeyStore;
+import org.signal.libsignal.protocol.groups.state.SenderKeyRecord;
+import org.signal.libsignal.protocol.message.CiphertextMessage;
+import org.signal.libsignal.protocol.message.SenderKeyDistributionMessage;
+
+public class CachingSenderKeyStoreTest {
+  private static class CountingSenderKeyStore extends InMemorySenderKeyStore {
+    int loads = 0;
+    int stores = 0;
+
+    @Override
+    public synchronized SenderKeyRecord loadSenderKey(
+        SignalProtocolAddress sender, UUID distributionId) {
+      ++loads;
+      return super.loadSenderKey(sender, distributionId);
+    }
+
+    @Override
+    public synchronized void storeSenderKey(
+        SignalProtocolAddress sender, UUID distributionId, SenderKeyRecord record) {
+      ++stores;
+      super.storeSenderKey(sender, distributionId, record);
+    }
+  }
+
+  private static final SignalProtocolAddress SENDER = new SignalProtocolAddress("+14150001111", 1);
+  private static final UUID DISTRIBUTION_ID =
+      UUID.fromString("d1d1d1d1-7000-11eb-b32a-33b8a8a487a6");
+
+  @Test
+  public void testLoadsAreCachedAndStoresWrittenThrough() throws Exception {
+    final InMemorySenderKeyStore aliceStore = new InMemorySenderKeyStore();
+    final CountingSenderKeyStore bobBacking = new CountingSenderKeyStore();
+    final CachingSenderKeyStore bobStore = new CachingSenderKeyStore(bobBacking, 10);
+
+    final SenderKeyDistributionMessage distributionMessage =
+        new GroupSessionBuilder(aliceStore).create(SENDER, DISTRIBUTION_ID);
+    new GroupSessionBuilder(bobStore)
+        .process(SENDER, new SenderKeyDistributionMessage(distributionMessage.serialize()));
+
+    final GroupCipher aliceCipher = new GroupCipher(aliceStore, SENDER);
+    final GroupCipher bobCipher = new GroupCipher(bobStore, SENDER);
+    for (int i = 0; i < 5; ++i) {
+      final byte[] plaintext = ("message " + i).getBytes();
+      final CiphertextMessage ciphertext = aliceCipher.encrypt(DISTRIBUTION_ID, plaintext);
+      assertArrayEquals(plaintext, bobCipher.decrypt(ciphertext.serialize()));
+    }
+    // Only the first load (while processing the distribution message) missed the cache...
+    assertEquals(1, bobBacking.loads);
+    // ...but every change was saved right away.
+    assertEquals(6, bobBacking.stores);
+    assertArrayEquals(
+        bobStore.loadSenderKey(SENDER, DISTRIBUTION_ID).serialize(),
+        bobBacking.loadSenderKey(SENDER, DISTRIBUTION_ID).serialize());
+
+    bobStore.clear();
+    assertEquals(0, bobStore.cachedRecordCount());
+    assertNotNull(bobStore.loadSenderKey(SENDER, DISTRIBUTION_ID));
+  }
+
+  @Test
+  public void testSenderDoesNotReuseKeysAfterRestart() throws Exception {
+    final InMemorySenderKeyStore aliceBacking = new InMemorySenderKeyStore();
+    final InMemorySenderKeyStore bobStore = new InMemorySenderKeyStore();
+
+    final SenderKeyDistributionMessage distributionMessage =
+        new GroupSessionBuilder(new CachingSenderKeyStore(aliceBacking, 10))
+            .create(SENDER, DISTRIBUTION_ID);
+    new GroupSessionBuilder(bobStore)
+        .process(SENDER, new SenderKeyDistributionMessage(distributionMessage.serialize()));
+    final GroupCipher bobCipher = new GroupCipher(bobStore, SENDER);
+
+    for (int restart = 0; restart < 3; ++restart) {
+      // A new cache over the same underlying store, as after the process restarts.
+      final GroupCipher aliceCipher =
+          new GroupCipher(new CachingSenderKeyStore(aliceBacking, 10), SENDER);
+      final byte[] plaintext = {(byte) restart};
+      final CiphertextMessage ciphertext = aliceCipher.encrypt(DISTRIBUTION_ID, plaintext);
+      // Reusing an iteration would make this a DuplicateMessageException.
+      assertArrayEquals(plaintext, bobCipher.decrypt(ciphertext.serialize()));
+    }
+  }
+
+  @Test
+  public void testSlowKeyDoesNotBlockOthers() throws Exception {
+    final UUID otherDistributionId = UUID.fromString("d2d2d2d2-7000-11eb-b32a-33b8a8a487a6");
+    final CountDownLatch loading = new CountDownLatch(1);
+    final CountDownLatch finishLoading = new CountDownLatch(1);
+    final InMemorySenderKeyStore backing =
+        new InMemorySenderKeyStore() {
+          @Override
+          public SenderKeyRecord loadSenderKey(SignalProtocolAddress sender, UUID distributionId) {
+            if (distributionId.equals(DISTRIBUTION_ID)) {
+              loading.countDown();
+              try {
+                finishLoading.await();
+              } catch (InterruptedException e) {
+                throw new AssertionError(e);
+              }
+            }
+            return super.loadSenderKey(sender, distributionId);
+          }
+        };
+    final CachingSenderKeyStore store = new CachingSenderKeyStore(backing, 10);
+
+    final Thread thread = new Thread(() -> store.loadSenderKey(SENDER, DISTRIBUTION_ID));
+    thread.start();
+    loading.await();
+
+    // The first distribution ID's load is stuck in the underlying store, but this one isn't.
+    new GroupSessionBuilder(store).create(SENDER, otherDistributionId);
+    assertNotNull(store.loadSenderKey(SENDER, otherDistributionId));
+
+    finishLoading.countDown();
+    thread.join();
+    assertEquals(1, store.cachedRecordCount());
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void testRejectsEmptyCache() {
+    new CachingSenderKeyStore(new InMemorySenderKeyStore(), 0);
+  }
+}
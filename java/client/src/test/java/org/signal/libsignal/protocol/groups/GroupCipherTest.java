@@ -7,6 +7,7 @@ package org.signal.libsignal.protocol.groups;
 
 import static org.junit.Assert.assertArrayEquals;
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertNull;
 import static org.junit.Assert.assertTrue;
 import static org.junit.Assert.fail;
@@ -20,6 +21,8 @@ import java.util.List;
 import java.util.Random;
 import java.util.UUID;
 import org.junit.Test;
+import org.signal.libsignal.internal.NativeArena;
+import org.signal.libsignal.protocol.DecryptionResult;
 import org.signal.libsignal.protocol.DuplicateMessageException;
 import org.signal.libsignal.protocol.InvalidKeyException;
 import org.signal.libsignal.protocol.InvalidMessageException;
@@ -28,6 +31,7 @@ import org.signal.libsignal.protocol.LegacyMessageException;
 import org.signal.libsignal.protocol.NoSessionException;
 import org.signal.libsignal.protocol.SignalProtocolAddress;
 import org.signal.libsignal.protocol.groups.state.InMemorySenderKeyStore;
+import org.signal.libsignal.protocol.groups.state.SenderKeyRecord;
 import org.signal.libsignal.protocol.message.CiphertextMessage;
 import org.signal.libsignal.protocol.message.SenderKeyDistributionMessage;
 
@@ -358,6 +362,142 @@ public class GroupCipherTest {
     }
   }
 
+  @Test
+  public void testBatchDecrypt() throws Exception {
+    final int[] backingCalls = {0, 0};
+    InMemorySenderKeyStore aliceStore = new InMemorySenderKeyStore();
+    InMemorySenderKeyStore bobStore =
+        new InMemorySenderKeyStore() {
+          @Override
+          public SenderKeyRecord loadSenderKey(SignalProtocolAddress sender, UUID distributionId) {
+            ++backingCalls[0];
+            return super.loadSenderKey(sender, distributionId);
+          }
+
+          @Override
+          public void storeSenderKey(
+              SignalProtocolAddress sender, UUID distributionId, SenderKeyRecord record) {
+            ++backingCalls[1];
+            super.storeSenderKey(sender, distributionId, record);
+          }
+        };
+
+    GroupCipher aliceGroupCipher = new GroupCipher(aliceStore, SENDER_ADDRESS);
+    GroupCipher bobGroupCipher = new GroupCipher(bobStore, SENDER_ADDRESS);
+    new GroupSessionBuilder(bobStore)
+        .process(
+            SENDER_ADDRESS,
+            new GroupSessionBuilder(aliceStore).create(SENDER_ADDRESS, DISTRIBUTION_ID));
+
+    List<byte[]> ciphertexts = new ArrayList<>();
+    for (int i = 0; i < 10; i++) {
+      ciphertexts.add(
+          aliceGroupCipher.encrypt(DISTRIBUTION_ID, ("message " + i).getBytes()).serialize());
+    }
+
+    // The second half first, then the first half, then a duplicate and some garbage.
+    List<byte[]> batch = new ArrayList<>();
+    batch.addAll(ciphertexts.subList(5, 10));
+    batch.addAll(ciphertexts.subList(0, 5));
+    batch.add(ciphertexts.get(3));
+    batch.add(new byte[] {0x33, 1, 2, 3});
+
+    backingCalls[0] = 0;
+    backingCalls[1] = 0;
+    List<DecryptionResult> results = bobGroupCipher.decrypt(batch);
+    assertEquals(1, backingCalls[0]);
+    assertEquals(1, backingCalls[1]);
+
+    assertEquals(batch.size(), results.size());
+    for (int i = 0; i < 10; i++) {
+      int messageIndex = (i + 5) % 10;
+      assertTrue(results.get(i).isSuccess());
+      assertArrayEquals(("message " + messageIndex).getBytes(), results.get(i).plaintext());
+    }
+    assertFalse(results.get(10).isSuccess());
+    assertTrue(results.get(10).error() instanceof DuplicateMessageException);
+    assertTrue(results.get(11).error() instanceof InvalidMessageException);
+    assertEquals(new DecryptionResult("message 5".getBytes(), null), results.get(0));
+
+    // The stored record reflects the whole batch.
+    try {
+      bobGroupCipher.decrypt(ciphertexts.get(0));
+      fail("Should have failed!");
+    } catch (DuplicateMessageException e) {
+      // good
+    }
+    byte[] next = aliceGroupCipher.encrypt(DISTRIBUTION_ID, "after".getBytes()).serialize();
+    assertArrayEquals("after".getBytes(), bobGroupCipher.decrypt(next));
+  }
+
+  @Test
+  public void testBatchDecryptStoresRecordsAfterUncheckedException() throws Exception {
+    final UUID brokenDistributionId = UUID.fromString("d1d1d1d1-7000-11eb-b32a-33b8a8a487a7");
+    InMemorySenderKeyStore aliceStore = new InMemorySenderKeyStore();
+    InMemorySenderKeyStore bobStore =
+        new InMemorySenderKeyStore() {
+          @Override
+          public SenderKeyRecord loadSenderKey(SignalProtocolAddress sender, UUID distributionId) {
+            if (distributionId.equals(brokenDistributionId)) {
+              throw new IllegalStateException("store unavailable");
+            }
+            return super.loadSenderKey(sender, distributionId);
+          }
+        };
+
+    GroupCipher aliceGroupCipher = new GroupCipher(aliceStore, SENDER_ADDRESS);
+    GroupCipher bobGroupCipher = new GroupCipher(bobStore, SENDER_ADDRESS);
+    new GroupSessionBuilder(bobStore)
+        .process(
+            SENDER_ADDRESS,
+            new GroupSessionBuilder(aliceStore).create(SENDER_ADDRESS, DISTRIBUTION_ID));
+    new GroupSessionBuilder(aliceStore).create(SENDER_ADDRESS, brokenDistributionId);
+
+    byte[] first = aliceGroupCipher.encrypt(DISTRIBUTION_ID, "first".getBytes()).serialize();
+    byte[] second = aliceGroupCipher.encrypt(brokenDistributionId, "second".getBytes()).serialize();
+    try {
+      bobGroupCipher.decrypt(Arrays.asList(first, second));
+      fail("Should have failed!");
+    } catch (RuntimeException e) {
+      // good
+    }
+
+    // The first message's progress was still saved.
+    try {
+      bobGroupCipher.decrypt(first);
+      fail("Should have failed!");
+    } catch (DuplicateMessageException e) {
+      // good
+    }
+  }
+
+  @Test
+  public void testStoresOutliveArena() throws Exception {
+    InMemorySenderKeyStore aliceStore = new InMemorySenderKeyStore();
+    InMemorySenderKeyStore bobStore = new InMemorySenderKeyStore();
+    GroupCipher aliceGroupCipher = new GroupCipher(aliceStore, SENDER_ADDRESS);
+    GroupCipher bobGroupCipher = new GroupCipher(bobStore, SENDER_ADDRESS);
+    SenderKeyDistributionMessage distributionMessage =
+        new GroupSessionBuilder(aliceStore).create(SENDER_ADDRESS, DISTRIBUTION_ID);
+    byte[] first = aliceGroupCipher.encrypt(DISTRIBUTION_ID, "first".getBytes()).serialize();
+    byte[] second = aliceGroupCipher.encrypt(DISTRIBUTION_ID, "second".getBytes()).serialize();
+
+    // The store keeps the records libsignal hands it, so the arena mustn't free them.
+    try (NativeArena arena = NativeArena.open()) {
+      new GroupSessionBuilder(bobStore).process(SENDER_ADDRESS, distributionMessage);
+      assertArrayEquals("first".getBytes(), bobGroupCipher.decrypt(first));
+    }
+    assertArrayEquals("second".getBytes(), bobGroupCipher.decrypt(second));
+
+    try (NativeArena arena = NativeArena.open()) {
+      byte[] third = aliceGroupCipher.encrypt(DISTRIBUTION_ID, "third".getBytes()).serialize();
+      List<DecryptionResult> results = bobGroupCipher.decrypt(List.of(third));
+      assertArrayEquals("third".getBytes(), results.get(0).plaintext());
+    }
+    byte[] fourth = aliceGroupCipher.encrypt(DISTRIBUTION_ID, "fourth".getBytes()).serialize();
+    assertArrayEquals("fourth".getBytes(), bobGroupCipher.decrypt(fourth));
+  }
+
   private int randomInt() {
     return new SecureRandom().nextInt(Integer.MAX_VALUE);
   }
@@ -0,0 +1,175 @@
+//
+// Copyright 2026 Signal Messenger, LLC.
+// SPDX-License-Identifier: AGPL-3.0-only
+//
+
+package org.signal.libsignal.protocol.state;
+
+import static org.junit.Assert.*;
+
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import org.junit.Test;
+import org.signal.libsignal.protocol.NoSessionException;
+import org.signal.libsignal.protocol.SignalProtocolAddress;
+import org.signal.libsignal.protocol.state.impl.CachingSessionStore;
+import org.signal.libsignal.protocol.state.impl.InMemorySessionStore;
+
+public class CachingSessionStoreTest {
+  private static class CountingSessionStore extends InMemorySessionStore {
+    int loads = 0;
+    int stores = 0;
+
+    @Override
+    public synchronized SessionRecord loadSession(SignalProtocolAddress address) {
+      ++loads;
+      return super.loadSession(address);
+    }
+
+    @Override
+    public synchronized void storeSession(SignalProtocolAddress address, SessionRecord record) {
+      ++stores;
+      super.storeSession(address, record);
+    }
+  }
+
+  private static final SignalProtocolAddress ALICE = new SignalProtocolAddress("alice", 1);
+  private static final SignalProtocolAddress ALICE_2 = new SignalProtocolAddress("alice", 2);
+  private static final SignalProtocolAddress BOB = new SignalProtocolAddress("bob", 1);
+
+  @Test
+  public void testLoadsAreCached() {
+    final CountingSessionStore backing = new CountingSessionStore();
+    backing.storeSession(ALICE, new SessionRecord());
+    final CachingSessionStore store = new CachingSessionStore(backing, 10);
+
+    final SessionRecord first = store.loadSession(ALICE);
+    final SessionRecord second = store.loadSession(ALICE);
+    assertEquals(1, backing.loads);
+    // Each load is a separate copy, as with any other store.
+    assertNotSame(first, second);
+    assertArrayEquals(first.serialize(), second.serialize());
+
+    assertNull(store.loadSession(BOB));
+    assertNull(store.loadSession(BOB));
+    assertEquals(3, backing.loads);
+  }
+
+  @Test
+  public void testStoresAreWrittenThrough() {
+    final CountingSessionStore backing = new CountingSessionStore();
+    final CachingSessionStore store = new CachingSessionStore(backing, 10);
+
+    final SessionRecord record = new SessionRecord();
+    store.storeSession(ALICE, record);
+    store.storeSession(ALICE_2, record);
+    assertEquals(2, backing.stores);
+    assertTrue(backing.containsSession(ALICE));
+    assertEquals(List.of(2), store.getSubDeviceSessions("alice"));
+
+    // Served from the cache, without asking the underlying store.
+    assertNotSame(record, store.loadSession(ALICE));
+    assertEquals(0, backing.loads);
+  }
+
+  @Test
+  public void testLoadExistingSessionsMixesHitsAndMisses() throws Exception {
+    final CountingSessionStore backing = new CountingSessionStore();
+    backing.storeSession(ALICE, new SessionRecord());
+    backing.storeSession(BOB, new SessionRecord());
+    final CachingSessionStore store = new CachingSessionStore(backing, 10);
+    store.storeSession(ALICE_2, new SessionRecord());
+
+    assertEquals(3, store.loadExistingSessions(List.of(ALICE, ALICE_2, BOB)).size());
+    assertEquals(3, store.cachedSessionCount());
+    assertEquals(3, store.loadExistingSessions(List.of(BOB, ALICE, ALICE_2)).size());
+    assertThrows(
+        NoSessionException.class,
+        () -> store.loadExistingSessions(List.of(ALICE, new SignalProtocolAddress("carol", 1))));
+  }
+
+  @Test
+  public void testEvictsLeastRecentlyUsed() {
+    final CountingSessionStore backing = new CountingSessionStore();
+    final CachingSessionStore store = new CachingSessionStore(backing, 2);
+
+    store.storeSession(ALICE, new SessionRecord());
+    store.storeSession(ALICE_2, new SessionRecord());
+    // Touch ALICE so that ALICE_2 is the least recently used.
+    store.loadSession(ALICE);
+    store.storeSession(BOB, new SessionRecord());
+    assertEquals(2, store.cachedSessionCount());
+
+    store.loadSession(ALICE);
+    assertEquals(0, backing.loads);
+    assertNotNull(store.loadSession(ALICE_2));
+    assertEquals(1, backing.loads);
+
+    store.clear();
+    assertEquals(0, store.cachedSessionCount());
+    assertTrue(backing.containsSession(ALICE));
+  }
+
+  @Test
+  public void testDeletesAreWrittenThrough() {
+    final CountingSessionStore backing = new CountingSessionStore();
+    final CachingSessionStore store = new CachingSessionStore(backing, 10);
+
+    store.storeSession(ALICE, new SessionRecord());
+    store.storeSession(ALICE_2, new SessionRecord());
+    store.storeSession(BOB, new SessionRecord());
+
+    store.deleteSession(BOB);
+    assertFalse(store.containsSession(BOB));
+    assertFalse(backing.containsSession(BOB));
+
+    store.deleteAllSessions("alice");
+    assertFalse(store.containsSession(ALICE));
+    assertFalse(store.containsSession(ALICE_2));
+    assertEquals(List.of(), store.getSubDeviceSessions("alice"));
+    assertEquals(0, store.cachedSessionCount());
+  }
+
+  @Test
+  public void testSlowRecipientDoesNotBlockOthers() throws Exception {
+    final CountDownLatch loading = new CountDownLatch(1);
+    final CountDownLatch finishLoading = new CountDownLatch(1);
+    final InMemorySessionStore backing =
+        new InMemorySessionStore() {
+          @Override
+          public SessionRecord loadSession(SignalProtocolAddress address) {
+            if (address.equals(ALICE)) {
+              loading.countDown();
+              try {
+                finishLoading.await();
+              } catch (InterruptedException e) {
+                throw new AssertionError(e);
+              }
+            }
+            return super.loadSession(address);
+          }
+        };
+    backing.storeSession(ALICE, new SessionRecord());
+    final CachingSessionStore store = new CachingSessionStore(backing, 10);
+
+    final SessionRecord[] loaded = new SessionRecord[1];
+    final Thread thread = new Thread(() -> loaded[0] = store.loadSession(ALICE));
+    thread.start();
+    loading.await();
+
+    // Alice's load is stuck in the underlying store, but Bob's sessions don't need her lock.
+    store.storeSession(BOB, new SessionRecord());
+    assertNotNull(store.loadSession(BOB));
+    store.deleteSession(BOB);
+
+    finishLoading.countDown();
+    thread.join();
+    assertNotNull(loaded[0]);
+    assertEquals(1, store.cachedSessionCount());
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void testRejectsZeroCapacity() {
+    new CachingSessionStore(new InMemorySessionStore(), 0);
+  }
+}
@@ -0,0 +1,108 @@
+//
+// Copyright 2026 Signal Messenger, LLC.
+// SPDX-License-Identifier: AGPL-3.0-only
+//
+
+package org.signal.libsignal.protocol.state;
+
+import static org.junit.Assert.*;
+
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+import org.junit.Test;
+import org.signal.libsignal.protocol.NoSessionException;
+import org.signal.libsignal.protocol.SignalProtocolAddress;
+import org.signal.libsignal.protocol.state.impl.ConcurrentInMemorySessionStore;
+
+public class ConcurrentInMemorySessionStoreTest {
+  @Test
+  public void testStoreAndLoad() throws Exception {
+    final ConcurrentInMemorySessionStore store = new ConcurrentInMemorySessionStore();
+    final SignalProtocolAddress address = new SignalProtocolAddress("alice", 1);
+    assertNull(store.loadSession(address));
+    assertFalse(store.containsSession(address));
+
+    final SessionRecord record = new SessionRecord();
+    store.storeSession(address, record);
+    assertTrue(store.containsSession(address));
+    assertArrayEquals(record.serialize(), store.loadSession(address).serialize());
+    assertNotSame(store.loadSession(address), store.loadSession(address));
+    assertFalse(store.containsSession(new SignalProtocolAddress("alice", 2)));
+    assertFalse(store.containsSession(new SignalProtocolAddress("bob", 1)));
+
+    assertEquals(1, store.loadExistingSessions(List.of(address)).size());
+    try {
+      store.loadExistingSessions(List.of(address, new SignalProtocolAddress("bob", 1)));
+      fail("should have thrown");
+    } catch (NoSessionException e) {
+      // Expected.
+    }
+  }
+
+  @Test
+  public void testSubDevicesAndDeletion() {
+    final ConcurrentInMemorySessionStore store = new ConcurrentInMemorySessionStore();
+    final SessionRecord record = new SessionRecord();
+    for (int deviceId : new int[] {7, 1, 3, 2}) {
+      store.storeSession(new SignalProtocolAddress("alice", deviceId), record);
+    }
+    store.storeSession(new SignalProtocolAddress("bob", 4), record);
+    assertEquals(5, store.size());
+
+    assertEquals(List.of(2, 3, 7), store.getSubDeviceSessions("alice"));
+    assertEquals(List.of(4), store.getSubDeviceSessions("bob"));
+    assertEquals(List.of(), store.getSubDeviceSessions("carol"));
+
+    store.deleteSession(new SignalProtocolAddress("alice", 3));
+    store.deleteSession(new SignalProtocolAddress("alice", 5));
+    assertEquals(List.of(2, 7), store.getSubDeviceSessions("alice"));
+    assertTrue(store.containsSession(new SignalProtocolAddress("alice", 1)));
+
+    store.deleteAllSessions("alice");
+    assertEquals(List.of(), store.getSubDeviceSessions("alice"));
+    assertFalse(store.containsSession(new SignalProtocolAddress("alice", 1)));
+    assertTrue(store.containsSession(new SignalProtocolAddress("bob", 4)));
+    assertEquals(1, store.size());
+  }
+
+  @Test
+  public void testConcurrentStores() throws Exception {
+    final ConcurrentInMemorySessionStore store = new ConcurrentInMemorySessionStore();
+    final SessionRecord record = new SessionRecord();
+    final int threads = 4;
+    final int devicesPerThread = 30;
+    final ExecutorService executor = Executors.newFixedThreadPool(threads);
+    try {
+      final List<Future<?>> futures =
+          IntStream.range(0, threads)
+              .mapToObj(
+                  thread ->
+                      executor.submit(
+                          () -> {
+                            // Every thread writes to the same recipient, so they all contend.
+                            for (int i = 0; i < devicesPerThread; ++i) {
+                              final int deviceId = 1 + thread * devicesPerThread + i;
+                              store.storeSession(
+                                  new SignalProtocolAddress("alice", deviceId), record);
+                            }
+                          }))
+              .collect(Collectors.toList());
+      for (Future<?> future : futures) {
+        future.get();
+      }
+    } finally {
+      executor.shutdown();
+      executor.awaitTermination(10, TimeUnit.SECONDS);
+    }
+
+    assertEquals(threads * devicesPerThread, store.size());
+    assertEquals(
+        IntStream.rangeClosed(2, threads * devicesPerThread).boxed().collect(Collectors.toList()),
+        store.getSubDeviceSessions("alice"));
+  }
+}
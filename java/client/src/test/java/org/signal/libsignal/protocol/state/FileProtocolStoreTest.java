@@ -0,0 +1,249 @@
+//
+// Copyright 2026 Signal Messenger, LLC.
+// SPDX-License-Identifier: AGPL-3.0-only
+//
+
+package org.signal.libsignal.protocol.state;
+
+import static org.junit.Assert.*;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.util.ArrayList;
+import java.util.List;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.signal.libsignal.protocol.InvalidKeyIdException;
+import org.signal.libsignal.protocol.ReusedBaseKeyException;
+import org.signal.libsignal.protocol.SignalProtocolAddress;
+import org.signal.libsignal.protocol.ecc.ECKeyPair;
+import org.signal.libsignal.protocol.ecc.ECPublicKey;
+import org.signal.libsignal.protocol.state.impl.FileProtocolStore;
+
+public class FileProtocolStoreTest {
+  private static final SignalProtocolAddress ALICE = new SignalProtocolAddress("alice", 1);
+  private static final SignalProtocolAddress ALICE_2 = new SignalProtocolAddress("alice", 2);
+  private static final SignalProtocolAddress BOB = new SignalProtocolAddress("bob", 1);
+
+  private File file;
+
+  @Before
+  public void setUp() throws IOException {
+    file = File.createTempFile("libsignal-store", ".log");
+    file.delete();
+  }
+
+  @After
+  public void tearDown() {
+    file.delete();
+    new File(file.getPath() + ".compact").delete();
+  }
+
+  // Runs everything synchronously, so compaction happens before the write that triggered it returns.
+  private FileProtocolStore open() throws IOException {
+    return FileProtocolStore.open(file, Runnable::run);
+  }
+
+  @Test
+  public void testSurvivesReopening() throws Exception {
+    final SessionRecord session = new SessionRecord();
+    final PreKeyRecord preKey = new PreKeyRecord(5, ECKeyPair.generate());
+    try (FileProtocolStore store = open()) {
+      store.storeSession(ALICE, session);
+      store.storeSession(ALICE_2, session);
+      store.storeSession(BOB, session);
+      store.deleteSession(BOB);
+      store.storePreKey(5, preKey);
+      store.storePreKey(6, preKey);
+      store.removePreKey(6);
+    }
+
+    try (FileProtocolStore store = open()) {
+      assertArrayEquals(session.serialize(), store.loadSession(ALICE).serialize());
+      assertTrue(store.containsSession(ALICE_2));
+      assertNull(store.loadSession(BOB));
+      assertEquals(List.of(2), store.getSubDeviceSessions("alice"));
+      assertEquals(List.of(), store.getSubDeviceSessions("bob"));
+
+      assertArrayEquals(preKey.serialize(), store.loadPreKey(5).serialize());
+      assertFalse(store.containsPreKey(6));
+      try {
+        store.loadPreKey(6);
+        fail("should have thrown");
+      } catch (InvalidKeyIdException e) {
+        // Expected.
+      }
+
+      store.deleteAllSessions("alice");
+    }
+
+    try (FileProtocolStore store = open()) {
+      assertFalse(store.containsSession(ALICE));
+      assertFalse(store.containsSession(ALICE_2));
+      assertEquals(List.of(), store.getSubDeviceSessions("alice"));
+    }
+  }
+
+  @Test
+  public void testDiscardsIncompleteWrites() throws Exception {
+    final SessionRecord session = new SessionRecord();
+    final long sizeBeforeLastWrite;
+    try (FileProtocolStore store = open()) {
+      store.storeSession(ALICE, session);
+      sizeBeforeLastWrite = file.length();
+      store.storeSession(ALICE_2, session);
+    }
+
+    // Simulate a crash partway through the last write.
+    try (RandomAccessFile raw = new RandomAccessFile(file, "rw")) {
+      raw.setLength(file.length() - 3);
+    }
+    try (FileProtocolStore store = open()) {
+      assertTrue(store.containsSession(ALICE));
+      assertFalse(store.containsSession(ALICE_2));
+      assertEquals(sizeBeforeLastWrite, file.length());
+
+      // The store is still writable afterwards.
+      store.storeSession(BOB, session);
+    }
+
+    // ...and a crash that left garbage behind.
+    try (RandomAccessFile raw = new RandomAccessFile(file, "rw")) {
+      raw.seek(raw.length());
+      raw.write(new byte[] {0, 0, 0, 20, 1, 2, 3, 4, 1, 0, 0});
+    }
+    try (FileProtocolStore store = open()) {
+      assertTrue(store.containsSession(ALICE));
+      assertTrue(store.containsSession(BOB));
+    }
+  }
+
+  @Test
+  public void testDiscardsIncompleteBatches() throws Exception {
+    final SessionRecord session = new SessionRecord();
+    try (FileProtocolStore store = open()) {
+      store.storeSession(ALICE, session);
+      store.storeSession(ALICE_2, session);
+      store.deleteAllSessions("alice");
+    }
+
+    // Cut off the last record of the batch; the complete delete before it must not be kept either.
+    try (RandomAccessFile raw = new RandomAccessFile(file, "rw")) {
+      raw.setLength(file.length() - 3);
+    }
+    try (FileProtocolStore store = open()) {
+      assertTrue(store.containsSession(ALICE));
+      assertTrue(store.containsSession(ALICE_2));
+      assertEquals(List.of(2), store.getSubDeviceSessions("alice"));
+    }
+  }
+
+  @Test(expected = IOException.class)
+  public void testRejectsOtherFiles() throws Exception {
+    try (RandomAccessFile raw = new RandomAccessFile(file, "rw")) {
+      raw.write("not a protocol store".getBytes("UTF-8"));
+    }
+    open();
+  }
+
+  @Test
+  public void testCompaction() throws Exception {
+    final PreKeyRecord preKey = new PreKeyRecord(1, ECKeyPair.generate());
+    try (FileProtocolStore store = open()) {
+      for (int i = 0; i < 100; ++i) {
+        store.storePreKey(i % 10, preKey);
+      }
+      final long sizeBeforeCompaction = file.length();
+      store.compact();
+      assertTrue(file.length() < sizeBeforeCompaction / 5);
+
+      for (int i = 0; i < 10; ++i) {
+        assertArrayEquals(preKey.serialize(), store.loadPreKey(i).serialize());
+      }
+      store.removePreKey(0);
+      store.storePreKey(10, preKey);
+    }
+
+    try (FileProtocolStore store = open()) {
+      assertFalse(store.containsPreKey(0));
+      for (int i = 1; i <= 10; ++i) {
+        assertTrue(store.containsPreKey(i));
+      }
+    }
+  }
+
+  @Test
+  public void testConcurrentWrites() throws Exception {
+    final SessionRecord session = new SessionRecord();
+    final int threadCount = 4;
+    final int writesPerThread = 50;
+    try (FileProtocolStore store = open()) {
+      final List<Thread> threads = new ArrayList<>();
+      for (int t = 0; t < threadCount; ++t) {
+        final String name = "recipient-" + t;
+        threads.add(
+            new Thread(
+                () -> {
+                  for (int i = 0; i < writesPerThread; ++i) {
+                    store.storeSession(new SignalProtocolAddress(name, 1 + i % 5), session);
+                  }
+                }));
+      }
+      for (Thread thread : threads) {
+        thread.start();
+      }
+      for (Thread thread : threads) {
+        thread.join();
+      }
+    }
+
+    try (FileProtocolStore store = open()) {
+      for (int t = 0; t < threadCount; ++t) {
+        assertEquals(List.of(2, 3, 4, 5), store.getSubDeviceSessions("recipient-" + t));
+      }
+    }
+  }
+
+  @Test
+  public void testKyberBaseKeyReuse() throws Exception {
+    final ECPublicKey baseKey = ECKeyPair.generate().getPublicKey();
+    try (FileProtocolStore store = open()) {
+      store.markKyberPreKeyUsed(1, 2, baseKey);
+      store.markKyberPreKeyUsed(1, 3, baseKey);
+      assertTrue(store.hasKyberPreKeyBeenUsed(1));
+      assertFalse(store.hasKyberPreKeyBeenUsed(2));
+    }
+
+    try (FileProtocolStore store = open()) {
+      store.markKyberPreKeyUsed(1, 2, baseKey);
+      fail("should have thrown");
+    } catch (ReusedBaseKeyException e) {
+      // Expected.
+    }
+  }
+
+  @Test
+  public void testRemovingPreKeysForgetsBaseKeys() throws Exception {
+    final ECPublicKey baseKey = ECKeyPair.generate().getPublicKey();
+    try (FileProtocolStore store = open()) {
+      store.markKyberPreKeyUsed(1, 2, baseKey);
+      store.markKyberPreKeyUsed(1, 3, baseKey);
+      store.markKyberPreKeyUsed(4, 3, baseKey);
+
+      store.removeKyberPreKey(1);
+      assertFalse(store.hasKyberPreKeyBeenUsed(1));
+      store.removeSignedPreKey(3);
+      // Compaction copies the records of a batch on their own; they must still be kept.
+      store.compact();
+    }
+
+    try (FileProtocolStore store = open()) {
+      assertTrue(store.hasKyberPreKeyBeenUsed(4));
+      store.markKyberPreKeyUsed(1, 2, baseKey);
+      store.markKyberPreKeyUsed(4, 3, baseKey);
+      assertThrows(ReusedBaseKeyException.class, () -> store.markKyberPreKeyUsed(1, 2, baseKey));
+    }
+  }
+}
@@ -0,0 +1,167 @@
+//
+// Copyright 2026 Signal Messenger, LLC.
+// SPDX-License-Identifier: AGPL-3.0-only
+//
+
+package org.signal.libsignal.protocol.state;
+
+import static org.junit.Assert.*;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.util.Random;
+import org.junit.Test;
+import org.signal.libsignal.protocol.IdentityKeyPair;
+import org.signal.libsignal.protocol.ecc.ECKeyPair;
+import org.signal.libsignal.protocol.ecc.ECPublicKey;
+import org.signal.libsignal.protocol.state.impl.InMemorySignalProtocolStore;
+import org.signal.libsignal.protocol.state.impl.KyberPreKeyReplayIndex;
+
+public class KyberPreKeyReplayIndexTest {
+  private static byte[] randomBaseKey(Random random) {
+    final byte[] key = new byte[33];
+    random.nextBytes(key);
+    key[0] = 0x05;
+    return key;
+  }
+
+  @Test
+  public void testRejectsReuseForSamePreKeys() {
+    final KyberPreKeyReplayIndex index = new KyberPreKeyReplayIndex();
+    final ECPublicKey baseKey = ECKeyPair.generate().getPublicKey();
+
+    assertTrue(index.add(1, 2, baseKey));
+    assertFalse(index.add(1, 2, baseKey));
+    assertFalse(index.add(1, 2, baseKey.serialize()));
+    assertTrue(index.contains(1, 2, baseKey));
+
+    // The same base key with different pre-keys is fine.
+    assertTrue(index.add(1, 3, baseKey));
+    assertTrue(index.add(2, 2, baseKey));
+    assertFalse(index.contains(3, 3, baseKey));
+    assertEquals(3, index.size());
+  }
+
+  @Test
+  public void testManyEntries() {
+    final KyberPreKeyReplayIndex index = new KyberPreKeyReplayIndex();
+    final Random random = new Random(1234);
+    final byte[][] keys = new byte[10_000][];
+    for (int i = 0; i < keys.length; ++i) {
+      keys[i] = randomBaseKey(random);
+      assertTrue(index.add(1, 1, keys[i]));
+    }
+    assertEquals(keys.length, index.size());
+    for (byte[] key : keys) {
+      assertTrue(index.contains(1, 1, key));
+      assertFalse(index.add(1, 1, key));
+    }
+    assertFalse(index.contains(1, 1, randomBaseKey(random)));
+  }
+
+  @Test
+  public void testRemovingPreKeysForgetsTheirEntries() {
+    final KyberPreKeyReplayIndex index = new KyberPreKeyReplayIndex();
+    final Random random = new Random(5678);
+    final byte[] baseKey = randomBaseKey(random);
+    index.add(1, 10, baseKey);
+    index.add(1, 11, baseKey);
+    index.add(2, 10, baseKey);
+    index.add(-1, -1, baseKey);
+
+    index.removeKyberPreKey(1);
+    assertFalse(index.contains(1, 10, baseKey));
+    assertFalse(index.contains(1, 11, baseKey));
+    assertTrue(index.contains(2, 10, baseKey));
+    assertEquals(2, index.size());
+
+    index.removeSignedPreKey(10);
+    assertFalse(index.contains(2, 10, baseKey));
+    assertTrue(index.contains(-1, -1, baseKey));
+    index.removeSignedPreKey(-1);
+    assertEquals(0, index.size());
+  }
+
+  @Test
+  public void testSerialization() throws IOException {
+    final KyberPreKeyReplayIndex index = new KyberPreKeyReplayIndex();
+    final Random random = new Random(9012);
+    final byte[][] keys = new byte[100][];
+    for (int i = 0; i < keys.length; ++i) {
+      keys[i] = randomBaseKey(random);
+      index.add(i % 3, 7, keys[i]);
+    }
+
+    final ByteArrayOutputStream out = new ByteArrayOutputStream();
+    index.writeTo(out);
+    final KyberPreKeyReplayIndex restored =
+        KyberPreKeyReplayIndex.readFrom(new ByteArrayInputStream(out.toByteArray()));
+    assertEquals(keys.length, restored.size());
+    for (int i = 0; i < keys.length; ++i) {
+      assertTrue(restored.contains(i % 3, 7, keys[i]));
+      assertFalse(restored.contains((i + 1) % 3, 7, keys[i]));
+    }
+
+    try {
+      KyberPreKeyReplayIndex.readFrom(new ByteArrayInputStream(new byte[] {0, 0, 0, 99}));
+      fail("should have thrown");
+    } catch (IOException e) {
+      // Expected.
+    }
+  }
+
+  @Test
+  public void testReadFromRejectsRepeats() throws IOException {
+    final ByteArrayOutputStream repeatedPair = new ByteArrayOutputStream();
+    final DataOutputStream pairData = new DataOutputStream(repeatedPair);
+    pairData.writeInt(1);
+    pairData.writeInt(2);
+    for (int i = 0; i < 2; ++i) {
+      pairData.writeLong(7);
+      pairData.writeInt(1);
+      pairData.writeLong(i);
+      pairData.writeLong(i + 1);
+    }
+
+    final ByteArrayOutputStream repeatedKey = new ByteArrayOutputStream();
+    final DataOutputStream keyData = new DataOutputStream(repeatedKey);
+    keyData.writeInt(1);
+    keyData.writeInt(1);
+    keyData.writeLong(7);
+    keyData.writeInt(2);
+    for (int i = 0; i < 2; ++i) {
+      keyData.writeLong(3);
+      keyData.writeLong(4);
+    }
+
+    for (ByteArrayOutputStream invalid : new ByteArrayOutputStream[] {repeatedPair, repeatedKey}) {
+      assertThrows(
+          IOException.class,
+          () -> KyberPreKeyReplayIndex.readFrom(new ByteArrayInputStream(invalid.toByteArray())));
+    }
+  }
+
+  @Test
+  public void testStoreForgetsBaseKeysWhenPreKeysRotate() throws Exception {
+    final InMemorySignalProtocolStore store =
+        new InMemorySignalProtocolStore(IdentityKeyPair.generate(), 1);
+    final Random random = new Random(3456);
+    final ECPublicKey reused = new ECPublicKey(randomBaseKey(random));
+    for (int i = 0; i < 1000; ++i) {
+      store.markKyberPreKeyUsed(1, 10, i == 0 ? reused : new ECPublicKey(randomBaseKey(random)));
+      store.markKyberPreKeyUsed(2, 11, new ECPublicKey(randomBaseKey(random)));
+    }
+    assertEquals(2000, store.getRememberedBaseKeyCount());
+
+    store.removeKyberPreKey(1);
+    assertEquals(1000, store.getRememberedBaseKeyCount());
+    assertFalse(store.hasKyberPreKeyBeenUsed(1));
+    // A new pre-key with the old ID starts out with no history.
+    store.markKyberPreKeyUsed(1, 10, reused);
+    store.removeKyberPreKey(1);
+    store.removeSignedPreKey(11);
+    assertEquals(0, store.getRememberedBaseKeyCount());
+  }
+}
@@ -0,0 +1,101 @@
+//
+// Copyright 2026 Signal Messenger, LLC.
+// SPDX-License-Identifier: AGPL-3.0-only
+//
+
+package org.signal.libsignal.protocol.util;
+
+import static org.junit.Assert.*;
+
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import org.junit.Test;
+import org.signal.libsignal.protocol.IdentityKeyPair;
+import org.signal.libsignal.protocol.ecc.ECPublicKey;
+import org.signal.libsignal.protocol.kem.KEMPublicKey;
+import org.signal.libsignal.protocol.state.KyberPreKeyRecord;
+import org.signal.libsignal.protocol.state.PreKeyRecord;
+import org.signal.libsignal.protocol.state.SignedPreKeyRecord;
+
+public class KeyHelperTest {
+  @Test
+  public void testGeneratePreKeys() throws Exception {
+    final List<KeyHelper.GeneratedPreKey> preKeys =
+        KeyHelper.generatePreKeys(Medium.MAX_VALUE - 2, 4);
+    assertEquals(4, preKeys.size());
+    final int[] expectedIds = {Medium.MAX_VALUE - 2, Medium.MAX_VALUE - 1, 0, 1};
+    for (int i = 0; i < preKeys.size(); ++i) {
+      final KeyHelper.GeneratedPreKey preKey = preKeys.get(i);
+      assertEquals(expectedIds[i], preKey.record().getId());
+      assertEquals(preKey.publicKey(), preKey.record().getKeyPair().getPublicKey());
+
+      final PreKeyRecord roundTripped = new PreKeyRecord(preKey.record().serialize());
+      assertEquals(expectedIds[i], roundTripped.getId());
+    }
+  }
+
+  @Test
+  public void testGenerateSignedPreKeys() throws Exception {
+    final IdentityKeyPair identityKeyPair = IdentityKeyPair.generate();
+    final List<KeyHelper.GeneratedSignedPreKey<SignedPreKeyRecord, ECPublicKey>> preKeys =
+        KeyHelper.generateSignedPreKeys(identityKeyPair, 10, 3, 1234);
+    assertEquals(3, preKeys.size());
+    for (int i = 0; i < preKeys.size(); ++i) {
+      final SignedPreKeyRecord record = preKeys.get(i).record();
+      assertEquals(10 + i, record.getId());
+      assertEquals(1234, record.getTimestamp());
+      assertEquals(10 + i, preKeys.get(i).publicPreKey().id());
+      assertEquals(record.getKeyPair().getPublicKey(), preKeys.get(i).publicPreKey().publicKey());
+      assertArrayEquals(record.getSignature(), preKeys.get(i).publicPreKey().signature());
+      assertTrue(
+          identityKeyPair
+              .getPublicKey()
+              .getPublicKey()
+              .verifySignature(
+                  record.getKeyPair().getPublicKey().serialize(), record.getSignature()));
+    }
+  }
+
+  @Test
+  public void testGenerateKyberPreKeysInParallel() throws Exception {
+    final IdentityKeyPair identityKeyPair = IdentityKeyPair.generate();
+    final ForkJoinPool pool = new ForkJoinPool(4);
+    try {
+      final List<KeyHelper.GeneratedSignedPreKey<KyberPreKeyRecord, KEMPublicKey>> preKeys =
+          KeyHelper.generateKyberPreKeys(identityKeyPair, 100, 40, 5678, pool);
+      assertEquals(40, preKeys.size());
+      for (int i = 0; i < preKeys.size(); ++i) {
+        final KyberPreKeyRecord record = preKeys.get(i).record();
+        assertEquals(100 + i, record.getId());
+        assertEquals(5678, record.getTimestamp());
+        assertEquals(100 + i, preKeys.get(i).publicPreKey().id());
+        assertEquals(record.getKeyPair().getPublicKey(), preKeys.get(i).publicPreKey().publicKey());
+        assertTrue(
+            identityKeyPair
+                .getPublicKey()
+                .getPublicKey()
+                .verifySignature(
+                    record.getKeyPair().getPublicKey().serialize(), record.getSignature()));
+      }
+    } finally {
+      pool.shutdown();
+    }
+  }
+
+  @Test
+  public void testRejectsBadRanges() throws Exception {
+    try {
+      KeyHelper.generatePreKeys(-1, 1);
+      fail("should have thrown");
+    } catch (IllegalArgumentException e) {
+      // Expected.
+    }
+    try {
+      KeyHelper.generatePreKeys(0, -1);
+      fail("should have thrown");
+    } catch (IllegalArgumentException e) {
+      // Expected.
+    }
+    assertEquals(0, KeyHelper.generatePreKeys(0, 0, ForkJoinPool.commonPool()).size());
+  }
+}
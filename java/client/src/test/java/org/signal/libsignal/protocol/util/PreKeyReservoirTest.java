@@ -0,0 +1,113 @@
+//
+// Copyright 2026 Signal Messenger, LLC.
+// SPDX-License-Identifier: AGPL-3.0-only
+//
+
+package org.signal.libsignal.protocol.util;
+
+import static org.junit.Assert.*;
+
+import java.util.ArrayList;
+import java.util.List;
+import org.junit.Test;
+import org.signal.libsignal.protocol.IdentityKeyPair;
+import org.signal.libsignal.protocol.kem.KEMPublicKey;
+import org.signal.libsignal.protocol.state.KyberPreKeyRecord;
+import org.signal.libsignal.protocol.state.impl.InMemoryKyberPreKeyStore;
+import org.signal.libsignal.protocol.state.impl.InMemoryPreKeyStore;
+
+public class PreKeyReservoirTest {
+  @Test
+  public void testRefillsBelowWatermark() throws Exception {
+    final InMemoryPreKeyStore preKeyStore = new InMemoryPreKeyStore();
+    final InMemoryKyberPreKeyStore kyberPreKeyStore = new InMemoryKyberPreKeyStore();
+    final IdentityKeyPair identityKeyPair = IdentityKeyPair.generate();
+    // Refill synchronously, so every refill has finished by the time the take that started it
+    // returns.
+    final PreKeyReservoir reservoir =
+        new PreKeyReservoir(preKeyStore, kyberPreKeyStore, identityKeyPair, 5, 2, Runnable::run);
+
+    PreKeyReservoir.Metrics metrics = reservoir.metrics();
+    assertEquals(5, metrics.preKeysReady());
+    assertEquals(5, metrics.kyberPreKeysReady());
+    assertEquals(2, metrics.refills());
+    assertEquals(10, metrics.keysGenerated());
+
+    final List<KeyHelper.GeneratedPreKey> preKeys = reservoir.takePreKeys(1, 3);
+    for (int i = 0; i < preKeys.size(); ++i) {
+      assertEquals(1 + i, preKeys.get(i).record().getId());
+      assertEquals(
+          preKeys.get(i).publicKey(), preKeyStore.loadPreKey(1 + i).getKeyPair().getPublicKey());
+    }
+    assertEquals(2, reservoir.metrics().preKeysReady());
+    assertEquals(2, reservoir.metrics().refills());
+
+    reservoir.takePreKey(4);
+    assertTrue(preKeyStore.containsPreKey(4));
+    metrics = reservoir.metrics();
+    assertEquals(5, metrics.preKeysReady());
+    assertEquals(3, metrics.refills());
+    assertEquals(14, metrics.keysGenerated());
+    assertEquals(0, metrics.misses());
+
+    final List<KeyHelper.GeneratedSignedPreKey<KyberPreKeyRecord, KEMPublicKey>> kyberPreKeys =
+        reservoir.takeKyberPreKeys(10, 2, 1234);
+    for (int i = 0; i < kyberPreKeys.size(); ++i) {
+      final KyberPreKeyRecord stored = kyberPreKeyStore.loadKyberPreKey(10 + i);
+      assertEquals(1234, stored.getTimestamp());
+      assertEquals(10 + i, kyberPreKeys.get(i).publicPreKey().id());
+      assertEquals(
+          stored.getKeyPair().getPublicKey(), kyberPreKeys.get(i).publicPreKey().publicKey());
+      assertTrue(
+          identityKeyPair
+              .getPublicKey()
+              .getPublicKey()
+              .verifySignature(
+                  stored.getKeyPair().getPublicKey().serialize(), stored.getSignature()));
+    }
+    assertEquals(3, reservoir.metrics().kyberPreKeysReady());
+  }
+
+  @Test
+  public void testGeneratesInlineWhenEmpty() throws Exception {
+    // Never runs the refills, so the reservoir stays empty.
+    final List<Runnable> pending = new ArrayList<>();
+    final PreKeyReservoir reservoir =
+        new PreKeyReservoir(
+            new InMemoryPreKeyStore(),
+            new InMemoryKyberPreKeyStore(),
+            IdentityKeyPair.generate(),
+            5,
+            2,
+            pending::add);
+    assertEquals(2, pending.size());
+
+    assertEquals(7, reservoir.takePreKey(7).record().getId());
+    assertEquals(8, reservoir.takeKyberPreKey(8, 0).record().getId());
+    assertEquals(2, reservoir.metrics().misses());
+    // The refills are already scheduled, so running dry doesn't schedule more.
+    assertEquals(2, pending.size());
+
+    for (Runnable refill : pending) {
+      refill.run();
+    }
+    assertEquals(5, reservoir.metrics().preKeysReady());
+    assertEquals(5, reservoir.metrics().kyberPreKeysReady());
+  }
+
+  @Test
+  public void testRejectsBadThresholds() {
+    try {
+      new PreKeyReservoir(
+          new InMemoryPreKeyStore(),
+          new InMemoryKyberPreKeyStore(),
+          IdentityKeyPair.generate(),
+          5,
+          6,
+          Runnable::run);
+      fail("should have thrown");
+    } catch (IllegalArgumentException e) {
+      // Expected.
+    }
+  }
+}
@@ -0,0 +1,83 @@
+//
+// Copyright 2026 Signal Messenger, LLC.
+// SPDX-License-Identifier: AGPL-3.0-only
+//
+
+package org.signal.libsignal.internal;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.FlightRecorder;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.Period;
+import jdk.jfr.StackTrace;
+
+/**
+ * Publishes {@link NativeHandleStats} as periodic Java Flight Recorder events.
+ *
+ * <p>Call {@link #register} once at startup (and enable {@link NativeHandleStats}) to get one
+ * {@code org.signal.libsignal.NativeHandles} event per wrapper type in each recording period.
+ */
+public final class NativeHandleStatsEvents {
+  private static final Runnable hook = NativeHandleStatsEvents::emit;
+  private static boolean registered = false;
+
+  private NativeHandleStatsEvents() {}
+
+  @Name("org.signal.libsignal.NativeHandles")
+  @Label("libsignal Native Handles")
+  @Description("Rust objects owned by Java wrappers of a single type")
+  @Category("libsignal")
+  @Period("10 s")
+  @StackTrace(false)
+  static final class NativeHandlesEvent extends Event {
+    @Label("Wrapper Type")
+    String type;
+
+    @Label("Allocated")
+    long allocated;
+
+    @Label("Released Explicitly")
+    long releasedExplicitly;
+
+    @Label("Released by Collector")
+    long releasedByCollector;
+
+    @Label("Live")
+    long live;
+
+    @Label("Peak Live")
+    long peakLive;
+  }
+
+  /** Starts emitting events. Registering more than once has no additional effect. */
+  public static synchronized void register() {
+    if (!registered) {
+      FlightRecorder.addPeriodicEvent(NativeHandlesEvent.class, hook);
+      registered = true;
+    }
+  }
+
+  /** Stops emitting events. */
+  public static synchronized void unregister() {
+    if (registered) {
+      FlightRecorder.removePeriodicEvent(hook);
+      registered = false;
+    }
+  }
+
+  private static void emit() {
+    for (NativeHandleStats.Snapshot snapshot : NativeHandleStats.snapshot()) {
+      final NativeHandlesEvent event = new NativeHandlesEvent();
+      event.type = snapshot.type();
+      event.allocated = snapshot.allocated();
+      event.releasedExplicitly = snapshot.releasedExplicitly();
+      event.releasedByCollector = snapshot.releasedByCollector();
+      event.live = snapshot.live();
+      event.peakLive = snapshot.peakLive();
+      event.commit();
+    }
+  }
+}
@@ -5,11 +5,25 @@
 
 package org.signal.libsignal.protocol;
 
+import java.io.IOException;
+import java.nio.BufferOverflowException;
 import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.GatheringByteChannel;
+import java.nio.channels.WritableByteChannel;
+import java.security.SecureRandom;
+import java.util.AbstractMap;
+import java.util.AbstractSet;
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collections;
+import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Objects;
+import java.util.Set;
+import java.util.UUID;
 import java.util.stream.IntStream;
 import java.util.stream.Stream;
 import kotlin.Pair;
@@ -24,9 +38,17 @@ import org.signal.libsignal.internal.Native;
  * key material.
  */
 public class SealedSenderMultiRecipientMessage {
-  private final byte[] fullMessageData;
+  private static final byte RECEIVED_MESSAGE_VERSION = 0x22; // The "original" Sealed Sender V2
+
+  // A read-only view of the whole message, always positioned at 0.
+  private final ByteBuffer messageData;
+  // Null for a message parsed from a ByteBuffer until serialized() needs it.
+  private volatile byte[] fullMessageData;
+  // Only set for a message parsed from a ByteBuffer, whose excludedRecipients are built from it on
+  // first use.
+  private final RecipientIndex recipientIndex;
   private final Map<ServiceId, Recipient> recipients;
-  private final List<ServiceId> excludedRecipients;
+  private volatile List<ServiceId> excludedRecipients;
   private final int offsetOfSharedData;
 
   /**
@@ -120,13 +142,72 @@ public class SealedSenderMultiRecipientMessage {
                 Native.SealedSender_MultiRecipientParseSentMessage(input));
   }
 
+  /**
+   * Parses the remaining bytes of {@code input} as an SSv2 SentMessage.
+   *
+   * <p>Unlike {@link #parse(byte[])}, this doesn't need the message in a heap array, and doesn't
+   * create a {@link ServiceId} or {@link Recipient} for every recipient up front. Recipients are
+   * instead indexed into primitive arrays, and objects for them are only created when they're
+   * asked for, through {@link #getRecipients} (a view of the index), {@link #recipientIterator},
+   * or {@link #getExcludedRecipients} (built on first use). This makes it cheap to check {@link
+   * #getRecipientCount} or deliver to a few recipients of a large message.
+   *
+   * <p>The position of {@code input} is not changed. Its contents are used directly rather than
+   * copied, to implement {@link #messageForRecipient} and friends, so they must not be modified
+   * for as long as the result is in use. {@link #serialized} may need to copy them out.
+   *
+   * <p>Messages are validated the same way as by {@link #parse(byte[])}.
+   *
+   * @throws InvalidVersionException if the <em>major</em> version of the sealed sender message is
+   *     unrecognized
+   * @throws InvalidMessageException if the message is malformed
+   */
+  public static SealedSenderMultiRecipientMessage parse(ByteBuffer input)
+      throws InvalidMessageException, InvalidVersionException {
+    final ByteBuffer messageData = input.slice().asReadOnlyBuffer();
+    final RecipientIndex index = RecipientIndex.parse(messageData);
+
+    // If the buffer is exactly a whole array, serialized() can just return it.
+    byte[] fullMessageData = null;
+    if (input.hasArray()
+        && input.arrayOffset() + input.position() == 0
+        && input.remaining() == input.array().length) {
+      fullMessageData = input.array();
+    }
+    return new SealedSenderMultiRecipientMessage(
+        messageData,
+        fullMessageData,
+        index,
+        new RecipientMap(index),
+        null,
+        index.offsetOfSharedData);
+  }
+
   @CalledFromNative
   private SealedSenderMultiRecipientMessage(
       byte[] fullMessageData,
       Map<ServiceId, Recipient> recipients,
       List<ServiceId> excludedRecipients,
       int offsetOfSharedData) {
+    this(
+        ByteBuffer.wrap(fullMessageData).asReadOnlyBuffer(),
+        fullMessageData,
+        null,
+        recipients,
+        excludedRecipients,
+        offsetOfSharedData);
+  }
+
+  private SealedSenderMultiRecipientMessage(
+      ByteBuffer messageData,
+      byte[] fullMessageData,
+      RecipientIndex recipientIndex,
+      Map<ServiceId, Recipient> recipients,
+      List<ServiceId> excludedRecipients,
+      int offsetOfSharedData) {
+    this.messageData = messageData;
     this.fullMessageData = fullMessageData;
+    this.recipientIndex = recipientIndex;
     this.recipients = recipients;
     this.excludedRecipients = excludedRecipients;
     this.offsetOfSharedData = offsetOfSharedData;
@@ -135,10 +216,19 @@ public class SealedSenderMultiRecipientMessage {
   /**
    * Returns the serialized full message data.
    *
+   * <p>For a message parsed from a {@link ByteBuffer}, this may copy the message the first time
+   * it's called.
+   *
    * <p>The result is returned by reference; mutate it at your own detriment.
    */
   public byte[] serialized() {
-    return fullMessageData;
+    byte[] result = fullMessageData;
+    if (result == null) {
+      result = new byte[messageData.capacity()];
+      messageData.duplicate().get(result);
+      fullMessageData = result;
+    }
+    return result;
   }
 
   /**
@@ -147,12 +237,54 @@ public class SealedSenderMultiRecipientMessage {
    * <p>The iteration order of the resulting Map is deterministic: the same input message data will
    * produce the same output even across multiple runs.
    *
-   * <p>The result is returned by reference; mutate it at your own detriment.
+   * <p>For a message parsed from a {@link ByteBuffer}, the result is a read-only view of the
+   * message's recipient index, which finds a {@link ServiceId} by its raw bytes rather than by
+   * {@link ServiceId#hashCode} and creates each {@link Recipient} the first time it's looked up.
+   * Otherwise, the result is returned by reference; mutate it at your own detriment.
+   *
+   * @see #recipientIterator
    */
   public Map<ServiceId, Recipient> getRecipients() {
     return recipients;
   }
 
+  /** Returns the number of recipients in {@link #getRecipients}. */
+  public int getRecipientCount() {
+    return recipients.size();
+  }
+
+  /**
+   * Returns the recipient with the given service ID, or {@code null} if there isn't one.
+   *
+   * <p>Excluded recipients are not returned.
+   */
+  public Recipient getRecipient(ServiceId serviceId) {
+    return recipients.get(serviceId);
+  }
+
+  /**
+   * Returns the recipients parsed from the message one at a time, in the same order as {@link
+   * #getRecipients}.
+   *
+   * <p>For a message parsed from a {@link ByteBuffer}, this creates each {@link ServiceId} as it's
+   * reached. The iterator does not support removal.
+   */
+  public Iterator<Pair<ServiceId, Recipient>> recipientIterator() {
+    final Iterator<Map.Entry<ServiceId, Recipient>> entries = recipients.entrySet().iterator();
+    return new Iterator<>() {
+      @Override
+      public boolean hasNext() {
+        return entries.hasNext();
+      }
+
+      @Override
+      public Pair<ServiceId, Recipient> next() {
+        final Map.Entry<ServiceId, Recipient> entry = entries.next();
+        return new Pair<>(entry.getKey(), entry.getValue());
+      }
+    };
+  }
+
   /**
    * Returns the recipients excluded from receiving the message.
    *
@@ -166,7 +298,22 @@ public class SealedSenderMultiRecipientMessage {
    * <p>The result is returned by reference; mutate it at your own detriment.
    */
   public List<ServiceId> getExcludedRecipients() {
-    return excludedRecipients;
+    List<ServiceId> result = excludedRecipients;
+    if (result == null) {
+      synchronized (this) {
+        result = excludedRecipients;
+        if (result == null) {
+          result = new ArrayList<>(recipientIndex.size - recipientIndex.recipientCount);
+          for (int i = 0; i < recipientIndex.size; ++i) {
+            if (recipientIndex.isExcluded(i)) {
+              result.add(recipientIndex.serviceIdAt(i));
+            }
+          }
+          excludedRecipients = result;
+        }
+      }
+    }
+    return result;
   }
 
   /**
@@ -175,14 +322,8 @@ public class SealedSenderMultiRecipientMessage {
    * <p>The same payload should be sent to all of the recipient's devices.
    */
   public byte[] messageForRecipient(Recipient recipient) {
-    final int lengthOfSharedData = fullMessageData.length - offsetOfSharedData;
     final ByteBuffer bbuf = ByteBuffer.allocate(messageSizeForRecipient(recipient));
-    bbuf.put((byte) 0x22); // The "original" Sealed Sender V2 version
-    bbuf.put(
-        fullMessageData,
-        recipient.offsetOfRecipientSpecificKeyMaterial,
-        recipient.lengthOfRecipientSpecificKeyMaterial);
-    bbuf.put(fullMessageData, offsetOfSharedData, lengthOfSharedData);
+    writeMessageForRecipient(recipient, bbuf);
     return bbuf.array();
   }
 
@@ -191,12 +332,83 @@ public class SealedSenderMultiRecipientMessage {
    * particular recipient, without copying any buffers.
    */
   public int messageSizeForRecipient(Recipient recipient) {
-    final int lengthOfSharedData = fullMessageData.length - offsetOfSharedData;
+    final int lengthOfSharedData = messageData.capacity() - offsetOfSharedData;
     return 1 /* version signature */
         + recipient.lengthOfRecipientSpecificKeyMaterial
         + lengthOfSharedData;
   }
 
+  /**
+   * Returns the Sealed Sender V2 "ReceivedMessage" payload for a particular recipient as a series
+   * of buffers, without copying any of the message.
+   *
+   * <p>The buffers are, in order: the version byte, the recipient-specific key material, and the
+   * data shared by all recipients. The latter two are read-only views into {@link #serialized}, so
+   * fanning out a message with many recipients doesn't create a copy of the shared data for each
+   * one. Pass them to a {@link GatheringByteChannel} (or see {@link
+   * #writeMessageForRecipient(Recipient, WritableByteChannel)}).
+   *
+   * @see #messageForRecipient(Recipient)
+   */
+  public ByteBuffer[] messageBuffersForRecipient(Recipient recipient) {
+    return new ByteBuffer[] {
+      ByteBuffer.wrap(new byte[] {RECEIVED_MESSAGE_VERSION}).asReadOnlyBuffer(),
+      keyMaterialFor(recipient),
+      sharedData(),
+    };
+  }
+
+  /**
+   * Writes the Sealed Sender V2 "ReceivedMessage" payload for a particular recipient into {@code
+   * destination}, starting at its current position.
+   *
+   * @throws BufferOverflowException if {@code destination} has less than {@link
+   *     #messageSizeForRecipient} bytes remaining, in which case nothing is written
+   * @see #messageForRecipient(Recipient)
+   */
+  public void writeMessageForRecipient(Recipient recipient, ByteBuffer destination) {
+    if (destination.remaining() < messageSizeForRecipient(recipient)) {
+      throw new BufferOverflowException();
+    }
+    final ByteBuffer keyMaterial = keyMaterialFor(recipient);
+    final ByteBuffer sharedData = sharedData();
+    destination.put(RECEIVED_MESSAGE_VERSION);
+    destination.put(keyMaterial);
+    destination.put(sharedData);
+  }
+
+  /**
+   * Writes the Sealed Sender V2 "ReceivedMessage" payload for a particular recipient to {@code
+   * channel}, without copying any of the message.
+   *
+   * <p>This keeps writing until the whole payload has been written, so {@code channel} should be
+   * in blocking mode.
+   *
+   * @return the number of bytes written, always {@link #messageSizeForRecipient}
+   * @see #messageBuffersForRecipient(Recipient)
+   */
+  public long writeMessageForRecipient(Recipient recipient, WritableByteChannel channel)
+      throws IOException {
+    return writeFully(messageBuffersForRecipient(recipient), channel);
+  }
+
+  private ByteBuffer keyMaterialFor(Recipient recipient) {
+    return slice(
+        recipient.offsetOfRecipientSpecificKeyMaterial,
+        recipient.lengthOfRecipientSpecificKeyMaterial);
+  }
+
+  private ByteBuffer sharedData() {
+    return slice(offsetOfSharedData, messageData.capacity() - offsetOfSharedData);
+  }
+
+  private ByteBuffer slice(int offset, int length) {
+    Objects.checkFromIndexSize(offset, length, messageData.capacity());
+    final ByteBuffer result = messageData.duplicate();
+    result.position(offset).limit(offset + length);
+    return result.slice();
+  }
+
   private static final byte SERIALIZED_RECIPIENT_VIEW_VERSION = 0x01;
   private static final byte[] ZERO_DEVICE_IDS = new byte[0];
   private static final short[] ZERO_REGISTRATION_IDS = new short[0];
@@ -231,7 +443,26 @@ public class SealedSenderMultiRecipientMessage {
    */
   public static byte[] messageForRecipient(byte[] fullMessageData, byte[] serializedRecipientView)
       throws InvalidVersionException {
+    final RecipientView view = parseRecipientView(fullMessageData, serializedRecipientView);
+    return view.message().messageForRecipient(view.recipient());
+  }
+
+  /**
+   * Like {@link #messageForRecipient(byte[], byte[])}, but returns the payload as a series of
+   * buffers that share the contents of {@code fullMessageData} instead of copying it.
+   *
+   * @see #messageBuffersForRecipient(Recipient)
+   */
+  public static ByteBuffer[] messageBuffersForRecipient(
+      byte[] fullMessageData, byte[] serializedRecipientView) throws InvalidVersionException {
+    final RecipientView view = parseRecipientView(fullMessageData, serializedRecipientView);
+    return view.message().messageBuffersForRecipient(view.recipient());
+  }
+
+  private record RecipientView(SealedSenderMultiRecipientMessage message, Recipient recipient) {}
 
+  private static RecipientView parseRecipientView(
+      byte[] fullMessageData, byte[] serializedRecipientView) throws InvalidVersionException {
     if (serializedRecipientView.length != 13) {
       throw new IllegalArgumentException(
           "Invalid length for serialized view: " + serializedRecipientView.length);
@@ -261,7 +492,420 @@ public class SealedSenderMultiRecipientMessage {
     final SealedSenderMultiRecipientMessage message =
         new SealedSenderMultiRecipientMessage(
             fullMessageData, Collections.emptyMap(), Collections.emptyList(), offsetOfSharedData);
+    return new RecipientView(message, recipient);
+  }
+
+  private static long writeFully(ByteBuffer[] buffers, WritableByteChannel channel)
+      throws IOException {
+    long written = 0;
+    if (channel instanceof GatheringByteChannel) {
+      final GatheringByteChannel gathering = (GatheringByteChannel) channel;
+      while (buffers[buffers.length - 1].hasRemaining()) {
+        written += gathering.write(buffers);
+      }
+    } else {
+      for (ByteBuffer buffer : buffers) {
+        while (buffer.hasRemaining()) {
+          written += channel.write(buffer);
+        }
+      }
+    }
+    return written;
+  }
+
+  /**
+   * A read-only Map view of the recipients in a {@link RecipientIndex}, leaving out excluded ones.
+   */
+  private static final class RecipientMap extends AbstractMap<ServiceId, Recipient> {
+    private final RecipientIndex index;
+    private Set<Map.Entry<ServiceId, Recipient>> entrySet;
 
-    return message.messageForRecipient(recipient);
+    RecipientMap(RecipientIndex index) {
+      this.index = index;
+    }
+
+    @Override
+    public int size() {
+      return index.recipientCount;
+    }
+
+    @Override
+    public boolean containsKey(Object key) {
+      return indexOf(key) >= 0;
+    }
+
+    @Override
+    public Recipient get(Object key) {
+      final int i = indexOf(key);
+      return i >= 0 ? index.recipientAt(i) : null;
+    }
+
+    private int indexOf(Object key) {
+      if (!(key instanceof ServiceId)) {
+        return -1;
+      }
+      final int i = index.find((ServiceId) key);
+      return i >= 0 && !index.isExcluded(i) ? i : -1;
+    }
+
+    @Override
+    public Set<Map.Entry<ServiceId, Recipient>> entrySet() {
+      if (entrySet == null) {
+        entrySet =
+            new AbstractSet<>() {
+              @Override
+              public int size() {
+                return index.recipientCount;
+              }
+
+              @Override
+              public boolean contains(Object o) {
+                if (!(o instanceof Map.Entry)) {
+                  return false;
+                }
+                final Map.Entry<?, ?> entry = (Map.Entry<?, ?>) o;
+                final int i = indexOf(entry.getKey());
+                return i >= 0 && index.recipientAt(i).equals(entry.getValue());
+              }
+
+              @Override
+              public Iterator<Map.Entry<ServiceId, Recipient>> iterator() {
+                return new Iterator<>() {
+                  private int next = nextRecipient(0);
+
+                  @Override
+                  public boolean hasNext() {
+                    return next < index.size;
+                  }
+
+                  @Override
+                  public Map.Entry<ServiceId, Recipient> next() {
+                    if (!hasNext()) {
+                      throw new NoSuchElementException();
+                    }
+                    final int i = next;
+                    next = nextRecipient(i + 1);
+                    return new AbstractMap.SimpleImmutableEntry<>(
+                        index.serviceIdAt(i), index.recipientAt(i));
+                  }
+                };
+              }
+            };
+      }
+      return entrySet;
+    }
+
+    private int nextRecipient(int i) {
+      while (i < index.size && index.isExcluded(i)) {
+        ++i;
+      }
+      return i;
+    }
+  }
+
+  /**
+   * The recipients of a message parsed by {@link #parse(ByteBuffer)}, held in primitive arrays.
+   *
+   * <p>Every distinct service ID in the message gets an index, in the order they first appear.
+   * Excluded recipients are included, marked by not having any key material.
+   */
+  private static final class RecipientIndex {
+    private static final byte SENT_MESSAGE_UUID_VERSION = 0x22;
+    private static final byte SENT_MESSAGE_SERVICE_ID_VERSION = 0x23;
+    private static final byte KIND_ACI = 0x00;
+    private static final byte KIND_PNI = 0x01;
+    private static final int KEY_MATERIAL_LENGTH = 32 + 16; // message key + auth tag
+    private static final int PUBLIC_KEY_LENGTH = 32;
+    private static final int VALID_REGISTRATION_ID_MASK = 0x3FFF;
+    private static final int MAX_DEVICE_ID = 127;
+    // Don't trust the recipient count for more preallocation than this, as in the Rust parser.
+    private static final int MAX_INITIAL_CAPACITY = 6000;
+
+    // Keeps the layout of the hash table unpredictable, so a message can't be crafted to make
+    // parsing it slow.
+    private static final long HASH_SEED = new SecureRandom().nextLong();
+
+    int size = 0;
+    int recipientCount = 0;
+    int offsetOfSharedData;
+
+    // Service ID i is (kinds[i], uuidHighs[i], uuidLows[i]); its Recipient has the devices in
+    // [deviceStarts[i], deviceStarts[i + 1]) and key material at keyMaterialOffsets[i], or -1 if
+    // it's excluded.
+    private byte[] kinds;
+    private long[] uuidHighs;
+    private long[] uuidLows;
+    private int[] keyMaterialOffsets;
+    private int[] deviceStarts;
+    private byte[] deviceIds;
+    private short[] registrationIds;
+    // Filled in as recipients are looked up.
+    private Recipient[] recipients;
+
+    // Open-addressed table of (index + 1), or 0 for an empty slot; kept at most half full.
+    private int[] table;
+
+    private RecipientIndex(int initialCapacity) {
+      kinds = new byte[initialCapacity];
+      uuidHighs = new long[initialCapacity];
+      uuidLows = new long[initialCapacity];
+      keyMaterialOffsets = new int[initialCapacity];
+      table = new int[Integer.highestOneBit(initialCapacity) * 4];
+    }
+
+    /**
+     * Parses {@code data} from its start, using the same rules as the Rust
+     * SealedSenderV2SentMessage::parse (rust/protocol/src/sealed_sender.rs). Keep the two in sync.
+     */
+    static RecipientIndex parse(ByteBuffer data)
+        throws InvalidMessageException, InvalidVersionException {
+      final ByteBuffer buf = data.duplicate().order(ByteOrder.BIG_ENDIAN);
+      if (!buf.hasRemaining()) {
+        throw new InvalidMessageException("Message was empty");
+      }
+      final byte version = buf.get();
+      if (version != SENT_MESSAGE_UUID_VERSION && version != SENT_MESSAGE_SERVICE_ID_VERSION) {
+        throw new InvalidVersionException("unknown sealed sender message version " + version);
+      }
+
+      final long count = readVarint(buf);
+      final RecipientIndex index =
+          new RecipientIndex((int) Math.max(1, Math.min(count, MAX_INITIAL_CAPACITY)));
+
+      // Devices in the order they appear, with the index of the recipient each belongs to.
+      byte[] deviceIds = new byte[index.kinds.length];
+      short[] registrationIds = new short[deviceIds.length];
+      int[] owners = new int[deviceIds.length];
+      int deviceCount = 0;
+      boolean anyRepeatedRecipients = false;
+
+      for (long i = 0; i < count; ++i) {
+        final byte kind;
+        if (version == SENT_MESSAGE_UUID_VERSION) {
+          // The original version of SSv2 assumed ACIs here, and only encoded the raw UUID.
+          require(buf, 16);
+          kind = KIND_ACI;
+        } else {
+          require(buf, 17);
+          kind = buf.get();
+          if (kind != KIND_ACI && kind != KIND_PNI) {
+            throw new InvalidMessageException("invalid service ID kind " + kind);
+          }
+        }
+        final long uuidHigh = buf.getLong();
+        final long uuidLow = buf.getLong();
+
+        final int existing = index.find(kind, uuidHigh, uuidLow);
+        final int owner = existing >= 0 ? existing : index.size;
+        final int firstDevice = deviceCount;
+        while (true) {
+          require(buf, 1);
+          final int deviceId = buf.get() & 0xFF;
+          if (deviceId == 0) {
+            if (deviceCount != firstDevice) {
+              throw new InvalidMessageException("device ID 0 in a list of devices");
+            }
+            break;
+          }
+          if (deviceId > MAX_DEVICE_ID) {
+            throw new InvalidMessageException("invalid device ID " + deviceId);
+          }
+          require(buf, 2);
+          final int registrationIdAndHasMore = buf.getShort() & 0xFFFF;
+
+          if (deviceCount == deviceIds.length) {
+            deviceIds = Arrays.copyOf(deviceIds, deviceCount * 2);
+            registrationIds = Arrays.copyOf(registrationIds, deviceCount * 2);
+            owners = Arrays.copyOf(owners, deviceCount * 2);
+          }
+          deviceIds[deviceCount] = (byte) deviceId;
+          registrationIds[deviceCount] =
+              (short) (registrationIdAndHasMore & VALID_REGISTRATION_ID_MASK);
+          owners[deviceCount] = owner;
+          ++deviceCount;
+
+          if ((registrationIdAndHasMore & 0x8000) == 0) {
+            break;
+          }
+        }
+
+        final boolean excluded = deviceCount == firstDevice;
+        int keyMaterialOffset = -1;
+        if (!excluded) {
+          require(buf, KEY_MATERIAL_LENGTH);
+          keyMaterialOffset = buf.position();
+          buf.position(keyMaterialOffset + KEY_MATERIAL_LENGTH);
+        }
+
+        if (existing >= 0) {
+          if (excluded || index.isExcluded(existing)) {
+            throw new InvalidMessageException("recipient redundantly encoded as empty");
+          }
+          // As in Rust, devices aren't deduplicated, and later key material is ignored.
+          anyRepeatedRecipients = true;
+        } else {
+          index.add(kind, uuidHigh, uuidLow, keyMaterialOffset);
+        }
+      }
+
+      if (buf.remaining() < PUBLIC_KEY_LENGTH) {
+        throw new InvalidMessageException("message too short for its shared data");
+      }
+      index.offsetOfSharedData = buf.position();
+
+      // Group each recipient's devices together, keeping their order.
+      final int[] deviceStarts = new int[index.size + 1];
+      for (int i = 0; i < deviceCount; ++i) {
+        ++deviceStarts[owners[i] + 1];
+      }
+      for (int i = 0; i < index.size; ++i) {
+        deviceStarts[i + 1] += deviceStarts[i];
+      }
+      if (anyRepeatedRecipients) {
+        final byte[] groupedDeviceIds = new byte[deviceCount];
+        final short[] groupedRegistrationIds = new short[deviceCount];
+        final int[] next = Arrays.copyOf(deviceStarts, index.size);
+        for (int i = 0; i < deviceCount; ++i) {
+          final int position = next[owners[i]]++;
+          groupedDeviceIds[position] = deviceIds[i];
+          groupedRegistrationIds[position] = registrationIds[i];
+        }
+        deviceIds = groupedDeviceIds;
+        registrationIds = groupedRegistrationIds;
+      }
+      index.deviceStarts = deviceStarts;
+      index.deviceIds = deviceIds;
+      index.registrationIds = registrationIds;
+      index.recipients = new Recipient[index.size];
+      return index;
+    }
+
+    boolean isExcluded(int i) {
+      return keyMaterialOffsets[i] < 0;
+    }
+
+    ServiceId serviceIdAt(int i) {
+      final UUID uuid = new UUID(uuidHighs[i], uuidLows[i]);
+      return kinds[i] == KIND_ACI ? new ServiceId.Aci(uuid) : new ServiceId.Pni(uuid);
+    }
+
+    Recipient recipientAt(int i) {
+      // Racing threads may each create a Recipient, but they'll be equal, and Recipient's fields
+      // are final, so it's safe to publish through a plain array.
+      Recipient recipient = recipients[i];
+      if (recipient == null) {
+        recipient =
+            new Recipient(
+                Arrays.copyOfRange(deviceIds, deviceStarts[i], deviceStarts[i + 1]),
+                Arrays.copyOfRange(registrationIds, deviceStarts[i], deviceStarts[i + 1]),
+                keyMaterialOffsets[i],
+                KEY_MATERIAL_LENGTH);
+        recipients[i] = recipient;
+      }
+      return recipient;
+    }
+
+    /** Returns the index of {@code serviceId}, or -1 if it isn't in the message. */
+    int find(ServiceId serviceId) {
+      // Read the fixed-width binary form directly, rather than going through getRawUUID().
+      final byte[] storage = serviceId.storage;
+      return find(storage[0], readLong(storage, 1), readLong(storage, 9));
+    }
+
+    private static long readLong(byte[] bytes, int offset) {
+      long result = 0;
+      for (int i = 0; i < 8; ++i) {
+        result = (result << 8) | (bytes[offset + i] & 0xFF);
+      }
+      return result;
+    }
+
+    private int find(byte kind, long uuidHigh, long uuidLow) {
+      final int mask = table.length - 1;
+      for (int slot = hash(kind, uuidHigh, uuidLow) & mask; ; slot = (slot + 1) & mask) {
+        final int i = table[slot] - 1;
+        if (i < 0) {
+          return -1;
+        }
+        if (uuidLows[i] == uuidLow && uuidHighs[i] == uuidHigh && kinds[i] == kind) {
+          return i;
+        }
+      }
+    }
+
+    private void add(byte kind, long uuidHigh, long uuidLow, int keyMaterialOffset) {
+      if (size == kinds.length) {
+        final int capacity = size * 2;
+        kinds = Arrays.copyOf(kinds, capacity);
+        uuidHighs = Arrays.copyOf(uuidHighs, capacity);
+        uuidLows = Arrays.copyOf(uuidLows, capacity);
+        keyMaterialOffsets = Arrays.copyOf(keyMaterialOffsets, capacity);
+      }
+      kinds[size] = kind;
+      uuidHighs[size] = uuidHigh;
+      uuidLows[size] = uuidLow;
+      keyMaterialOffsets[size] = keyMaterialOffset;
+      ++size;
+      if (keyMaterialOffset >= 0) {
+        ++recipientCount;
+      }
+
+      if (2 * size > table.length) {
+        table = new int[table.length * 2];
+        for (int i = 0; i < size; ++i) {
+          insert(i);
+        }
+      } else {
+        insert(size - 1);
+      }
+    }
+
+    private void insert(int i) {
+      final int mask = table.length - 1;
+      int slot = hash(kinds[i], uuidHighs[i], uuidLows[i]) & mask;
+      while (table[slot] != 0) {
+        slot = (slot + 1) & mask;
+      }
+      table[slot] = i + 1;
+    }
+
+    private static int hash(byte kind, long uuidHigh, long uuidLow) {
+      return (int) mix(mix(uuidHigh ^ HASH_SEED ^ kind) ^ uuidLow);
+    }
+
+    // The finalizer from MurmurHash3.
+    private static long mix(long h) {
+      h ^= h >>> 33;
+      h *= 0xff51afd7ed558ccdL;
+      h ^= h >>> 33;
+      h *= 0xc4ceb9fe1a85ec53L;
+      h ^= h >>> 33;
+      return h;
+    }
+
+    /** Reads a protobuf-style varint that must fit in 32 bits. */
+    private static long readVarint(ByteBuffer buf) throws InvalidMessageException {
+      long result = 0;
+      for (int i = 0; i < 10 && buf.hasRemaining(); ++i) {
+        final int b = buf.get() & 0xFF;
+        if (i == 9 && b > 1) {
+          break;
+        }
+        result |= (long) (b & 0x7F) << (7 * i);
+        if (b < 0x80) {
+          if (Long.compareUnsigned(result, 0xFFFFFFFFL) > 0) {
+            throw new InvalidMessageException("too many recipients");
+          }
+          return result;
+        }
+      }
+      throw new InvalidMessageException("invalid recipient count");
+    }
+
+    private static void require(ByteBuffer buf, int length) throws InvalidMessageException {
+      if (buf.remaining() < length) {
+        throw new InvalidMessageException("message truncated");
+      }
+    }
   }
 }
@@ -7,12 +7,22 @@ package org.signal.libsignal.protocol;
 
 import static org.junit.Assert.assertArrayEquals;
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotEquals;
 import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
 import static org.junit.Assert.assertThrows;
+import static org.junit.Assert.assertTrue;
 
 import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.BufferOverflowException;
 import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
 import java.util.Arrays;
+import java.util.Iterator;
+import java.util.Map;
 import kotlin.Pair;
 import org.junit.Test;
 import org.signal.libsignal.protocol.util.Hex;
@@ -51,9 +61,102 @@ public class SealedSenderMultiRecipientMessageTest {
           SealedSenderMultiRecipientMessage.messageForRecipient(
               message.serialized(), message.serializedRecipientView(recipient));
       assertArrayEquals(expectedContents, view);
+      assertArrayEquals(
+          expectedContents,
+          concatenate(
+              SealedSenderMultiRecipientMessage.messageBuffersForRecipient(
+                  message.serialized(), message.serializedRecipientView(recipient))));
     } catch (final Exception e) {
       throw new AssertionError("Should not have thrown", e);
     }
+
+    final ByteBuffer[] buffers = message.messageBuffersForRecipient(recipient);
+    assertArrayEquals(expectedContents, concatenate(buffers));
+    // Reading the buffers above used duplicates, so they are still positioned at the start.
+    assertTrue(buffers[2].isReadOnly());
+    assertEquals(expectedContents.length - 1 - buffers[2].remaining(), buffers[1].remaining());
+
+    final ByteBuffer destination = ByteBuffer.allocateDirect(expectedContents.length + 2);
+    destination.put((byte) 0x7f);
+    message.writeMessageForRecipient(recipient, destination);
+    assertEquals(1 + expectedContents.length, destination.position());
+    destination.flip().position(1);
+    final byte[] written = new byte[destination.remaining()];
+    destination.get(written);
+    assertArrayEquals(expectedContents, written);
+
+    final ByteBuffer tooSmall = ByteBuffer.allocate(expectedContents.length - 1);
+    assertThrows(
+        BufferOverflowException.class,
+        () -> message.writeMessageForRecipient(recipient, tooSmall));
+    assertEquals(0, tooSmall.position());
+
+    try {
+      final ByteArrayOutputStream out = new ByteArrayOutputStream();
+      assertEquals(
+          expectedContents.length,
+          message.writeMessageForRecipient(recipient, Channels.newChannel(out)));
+      assertArrayEquals(expectedContents, out.toByteArray());
+    } catch (final IOException e) {
+      throw new AssertionError("Should not have thrown", e);
+    }
+  }
+
+  /**
+   * Parses {@code input} with both {@link SealedSenderMultiRecipientMessage#parse(byte[])} and
+   * {@link SealedSenderMultiRecipientMessage#parse(ByteBuffer)}, checks that the results agree,
+   * and returns the first.
+   */
+  private static SealedSenderMultiRecipientMessage parse(final byte[] input) throws Exception {
+    final SealedSenderMultiRecipientMessage message =
+        SealedSenderMultiRecipientMessage.parse(input);
+
+    final ByteBuffer direct = ByteBuffer.allocateDirect(input.length).put(input).flip();
+    final SealedSenderMultiRecipientMessage fromBuffer =
+        SealedSenderMultiRecipientMessage.parse(direct);
+    assertEquals(0, direct.position());
+    assertEquals(message.getRecipients().size(), fromBuffer.getRecipientCount());
+
+    final Iterator<Pair<ServiceId, SealedSenderMultiRecipientMessage.Recipient>> iterator =
+        fromBuffer.recipientIterator();
+    for (Map.Entry<ServiceId, SealedSenderMultiRecipientMessage.Recipient> entry :
+        message.getRecipients().entrySet()) {
+      final Pair<ServiceId, SealedSenderMultiRecipientMessage.Recipient> next = iterator.next();
+      assertEquals(entry.getKey(), next.getFirst());
+      assertEquals(entry.getValue(), next.getSecond());
+      assertEquals(entry.getValue(), fromBuffer.getRecipient(entry.getKey()));
+      assertArrayEquals(
+          message.messageForRecipient(entry.getValue()),
+          fromBuffer.messageForRecipient(next.getSecond()));
+    }
+    assertFalse(iterator.hasNext());
+    for (ServiceId excluded : message.getExcludedRecipients()) {
+      assertNull(fromBuffer.getRecipient(excluded));
+    }
+
+    assertEquals(message.getRecipients(), fromBuffer.getRecipients());
+    assertEquals(fromBuffer.getRecipients(), message.getRecipients());
+    assertEquals(message.getRecipients().hashCode(), fromBuffer.getRecipients().hashCode());
+    assertEquals(message.getExcludedRecipients(), fromBuffer.getExcludedRecipients());
+    assertArrayEquals(input, fromBuffer.serialized());
+    return message;
+  }
+
+  private static void assertParseFails(
+      final Class<? extends Exception> expected, final byte[] input) {
+    assertThrows(expected, () -> SealedSenderMultiRecipientMessage.parse(input));
+    assertThrows(expected, () -> SealedSenderMultiRecipientMessage.parse(ByteBuffer.wrap(input)));
+  }
+
+  private static byte[] concatenate(final ByteBuffer[] buffers) {
+    final ByteArrayOutputStream out = new ByteArrayOutputStream();
+    for (ByteBuffer buffer : buffers) {
+      final ByteBuffer copy = buffer.duplicate();
+      while (copy.hasRemaining()) {
+        out.write(copy.get());
+      }
+    }
+    return out.toByteArray();
   }
 
   @Test
@@ -78,7 +181,7 @@ public class SealedSenderMultiRecipientMessageTest {
             // Shared data
             SHARED_BYTES);
 
-    SealedSenderMultiRecipientMessage message = SealedSenderMultiRecipientMessage.parse(input);
+    SealedSenderMultiRecipientMessage message = parse(input);
     assertEquals(message.getRecipients().size(), 2);
 
     SealedSenderMultiRecipientMessage.Recipient alice =
@@ -128,7 +231,7 @@ public class SealedSenderMultiRecipientMessageTest {
             // Shared data
             SHARED_BYTES);
 
-    SealedSenderMultiRecipientMessage message = SealedSenderMultiRecipientMessage.parse(input);
+    SealedSenderMultiRecipientMessage message = parse(input);
     assertEquals(message.getRecipients().size(), 2);
 
     SealedSenderMultiRecipientMessage.Recipient alice =
@@ -181,7 +284,7 @@ public class SealedSenderMultiRecipientMessageTest {
             // Shared data
             SHARED_BYTES);
 
-    SealedSenderMultiRecipientMessage message = SealedSenderMultiRecipientMessage.parse(input);
+    SealedSenderMultiRecipientMessage message = parse(input);
     assertEquals(message.getRecipients().size(), 2);
 
     SealedSenderMultiRecipientMessage.Recipient alice =
@@ -238,7 +341,7 @@ public class SealedSenderMultiRecipientMessageTest {
             // Shared data
             SHARED_BYTES);
 
-    SealedSenderMultiRecipientMessage message = SealedSenderMultiRecipientMessage.parse(input);
+    SealedSenderMultiRecipientMessage message = parse(input);
     assertEquals(message.getRecipients().size(), 2);
 
     SealedSenderMultiRecipientMessage.Recipient alice =
@@ -295,7 +398,7 @@ public class SealedSenderMultiRecipientMessageTest {
             // Shared data
             SHARED_BYTES);
 
-    SealedSenderMultiRecipientMessage message = SealedSenderMultiRecipientMessage.parse(input);
+    SealedSenderMultiRecipientMessage message = parse(input);
     assertEquals(message.getRecipients().size(), 1);
 
     SealedSenderMultiRecipientMessage.Recipient alice =
@@ -335,7 +438,7 @@ public class SealedSenderMultiRecipientMessageTest {
             // Shared data
             SHARED_BYTES);
 
-    SealedSenderMultiRecipientMessage message = SealedSenderMultiRecipientMessage.parse(input);
+    SealedSenderMultiRecipientMessage message = parse(input);
     assertEquals(message.getRecipients().size(), 2);
 
     SealedSenderMultiRecipientMessage.Recipient alice =
@@ -393,7 +496,7 @@ public class SealedSenderMultiRecipientMessageTest {
             // Shared data
             SHARED_BYTES);
 
-    SealedSenderMultiRecipientMessage message = SealedSenderMultiRecipientMessage.parse(input);
+    SealedSenderMultiRecipientMessage message = parse(input);
     assertEquals(message.getRecipients().size(), 2);
 
     SealedSenderMultiRecipientMessage.Recipient alice =
@@ -456,7 +559,7 @@ public class SealedSenderMultiRecipientMessageTest {
             // Shared data
             SHARED_BYTES);
 
-    SealedSenderMultiRecipientMessage message = SealedSenderMultiRecipientMessage.parse(input);
+    SealedSenderMultiRecipientMessage message = parse(input);
     assertEquals(message.getRecipients().size(), 2);
 
     SealedSenderMultiRecipientMessage.Recipient alice =
@@ -518,8 +621,7 @@ public class SealedSenderMultiRecipientMessageTest {
             // Shared data
             SHARED_BYTES);
 
-    assertThrows(
-        InvalidMessageException.class, () -> SealedSenderMultiRecipientMessage.parse(input));
+    assertParseFails(InvalidMessageException.class, input);
   }
 
   @Test
@@ -542,8 +644,7 @@ public class SealedSenderMultiRecipientMessageTest {
             // Shared data
             SHARED_BYTES);
 
-    assertThrows(
-        InvalidMessageException.class, () -> SealedSenderMultiRecipientMessage.parse(input));
+    assertParseFails(InvalidMessageException.class, input);
   }
 
   @Test
@@ -566,8 +667,7 @@ public class SealedSenderMultiRecipientMessageTest {
             // Shared data
             SHARED_BYTES);
 
-    assertThrows(
-        InvalidMessageException.class, () -> SealedSenderMultiRecipientMessage.parse(input));
+    assertParseFails(InvalidMessageException.class, input);
   }
 
   @Test
@@ -586,21 +686,14 @@ public class SealedSenderMultiRecipientMessageTest {
             // Shared data
             SHARED_BYTES);
 
-    assertThrows(
-        InvalidMessageException.class, () -> SealedSenderMultiRecipientMessage.parse(input));
+    assertParseFails(InvalidMessageException.class, input);
   }
 
   @Test
   public void rejectsUnknownVersions() throws Exception {
-    assertThrows(
-        InvalidVersionException.class,
-        () -> SealedSenderMultiRecipientMessage.parse(new byte[] {0x11}));
-    assertThrows(
-        InvalidVersionException.class,
-        () -> SealedSenderMultiRecipientMessage.parse(new byte[] {0x2F}));
-    assertThrows(
-        InvalidVersionException.class,
-        () -> SealedSenderMultiRecipientMessage.parse(new byte[] {0x77}));
+    assertParseFails(InvalidVersionException.class, new byte[] {0x11});
+    assertParseFails(InvalidVersionException.class, new byte[] {0x2F});
+    assertParseFails(InvalidVersionException.class, new byte[] {0x77});
   }
 
   @Test
@@ -622,7 +715,7 @@ public class SealedSenderMultiRecipientMessageTest {
     }
     input.write(zeros);
 
-    var message = SealedSenderMultiRecipientMessage.parse(input.toByteArray());
+    var message = parse(input.toByteArray());
     assertEquals(message.getRecipients().size(), count);
   }
 
@@ -643,7 +736,7 @@ public class SealedSenderMultiRecipientMessageTest {
     }
     input.write(zeros);
 
-    var message = SealedSenderMultiRecipientMessage.parse(input.toByteArray());
+    var message = parse(input.toByteArray());
     assertEquals(message.getExcludedRecipients().size(), count);
   }
 
@@ -669,8 +762,7 @@ public class SealedSenderMultiRecipientMessageTest {
             // Shared data
             SHARED_BYTES);
 
-    final SealedSenderMultiRecipientMessage message =
-        SealedSenderMultiRecipientMessage.parse(input);
+    final SealedSenderMultiRecipientMessage message = parse(input);
 
     int sharedDataOffset = input.length - SHARED_BYTES.length() / 2;
 
@@ -738,4 +830,127 @@ public class SealedSenderMultiRecipientMessageTest {
             SealedSenderMultiRecipientMessage.messageForRecipient(
                 new byte[0], buffer.clear().put((byte) 0x77).array()));
   }
+
+  @Test
+  public void parsesFromTheMiddleOfABuffer() throws Exception {
+    final byte[] input =
+        Hex.fromStringsCondensedAssert(
+            VERSION_SERVICE_ID_AWARE,
+            // Count
+            "02",
+            // Recipient 1: ServiceId, Device ID and Registration ID, Key Material
+            ACI_MARKER,
+            ALICE_UUID_BYTES,
+            "0111aa",
+            ALICE_KEY_MATERIAL,
+            // Recipient 2: excluded by device ID 0
+            ACI_MARKER,
+            EVE_UUID_BYTES,
+            "00",
+            // Shared data
+            SHARED_BYTES);
+    final ByteBuffer buffer = ByteBuffer.allocate(input.length + 10);
+    buffer.position(3);
+    buffer.put(input);
+    buffer.position(3).limit(3 + input.length);
+
+    final SealedSenderMultiRecipientMessage message =
+        SealedSenderMultiRecipientMessage.parse(buffer);
+    assertEquals(3, buffer.position());
+    assertEquals(1, message.getRecipientCount());
+
+    final ServiceId alice =
+        ServiceId.parseFromBinary(Hex.fromStringCondensedAssert(ALICE_UUID_BYTES));
+    final ServiceId eve = ServiceId.parseFromBinary(Hex.fromStringCondensedAssert(EVE_UUID_BYTES));
+    final SealedSenderMultiRecipientMessage.Recipient recipient = message.getRecipient(alice);
+    assertNotNull(recipient);
+    assertNull(message.getRecipient(eve));
+    assertMessageForRecipient(
+        message, recipient, VERSION_RECIPIENT_MESSAGE, ALICE_KEY_MATERIAL, SHARED_BYTES);
+    assertEquals(Arrays.asList(eve), message.getExcludedRecipients());
+    assertArrayEquals(input, message.serialized());
+  }
+
+  @Test
+  public void recipientsFromBuffersAreAReadOnlyView() throws Exception {
+    final byte[] input =
+        Hex.fromStringsCondensedAssert(
+            VERSION_SERVICE_ID_AWARE,
+            // Count
+            "02",
+            // Recipient 1: ServiceId, Device ID and Registration ID, Key Material
+            ACI_MARKER,
+            ALICE_UUID_BYTES,
+            "0111aa",
+            ALICE_KEY_MATERIAL,
+            // Recipient 2: same UUID, but a PNI
+            PNI_MARKER,
+            ALICE_UUID_BYTES,
+            "0111bb",
+            BOB_KEY_MATERIAL,
+            // Shared data
+            SHARED_BYTES);
+    final Map<ServiceId, SealedSenderMultiRecipientMessage.Recipient> recipients =
+        SealedSenderMultiRecipientMessage.parse(ByteBuffer.wrap(input)).getRecipients();
+
+    final ServiceId aliceAci =
+        ServiceId.parseFromBinary(Hex.fromStringCondensedAssert(ALICE_UUID_BYTES));
+    final ServiceId alicePni =
+        ServiceId.parseFromBinary(Hex.fromStringsCondensedAssert(PNI_MARKER, ALICE_UUID_BYTES));
+    final ServiceId eve = ServiceId.parseFromBinary(Hex.fromStringCondensedAssert(EVE_UUID_BYTES));
+    assertEquals(2, recipients.size());
+    assertTrue(recipients.containsKey(aliceAci));
+    assertTrue(recipients.containsKey(alicePni));
+    assertFalse(recipients.containsKey(eve));
+    assertFalse(recipients.containsKey(ALICE_UUID_BYTES));
+    assertNotEquals(recipients.get(aliceAci), recipients.get(alicePni));
+    // Recipients are created once and then reused.
+    assertSame(recipients.get(aliceAci), recipients.get(aliceAci));
+
+    assertThrows(UnsupportedOperationException.class, () -> recipients.remove(aliceAci));
+    assertThrows(UnsupportedOperationException.class, () -> recipients.put(eve, null));
+    assertThrows(UnsupportedOperationException.class, () -> recipients.clear());
+    assertEquals(2, recipients.size());
+  }
+
+  @Test
+  public void truncatedMessagesParseTheSameWayFromBuffers() throws Exception {
+    final byte[] input =
+        Hex.fromStringsCondensedAssert(
+            VERSION_SERVICE_ID_AWARE,
+            // Count
+            "03",
+            // Recipient 1: ServiceId, Device ID and Registration ID, Key Material
+            ACI_MARKER,
+            ALICE_UUID_BYTES,
+            "0191aa", // high bit in registration ID flags another device
+            "0333aa",
+            ALICE_KEY_MATERIAL,
+            // Recipient 2: excluded by device ID 0
+            ACI_MARKER,
+            EVE_UUID_BYTES,
+            "00",
+            // Recipient 3
+            PNI_MARKER,
+            BOB_UUID_BYTES,
+            "0111bb",
+            BOB_KEY_MATERIAL,
+            // Shared data
+            SHARED_BYTES);
+
+    for (int length = 0; length <= input.length; ++length) {
+      final byte[] truncated = Arrays.copyOf(input, length);
+      Class<? extends Exception> expected = null;
+      try {
+        SealedSenderMultiRecipientMessage.parse(truncated);
+      } catch (InvalidMessageException | InvalidVersionException e) {
+        expected = e.getClass();
+      }
+      if (expected == null) {
+        parse(truncated);
+      } else {
+        assertParseFails(expected, truncated);
+      }
+    }
+  }
 }
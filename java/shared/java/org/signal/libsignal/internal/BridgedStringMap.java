@@ -9,17 +9,13 @@ import java.util.Map;
 
 public class BridgedStringMap extends NativeHandleGuard.SimpleOwner {
   public BridgedStringMap(Map<String, String> map) {
-    super(Native.BridgedStringMap_new(map.size()));
+    super(Native.BridgedStringMap_new(map.size()), Native::BridgedStringMap_Destroy);
     guardedRun(
         handle -> {
           map.forEach((k, v) -> Native.BridgedStringMap_insert(handle, k, v));
         });
   }
 
-  protected void release(long nativeHandle) {
-    Native.BridgedStringMap_Destroy(nativeHandle);
-  }
-
   String dump() {
     return guardedMap(NativeTesting::TESTING_BridgedStringMap_dump_to_json);
   }
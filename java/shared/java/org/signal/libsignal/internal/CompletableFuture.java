@@ -5,15 +5,15 @@
 
 package org.signal.libsignal.internal;
 
-import java.util.ArrayList;
-import java.util.Collections;
-import java.util.List;
-import java.util.Optional;
+import java.util.Objects;
 import java.util.concurrent.CancellationException;
 import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
 import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicReferenceFieldUpdater;
 import java.util.function.BiConsumer;
 import java.util.function.BiFunction;
 import java.util.function.Consumer;
@@ -21,22 +21,38 @@ import java.util.function.Function;
 
 /** A stripped-down, Android-21-compatible version of java.util.concurrent.CompletableFuture. */
 public class CompletableFuture<T> implements Future<T> {
-  private boolean completed;
-  private T result;
-  private Throwable exception;
-  private List<ThenApplyCompleter<T>> consumers;
-
-  // This is an immutable, unmodifiable sentinel list used to mark that the consumers member
-  //   is invalidated after the future is completed.
-  private final List<ThenApplyCompleter<T>> INVALIDATED_LIST = Collections.emptyList();
-
-  private volatile Optional<TokioAsyncContext> runtime = Optional.empty();
-  private volatile Optional<Long> cancellationId = Optional.empty();
+  // The whole state of the future lives in this one field, so that completing it and adding
+  //   callbacks are each a single compare-and-set rather than a trip through a monitor:
+  //   - null: not yet completed, and nothing is waiting on it.
+  //   - a ThenApplyCompleter: not yet completed; the head of a stack of callbacks, most recent
+  //     first.
+  //   - an Outcome: completed with null or with an exception.
+  //   - anything else: completed successfully with that value.
+  // ThenApplyCompleter and Outcome are private, so a successful result can't be confused with
+  //   either of them.
+  private volatile Object state;
+
+  @SuppressWarnings("rawtypes")
+  private static final AtomicReferenceFieldUpdater<CompletableFuture, Object> STATE =
+      AtomicReferenceFieldUpdater.newUpdater(CompletableFuture.class, Object.class, "state");
+
+  private static final Outcome NULL_RESULT = new Outcome(null);
+
+  // Created by the first blocking get(), which also registers a single callback that wakes every
+  //   thread waiting on this monitor. Because the callback is shared, a get() that times out or is
+  //   interrupted leaves nothing behind, however many times it happens.
+  private volatile Object waitLock;
+
+  @SuppressWarnings("rawtypes")
+  private static final AtomicReferenceFieldUpdater<CompletableFuture, Object> WAIT_LOCK =
+      AtomicReferenceFieldUpdater.newUpdater(CompletableFuture.class, Object.class, "waitLock");
+
+  private volatile TokioAsyncContext runtime;
+  // 0 is never a valid cancellation ID; Rust uses it to mean cancellation isn't supported.
+  private volatile long cancellationId;
 
   @CalledFromNative
-  public CompletableFuture() {
-    this.consumers = new ArrayList<>();
-  }
+  public CompletableFuture() {}
 
   public static <U> CompletableFuture<U> completedFuture(U value) {
     final var result = new CompletableFuture<U>();
@@ -52,11 +68,11 @@ public class CompletableFuture<T> implements Future<T> {
 
   @CalledFromNative
   void setCancellationId(long cancellationId) {
-    this.cancellationId = Optional.of(cancellationId);
+    this.cancellationId = cancellationId;
   }
 
   public CompletableFuture<T> makeCancelable(TokioAsyncContext context) {
-    this.runtime = Optional.of(context);
+    this.runtime = context;
     return this;
   }
 
@@ -66,119 +82,160 @@ public class CompletableFuture<T> implements Future<T> {
       return isCancelled();
     }
 
-    if (runtime.isPresent() && cancellationId.isPresent()) {
-      runtime
-          .get()
-          .guardedRun(
-              (nativeContextHandle) ->
-                  Native.TokioAsyncContext_cancel(nativeContextHandle, cancellationId.get()));
+    final TokioAsyncContext runtime = this.runtime;
+    final long cancellationId = this.cancellationId;
+    if (runtime != null && cancellationId != 0) {
+      runtime.guardedRun(
+          (nativeContextHandle) ->
+              Native.TokioAsyncContext_cancel(nativeContextHandle, cancellationId));
     }
 
     return true;
   }
 
   @Override
-  public synchronized boolean isCancelled() {
-    return exception instanceof CancellationException;
+  public boolean isCancelled() {
+    final Object state = this.state;
+    return state instanceof Outcome
+        && ((Outcome) state).exception instanceof CancellationException;
   }
 
   @Override
-  public synchronized boolean isDone() {
-    return completed;
+  public boolean isDone() {
+    return isCompleted(state);
   }
 
   @CalledFromNative
   public boolean complete(T result) {
-    final List<ThenApplyCompleter<T>> consumers;
-
-    synchronized (this) {
-      if (completed) return false;
-
-      this.result = result;
-      this.completed = true;
-
-      consumers = this.consumers;
-      this.consumers = INVALIDATED_LIST;
+    return completeWith(result == null ? NULL_RESULT : result);
+  }
 
-      notifyAll();
+  @CalledFromNative
+  public boolean completeExceptionally(Throwable throwable) {
+    if (throwable == null) {
+      throwable = new AssertionError("Future failed, but no exception provided");
     }
+    return completeWith(new Outcome(throwable));
+  }
 
-    // We execute the completion handlers after releasing our lock to prevent
-    //   deadlocks if e.g. any consumers require locks of their own that they
-    //   only release after some other operation of ours that requires our
-    //   lock completes.
-    // We actually saw this happen in the field on Android before.
-    for (ThenApplyCompleter<T> completer : consumers) {
-      completer.complete.accept(result);
+  @SuppressWarnings("unchecked")
+  private boolean completeWith(Object outcome) {
+    Object state;
+    do {
+      state = this.state;
+      if (isCompleted(state)) return false;
+    } while (!STATE.compareAndSet(this, state, outcome));
+
+    // Once the CAS succeeds, no other thread can touch the stack of completers, so we can reverse
+    //   it in place to run the callbacks in the order they were added.
+    // We run the callbacks without holding anything that other operations on this future could be
+    //   waiting for, to prevent deadlocks if e.g. any consumers require locks of their own. (An
+    //   earlier version of this class held its monitor here, and we saw exactly that happen in the
+    //   field on Android.)
+    ThenApplyCompleter<T> reversed = null;
+    for (ThenApplyCompleter<T> completer = (ThenApplyCompleter<T>) state; completer != null; ) {
+      final ThenApplyCompleter<T> next = completer.next;
+      completer.next = reversed;
+      reversed = completer;
+      completer = next;
+    }
+    for (ThenApplyCompleter<T> completer = reversed; completer != null; ) {
+      // Unlink as we go, so a slow callback doesn't keep earlier ones reachable.
+      final ThenApplyCompleter<T> next = completer.next;
+      completer.next = null;
+      completer.fire(outcome);
+      completer = next;
     }
 
     return true;
   }
 
-  @CalledFromNative
-  public boolean completeExceptionally(Throwable throwable) {
-    return completeExceptionally(throwable, true);
+  private static boolean isCompleted(Object state) {
+    return state != null && !(state instanceof ThenApplyCompleter);
   }
 
-  private boolean completeExceptionally(Throwable throwable, boolean notifyConsumers) {
-    final List<ThenApplyCompleter<T>> consumers;
-
-    synchronized (this) {
-      if (completed) return false;
-
-      if (throwable == null) {
-        throwable = new AssertionError("Future failed, but no exception provided");
+  @Override
+  public T get() throws CancellationException, ExecutionException, InterruptedException {
+    Object state = this.state;
+    if (!isCompleted(state)) {
+      try {
+        state = awaitCompletion(false, 0);
+      } catch (TimeoutException e) {
+        throw new AssertionError("untimed wait cannot time out", e);
       }
+    }
+    return reportOutcome(state);
+  }
 
-      this.exception = throwable;
-      this.completed = true;
-
-      consumers = this.consumers;
-      this.consumers = INVALIDATED_LIST;
-
-      notifyAll();
+  @Override
+  public T get(long timeout, TimeUnit unit)
+      throws CancellationException, ExecutionException, InterruptedException, TimeoutException {
+    Object state = this.state;
+    if (!isCompleted(state)) {
+      state = awaitCompletion(true, System.nanoTime() + unit.toNanos(timeout));
     }
+    return reportOutcome(state);
+  }
 
-    if (notifyConsumers) {
-      // We execute the completion handlers after releasing our lock to prevent
-      //   deadlocks if e.g. any consumers require locks of their own that they
-      //   only release after some other operation of ours that requires our
-      //   lock completes.
-      // We actually saw this happen in the field on Android before.
-      for (ThenApplyCompleter<T> completer : consumers) {
-        completer.completeExceptionally.accept(throwable);
+  private Object awaitCompletion(boolean timed, long deadlineNanos)
+      throws InterruptedException, TimeoutException {
+    Object lock = this.waitLock;
+    if (lock == null) {
+      final Object newLock = new Object();
+      if (WAIT_LOCK.compareAndSet(this, null, newLock)) {
+        addCompleter(
+            new ThenApplyCompleter<T>(
+                (T value) -> wakeWaiters(newLock), (Throwable exception) -> wakeWaiters(newLock)));
       }
+      lock = this.waitLock;
     }
 
-    return true;
+    // The state is always set before the callback above runs, and the callback can't notify
+    //   until we've released the monitor by waiting, so a completion can't slip in unnoticed.
+    synchronized (lock) {
+      while (true) {
+        final Object state = this.state;
+        if (isCompleted(state)) {
+          return state;
+        }
+        if (timed) {
+          final long remainingNanos = deadlineNanos - System.nanoTime();
+          if (remainingNanos <= 0) {
+            throw new TimeoutException();
+          }
+          TimeUnit.NANOSECONDS.timedWait(lock, remainingNanos);
+        } else {
+          lock.wait();
+        }
+      }
+    }
   }
 
-  @Override
-  public synchronized T get()
-      throws CancellationException, ExecutionException, InterruptedException {
-    while (!completed) wait();
-
-    if (exception instanceof CancellationException) throw (CancellationException) exception;
-    if (exception != null) throw new ExecutionException(exception);
-
-    return result;
+  private static void wakeWaiters(Object lock) {
+    synchronized (lock) {
+      lock.notifyAll();
+    }
   }
 
-  @Override
-  public synchronized T get(long timeout, TimeUnit unit)
-      throws CancellationException, ExecutionException, InterruptedException, TimeoutException {
-    long deadlineMillis = System.currentTimeMillis() + unit.toMillis(timeout);
-
-    while (!completed) {
-      long remainingMillis = deadlineMillis - System.currentTimeMillis();
-      if (remainingMillis <= 0) {
-        throw new TimeoutException();
-      }
-
-      wait(remainingMillis);
+  // VisibleForTesting
+  int pendingCallbackCount() {
+    int count = 0;
+    for (Object completer = state; completer instanceof ThenApplyCompleter; ) {
+      ++count;
+      completer = ((ThenApplyCompleter<?>) completer).next;
     }
+    return count;
+  }
 
-    return get();
+  @SuppressWarnings("unchecked")
+  private static <T> T reportOutcome(Object state) throws ExecutionException {
+    if (!(state instanceof Outcome)) {
+      return (T) state;
+    }
+    final Throwable exception = ((Outcome) state).exception;
+    if (exception instanceof CancellationException) throw (CancellationException) exception;
+    if (exception != null) throw new ExecutionException(exception);
+    return null;
   }
 
   /**
@@ -208,6 +265,51 @@ public class CompletableFuture<T> implements Future<T> {
         CompletableFuture::completeExceptionally);
   }
 
+  /**
+   * Like {@link #thenApply}, but applies the function on {@code executor} instead of on whichever
+   * thread completes this future.
+   *
+   * <p>Futures returned from libsignal are usually completed on Rust-managed threads, which should
+   * not be kept busy. The returned future is always completed from {@code executor}, even when this
+   * future fails, so anything chained onto it runs there as well. If {@code executor} rejects the
+   * task, the returned future completes exceptionally with the {@link
+   * RejectedExecutionException}.
+   *
+   * <p><strong>Note:</strong> Unlike the standard CompletableFuture implementation, cancellation
+   * propagates both downstream and upstream. If this future or the returned future is cancelled,
+   * all futures in the chain will be cancelled.
+   */
+  public <U> CompletableFuture<U> thenApplyAsync(
+      Function<? super T, ? extends U> fn, Executor executor) {
+    Objects.requireNonNull(executor);
+    return this.addChainedFuture(
+        (CompletableFuture<U> future, T value) ->
+            executeOrFail(
+                future,
+                executor,
+                () -> {
+                  U output;
+                  try {
+                    output = fn.apply(value);
+                  } catch (Exception e) {
+                    future.completeExceptionally(e);
+                    return;
+                  }
+                  future.complete(output);
+                }),
+        (CompletableFuture<U> future, Throwable throwable) ->
+            executeOrFail(future, executor, () -> future.completeExceptionally(throwable)));
+  }
+
+  private static void executeOrFail(
+      CompletableFuture<?> future, Executor executor, Runnable task) {
+    try {
+      executor.execute(task);
+    } catch (RejectedExecutionException e) {
+      future.completeExceptionally(e);
+    }
+  }
+
   /**
    * Returns a future that will complete with the completion result of the future produced by
    * applying a function to this future's completion value.
@@ -313,9 +415,11 @@ public class CompletableFuture<T> implements Future<T> {
       BiConsumer<CompletableFuture<U>, T> complete,
       BiConsumer<CompletableFuture<U>, Throwable> completeExceptionally) {
     CompletableFuture<U> future = new CompletableFuture<>();
-    if (runtime.isPresent() && cancellationId.isPresent()) {
-      future.setCancellationId(cancellationId.get());
-      future.makeCancelable(runtime.get());
+    final TokioAsyncContext runtime = this.runtime;
+    final long cancellationId = this.cancellationId;
+    if (runtime != null && cancellationId != 0) {
+      future.setCancellationId(cancellationId);
+      future.makeCancelable(runtime);
     }
     ThenApplyCompleter<T> completer =
         new ThenApplyCompleter<T>(
@@ -325,34 +429,28 @@ public class CompletableFuture<T> implements Future<T> {
     return future;
   }
 
+  @SuppressWarnings("unchecked")
   private void addCompleter(ThenApplyCompleter<T> completer) {
-    T result;
-    Throwable exception;
-    synchronized (this) {
-      // This check is load bearing for thread safety.
-      //
-      // CompletableFuture's complete() and completeExceptionally() methods set
-      //   completed = true to indicate that the future is complete, the callbacks
-      //   have been or are currently being called, and that this.consumers should
-      //   no longer be modified. They do so in a synchronized block, so there is a
-      //   happens-before relationship in the Java Memory Model between this.completed
-      //   being set, and this.consumers being rendered invalid, which will protect us
-      //   since we are in a synchronized block synchronized on the same lock.
-      if (!this.completed) {
-        this.consumers.add(completer);
+    Object state;
+    do {
+      state = this.state;
+      if (isCompleted(state)) {
+        // If this future has already completed, perform the appropriate action now.
+        completer.fire(state);
         return;
       }
-      result = this.result;
-      exception = this.exception;
-    }
+      // Publishing the completer with the CAS below also publishes this write, so whichever thread
+      //   completes the future will see the rest of the stack.
+      completer.next = (ThenApplyCompleter<T>) state;
+    } while (!STATE.compareAndSet(this, state, completer));
+  }
 
-    // If this future has already completed, perform the appropriate action now.
-    // This is done outside of the synchronized block to prevent deadlocks and
-    // holding the lock for a potentially long period.
-    if (exception != null) {
-      completer.completeExceptionally.accept(exception);
-    } else {
-      completer.complete.accept(result);
+  /** A completed future's state, when it can't just be the result itself. */
+  private static final class Outcome {
+    private final Throwable exception;
+
+    private Outcome(Throwable exception) {
+      this.exception = exception;
     }
   }
 
@@ -363,7 +461,19 @@ public class CompletableFuture<T> implements Future<T> {
       this.completeExceptionally = completeExceptionally;
     }
 
-    private Consumer<? super T> complete;
-    private Consumer<Throwable> completeExceptionally;
+    private final Consumer<? super T> complete;
+    private final Consumer<Throwable> completeExceptionally;
+    private ThenApplyCompleter<T> next;
+
+    @SuppressWarnings("unchecked")
+    private void fire(Object outcome) {
+      if (!(outcome instanceof Outcome)) {
+        complete.accept((T) outcome);
+      } else if (((Outcome) outcome).exception != null) {
+        completeExceptionally.accept(((Outcome) outcome).exception);
+      } else {
+        complete.accept(null);
+      }
+    }
   }
 }
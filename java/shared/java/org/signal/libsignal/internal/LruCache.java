@@ -0,0 +1,74 @@
+//
+// Copyright 2026 Signal Messenger, LLC.
+// SPDX-License-Identifier: AGPL-3.0-only
+//
+
+package org.signal.libsignal.internal;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.function.Predicate;
+
+/**
+ * A map that holds at most a fixed number of entries, dropping the least recently used one to make
+ * room for a new one.
+ *
+ * <p>Both {@link #get} and {@link #put} count as uses. Evicted entries are simply forgotten; this
+ * is meant for caches in front of a store that already holds everything.
+ *
+ * <p>This class is not thread-safe.
+ */
+public final class LruCache<K, V> {
+  private final LinkedHashMap<K, V> entries;
+
+  /**
+   * @param capacity the maximum number of entries to hold
+   * @throws IllegalArgumentException if {@code capacity} is not positive
+   */
+  public LruCache(int capacity) {
+    if (capacity <= 0) {
+      throw new IllegalArgumentException("capacity must be positive");
+    }
+    this.entries =
+        new LinkedHashMap<>(16, 0.75f, /* accessOrder= */ true) {
+          @Override
+          protected boolean removeEldestEntry(Map.Entry<K, V> eldest) {
+            return size() > capacity;
+          }
+        };
+  }
+
+  /** Returns the value for {@code key}, or null if there isn't one, and marks it as used. */
+  public V get(K key) {
+    return entries.get(key);
+  }
+
+  /**
+   * Sets the value for {@code key}. If that adds an entry to a full cache, the least recently used
+   * entry is evicted.
+   */
+  public void put(K key, V value) {
+    entries.put(key, value);
+  }
+
+  public boolean containsKey(K key) {
+    return entries.containsKey(key);
+  }
+
+  public void remove(K key) {
+    entries.remove(key);
+  }
+
+  /** Removes every entry whose key matches {@code filter}. */
+  public void removeIf(Predicate<? super K> filter) {
+    entries.keySet().removeIf(filter);
+  }
+
+  public void clear() {
+    entries.clear();
+  }
+
+  public int size() {
+    return entries.size();
+  }
+}
@@ -29,9 +29,20 @@ import org.signal.libsignal.protocol.state.internal.SignedPreKeyStore
 import java.io.FileOutputStream
 import java.io.IOException
 import java.io.InputStream
+import java.net.URL
 import java.nio.ByteBuffer
+import java.nio.file.FileAlreadyExistsException
+import java.nio.file.FileSystems
 import java.nio.file.Files
+import java.nio.file.LinkOption
 import java.nio.file.Path
+import java.nio.file.Paths
+import java.nio.file.StandardCopyOption
+import java.nio.file.attribute.PosixFileAttributes
+import java.nio.file.attribute.PosixFilePermission
+import java.nio.file.attribute.PosixFilePermissions
+import java.security.DigestInputStream
+import java.security.MessageDigest
 import java.util.Map
 import java.util.UUID
 
@@ -44,44 +55,239 @@ private val tempDir: Path by lazy {
 }
 
 internal object Native {
+  private const val CACHE_DIR_PROPERTY = "org.signal.libsignal.nativeLibraryCacheDir"
+
   init {
-    loadNativeCode()
+    val startTime = System.nanoTime()
+    val loaded = loadNativeCode()
+    val loadedTime = System.nanoTime()
     initializeLibrary()
+    NativeLibraryStartup.record(
+      NativeLibraryStartup.Timings(
+        loaded.source,
+        loaded.path,
+        loaded.extractNanos,
+        loadedTime - startTime - loaded.extractNanos,
+        System.nanoTime() - loadedTime,
+      ),
+    )
   }
 
+  private class LoadedLibrary(
+    val source: NativeLibraryStartup.Source,
+    val path: String?,
+    val extractNanos: Long,
+  )
+
   @Throws(IOException::class)
-  private fun copyToTempDirAndLoad(
-    input: InputStream,
+  private fun copyToTempDir(
+    resource: URL,
     name: String,
-  ) {
+  ): Path {
     val tempFile = Files.createFile(tempDir.resolve(name)).toFile()
     tempFile.deleteOnExit()
 
-    FileOutputStream(tempFile).use { out ->
-      val buffer = ByteArray(4096)
+    resource.openStream().use { input ->
+      FileOutputStream(tempFile).use { out ->
+        val buffer = ByteArray(4096)
+
+        while (true) {
+          val read = input.read(buffer)
+          if (read == -1) break
+          out.write(buffer, 0, read)
+        }
+      }
+    }
+
+    return tempFile.toPath()
+  }
+
+  /**
+   * Returns the directory to cache extracted libraries in, or null if caching is disabled.
+   *
+   * Set the system property `org.signal.libsignal.nativeLibraryCacheDir` to choose the
+   * directory, or to an empty string to disable the cache.
+   */
+  private fun cacheDir(): Path? {
+    val configured = System.getProperty(CACHE_DIR_PROPERTY)
+    if (configured != null) {
+      return if (configured.isEmpty()) null else Paths.get(configured)
+    }
+    val user = System.getProperty("user.name", "").replace(Regex("[^A-Za-z0-9._-]"), "_")
+    return Paths.get(System.getProperty("java.io.tmpdir"), "libsignal-$user")
+  }
+
+  /**
+   * Creates [dir] if needed, and checks that nobody but the current user could have put a
+   * library there.
+   */
+  @Throws(IOException::class)
+  private fun prepareCacheDir(dir: Path) {
+    if (!FileSystems.getDefault().supportedFileAttributeViews().contains("posix")) {
+      // On Windows, the default temporary directory is already per-user.
+      Files.createDirectories(dir)
+      return
+    }
+    if (!Files.isDirectory(dir, LinkOption.NOFOLLOW_LINKS)) {
+      try {
+        Files.createDirectories(
+          dir,
+          PosixFilePermissions.asFileAttribute(PosixFilePermissions.fromString("rwx------")),
+        )
+      } catch (_: FileAlreadyExistsException) {
+        // Someone else created it first; check it below.
+      }
+    }
+    val attributes =
+      Files.readAttributes(dir, PosixFileAttributes::class.java, LinkOption.NOFOLLOW_LINKS)
+    val permissions = attributes.permissions()
+    if (!attributes.isDirectory ||
+      PosixFilePermission.GROUP_WRITE in permissions ||
+      PosixFilePermission.OTHERS_WRITE in permissions ||
+      attributes.owner().name != System.getProperty("user.name")
+    ) {
+      throw IOException("refusing to use $dir as a native library cache")
+    }
+  }
+
+  @Throws(IOException::class)
+  private fun sha256(input: InputStream): String {
+    val digest = MessageDigest.getInstance("SHA-256")
+    val buffer = ByteArray(64 * 1024)
+    while (true) {
+      val read = input.read(buffer)
+      if (read == -1) break
+      digest.update(buffer, 0, read)
+    }
+    return digest.digest().joinToString("") { "%02x".format(it) }
+  }
+
+  @Throws(IOException::class)
+  private fun sha256(file: Path): String =
+    Files.newInputStream(file, LinkOption.NOFOLLOW_LINKS).use { sha256(it) }
+
+  /**
+   * Returns the SHA-256 of the library in [resource], as recorded at build time in the
+   * `<library>.sha256` resource next to it.
+   *
+   * Builds that don't have one (e.g. libraries copied in by hand) fall back to hashing the
+   * library itself.
+   */
+  @Throws(IOException::class)
+  private fun expectedDigest(
+    resource: URL,
+    libraryName: String,
+  ): String {
+    val recorded =
+      Native::class.java.getResourceAsStream("/$libraryName.sha256")
+        ?: return resource.openStream().use { sha256(it) }
+    val digest = recorded.use { it.readBytes() }.toString(Charsets.US_ASCII).trim().lowercase()
+    if (!Regex("[0-9a-f]{64}").matches(digest)) {
+      throw IOException("malformed digest recorded for $libraryName")
+    }
+    return digest
+  }
+
+  /**
+   * Returns a cached copy of the library in [resource], extracting it into the cache first if
+   * necessary, along with whether it was already there.
+   *
+   * Cached files are named after the library's SHA-256, so different versions of the library can
+   * share a cache directory. Files for other versions are left alone, since another process may
+   * still be using them. Before a cached file is used, its contents are hashed and checked against
+   * the expected digest; a file that doesn't match is replaced. New copies are written under a
+   * temporary name, checked, and atomically renamed into place.
+   */
+  @Throws(IOException::class)
+  private fun findOrExtractCached(
+    resource: URL,
+    libraryName: String,
+  ): Pair<Path, Boolean>? {
+    val dir = cacheDir() ?: return null
+    prepareCacheDir(dir)
+
+    val expected = expectedDigest(resource, libraryName)
+    val cached = dir.resolve("${expected.take(32)}-$libraryName")
+
+    if (Files.isRegularFile(cached, LinkOption.NOFOLLOW_LINKS) && sha256(cached) == expected) {
+      return Pair(cached, true)
+    }
 
-      while (true) {
-        val read = input.read(buffer)
-        if (read == -1) break
-        out.write(buffer, 0, read)
+    val partial = Files.createTempFile(dir, libraryName, ".tmp")
+    try {
+      val digest = MessageDigest.getInstance("SHA-256")
+      DigestInputStream(resource.openStream(), digest).use { input ->
+        Files.copy(input, partial, StandardCopyOption.REPLACE_EXISTING)
+      }
+      if (digest.digest().joinToString("") { "%02x".format(it) } != expected) {
+        throw IOException("$libraryName does not match its recorded digest")
+      }
+      try {
+        Files.move(partial, cached, StandardCopyOption.ATOMIC_MOVE)
+      } catch (e: IOException) {
+        // Windows won't replace a library another process has loaded; that one is fine to use
+        // as long as it's intact.
+        if (!Files.isRegularFile(cached, LinkOption.NOFOLLOW_LINKS) || sha256(cached) != expected) {
+          throw e
+        }
       }
+    } finally {
+      Files.deleteIfExists(partial)
     }
 
-    System.load(tempFile.absolutePath)
+    return Pair(cached, false)
+  }
+
+  /**
+   * Loads the library in [resource], from the extraction cache if possible, and otherwise by
+   * copying it to a new temporary file.
+   */
+  @Throws(IOException::class)
+  private fun extractAndLoad(
+    resource: URL,
+    libraryName: String,
+  ): LoadedLibrary {
+    val startTime = System.nanoTime()
+    val cached =
+      try {
+        findOrExtractCached(resource, libraryName)
+      } catch (_: IOException) {
+        null
+      }
+    if (cached != null) {
+      val (path, wasCached) = cached
+      val extractNanos = System.nanoTime() - startTime
+      try {
+        System.load(path.toString())
+        val source =
+          if (wasCached) NativeLibraryStartup.Source.CACHE else NativeLibraryStartup.Source.EXTRACTED
+        return LoadedLibrary(source, path.toString(), extractNanos)
+      } catch (_: UnsatisfiedLinkError) {
+        // Fall back to a private copy below, in case the cached file is somehow damaged.
+      }
+    }
+
+    val tempFile = copyToTempDir(resource, libraryName)
+    val extractNanos = System.nanoTime() - startTime
+    System.load(tempFile.toString())
+    return LoadedLibrary(NativeLibraryStartup.Source.TEMPORARY, tempFile.toString(), extractNanos)
   }
 
   /**
    * If the library is embedded within this jar as a resource file, attempt to
-   * copy it to a temporary file and then load it. This allows the jar to be
+   * extract it to the filesystem and then load it. This allows the jar to be
    * used even without a shared library existing on the filesystem.
    *
+   * Extracted libraries are cached across runs (see [findOrExtractCached]), so only the
+   * first start after an upgrade pays for writing the file.
+   *
    * If a version of the library that includes this system's hardware architecture in its name is
    * present, prefer that to the supplied name (e.g. "libsignal_amd64.so" will be preferred to
    * "libsignal.so"). This applies only to libraries embedded as a resource, not libraries
    * installed on the local machine.
    */
   @Throws(IOException::class)
-  private fun loadLibrary(name: String) {
+  private fun loadLibrary(name: String): LoadedLibrary {
     var arch = System.getProperty("os.arch")
     // Special-case: some Java implementations use "x86_64", but OpenJDK uses "amd64".
     if ("x86_64" == arch) {
@@ -89,31 +295,29 @@ internal object Native {
     }
     for (suffix in arrayOf("_$arch", "")) {
       val libraryName = System.mapLibraryName(name + suffix)
-      Native::class.java.getResourceAsStream("/$libraryName").use { input ->
-        if (input != null) {
-          copyToTempDirAndLoad(input, libraryName)
-          return
-        }
+      val resource = Native::class.java.getResource("/$libraryName")
+      if (resource != null) {
+        return extractAndLoad(resource, libraryName)
       }
     }
     System.loadLibrary(name)
+    return LoadedLibrary(NativeLibraryStartup.Source.SYSTEM, null, 0)
   }
 
-  private fun loadNativeCode() {
+  private fun loadNativeCode(): LoadedLibrary {
     try {
       // First try to load the testing library. This will only succeed when
       // libsignal is being used in a test context. The testing library
       // contains a superset of the functionality of the non-test library, so if
       // it gets loaded successfully, we're done.
-      loadLibrary("signal_jni_testing")
-      return
+      return loadLibrary("signal_jni_testing")
     } catch (_: Throwable) {
       // The testing library wasn't available. This is expected for production
       // builds, so no error handling is needed. We'll try to load the non-test
       // library next.
     }
     try {
-      loadLibrary("signal_jni")
+      return loadLibrary("signal_jni")
     } catch (e: Exception) {
       throw RuntimeException(e)
     }
@@ -172,6 +376,14 @@ internal object Native {
     length: Int,
   ): Unit
 
+  @JvmStatic
+  public external fun Aes256Ctr32_ProcessDirect(
+    ctr: ObjectHandle,
+    data: ByteBuffer,
+    offset: Int,
+    length: Int,
+  ): Unit
+
   @JvmStatic
   public external fun Aes256GcmDecryption_Destroy(handle: ObjectHandle): Unit
 
@@ -191,6 +403,14 @@ internal object Native {
     length: Int,
   ): Unit
 
+  @JvmStatic
+  public external fun Aes256GcmDecryption_UpdateDirect(
+    gcm: ObjectHandle,
+    data: ByteBuffer,
+    offset: Int,
+    length: Int,
+  ): Unit
+
   @JvmStatic
   @Throws(Exception::class)
   public external fun Aes256GcmDecryption_VerifyTag(
@@ -220,6 +440,14 @@ internal object Native {
     length: Int,
   ): Unit
 
+  @JvmStatic
+  public external fun Aes256GcmEncryption_UpdateDirect(
+    gcm: ObjectHandle,
+    data: ByteBuffer,
+    offset: Int,
+    length: Int,
+  ): Unit
+
   @JvmStatic
   @Throws(Exception::class)
   public external fun Aes256GcmSiv_Decrypt(
@@ -948,6 +1176,14 @@ internal object Native {
     input: ByteArray,
   ): Unit
 
+  @JvmStatic
+  public external fun CryptographicHash_UpdateDirect(
+    hash: ObjectHandle,
+    input: ByteBuffer,
+    offset: Int,
+    len: Int,
+  ): Unit
+
   @JvmStatic
   public external fun CryptographicHash_UpdateWithOffset(
     hash: ObjectHandle,
@@ -975,6 +1211,14 @@ internal object Native {
     input: ByteArray,
   ): Unit
 
+  @JvmStatic
+  public external fun CryptographicMac_UpdateDirect(
+    mac: ObjectHandle,
+    input: ByteBuffer,
+    offset: Int,
+    len: Int,
+  ): Unit
+
   @JvmStatic
   public external fun CryptographicMac_UpdateWithOffset(
     mac: ObjectHandle,
@@ -3019,6 +3263,15 @@ internal object Native {
   @JvmStatic
   public external fun TokioAsyncContext_Destroy(handle: ObjectHandle): Unit
 
+  @JvmStatic
+  public external fun TokioAsyncContext_Metrics(context: ObjectHandle): LongArray
+
+  @JvmStatic
+  public external fun TokioAsyncContext_NewWithOptions(
+    workerThreads: Int,
+    threadName: String?,
+  ): ObjectHandle
+
   @JvmStatic
   public external fun TokioAsyncContext_cancel(
     context: ObjectHandle,
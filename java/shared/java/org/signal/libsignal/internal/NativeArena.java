@@ -0,0 +1,184 @@
+//
+// Copyright 2026 Signal Messenger, LLC.
+// SPDX-License-Identifier: AGPL-3.0-only
+//
+
+package org.signal.libsignal.internal;
+
+import java.util.ArrayList;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * A scope that deterministically releases every Rust object wrapped on the current thread while it
+ * is open.
+ *
+ * <p>Intended for use with try-with-resources syntax:
+ *
+ * <pre>
+ * try (NativeArena arena = NativeArena.open()) {
+ *   SessionRecord record = new SessionRecord(serialized);
+ *   // ...
+ *   return arena.retain(record.getRemoteIdentityKey());
+ * }
+ * </pre>
+ *
+ * <p>Every {@link NativeHandleGuard.SimpleOwner} constructed on the opening thread before the arena
+ * is closed (including wrappers created by Rust for return values) is released when the arena
+ * closes, in reverse order of creation, instead of waiting for the garbage collector. Wrappers that
+ * need to outlive the scope must be passed to {@link #retain}; using any other wrapper after the
+ * arena has closed throws {@link NullPointerException} rather than touching freed memory.
+ *
+ * <p>Wrappers that libsignal creates to pass to a store (such as the {@code SessionRecord} given
+ * to {@code SessionStore.storeSession}) are not tracked, and neither is anything the store creates
+ * while handling the call, since stores commonly keep those objects. See {@link #suspend}.
+ *
+ * <p>Arenas nest. An arena must be closed on the thread that opened it, and inner arenas must be
+ * closed before outer ones.
+ */
+public final class NativeArena implements AutoCloseable {
+  private static final ThreadLocal<NativeArena> current = new ThreadLocal<>();
+
+  // Lets SimpleOwner skip the ThreadLocal lookup entirely when no arena is open anywhere.
+  private static final AtomicInteger openCount = new AtomicInteger();
+
+  private final NativeArena parent;
+  private final Thread thread;
+  private final ArrayList<NativeHandleGuard.SimpleOwner> owners = new ArrayList<>();
+  private boolean closed = false;
+
+  private NativeArena(NativeArena parent) {
+    this.parent = parent;
+    this.thread = Thread.currentThread();
+  }
+
+  /** Opens a new arena on the current thread, nested inside any arena that is already open. */
+  public static NativeArena open() {
+    final NativeArena arena = new NativeArena(current.get());
+    current.set(arena);
+    openCount.incrementAndGet();
+    return arena;
+  }
+
+  /**
+   * Stops tracking wrappers created on the current thread until the result is closed.
+   *
+   * <p>Used around calls from Rust into Java stores, whose arguments and results may be kept by
+   * the store long after any arena that happens to be open around the operation is closed. Arenas
+   * opened while tracking is suspended work as usual.
+   */
+  public static Suspension suspend() {
+    if (openCount.get() == 0) {
+      return Suspension.NONE;
+    }
+    final NativeArena arena = current.get();
+    if (arena == null) {
+      return Suspension.NONE;
+    }
+    current.remove();
+    return new Suspension(arena);
+  }
+
+  /** Resumes tracking in the arena that was current when {@link #suspend} was called. */
+  public static final class Suspension implements AutoCloseable {
+    private static final Suspension NONE = new Suspension(null);
+
+    private final NativeArena arena;
+
+    private Suspension(NativeArena arena) {
+      this.arena = arena;
+    }
+
+    @Override
+    public void close() {
+      if (arena != null) {
+        current.set(arena);
+      }
+    }
+  }
+
+  static void track(NativeHandleGuard.SimpleOwner owner) {
+    if (openCount.get() == 0) {
+      return;
+    }
+    final NativeArena arena = current.get();
+    if (arena != null) {
+      arena.owners.add(owner);
+    }
+  }
+
+  /**
+   * Removes {@code owner} from every arena open on the current thread, for objects that must live
+   * for the rest of the process no matter where they happen to be created.
+   */
+  static void untrack(NativeHandleGuard.SimpleOwner owner) {
+    if (openCount.get() == 0) {
+      return;
+    }
+    for (NativeArena arena = current.get(); arena != null; arena = arena.parent) {
+      for (int i = arena.owners.size() - 1; i >= 0; --i) {
+        if (arena.owners.get(i) == owner) {
+          arena.owners.remove(i);
+          return;
+        }
+      }
+    }
+  }
+
+  /**
+   * Removes {@code owner} from this arena, leaving it to be released by the garbage collector (or
+   * an enclosing arena) as if it had been created outside this scope.
+   *
+   * <p>This is a linear scan over the arena's objects, so prefer retaining a handful of results
+   * rather than most of what the scope creates.
+   *
+   * @return {@code owner}, for convenience
+   */
+  public <T extends NativeHandleGuard.SimpleOwner> T retain(T owner) {
+    checkThread();
+    for (int i = owners.size() - 1; i >= 0; --i) {
+      if (owners.get(i) == owner) {
+        owners.remove(i);
+        if (parent != null) {
+          parent.owners.add(owner);
+        }
+        break;
+      }
+    }
+    return owner;
+  }
+
+  /** Returns the number of wrappers that will be released when this arena is closed. */
+  public int size() {
+    return owners.size();
+  }
+
+  @Override
+  public void close() {
+    checkThread();
+    if (closed) {
+      return;
+    }
+    if (current.get() != this) {
+      throw new IllegalStateException(
+          "NativeArenas must be closed in the reverse order of opening");
+    }
+    closed = true;
+    if (parent != null) {
+      current.set(parent);
+    } else {
+      current.remove();
+    }
+    openCount.decrementAndGet();
+
+    for (int i = owners.size() - 1; i >= 0; --i) {
+      owners.get(i).releaseNow();
+    }
+    owners.clear();
+  }
+
+  private void checkThread() {
+    if (Thread.currentThread() != thread) {
+      throw new IllegalStateException("NativeArena used from a thread other than its owner");
+    }
+  }
+}
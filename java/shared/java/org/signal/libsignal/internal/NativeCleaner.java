@@ -0,0 +1,92 @@
+//
+// Copyright 2026 Signal Messenger, LLC.
+// SPDX-License-Identifier: AGPL-3.0-only
+//
+
+package org.signal.libsignal.internal;
+
+import java.lang.ref.PhantomReference;
+import java.lang.ref.ReferenceQueue;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.LongConsumer;
+import org.signal.libsignal.protocol.logging.Log;
+
+/**
+ * Releases Rust objects once their Java wrappers become phantom-reachable.
+ *
+ * <p>This is a minimal equivalent of {@code java.lang.ref.Cleaner}, which isn't available on all
+ * the Android versions we support. Unlike finalization, a phantom-reachable wrapper can't be
+ * resurrected, so it's collected in a single GC cycle and never promoted just to run cleanup.
+ *
+ * <p>Cleanup actions must not refer to the object being tracked, or it will never become
+ * phantom-reachable. In practice that means passing a static {@code Native::Foo_Destroy} method
+ * reference as the release function.
+ */
+final class NativeCleaner {
+  private static final ReferenceQueue<Object> queue = new ReferenceQueue<>();
+
+  // Keeps the registered PhantomReferences themselves reachable until they've been cleaned.
+  private static final Set<Cleanable> live = ConcurrentHashMap.newKeySet();
+
+  static {
+    final Thread thread = new Thread(NativeCleaner::processQueue, "libsignal-cleaner");
+    thread.setDaemon(true);
+    // Match the finalizer thread, so that switching away from finalize() doesn't starve cleanup.
+    thread.setPriority(Thread.MAX_PRIORITY - 2);
+    thread.start();
+  }
+
+  private NativeCleaner() {}
+
+  static Cleanable register(
+      Object owner, long nativeHandle, LongConsumer release, NativeHandleStats.Counter counter) {
+    final Cleanable cleanable = new Cleanable(owner, nativeHandle, release, counter);
+    live.add(cleanable);
+    return cleanable;
+  }
+
+  private static void processQueue() {
+    while (true) {
+      try {
+        ((Cleanable) queue.remove()).clean(false);
+      } catch (InterruptedException e) {
+        // Keep going; this thread lives as long as the process does.
+      } catch (Throwable t) {
+        Log.e("libsignal", "failed to release native handle", t);
+      }
+    }
+  }
+
+  static final class Cleanable extends PhantomReference<Object> {
+    private final long nativeHandle;
+    private final LongConsumer release;
+    private final NativeHandleStats.Counter counter;
+
+    private Cleanable(
+        Object owner, long nativeHandle, LongConsumer release, NativeHandleStats.Counter counter) {
+      super(owner, queue);
+      this.nativeHandle = nativeHandle;
+      this.release = release;
+      this.counter = counter;
+    }
+
+    /**
+     * Releases the native handle, unless it has already been released.
+     *
+     * <p>Safe to call from any thread, any number of times; the release function runs at most once.
+     *
+     * @param explicitly {@code false} if the owner was found to be unreachable, {@code true}
+     *     otherwise
+     */
+    void clean(boolean explicitly) {
+      if (live.remove(this)) {
+        clear();
+        release.accept(nativeHandle);
+        if (counter != null) {
+          counter.recordRelease(explicitly);
+        }
+      }
+    }
+  }
+}
@@ -7,18 +7,18 @@ package org.signal.libsignal.internal;
 
 import java.util.function.LongConsumer;
 import java.util.function.LongFunction;
+import java.util.function.LongSupplier;
 
 /**
  * Provides access to a Rust object handle while keeping the Java wrapper alive.
  *
  * <p>Intended for use with try-with-resources syntax. NativeHandleGuard prevents the Java wrapper
- * from being finalized, which would destroy the Rust object, while the handle is in use. To use it,
+ * from being collected, which would destroy the Rust object, while the handle is in use. To use it,
  * the Java wrapper type should conform to the {@link NativeHandleGuard.Owner} interface.
  *
- * <p>Note that it is not necessary to use NativeHandleGuard in the implementation of {@code
- * finalize} itself. The point of NativeHandleGuard is to delay finalization while the Rust object
- * is being used; once finalization has begun, there can be no other uses of the Rust object from
- * Java.
+ * <p>Note that it is not necessary to use NativeHandleGuard when releasing the handle. The point of
+ * NativeHandleGuard is to delay cleanup while the Rust object is being used; once cleanup has
+ * begun, there can be no other uses of the Rust object from Java.
  */
 public class NativeHandleGuard implements AutoCloseable {
   /**
@@ -58,14 +58,109 @@ public class NativeHandleGuard implements AutoCloseable {
     }
   }
 
+  /**
+   * Owns a Rust object handle and releases it when the Java wrapper is no longer reachable.
+   *
+   * <p>Subclasses should pass a release function to {@link #SimpleOwner(long, LongConsumer)},
+   * usually a {@code Native::Foo_Destroy} method reference. The handle is then released from a
+   * background thread once the wrapper becomes phantom-reachable, without the cost of finalization.
+   * Subclasses that instead override {@link #release} are released via finalization.
+   *
+   * <p>Either way, the handle is released early if the wrapper is created inside a {@link
+   * NativeArena} that is then closed.
+   *
+   * <p>Wrappers that can answer most questions without Rust can instead use {@link
+   * #SimpleOwner()} and create their Rust object on demand with {@link #installHandle}.
+   */
   public abstract static class SimpleOwner implements Owner {
-    @CalledFromNative private final long nativeHandle;
+    // Not final so that explicit release can zero it out; Rust treats a zero handle as null.
+    // Volatile because it is read without the lock, and lazily installed handles are published
+    // after construction.
+    @CalledFromNative private volatile long nativeHandle;
+    // Only changes for wrappers that install their handle lazily, and then only under this lock.
+    private NativeCleaner.Cleanable cleanable;
+
+    private final FinalizerGuardian finalizerGuardian;
+
+    /**
+     * Creates a wrapper whose handle will be released by the given function.
+     *
+     * <p>{@code release} must not capture this object (or anything that refers to it), or the
+     * object will never be collected.
+     */
+    protected SimpleOwner(final long nativeHandle, final LongConsumer release) {
+      this.nativeHandle = nativeHandle;
+      this.cleanable =
+          nativeHandle != 0
+              ? NativeCleaner.register(
+                  this, nativeHandle, release, NativeHandleStats.recordAllocation(getClass()))
+              : null;
+      this.finalizerGuardian = null;
+      NativeArena.track(this);
+    }
 
+    /**
+     * Creates a wrapper whose handle will be released by {@link #release} during finalization.
+     *
+     * <p>Prefer {@link #SimpleOwner(long, LongConsumer)}, which avoids the finalizer queue.
+     */
     protected SimpleOwner(final long nativeHandle) {
       this.nativeHandle = nativeHandle;
+      this.cleanable = null;
+      this.finalizerGuardian =
+          new FinalizerGuardian(
+              nativeHandle != 0 ? NativeHandleStats.recordAllocation(getClass()) : null);
+      NativeArena.track(this);
     }
 
-    protected abstract void release(long nativeHandle);
+    /**
+     * Creates a wrapper with no Rust object yet.
+     *
+     * <p>The subclass must call {@link #installHandle} before the handle is first used, typically
+     * from an override of {@link #unsafeNativeHandleWithoutGuard}.
+     */
+    protected SimpleOwner() {
+      this.nativeHandle = 0;
+      this.cleanable = null;
+      this.finalizerGuardian = null;
+    }
+
+    /**
+     * Returns this wrapper's handle, first creating it with {@code create} if there isn't one.
+     *
+     * <p>For wrappers constructed with {@link #SimpleOwner()}. The new handle will be released by
+     * {@code release}, as with {@link #SimpleOwner(long, LongConsumer)}, once the wrapper is
+     * collected.
+     *
+     * <p>Unlike handles passed to a constructor, an installed handle never belongs to a {@link
+     * NativeArena}: the wrapper may have been created and shared long before the thread that
+     * happens to use it first opened its arena, so closing that arena must not free it.
+     */
+    protected final synchronized long installHandle(
+        final LongSupplier create, final LongConsumer release) {
+      if (nativeHandle != 0) {
+        return nativeHandle;
+      }
+      final long handle = create.getAsLong();
+      if (handle != 0) {
+        this.cleanable =
+            NativeCleaner.register(
+                this, handle, release, NativeHandleStats.recordAllocation(getClass()));
+        this.nativeHandle = handle;
+      }
+      return handle;
+    }
+
+    /**
+     * Releases the Rust object.
+     *
+     * <p>Subclasses using {@link #SimpleOwner(long)} must override this. It is not called for
+     * wrappers that were created with a release function.
+     */
+    protected void release(long nativeHandle) {
+      throw new UnsupportedOperationException(
+          getClass().getName() + " must either provide a release function or override release()");
+    }
 
     protected static final long throwIfNull(long handle) {
       if (handle == 0L) {
@@ -80,39 +175,67 @@ public class NativeHandleGuard implements AutoCloseable {
       return nativeHandle;
     }
 
-    @Override
-    @SuppressWarnings("deprecation")
-    protected void finalize() {
-      release(this.nativeHandle);
+    /**
+     * Releases the Rust object now, rather than waiting for the wrapper to be collected.
+     *
+     * <p>Releases at most once. Afterwards the wrapper holds a null handle.
+     */
+    final void releaseNow() {
+      releaseNow(true);
+    }
+
+    private void releaseNow(boolean explicitly) {
+      final long handle;
+      final NativeCleaner.Cleanable cleanable;
+      // Synchronized to eliminate the race between explicit release and the finalizer guardian.
+      synchronized (this) {
+        handle = this.nativeHandle;
+        if (handle == 0) {
+          return;
+        }
+        this.nativeHandle = 0;
+        cleanable = this.cleanable;
+      }
+      if (cleanable != null) {
+        cleanable.clean(explicitly);
+      } else {
+        release(handle);
+        if (finalizerGuardian.counter != null) {
+          finalizerGuardian.counter.recordRelease(explicitly);
+        }
+      }
+    }
+
+    // A separate finalizable object, so that wrappers using the other constructor don't pay for
+    // finalization just because this class once had a finalize() method.
+    private final class FinalizerGuardian {
+      private final NativeHandleStats.Counter counter;
+
+      private FinalizerGuardian(NativeHandleStats.Counter counter) {
+        this.counter = counter;
+      }
+
+      @Override
+      @SuppressWarnings("deprecation")
+      protected void finalize() {
+        releaseNow(false);
+      }
     }
   }
 
-  // A note on synchronization.
-  //
-  // close is synchronized to eliminate the race between it and finalize.
-  //
-  // All in the name of calling release exactly once.
+  /** A {@link SimpleOwner} whose handle can also be released explicitly with {@link #close}. */
   public abstract static class CloseableOwner extends SimpleOwner implements AutoCloseable {
-    private boolean isClosed = false;
+    protected CloseableOwner(long nativeHandle, LongConsumer release) {
+      super(nativeHandle, release);
+    }
 
     protected CloseableOwner(long nativeHandle) {
       super(nativeHandle);
     }
 
     @Override
-    public synchronized void close() {
-      if (isClosed) {
-        return;
-      }
-      this.isClosed = true;
-      this.release(this.unsafeNativeHandleWithoutGuard());
-    }
-
-    @Override
-    @SuppressWarnings("deprecation")
-    protected void finalize() {
-      close();
-      // Not calling super.finalize() is fine, because close already does the same thing.
+    public void close() {
+      releaseNow();
     }
   }
 
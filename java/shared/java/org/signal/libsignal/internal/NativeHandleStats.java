@@ -0,0 +1,133 @@
+//
+// Copyright 2026 Signal Messenger, LLC.
+// SPDX-License-Identifier: AGPL-3.0-only
+//
+
+package org.signal.libsignal.internal;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Opt-in accounting of live Rust objects, broken down by Java wrapper type.
+ *
+ * <p>Tracking is off by default. Enable it with {@link #setEnabled} or by starting the JVM with
+ * {@code -Dorg.signal.libsignal.trackNativeHandles=true}. While disabled, the only cost is a single
+ * volatile read whenever a wrapper is created.
+ *
+ * <p>Only wrappers created while tracking is enabled are counted, and their releases are counted
+ * even if tracking is disabled in the meantime, so {@link Snapshot#live} never goes negative. A
+ * wrapper released by the garbage collector rather than by {@code close()} or a {@link NativeArena}
+ * is counted in {@link Snapshot#releasedByCollector}; for closeable types, that usually indicates a
+ * missing {@code close()}.
+ *
+ * <p>The size of the Rust objects isn't tracked; the bridge doesn't expose it.
+ */
+public final class NativeHandleStats {
+  private static volatile boolean enabled =
+      Boolean.getBoolean("org.signal.libsignal.trackNativeHandles");
+
+  private static final ConcurrentHashMap<Class<?>, Counter> counters = new ConcurrentHashMap<>();
+
+  private NativeHandleStats() {}
+
+  public static boolean isEnabled() {
+    return enabled;
+  }
+
+  public static void setEnabled(boolean enabled) {
+    NativeHandleStats.enabled = enabled;
+  }
+
+  /**
+   * Counts for a single wrapper type.
+   *
+   * @param type the fully-qualified name of the wrapper class
+   * @param allocated the number of wrappers created while tracking was enabled
+   * @param releasedExplicitly how many of those were released by {@code close()} or an arena
+   * @param releasedByCollector how many of those were released after becoming unreachable
+   * @param peakLive the largest number of those that were alive at once
+   */
+  public record Snapshot(
+      String type,
+      long allocated,
+      long releasedExplicitly,
+      long releasedByCollector,
+      long peakLive) {
+    /** The number of tracked wrappers whose Rust objects have not been released yet. */
+    public long live() {
+      return allocated - releasedExplicitly - releasedByCollector;
+    }
+  }
+
+  /** Returns the current counts for every wrapper type seen since tracking was first enabled. */
+  public static List<Snapshot> snapshot() {
+    final List<Snapshot> result = new ArrayList<>(counters.size());
+    for (Counter counter : counters.values()) {
+      result.add(counter.snapshot());
+    }
+    return result;
+  }
+
+  /** Returns the current counts for {@code type}, or {@code null} if none have been recorded. */
+  public static Snapshot snapshot(Class<? extends NativeHandleGuard.Owner> type) {
+    final Counter counter = counters.get(type);
+    return counter != null ? counter.snapshot() : null;
+  }
+
+  /** Records a new wrapper, returning the counter to report its release to (if tracking). */
+  static Counter recordAllocation(Class<?> type) {
+    if (!enabled) {
+      return null;
+    }
+    Counter counter = counters.get(type);
+    if (counter == null) {
+      counter = counters.computeIfAbsent(type, Counter::new);
+    }
+    counter.recordAllocation();
+    return counter;
+  }
+
+  static final class Counter {
+    private final Class<?> type;
+    private final AtomicLong allocated = new AtomicLong();
+    private final AtomicLong releasedExplicitly = new AtomicLong();
+    private final AtomicLong releasedByCollector = new AtomicLong();
+    private final AtomicLong peakLive = new AtomicLong();
+
+    private Counter(Class<?> type) {
+      this.type = type;
+    }
+
+    private void recordAllocation() {
+      final long live =
+          allocated.incrementAndGet() - releasedExplicitly.get() - releasedByCollector.get();
+      long peak = peakLive.get();
+      while (live > peak && !peakLive.compareAndSet(peak, live)) {
+        peak = peakLive.get();
+      }
+    }
+
+    void recordRelease(boolean explicitly) {
+      if (explicitly) {
+        releasedExplicitly.incrementAndGet();
+      } else {
+        releasedByCollector.incrementAndGet();
+      }
+    }
+
+    private Snapshot snapshot() {
+      // Read the releases first, so a concurrent allocation can't make live() negative.
+      final long releasedExplicitly = this.releasedExplicitly.get();
+      final long releasedByCollector = this.releasedByCollector.get();
+      return new Snapshot(
+          type.getName(),
+          allocated.get(),
+          releasedExplicitly,
+          releasedByCollector,
+          peakLive.get());
+    }
+  }
+}
@@ -0,0 +1,54 @@
+//
+// Copyright 2026 Signal Messenger, LLC.
+// SPDX-License-Identifier: AGPL-3.0-only
+//
+
+package org.signal.libsignal.internal;
+
+/**
+ * Reports where the native library was loaded from, and how long that took.
+ *
+ * <p>Libraries embedded in the jar are extracted to a cache directory, named after a hash of their
+ * contents, and reused by later runs. The directory defaults to {@code libsignal-<user>} in {@code
+ * java.io.tmpdir}; set the system property {@code org.signal.libsignal.nativeLibraryCacheDir} to
+ * use a different one, or to an empty string to extract to a fresh temporary directory every time.
+ */
+public final class NativeLibraryStartup {
+  private static volatile Timings timings = null;
+
+  private NativeLibraryStartup() {}
+
+  public enum Source {
+    /** Found on {@code java.library.path}, rather than embedded in the jar. */
+    SYSTEM,
+    /** Extracted from the jar by an earlier run. */
+    CACHE,
+    /** Extracted from the jar into the cache by this run. */
+    EXTRACTED,
+    /** Extracted from the jar into a temporary directory, because the cache was unavailable. */
+    TEMPORARY,
+  }
+
+  /**
+   * @param source where the library was loaded from
+   * @param path the file that was loaded, or {@code null} for {@link Source#SYSTEM}
+   * @param extractNanos time spent hashing and extracting the library from the jar
+   * @param loadNanos time spent in {@code System.load} or {@code System.loadLibrary}
+   * @param initializeNanos time spent initializing the library once loaded
+   */
+  public record Timings(
+      Source source, String path, long extractNanos, long loadNanos, long initializeNanos) {
+    public long totalNanos() {
+      return extractNanos + loadNanos + initializeNanos;
+    }
+  }
+
+  /** Returns how the native library was loaded, or {@code null} if it hasn't been loaded yet. */
+  public static Timings timings() {
+    return timings;
+  }
+
+  static void record(Timings timings) {
+    NativeLibraryStartup.timings = timings;
+  }
+}
@@ -5,23 +5,109 @@
 
 package org.signal.libsignal.internal;
 
+/**
+ * A Rust async runtime, with its own pool of worker threads.
+ *
+ * <p>Each runtime costs a thread per CPU by default, so processes that create many {@code Network}
+ * instances should have them share one, either {@link #shared()} or one made with a {@link
+ * Builder}.
+ */
 public class TokioAsyncContext extends NativeHandleGuard.SimpleOwner {
+  private static final class SharedHolder {
+    static final TokioAsyncContext INSTANCE = createShared();
+
+    private static TokioAsyncContext createShared() {
+      final TokioAsyncContext context =
+          new TokioAsyncContext(Native.TokioAsyncContext_NewWithOptions(0, null));
+      // Whichever thread happens to get here first, the shared runtime must outlive its arenas.
+      NativeArena.untrack(context);
+      return context;
+    }
+  }
+
   public TokioAsyncContext() {
-    super(Native.TokioAsyncContext_new());
+    super(Native.TokioAsyncContext_new(), Native::TokioAsyncContext_Destroy);
   }
 
   // For testing
   TokioAsyncContext(long rawHandle) {
-    super(rawHandle);
+    super(rawHandle, Native::TokioAsyncContext_Destroy);
+  }
+
+  /**
+   * Returns a runtime shared by the whole process, with the default configuration.
+   *
+   * <p>The runtime is created on first use and is never shut down.
+   */
+  public static TokioAsyncContext shared() {
+    return SharedHolder.INSTANCE;
+  }
+
+  /** Configures a new {@link TokioAsyncContext}. */
+  public static final class Builder {
+    private int workerThreads = 0;
+    private String threadName = null;
+
+    /**
+     * Sets the number of worker threads for async tasks.
+     *
+     * <p>Defaults to one per CPU. This doesn't include the threads used to deliver results to Java,
+     * which are started on demand.
+     *
+     * @throws IllegalArgumentException if {@code workerThreads} is not positive
+     */
+    public Builder workerThreads(int workerThreads) {
+      if (workerThreads <= 0) {
+        throw new IllegalArgumentException("workerThreads must be positive");
+      }
+      this.workerThreads = workerThreads;
+      return this;
+    }
+
+    /** Sets the name given to the runtime's threads. Defaults to {@code libsignal-tokio-worker}. */
+    public Builder threadName(String threadName) {
+      this.threadName = threadName;
+      return this;
+    }
+
+    public TokioAsyncContext build() {
+      return new TokioAsyncContext(
+          Native.TokioAsyncContext_NewWithOptions(workerThreads, threadName));
+    }
+  }
+
+  /**
+   * A snapshot of a runtime's load.
+   *
+   * @param workerThreads the number of worker threads the runtime was created with
+   * @param activeTasks tasks that have been started but not completed, including ones waiting on
+   *     the network
+   * @param globalQueueDepth tasks waiting in the runtime's shared queue for a worker to pick them up
+   * @param tasksSpawned the number of calls into libsignal that have started an async task so far
+   * @param totalScheduleDelayMicros the total time those tasks spent waiting to first be polled
+   * @param maxScheduleDelayMicros the longest any one of those tasks waited to first be polled
+   */
+  public record Metrics(
+      long workerThreads,
+      long activeTasks,
+      long globalQueueDepth,
+      long tasksSpawned,
+      long totalScheduleDelayMicros,
+      long maxScheduleDelayMicros) {
+    /** The average time a task waited to first be polled, or 0 if no tasks have been started. */
+    public double meanScheduleDelayMicros() {
+      return tasksSpawned == 0 ? 0 : (double) totalScheduleDelayMicros / tasksSpawned;
+    }
+  }
+
+  public Metrics metrics() {
+    // One call, so that the numbers all come from the same moment.
+    final long[] metrics = guardedMap(Native::TokioAsyncContext_Metrics);
+    return new Metrics(metrics[0], metrics[1], metrics[2], metrics[3], metrics[4], metrics[5]);
   }
 
   @SuppressWarnings("unchecked")
   public CompletableFuture<Class<Object>> loadClassAsync(String className) {
     return (CompletableFuture<Class<Object>>) Native.AsyncLoadClass(this, className);
   }
-
-  @Override
-  protected void release(final long nativeHandle) {
-    Native.TokioAsyncContext_Destroy(nativeHandle);
-  }
 }
@@ -0,0 +1,106 @@
+//
+// Copyright 2026 Signal Messenger, LLC.
+// SPDX-License-Identifier: AGPL-3.0-only
+//
+
+package org.signal.libsignal.metadata.certificate
+
+import org.signal.libsignal.protocol.ecc.ECPublicKey
+import java.security.MessageDigest
+import java.util.concurrent.atomic.AtomicLong
+
+/**
+ * A [CertificateValidator] that remembers the sender certificates it has already validated.
+ *
+ * A sender keeps using the same certificate for hours, but validating it means checking its
+ * server certificate against every trust root and then checking its own signature. This validator
+ * keeps the SHA-256 digests of up to `maxEntries` recently validated certificates, along with
+ * their expirations, and accepts those certificates again without checking any signatures until
+ * they expire. Certificates that fail validation are never cached.
+ *
+ * A cache hit is faster than a full validation, so timing can reveal whether a certificate was seen
+ * recently, but still not which trust root signed it.
+ *
+ * This class is thread-safe.
+ */
+public class CachingCertificateValidator(
+  trustRoots: List<ECPublicKey>,
+  private val maxEntries: Int,
+) : CertificateValidator(trustRoots) {
+  public constructor(trustRoot: ECPublicKey, maxEntries: Int) : this(listOf(trustRoot), maxEntries)
+
+  init {
+    require(maxEntries > 0) { "maxEntries must be positive" }
+  }
+
+  private class Digest(
+    val bytes: ByteArray,
+  ) {
+    override fun equals(other: Any?): Boolean = other is Digest && bytes.contentEquals(other.bytes)
+
+    override fun hashCode(): Int = bytes.contentHashCode()
+  }
+
+  // Digest to expiration, least recently used first. Guarded by itself.
+  private val cache =
+    object : LinkedHashMap<Digest, Long>(16, 0.75f, true) {
+      override fun removeEldestEntry(eldest: MutableMap.MutableEntry<Digest, Long>): Boolean =
+        size > maxEntries
+    }
+
+  private val hits = AtomicLong()
+  private val misses = AtomicLong()
+
+  /** The number of validations answered from the cache. */
+  public val hitCount: Long
+    get() = hits.get()
+
+  /** The number of validations that had to check signatures, whether or not they succeeded. */
+  public val missCount: Long
+    get() = misses.get()
+
+  /** The number of certificates currently cached. */
+  public val cachedCertificateCount: Int
+    get() = synchronized(cache) { cache.size }
+
+  /** Forgets every cached certificate, so each will be fully validated again. */
+  public fun clear() {
+    synchronized(cache) { cache.clear() }
+  }
+
+  /**
+   * Validates `certificate`, skipping the signature checks if it has been validated before and has
+   * not expired as of `validationTime`.
+   *
+   * @throws InvalidCertificateException if the certificate is invalid or has expired
+   */
+  @Throws(InvalidCertificateException::class)
+  override fun validate(
+    certificate: SenderCertificate,
+    validationTime: Long,
+  ) {
+    val digest =
+      try {
+        Digest(MessageDigest.getInstance("SHA-256").digest(certificate.serialized))
+      } catch (e: Exception) {
+        throw InvalidCertificateException(e)
+      }
+
+    synchronized(cache) {
+      val expiration = cache[digest]
+      if (expiration != null) {
+        // Compared as unsigned, like the timestamps in the full validation.
+        if (validationTime.toULong() <= expiration.toULong()) {
+          hits.incrementAndGet()
+          return
+        }
+        cache.remove(digest)
+      }
+    }
+
+    misses.incrementAndGet()
+    super.validate(certificate, validationTime)
+    val expiration = certificate.expiration
+    synchronized(cache) { cache[digest] = expiration }
+  }
+}
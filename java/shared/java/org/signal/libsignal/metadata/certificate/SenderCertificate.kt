@@ -12,14 +12,11 @@ import org.signal.libsignal.protocol.ecc.ECPublicKey
 import java.util.Optional
 
 public class SenderCertificate : NativeHandleGuard.SimpleOwner {
-  protected override fun release(nativeHandle: Long) {
-    Native.SenderCertificate_Destroy(nativeHandle)
-  }
-
   @Throws(InvalidCertificateException::class)
-  public constructor(serialized: ByteArray) : super(createNativeFrom(serialized))
+  public constructor(serialized: ByteArray) :
+    super(createNativeFrom(serialized), Native::SenderCertificate_Destroy)
 
-  public constructor(nativeHandle: Long) : super(nativeHandle)
+  public constructor(nativeHandle: Long) : super(nativeHandle, Native::SenderCertificate_Destroy)
 
   public val signer: ServerCertificate
     get() = ServerCertificate(guardedMapChecked(Native::SenderCertificate_GetServerCertificate))
@@ -13,14 +13,11 @@ import org.signal.libsignal.protocol.ecc.ECPublicKey
 import java.util.Optional
 
 public class ServerCertificate : NativeHandleGuard.SimpleOwner {
-  protected override fun release(nativeHandle: Long) {
-    Native.ServerCertificate_Destroy(nativeHandle)
-  }
-
-  public constructor(nativeHandle: Long) : super(nativeHandle)
+  public constructor(nativeHandle: Long) : super(nativeHandle, Native::ServerCertificate_Destroy)
 
   @Throws(InvalidCertificateException::class)
-  public constructor(serialized: ByteArray) : super(createNativeFrom(serialized))
+  public constructor(serialized: ByteArray) :
+    super(createNativeFrom(serialized), Native::ServerCertificate_Destroy)
 
   /** Use `trustRoot` to generate and sign a new server certificate containing `key`. */
   public constructor(trustRoot: ECPrivateKey, keyId: Int, key: ECPublicKey) :
@@ -30,6 +27,7 @@ public class ServerCertificate : NativeHandleGuard.SimpleOwner {
           Native.ServerCertificate_New(keyId, serverPublicHandle, trustRootHandle)
         }
       },
+      Native::ServerCertificate_Destroy,
     )
 
   public val keyId: Int
@@ -0,0 +1,51 @@
+//
+// Copyright 2026 Signal Messenger, LLC.
+// SPDX-License-Identifier: AGPL-3.0-only
+//
+
+package org.signal.libsignal.protocol;
+
+import java.util.Arrays;
+import java.util.Objects;
+
+/**
+ * The outcome of decrypting one message in a batch, as returned by {@link
+ * SessionCipher#decrypt(java.util.List)} and {@link
+ * org.signal.libsignal.protocol.groups.GroupCipher#decrypt(java.util.List)}.
+ *
+ * <p>Exactly one of {@code plaintext} and {@code error} is non-null. {@code error} is whatever the
+ * corresponding single-message {@code decrypt} would have thrown.
+ *
+ * <p>Results compare by the contents of {@code plaintext}, and by the identity of {@code error}.
+ */
+public record DecryptionResult(byte[] plaintext, Exception error) {
+  public DecryptionResult {
+    if ((plaintext == null) == (error == null)) {
+      throw new IllegalArgumentException("exactly one of plaintext and error must be set");
+    }
+  }
+
+  public boolean isSuccess() {
+    return error == null;
+  }
+
+  @Override
+  public boolean equals(Object other) {
+    if (this == other) return true;
+    if (!(other instanceof DecryptionResult)) return false;
+    final DecryptionResult that = (DecryptionResult) other;
+    return Arrays.equals(plaintext, that.plaintext) && Objects.equals(error, that.error);
+  }
+
+  @Override
+  public int hashCode() {
+    return 31 * Arrays.hashCode(plaintext) + Objects.hashCode(error);
+  }
+
+  @Override
+  public String toString() {
+    return isSuccess()
+        ? "DecryptionResult[plaintext=" + plaintext.length + " bytes]"
+        : "DecryptionResult[error=" + error + "]";
+  }
+}
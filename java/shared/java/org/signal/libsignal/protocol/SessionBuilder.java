@@ -41,10 +41,8 @@ import org.signal.libsignal.protocol.state.SignedPreKeyStore;
 public class SessionBuilder {
   private static final String TAG = SessionBuilder.class.getSimpleName();
 
-  private final SessionStore sessionStore;
-  private final PreKeyStore preKeyStore;
-  private final SignedPreKeyStore signedPreKeyStore;
-  private final IdentityKeyStore identityKeyStore;
+  private final org.signal.libsignal.protocol.state.internal.SessionStore sessionStore;
+  private final org.signal.libsignal.protocol.state.internal.IdentityKeyStore identityKeyStore;
   private final SignalProtocolAddress remoteAddress;
   private final SignalProtocolAddress localAddress;
 
@@ -66,10 +64,8 @@ public class SessionBuilder {
       IdentityKeyStore identityKeyStore,
       SignalProtocolAddress remoteAddress,
       SignalProtocolAddress localAddress) {
-    this.sessionStore = sessionStore;
-    this.preKeyStore = preKeyStore;
-    this.signedPreKeyStore = signedPreKeyStore;
-    this.identityKeyStore = identityKeyStore;
+    this.sessionStore = SessionCipher.bridge(sessionStore);
+    this.identityKeyStore = SessionCipher._bridge(identityKeyStore);
     this.remoteAddress = remoteAddress;
     this.localAddress = localAddress;
   }
@@ -127,8 +123,8 @@ public class SessionBuilder {
                   preKeyGuard.nativeHandle(),
                   remoteAddressGuard.nativeHandle(),
                   localAddressGuard.nativeHandle(),
-                  SessionCipher.bridge(sessionStore),
-                  SessionCipher._bridge(identityKeyStore),
+                  sessionStore,
+                  identityKeyStore,
                   now.toEpochMilli()));
     }
   }
@@ -8,8 +8,11 @@ package org.signal.libsignal.protocol;
 import static org.signal.libsignal.internal.FilterExceptions.filterExceptions;
 
 import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
 import kotlin.Pair;
 import org.signal.libsignal.internal.Native;
+import org.signal.libsignal.internal.NativeArena;
 import org.signal.libsignal.internal.NativeHandleGuard;
 import org.signal.libsignal.protocol.ecc.ECPublicKey;
 import org.signal.libsignal.protocol.message.CiphertextMessage;
@@ -39,13 +42,19 @@ import org.signal.libsignal.protocol.state.SignedPreKeyStore;
 public class SessionCipher {
 
   private final SessionStore sessionStore;
-  private final IdentityKeyStore identityKeyStore;
-  private final PreKeyStore preKeyStore;
-  private final SignedPreKeyStore signedPreKeyStore;
-  private final KyberPreKeyStore kyberPreKeyStore;
   private final SignalProtocolAddress localAddress;
   private final SignalProtocolAddress remoteAddress;
 
+  // Created once here rather than on every message.
+  private final org.signal.libsignal.protocol.state.internal.SessionStore bridgedSessionStore;
+  private final org.signal.libsignal.protocol.state.internal.IdentityKeyStore
+      bridgedIdentityKeyStore;
+  private final org.signal.libsignal.protocol.state.internal.PreKeyStore bridgedPreKeyStore;
+  private final org.signal.libsignal.protocol.state.internal.SignedPreKeyStore
+      bridgedSignedPreKeyStore;
+  private final org.signal.libsignal.protocol.state.internal.KyberPreKeyStore
+      bridgedKyberPreKeyStore;
+
   /**
    * Construct a SessionCipher for encrypt/decrypt operations on a session. In order to use
    * SessionCipher, a session must have already been created and stored using {@link
@@ -63,12 +72,13 @@ public class SessionCipher {
       SignalProtocolAddress localAddress,
       SignalProtocolAddress remoteAddress) {
     this.sessionStore = sessionStore;
-    this.preKeyStore = preKeyStore;
-    this.identityKeyStore = identityKeyStore;
     this.localAddress = localAddress;
     this.remoteAddress = remoteAddress;
-    this.signedPreKeyStore = signedPreKeyStore;
-    this.kyberPreKeyStore = kyberPreKeyStore;
+    this.bridgedSessionStore = bridge(sessionStore);
+    this.bridgedIdentityKeyStore = _bridge(identityKeyStore);
+    this.bridgedPreKeyStore = bridge(preKeyStore);
+    this.bridgedSignedPreKeyStore = bridge(signedPreKeyStore);
+    this.bridgedKyberPreKeyStore = bridge(kyberPreKeyStore);
   }
 
   public SessionCipher(
@@ -84,37 +94,47 @@ public class SessionCipher {
     return new org.signal.libsignal.protocol.state.internal.IdentityKeyStore() {
       public Pair<NativeHandleGuard.Owner, NativeHandleGuard.Owner> getLocalIdentityKeyPair()
           throws Exception {
-        var keyPair = identityKeyStore.getIdentityKeyPair();
-        return new Pair<>(keyPair.getPrivateKey(), keyPair.getPublicKey().getPublicKey());
+        try (NativeArena.Suspension ignored = NativeArena.suspend()) {
+          var keyPair = identityKeyStore.getIdentityKeyPair();
+          return new Pair<>(keyPair.getPrivateKey(), keyPair.getPublicKey().getPublicKey());
+        }
       }
 
       public int getLocalRegistrationId() throws Exception {
-        return identityKeyStore.getLocalRegistrationId();
+        try (NativeArena.Suspension ignored = NativeArena.suspend()) {
+          return identityKeyStore.getLocalRegistrationId();
+        }
       }
 
       public int saveIdentityKey(long rawAddress, long rawKey) throws Exception {
-        return identityKeyStore
-            .saveIdentity(
-                new SignalProtocolAddress(rawAddress), new IdentityKey(new ECPublicKey(rawKey)))
-            .ordinal();
+        try (NativeArena.Suspension ignored = NativeArena.suspend()) {
+          return identityKeyStore
+              .saveIdentity(
+                  new SignalProtocolAddress(rawAddress), new IdentityKey(new ECPublicKey(rawKey)))
+              .ordinal();
+        }
       }
 
       public boolean isTrustedIdentity(long rawAddress, long rawKey, int rawDirection)
           throws Exception {
-        var direction =
-            switch (rawDirection) {
-              case 0 -> IdentityKeyStore.Direction.SENDING;
-              case 1 -> IdentityKeyStore.Direction.RECEIVING;
-              default -> throw new AssertionError("invalid Direction");
-            };
-        return identityKeyStore.isTrustedIdentity(
-            new SignalProtocolAddress(rawAddress),
-            new IdentityKey(new ECPublicKey(rawKey)),
-            direction);
+        try (NativeArena.Suspension ignored = NativeArena.suspend()) {
+          var direction =
+              switch (rawDirection) {
+                case 0 -> IdentityKeyStore.Direction.SENDING;
+                case 1 -> IdentityKeyStore.Direction.RECEIVING;
+                default -> throw new AssertionError("invalid Direction");
+              };
+          return identityKeyStore.isTrustedIdentity(
+              new SignalProtocolAddress(rawAddress),
+              new IdentityKey(new ECPublicKey(rawKey)),
+              direction);
+        }
       }
 
       public NativeHandleGuard.Owner getIdentityKey(long rawAddress) {
-        return identityKeyStore.getIdentity(new SignalProtocolAddress(rawAddress)).getPublicKey();
+        try (NativeArena.Suspension ignored = NativeArena.suspend()) {
+          return identityKeyStore.getIdentity(new SignalProtocolAddress(rawAddress)).getPublicKey();
+        }
       }
     };
   }
@@ -124,12 +144,79 @@ public class SessionCipher {
       SessionStore sessionStore) {
     return new org.signal.libsignal.protocol.state.internal.SessionStore() {
       public NativeHandleGuard.Owner loadSession(long rawAddress) throws Exception {
-        return sessionStore.loadSession(new SignalProtocolAddress(rawAddress));
+        try (NativeArena.Suspension ignored = NativeArena.suspend()) {
+          return sessionStore.loadSession(new SignalProtocolAddress(rawAddress));
+        }
       }
 
       public void storeSession(long rawAddress, long rawSession) throws Exception {
-        sessionStore.storeSession(
-            new SignalProtocolAddress(rawAddress), new SessionRecord(rawSession));
+        try (NativeArena.Suspension ignored = NativeArena.suspend()) {
+          sessionStore.storeSession(
+              new SignalProtocolAddress(rawAddress), new SessionRecord(rawSession));
+        }
+      }
+    };
+  }
+
+  private static org.signal.libsignal.protocol.state.internal.PreKeyStore bridge(
+      PreKeyStore preKeyStore) {
+    return new org.signal.libsignal.protocol.state.internal.PreKeyStore() {
+      public NativeHandleGuard.Owner loadPreKey(int id) throws Exception {
+        try (NativeArena.Suspension ignored = NativeArena.suspend()) {
+          return preKeyStore.loadPreKey(id);
+        }
+      }
+
+      public void storePreKey(int id, long rawPreKey) throws Exception {
+        try (NativeArena.Suspension ignored = NativeArena.suspend()) {
+          preKeyStore.storePreKey(id, new PreKeyRecord(rawPreKey));
+        }
+      }
+
+      public void removePreKey(int id) throws Exception {
+        try (NativeArena.Suspension ignored = NativeArena.suspend()) {
+          preKeyStore.removePreKey(id);
+        }
+      }
+    };
+  }
+
+  private static org.signal.libsignal.protocol.state.internal.SignedPreKeyStore bridge(
+      SignedPreKeyStore signedPreKeyStore) {
+    return new org.signal.libsignal.protocol.state.internal.SignedPreKeyStore() {
+      public NativeHandleGuard.Owner loadSignedPreKey(int id) throws Exception {
+        try (NativeArena.Suspension ignored = NativeArena.suspend()) {
+          return signedPreKeyStore.loadSignedPreKey(id);
+        }
+      }
+
+      public void storeSignedPreKey(int id, long rawPreKey) throws Exception {
+        try (NativeArena.Suspension ignored = NativeArena.suspend()) {
+          signedPreKeyStore.storeSignedPreKey(id, new SignedPreKeyRecord(rawPreKey));
+        }
+      }
+    };
+  }
+
+  private static org.signal.libsignal.protocol.state.internal.KyberPreKeyStore bridge(
+      KyberPreKeyStore kyberPreKeyStore) {
+    return new org.signal.libsignal.protocol.state.internal.KyberPreKeyStore() {
+      public NativeHandleGuard.Owner loadKyberPreKey(int id) throws Exception {
+        try (NativeArena.Suspension ignored = NativeArena.suspend()) {
+          return kyberPreKeyStore.loadKyberPreKey(id);
+        }
+      }
+
+      public void storeKyberPreKey(int id, long rawPreKey) throws Exception {
+        try (NativeArena.Suspension ignored = NativeArena.suspend()) {
+          kyberPreKeyStore.storeKyberPreKey(id, new KyberPreKeyRecord(rawPreKey));
+        }
+      }
+
+      public void markKyberPreKeyUsed(int id, int ecPrekeyId, long rawBaseKey) throws Exception {
+        try (NativeArena.Suspension ignored = NativeArena.suspend()) {
+          kyberPreKeyStore.markKyberPreKeyUsed(id, ecPrekeyId, new ECPublicKey(rawBaseKey));
+        }
       }
     };
   }
@@ -171,12 +258,138 @@ public class SessionCipher {
                   paddedMessage,
                   remoteAddress.nativeHandle(),
                   localAddressGuard.nativeHandle(),
-                  bridge(sessionStore),
-                  _bridge(identityKeyStore),
+                  bridgedSessionStore,
+                  bridgedIdentityKeyStore,
                   now.toEpochMilli()));
     }
   }
 
+  /**
+   * One device's copy of a message encrypted with {@link #encryptToDevices}.
+   *
+   * <p>These map directly onto the per-device messages taken by the chat service's {@code
+   * sendMessage} APIs.
+   *
+   * @param registrationId the device's registration ID, as recorded in its session
+   */
+  public record DeviceMessage(int deviceId, int registrationId, CiphertextMessage message) {}
+
+  /**
+   * Encrypts a message to every device of {@code recipientName} that there's a session with.
+   *
+   * <p>Device 1 is included if there's a session for it, along with every device from {@link
+   * SessionStore#getSubDeviceSessions}.
+   *
+   * @throws NoSessionException if there are no sessions for {@code recipientName}, or one of them
+   *     is unusable
+   * @throws UntrustedIdentityException if any of the devices' identities is untrusted
+   * @see #encryptToDevices(SessionStore, IdentityKeyStore, SignalProtocolAddress, String, List,
+   *     byte[], Instant)
+   */
+  public static List<DeviceMessage> encryptToAllDevices(
+      SignalProtocolStore store,
+      SignalProtocolAddress localAddress,
+      String recipientName,
+      byte[] paddedMessage)
+      throws NoSessionException, UntrustedIdentityException {
+    final List<Integer> deviceIds = new ArrayList<>();
+    if (store.containsSession(new SignalProtocolAddress(recipientName, 1))) {
+      deviceIds.add(1);
+    }
+    deviceIds.addAll(store.getSubDeviceSessions(recipientName));
+    if (deviceIds.isEmpty()) {
+      throw new NoSessionException(
+          new SignalProtocolAddress(recipientName, 1), "no sessions for " + recipientName);
+    }
+    return encryptToDevices(
+        store, store, localAddress, recipientName, deviceIds, paddedMessage, Instant.now());
+  }
+
+  /**
+   * Encrypts a message to several devices of one recipient.
+   *
+   * <p>This is a convenience for encrypting with a separate {@code SessionCipher} for each device,
+   * and costs the same: each device is its own call into libsignal, with its own session load and
+   * store and its own identity check. Each device's registration ID is the one in the session that
+   * its encryption stored.
+   *
+   * <p>If encrypting to any device fails, the exception is thrown and no messages are returned.
+   * Sessions for devices before the failing one will have already been advanced, just as if they
+   * had been encrypted one at a time.
+   *
+   * @param deviceIds the devices to encrypt to, in the order their messages should be returned
+   * @throws NoSessionException if there is no established session for one of the devices, or if
+   *     an unacknowledged session has expired
+   * @throws UntrustedIdentityException if any of the devices' identities is untrusted
+   */
+  public static List<DeviceMessage> encryptToDevices(
+      SessionStore sessionStore,
+      IdentityKeyStore identityKeyStore,
+      SignalProtocolAddress localAddress,
+      String recipientName,
+      List<Integer> deviceIds,
+      byte[] paddedMessage,
+      Instant now)
+      throws NoSessionException, UntrustedIdentityException {
+    final RecordingSessionStore bridgedSessionStore = new RecordingSessionStore(sessionStore);
+    final org.signal.libsignal.protocol.state.internal.IdentityKeyStore bridgedIdentityKeyStore =
+        _bridge(identityKeyStore);
+    final List<DeviceMessage> result = new ArrayList<>(deviceIds.size());
+    try (NativeHandleGuard localAddressGuard = new NativeHandleGuard(localAddress)) {
+      for (int deviceId : deviceIds) {
+        final SignalProtocolAddress remoteAddress =
+            new SignalProtocolAddress(recipientName, deviceId);
+        final CiphertextMessage message;
+        try (NativeHandleGuard remoteAddressGuard = new NativeHandleGuard(remoteAddress)) {
+          message =
+              filterExceptions(
+                  NoSessionException.class,
+                  UntrustedIdentityException.class,
+                  () ->
+                      Native.SessionCipher_EncryptMessage(
+                          paddedMessage,
+                          remoteAddressGuard.nativeHandle(),
+                          localAddressGuard.nativeHandle(),
+                          bridgedSessionStore,
+                          bridgedIdentityKeyStore,
+                          now.toEpochMilli()));
+        }
+        final SessionRecord session = bridgedSessionStore.lastStored;
+        bridgedSessionStore.lastStored = null;
+        if (session == null) {
+          throw new AssertionError("encrypting did not store a session for " + remoteAddress);
+        }
+        result.add(new DeviceMessage(deviceId, session.getRemoteRegistrationId(), message));
+      }
+    }
+    return result;
+  }
+
+  /** Remembers the last session stored through it, so its registration ID can be read. */
+  private static class RecordingSessionStore
+      implements org.signal.libsignal.protocol.state.internal.SessionStore {
+    private final SessionStore sessionStore;
+    SessionRecord lastStored = null;
+
+    RecordingSessionStore(SessionStore sessionStore) {
+      this.sessionStore = sessionStore;
+    }
+
+    public NativeHandleGuard.Owner loadSession(long rawAddress) throws Exception {
+      try (NativeArena.Suspension ignored = NativeArena.suspend()) {
+        return sessionStore.loadSession(new SignalProtocolAddress(rawAddress));
+      }
+    }
+
+    public void storeSession(long rawAddress, long rawSession) throws Exception {
+      try (NativeArena.Suspension ignored = NativeArena.suspend()) {
+        final SessionRecord record = new SessionRecord(rawSession);
+        sessionStore.storeSession(new SignalProtocolAddress(rawAddress), record);
+        lastStored = record;
+      }
+    }
+  }
+
   /**
    * Decrypt a message.
    *
@@ -196,6 +409,17 @@ public class SessionCipher {
           InvalidKeyIdException,
           InvalidKeyException,
           UntrustedIdentityException {
+    return decrypt(ciphertext, bridgedSessionStore);
+  }
+
+  private byte[] decrypt(
+      PreKeySignalMessage ciphertext,
+      org.signal.libsignal.protocol.state.internal.SessionStore sessionStore)
+      throws DuplicateMessageException,
+          InvalidMessageException,
+          InvalidKeyIdException,
+          InvalidKeyException,
+          UntrustedIdentityException {
     try (NativeHandleGuard ciphertextGuard = new NativeHandleGuard(ciphertext);
         NativeHandleGuard remoteAddressGuard = new NativeHandleGuard(this.remoteAddress);
         NativeHandleGuard localAddressGuard = new NativeHandleGuard(this.localAddress); ) {
@@ -210,45 +434,11 @@ public class SessionCipher {
                   ciphertextGuard.nativeHandle(),
                   remoteAddressGuard.nativeHandle(),
                   localAddressGuard.nativeHandle(),
-                  bridge(sessionStore),
-                  _bridge(identityKeyStore),
-                  new org.signal.libsignal.protocol.state.internal.PreKeyStore() {
-                    public NativeHandleGuard.Owner loadPreKey(int id) throws Exception {
-                      return preKeyStore.loadPreKey(id);
-                    }
-
-                    public void storePreKey(int id, long rawPreKey) throws Exception {
-                      preKeyStore.storePreKey(id, new PreKeyRecord(rawPreKey));
-                    }
-
-                    public void removePreKey(int id) throws Exception {
-                      preKeyStore.removePreKey(id);
-                    }
-                  },
-                  new org.signal.libsignal.protocol.state.internal.SignedPreKeyStore() {
-                    public NativeHandleGuard.Owner loadSignedPreKey(int id) throws Exception {
-                      return signedPreKeyStore.loadSignedPreKey(id);
-                    }
-
-                    public void storeSignedPreKey(int id, long rawPreKey) throws Exception {
-                      signedPreKeyStore.storeSignedPreKey(id, new SignedPreKeyRecord(rawPreKey));
-                    }
-                  },
-                  new org.signal.libsignal.protocol.state.internal.KyberPreKeyStore() {
-                    public NativeHandleGuard.Owner loadKyberPreKey(int id) throws Exception {
-                      return kyberPreKeyStore.loadKyberPreKey(id);
-                    }
-
-                    public void storeKyberPreKey(int id, long rawPreKey) throws Exception {
-                      kyberPreKeyStore.storeKyberPreKey(id, new KyberPreKeyRecord(rawPreKey));
-                    }
-
-                    public void markKyberPreKeyUsed(int id, int ecPrekeyId, long rawBaseKey)
-                        throws Exception {
-                      kyberPreKeyStore.markKyberPreKeyUsed(
-                          id, ecPrekeyId, new ECPublicKey(rawBaseKey));
-                    }
-                  }));
+                  sessionStore,
+                  bridgedIdentityKeyStore,
+                  bridgedPreKeyStore,
+                  bridgedSignedPreKeyStore,
+                  bridgedKyberPreKeyStore));
     }
   }
 
@@ -268,6 +458,17 @@ public class SessionCipher {
           DuplicateMessageException,
           NoSessionException,
           UntrustedIdentityException {
+    return decrypt(ciphertext, bridgedSessionStore);
+  }
+
+  private byte[] decrypt(
+      SignalMessage ciphertext,
+      org.signal.libsignal.protocol.state.internal.SessionStore sessionStore)
+      throws InvalidMessageException,
+          InvalidVersionException,
+          DuplicateMessageException,
+          NoSessionException,
+          UntrustedIdentityException {
     try (NativeHandleGuard ciphertextGuard = new NativeHandleGuard(ciphertext);
         NativeHandleGuard remoteAddressGuard = new NativeHandleGuard(this.remoteAddress);
         NativeHandleGuard localAddressGuard = new NativeHandleGuard(this.localAddress); ) {
@@ -282,8 +483,126 @@ public class SessionCipher {
                   ciphertextGuard.nativeHandle(),
                   remoteAddressGuard.nativeHandle(),
                   localAddressGuard.nativeHandle(),
-                  bridge(sessionStore),
-                  _bridge(identityKeyStore)));
+                  sessionStore,
+                  bridgedIdentityKeyStore));
+    }
+  }
+
+  /**
+   * Decrypts several messages from this cipher's remote address, in order.
+   *
+   * <p>This is equivalent to calling {@link #decrypt(SignalMessage)} or {@link
+   * #decrypt(PreKeySignalMessage)} on each message in turn, except that the session is only loaded
+   * from the {@link SessionStore} before the first message and stored after the last, rather than
+   * once each per message. A message that fails to decrypt doesn't affect the ones after it, just
+   * like decrypting them one at a time.
+   *
+   * <p>The one exception is a {@link PreKeySignalMessage}: decrypting one removes the pre-keys it
+   * used, so its session is stored right away, before they are removed, just as when decrypting it
+   * on its own. Otherwise, because the session is only stored at the end, none of the messages
+   * should be considered processed until this method returns. The session is stored even if
+   * decryption stops early with an unchecked exception.
+   *
+   * @param ciphertexts {@link SignalMessage}s and {@link PreKeySignalMessage}s, in the order they
+   *     should be decrypted
+   * @return one result per message, in the same order
+   * @throws IllegalArgumentException if any of the messages is some other kind of {@link
+   *     CiphertextMessage}
+   */
+  public List<DecryptionResult> decrypt(List<? extends CiphertextMessage> ciphertexts) {
+    for (CiphertextMessage ciphertext : ciphertexts) {
+      if (!(ciphertext instanceof SignalMessage) && !(ciphertext instanceof PreKeySignalMessage)) {
+        throw new IllegalArgumentException(
+            "cannot decrypt " + ciphertext.getClass().getSimpleName() + " with a SessionCipher");
+      }
+    }
+
+    final BatchSessionStore batchStore = new BatchSessionStore();
+    final List<DecryptionResult> results = new ArrayList<>(ciphertexts.size());
+    try {
+      for (CiphertextMessage ciphertext : ciphertexts) {
+        try {
+          final byte[] plaintext;
+          if (ciphertext instanceof SignalMessage) {
+            plaintext = decrypt((SignalMessage) ciphertext, batchStore);
+          } else {
+            batchStore.writeThrough = true;
+            try {
+              plaintext = decrypt((PreKeySignalMessage) ciphertext, batchStore);
+            } finally {
+              batchStore.writeThrough = false;
+            }
+          }
+          results.add(new DecryptionResult(plaintext, null));
+        } catch (InvalidMessageException
+            | InvalidVersionException
+            | DuplicateMessageException
+            | NoSessionException
+            | InvalidKeyIdException
+            | InvalidKeyException
+            | UntrustedIdentityException e) {
+          results.add(new DecryptionResult(null, e));
+        }
+      }
+    } finally {
+      batchStore.flush();
+    }
+    return results;
+  }
+
+  /**
+   * Holds the remote address's session in memory for the length of a {@link #decrypt(List)} call.
+   *
+   * <p>Returning the same record to every load is safe because the bridge copies the session it
+   * loads, and hands each store a new record.
+   */
+  private class BatchSessionStore
+      implements org.signal.libsignal.protocol.state.internal.SessionStore {
+    private boolean loaded = false;
+    private SessionRecord session = null;
+    private boolean dirty = false;
+    // Set while decrypting a PreKeySignalMessage, whose pre-keys are removed right after its
+    // session is stored; the session has to reach the real store first.
+    boolean writeThrough = false;
+
+    public NativeHandleGuard.Owner loadSession(long rawAddress) throws Exception {
+      try (NativeArena.Suspension ignored = NativeArena.suspend()) {
+        final SignalProtocolAddress address = new SignalProtocolAddress(rawAddress);
+        if (!address.equals(remoteAddress)) {
+          return sessionStore.loadSession(address);
+        }
+        if (!loaded) {
+          session = sessionStore.loadSession(remoteAddress);
+          loaded = true;
+        }
+        return session;
+      }
+    }
+
+    public void storeSession(long rawAddress, long rawSession) throws Exception {
+      try (NativeArena.Suspension ignored = NativeArena.suspend()) {
+        final SignalProtocolAddress address = new SignalProtocolAddress(rawAddress);
+        final SessionRecord newRecord = new SessionRecord(rawSession);
+        if (!address.equals(remoteAddress)) {
+          sessionStore.storeSession(address, newRecord);
+          return;
+        }
+        session = newRecord;
+        loaded = true;
+        dirty = true;
+        if (writeThrough) {
+          flush();
+        }
+      }
+    }
+
+    void flush() {
+      try (NativeArena.Suspension ignored = NativeArena.suspend()) {
+        if (dirty) {
+          sessionStore.storeSession(remoteAddress, session);
+          dirty = false;
+        }
+      }
     }
   }
 
@@ -0,0 +1,214 @@
+//
+// Copyright 2026 Signal Messenger, LLC.
+// SPDX-License-Identifier: AGPL-3.0-only
+//
+
+package org.signal.libsignal.protocol;
+
+import java.util.ArrayDeque;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import org.signal.libsignal.internal.CompletableFuture;
+
+/**
+ * Runs tasks for many {@link SignalProtocolAddress}es in parallel, while running the tasks for any
+ * one address one at a time, in the order they were submitted.
+ *
+ * <p>{@link SessionCipher} operations load a session, update it, and store it again, so two
+ * operations on the same address must not overlap. Operations on different addresses are
+ * independent (as long as the stores themselves are thread-safe), so this lets them use every
+ * thread of the underlying executor instead of going through a single global lock:
+ *
+ * <pre>
+ * SessionCipherExecutor ciphers = new SessionCipherExecutor(Executors.newFixedThreadPool(8));
+ * CompletableFuture&lt;byte[]&gt; plaintext =
+ *     ciphers.submit(sender, () -&gt; new SessionCipher(store, sender).decrypt(message));
+ * </pre>
+ *
+ * <p>A busy address gives up its thread after a handful of tasks, so that it can't starve other
+ * addresses when there are more addresses than threads.
+ */
+public class SessionCipherExecutor {
+  private static final int MAX_TASKS_PER_TURN = 16;
+
+  private final Executor executor;
+  private final ConcurrentHashMap<SignalProtocolAddress, AddressQueue> queues =
+      new ConcurrentHashMap<>();
+
+  private final AtomicInteger queuedTasks = new AtomicInteger();
+  private final AtomicLong completedTasks = new AtomicLong();
+  private final AtomicLong totalQueueLatencyNanos = new AtomicLong();
+  private final AtomicLong maxQueueLatencyNanos = new AtomicLong();
+
+  /**
+   * @param executor the threads to run tasks on. Its parallelism bounds how many addresses are
+   *     processed at once.
+   */
+  public SessionCipherExecutor(Executor executor) {
+    this.executor = executor;
+  }
+
+  /**
+   * Queues {@code task} to run after every task already submitted for {@code address}.
+   *
+   * @return a future that completes with the task's result, or exceptionally with whatever it
+   *     threw. If the underlying executor rejects the work, the future fails with the {@link
+   *     RejectedExecutionException}.
+   */
+  public <T> CompletableFuture<T> submit(SignalProtocolAddress address, Callable<T> task) {
+    final CompletableFuture<T> future = new CompletableFuture<>();
+    final Task queued =
+        new Task(System.nanoTime()) {
+          @Override
+          void run() {
+            try {
+              future.complete(task.call());
+            } catch (Throwable t) {
+              future.completeExceptionally(t);
+            }
+          }
+
+          @Override
+          void reject(RejectedExecutionException e) {
+            future.completeExceptionally(e);
+          }
+        };
+
+    queuedTasks.incrementAndGet();
+    final boolean[] shouldSchedule = {false};
+    final AddressQueue queue =
+        queues.compute(
+            address,
+            (key, existing) -> {
+              final AddressQueue result = existing != null ? existing : new AddressQueue(key);
+              result.tasks.add(queued);
+              if (!result.scheduled) {
+                result.scheduled = true;
+                shouldSchedule[0] = true;
+              }
+              return result;
+            });
+    if (shouldSchedule[0]) {
+      queue.schedule();
+    }
+    return future;
+  }
+
+  /**
+   * A snapshot of the executor's load.
+   *
+   * @param queuedTasks tasks submitted but not yet started
+   * @param activeAddresses addresses with tasks queued or running
+   * @param completedTasks tasks that have finished, successfully or not
+   * @param totalQueueLatencyNanos the total time finished tasks spent waiting to start
+   * @param maxQueueLatencyNanos the longest any finished task waited to start
+   */
+  public record Metrics(
+      int queuedTasks,
+      int activeAddresses,
+      long completedTasks,
+      long totalQueueLatencyNanos,
+      long maxQueueLatencyNanos) {
+    /** The average time a task waited to start, or 0 if no tasks have finished. */
+    public double meanQueueLatencyNanos() {
+      return completedTasks == 0 ? 0 : (double) totalQueueLatencyNanos / completedTasks;
+    }
+  }
+
+  public Metrics metrics() {
+    return new Metrics(
+        queuedTasks.get(),
+        queues.size(),
+        completedTasks.get(),
+        totalQueueLatencyNanos.get(),
+        maxQueueLatencyNanos.get());
+  }
+
+  private abstract static class Task {
+    final long submittedNanos;
+
+    Task(long submittedNanos) {
+      this.submittedNanos = submittedNanos;
+    }
+
+    abstract void run();
+
+    abstract void reject(RejectedExecutionException e);
+  }
+
+  /**
+   * The tasks waiting for one address.
+   *
+   * <p>{@link #tasks} and {@link #scheduled} are only accessed inside {@code queues.compute} for
+   * this address, which serializes them. A queue is removed from the map as soon as it runs out of
+   * tasks, so a queue in the map always has a task queued or running.
+   */
+  private final class AddressQueue implements Runnable {
+    final SignalProtocolAddress address;
+    final ArrayDeque<Task> tasks = new ArrayDeque<>();
+    boolean scheduled = false;
+
+    AddressQueue(SignalProtocolAddress address) {
+      this.address = address;
+    }
+
+    void schedule() {
+      try {
+        executor.execute(this);
+      } catch (RejectedExecutionException e) {
+        // Nothing will ever drain this queue, so fail everything in it.
+        for (Task task = poll(); task != null; task = poll()) {
+          queuedTasks.decrementAndGet();
+          task.reject(e);
+        }
+      }
+    }
+
+    /**
+     * Takes the next task, or removes this queue from the map and returns {@code null} if there
+     * aren't any.
+     */
+    private Task poll() {
+      final Task[] next = {null};
+      queues.computeIfPresent(
+          address,
+          (key, queue) -> {
+            if (queue != this) {
+              return queue;
+            }
+            next[0] = tasks.poll();
+            if (next[0] == null) {
+              scheduled = false;
+              return null;
+            }
+            return queue;
+          });
+      return next[0];
+    }
+
+    @Override
+    public void run() {
+      for (int i = 0; i < MAX_TASKS_PER_TURN; ++i) {
+        final Task task = poll();
+        if (task == null) {
+          return;
+        }
+        queuedTasks.decrementAndGet();
+        final long latency = System.nanoTime() - task.submittedNanos;
+        try {
+          task.run();
+        } finally {
+          completedTasks.incrementAndGet();
+          totalQueueLatencyNanos.addAndGet(latency);
+          maxQueueLatencyNanos.accumulateAndGet(latency, Math::max);
+        }
+      }
+      // Still more to do; go to the back of the executor's queue.
+      schedule();
+    }
+  }
+}
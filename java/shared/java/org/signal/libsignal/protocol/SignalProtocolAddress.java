@@ -11,13 +11,34 @@ import org.signal.libsignal.internal.CalledFromNative;
 import org.signal.libsignal.internal.Native;
 import org.signal.libsignal.internal.NativeHandleGuard;
 
+/**
+ * Identifies one device of one Signal account.
+ *
+ * <p>The name and device ID are kept in Java, so comparing addresses and using them as map keys
+ * doesn't need to call into Rust. The Rust representation is only created when an address is passed
+ * to libsignal.
+ */
 public class SignalProtocolAddress extends NativeHandleGuard.SimpleOwner {
+  private static final int MAX_DEVICE_ID = 127;
+
+  private final String name;
+  private final int deviceId;
+
   /**
    * @param name the identifier for the recipient, usually a {@link ServiceId}
    * @param deviceId the identifier for the device; must be in the range 1-127 inclusive
+   * @throws IllegalArgumentException if {@code deviceId} is out of range
    */
   public SignalProtocolAddress(String name, int deviceId) {
-    super(filterExceptions(() -> Native.ProtocolAddress_New(name, deviceId)));
+    if (name == null) {
+      throw new NullPointerException("name");
+    }
+    if (deviceId < 1 || deviceId > MAX_DEVICE_ID) {
+      throw new IllegalArgumentException(
+          "protocol address is invalid: " + name + "." + Integer.toUnsignedString(deviceId));
+    }
+    this.name = name;
+    this.deviceId = deviceId;
   }
 
   /**
@@ -30,16 +51,25 @@ public class SignalProtocolAddress extends NativeHandleGuard.SimpleOwner {
 
   @CalledFromNative
   public SignalProtocolAddress(long nativeHandle) {
-    super(nativeHandle);
+    super(nativeHandle, Native::ProtocolAddress_Destroy);
+    this.name = Native.ProtocolAddress_Name(nativeHandle);
+    this.deviceId = Native.ProtocolAddress_DeviceId(nativeHandle);
   }
 
   @Override
-  protected void release(long nativeHandle) {
-    Native.ProtocolAddress_Destroy(nativeHandle);
+  @CalledFromNative
+  public long unsafeNativeHandleWithoutGuard() {
+    final long handle = super.unsafeNativeHandleWithoutGuard();
+    if (handle != 0) {
+      return handle;
+    }
+    return installHandle(
+        () -> filterExceptions(() -> Native.ProtocolAddress_New(name, deviceId)),
+        Native::ProtocolAddress_Destroy);
   }
 
   public String getName() {
-    return guardedMap(Native::ProtocolAddress_Name);
+    return name;
   }
 
   /**
@@ -56,14 +86,12 @@ public class SignalProtocolAddress extends NativeHandleGuard.SimpleOwner {
   }
 
   public int getDeviceId() {
-    try (NativeHandleGuard guard = new NativeHandleGuard(this)) {
-      return Native.ProtocolAddress_DeviceId(guard.nativeHandle());
-    }
+    return deviceId;
   }
 
   @Override
   public String toString() {
-    return getName() + "." + getDeviceId();
+    return name + "." + deviceId;
   }
 
   @Override
@@ -72,11 +100,11 @@ public class SignalProtocolAddress extends NativeHandleGuard.SimpleOwner {
     if (!(other instanceof SignalProtocolAddress)) return false;
 
     SignalProtocolAddress that = (SignalProtocolAddress) other;
-    return this.getName().equals(that.getName()) && this.getDeviceId() == that.getDeviceId();
+    return this.name.equals(that.name) && this.deviceId == that.deviceId;
   }
 
   @Override
   public int hashCode() {
-    return this.getName().hashCode() ^ this.getDeviceId();
+    return this.name.hashCode() ^ this.deviceId;
   }
 }
@@ -19,11 +19,7 @@ public class ECPrivateKey : NativeHandleGuard.SimpleOwner {
   @Throws(InvalidKeyException::class)
   public constructor(privateKey: ByteArray) : this(Native.ECPrivateKey_Deserialize(privateKey))
 
-  public constructor(nativeHandle: Long) : super(nativeHandle)
-
-  protected override fun release(nativeHandle: Long) {
-    Native.ECPrivateKey_Destroy(nativeHandle)
-  }
+  public constructor(nativeHandle: Long) : super(nativeHandle, Native::ECPrivateKey_Destroy)
 
   public fun serialize(): ByteArray = guardedMapChecked(Native::ECPrivateKey_Serialize)
 
@@ -46,18 +46,12 @@ public final class ECPublicKey :
   }
 
   @CalledFromNative
-  public constructor(nativeHandle: Long) : super(nativeHandle) {
+  public constructor(nativeHandle: Long) : super(nativeHandle, Native::ECPublicKey_Destroy) {
     if (nativeHandle == 0L) {
       throw NullPointerException()
     }
   }
 
-  protected override fun release(nativeHandle: Long) {
-    if (nativeHandle != 0L) {
-      Native.ECPublicKey_Destroy(nativeHandle)
-    }
-  }
-
   public fun verifySignature(
     message: ByteArray,
     signature: ByteArray,
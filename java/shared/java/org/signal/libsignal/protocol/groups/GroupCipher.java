@@ -7,9 +7,15 @@ package org.signal.libsignal.protocol.groups;
 
 import static org.signal.libsignal.internal.FilterExceptions.filterExceptions;
 
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
 import java.util.UUID;
 import org.signal.libsignal.internal.Native;
+import org.signal.libsignal.internal.NativeArena;
 import org.signal.libsignal.internal.NativeHandleGuard;
+import org.signal.libsignal.protocol.DecryptionResult;
 import org.signal.libsignal.protocol.DuplicateMessageException;
 import org.signal.libsignal.protocol.InvalidMessageException;
 import org.signal.libsignal.protocol.LegacyMessageException;
@@ -34,10 +40,12 @@ import org.signal.libsignal.protocol.message.CiphertextMessage;
  */
 public class GroupCipher {
 
+  private final SenderKeyStore unbridgedSenderKeyStore;
   private final org.signal.libsignal.protocol.state.internal.SenderKeyStore senderKeyStore;
   private final SignalProtocolAddress sender;
 
   public GroupCipher(SenderKeyStore senderKeyStore, SignalProtocolAddress sender) {
+    this.unbridgedSenderKeyStore = senderKeyStore;
     this.senderKeyStore = bridge(senderKeyStore);
     this.sender = sender;
   }
@@ -47,13 +55,17 @@ public class GroupCipher {
     return new org.signal.libsignal.protocol.state.internal.SenderKeyStore() {
       public NativeHandleGuard.Owner loadSenderKey(long rawSender, UUID distributionId)
           throws Exception {
-        return senderKeyStore.loadSenderKey(new SignalProtocolAddress(rawSender), distributionId);
+        try (NativeArena.Suspension ignored = NativeArena.suspend()) {
+          return senderKeyStore.loadSenderKey(new SignalProtocolAddress(rawSender), distributionId);
+        }
       }
 
       public void storeSenderKey(long rawSender, UUID distributionId, long rawRecord)
           throws Exception {
-        senderKeyStore.storeSenderKey(
-            new SignalProtocolAddress(rawSender), distributionId, new SenderKeyRecord(rawRecord));
+        try (NativeArena.Suspension ignored = NativeArena.suspend()) {
+          senderKeyStore.storeSenderKey(
+              new SignalProtocolAddress(rawSender), distributionId, new SenderKeyRecord(rawRecord));
+        }
       }
     };
   }
@@ -90,6 +102,16 @@ public class GroupCipher {
           DuplicateMessageException,
           InvalidMessageException,
           NoSessionException {
+    return decrypt(senderKeyMessageBytes, this.senderKeyStore);
+  }
+
+  private byte[] decrypt(
+      byte[] senderKeyMessageBytes,
+      org.signal.libsignal.protocol.state.internal.SenderKeyStore senderKeyStore)
+      throws LegacyMessageException,
+          DuplicateMessageException,
+          InvalidMessageException,
+          NoSessionException {
     try (NativeHandleGuard sender = new NativeHandleGuard(this.sender)) {
       return filterExceptions(
           LegacyMessageException.class,
@@ -98,7 +120,102 @@ public class GroupCipher {
           NoSessionException.class,
           () ->
               Native.GroupCipher_DecryptMessage(
-                  sender.nativeHandle(), senderKeyMessageBytes, this.senderKeyStore));
+                  sender.nativeHandle(), senderKeyMessageBytes, senderKeyStore));
+    }
+  }
+
+  /**
+   * Decrypts several SenderKey group messages from this cipher's sender, in order.
+   *
+   * <p>Each message is decrypted as {@link #decrypt(byte[])} would, and a failure is reported in
+   * its result rather than thrown, so the rest of the batch is still decrypted. The sender's {@link
+   * SenderKeyRecord} for each distribution ID is read from the {@link SenderKeyStore} at most once,
+   * and written back at most once, when the whole batch is done, so none of these messages should
+   * be considered processed until this method returns. The records are written back even if an
+   * unchecked exception cuts the batch short.
+   *
+   * @param senderKeyMessages the received ciphertexts, in the order they should be decrypted
+   * @return one result per message, in the same order
+   */
+  public List<DecryptionResult> decrypt(List<byte[]> senderKeyMessages) {
+    final BatchSenderKeyStore batchStore = new BatchSenderKeyStore();
+    final List<DecryptionResult> results = new ArrayList<>(senderKeyMessages.size());
+    try {
+      for (byte[] message : senderKeyMessages) {
+        try {
+          results.add(new DecryptionResult(decrypt(message, batchStore), null));
+        } catch (LegacyMessageException
+            | DuplicateMessageException
+            | InvalidMessageException
+            | NoSessionException e) {
+          results.add(new DecryptionResult(null, e));
+        }
+      }
+    } finally {
+      batchStore.flush();
+    }
+    return results;
+  }
+
+  /**
+   * Holds the sender's records in memory for the length of a {@link #decrypt(List)} call.
+   *
+   * <p>Records for other senders go straight to the real store. Every load of this sender's record
+   * for a distribution ID gets the same object, which the bridge never modifies.
+   */
+  private class BatchSenderKeyStore
+      implements org.signal.libsignal.protocol.state.internal.SenderKeyStore {
+    private final class Entry {
+      final SenderKeyRecord record;
+      boolean dirty;
+
+      Entry(SenderKeyRecord record, boolean dirty) {
+        this.record = record;
+        this.dirty = dirty;
+      }
+    }
+
+    // The cipher's sender is fixed, so only the distribution ID varies.
+    private final Map<UUID, Entry> records = new HashMap<>();
+
+    public NativeHandleGuard.Owner loadSenderKey(long rawSender, UUID distributionId)
+        throws Exception {
+      try (NativeArena.Suspension ignored = NativeArena.suspend()) {
+        final SignalProtocolAddress address = new SignalProtocolAddress(rawSender);
+        if (!address.equals(sender)) {
+          return unbridgedSenderKeyStore.loadSenderKey(address, distributionId);
+        }
+        Entry entry = records.get(distributionId);
+        if (entry == null) {
+          entry = new Entry(unbridgedSenderKeyStore.loadSenderKey(sender, distributionId), false);
+          records.put(distributionId, entry);
+        }
+        return entry.record;
+      }
+    }
+
+    public void storeSenderKey(long rawSender, UUID distributionId, long rawRecord)
+        throws Exception {
+      try (NativeArena.Suspension ignored = NativeArena.suspend()) {
+        final SignalProtocolAddress address = new SignalProtocolAddress(rawSender);
+        final SenderKeyRecord record = new SenderKeyRecord(rawRecord);
+        if (!address.equals(sender)) {
+          unbridgedSenderKeyStore.storeSenderKey(address, distributionId, record);
+          return;
+        }
+        records.put(distributionId, new Entry(record, true));
+      }
+    }
+
+    void flush() {
+      try (NativeArena.Suspension ignored = NativeArena.suspend()) {
+        for (Map.Entry<UUID, Entry> entry : records.entrySet()) {
+          if (entry.getValue().dirty) {
+            unbridgedSenderKeyStore.storeSenderKey(sender, entry.getKey(), entry.getValue().record);
+            entry.getValue().dirty = false;
+          }
+        }
+      }
     }
   }
 }
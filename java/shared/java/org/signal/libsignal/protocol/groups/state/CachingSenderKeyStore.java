@@ -0,0 +1,177 @@
+//
+// Copyright 2026 Signal Messenger, LLC.
+// SPDX-License-Identifier: AGPL-3.0-only
+//
+
+package org.signal.libsignal.protocol.groups.state;
+
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.locks.ReentrantLock;
+import org.signal.libsignal.internal.LruCache;
+import org.signal.libsignal.protocol.InvalidMessageException;
+import org.signal.libsignal.protocol.SignalProtocolAddress;
+
+/**
+ * A read-through cache of serialized {@link SenderKeyRecord}s in front of another {@link
+ * SenderKeyStore}, the way {@link org.signal.libsignal.protocol.state.impl.CachingSessionStore}
+ * does for sessions.
+ *
+ * <p>A load served from memory skips the underlying store, but still builds a new record from the
+ * cached bytes, and every {@link #storeSenderKey} serializes the record once more for the cache.
+ *
+ * <p>{@link #storeSenderKey} always writes to the underlying store before returning: the local
+ * sender's own record advances with every message it encrypts, and losing that progress would mean
+ * encrypting later messages with keys that were already used.
+ *
+ * <p>Operations on the same (sender, distribution ID) pair run one at a time, including their
+ * calls to the underlying store, so the cache never holds an older record than the underlying
+ * store does. Operations on different pairs never wait for each other's calls to the underlying
+ * store.
+ */
+public class CachingSenderKeyStore implements SenderKeyStore {
+  /** A (sender, distribution ID) pair, with its hash computed up front. */
+  private static final class Key {
+    final SignalProtocolAddress sender;
+    final UUID distributionId;
+    final int hashCode;
+
+    Key(SignalProtocolAddress sender, UUID distributionId) {
+      this.sender = sender;
+      this.distributionId = distributionId;
+      this.hashCode = 31 * sender.hashCode() + distributionId.hashCode();
+    }
+
+    @Override
+    public boolean equals(Object other) {
+      if (this == other) return true;
+      if (!(other instanceof Key)) return false;
+      final Key that = (Key) other;
+      return hashCode == that.hashCode
+          && distributionId.equals(that.distributionId)
+          && sender.equals(that.sender);
+    }
+
+    @Override
+    public int hashCode() {
+      return hashCode;
+    }
+  }
+
+  /** Serializes operations on one key; kept only while some thread is using it. */
+  private static final class KeyLock extends ReentrantLock {
+    // Only changed inside ConcurrentHashMap.compute for this key.
+    int users = 0;
+  }
+
+  private final SenderKeyStore backing;
+  // Guarded by itself, and never held across a call to the underlying store.
+  private final LruCache<Key, byte[]> cache;
+  private final ConcurrentHashMap<Key, KeyLock> locks = new ConcurrentHashMap<>();
+
+  /**
+   * @param backing the store to load records from and write them to
+   * @param maxRecords the maximum number of records to keep in memory
+   * @throws IllegalArgumentException if {@code maxRecords} is not positive
+   */
+  public CachingSenderKeyStore(SenderKeyStore backing, int maxRecords) {
+    if (maxRecords <= 0) {
+      throw new IllegalArgumentException("maxRecords must be positive");
+    }
+    this.backing = backing;
+    this.cache = new LruCache<>(maxRecords);
+  }
+
+  @Override
+  public void storeSenderKey(
+      SignalProtocolAddress sender, UUID distributionId, SenderKeyRecord record) {
+    final Key key = new Key(sender, distributionId);
+    final byte[] serialized = record.serialize();
+    final KeyLock lock = lock(key);
+    try {
+      synchronized (cache) {
+        cache.remove(key);
+      }
+      backing.storeSenderKey(sender, distributionId, record);
+      cache(key, serialized);
+    } finally {
+      unlock(key, lock);
+    }
+  }
+
+  @Override
+  public SenderKeyRecord loadSenderKey(SignalProtocolAddress sender, UUID distributionId) {
+    final Key key = new Key(sender, distributionId);
+    final byte[] cached = cached(key);
+    if (cached != null) {
+      return deserialize(cached);
+    }
+    final KeyLock lock = lock(key);
+    try {
+      // Another thread may have loaded or stored it while this one waited.
+      final byte[] filled = cached(key);
+      if (filled != null) {
+        return deserialize(filled);
+      }
+      final SenderKeyRecord record = backing.loadSenderKey(sender, distributionId);
+      if (record != null) {
+        cache(key, record.serialize());
+      }
+      return record;
+    } finally {
+      unlock(key, lock);
+    }
+  }
+
+  /** Drops every cached record. The underlying store is unaffected. */
+  public void clear() {
+    synchronized (cache) {
+      cache.clear();
+    }
+  }
+
+  /** Returns the number of records currently held in memory. */
+  public int cachedRecordCount() {
+    synchronized (cache) {
+      return cache.size();
+    }
+  }
+
+  private byte[] cached(Key key) {
+    synchronized (cache) {
+      return cache.get(key);
+    }
+  }
+
+  private void cache(Key key, byte[] serialized) {
+    synchronized (cache) {
+      cache.put(key, serialized);
+    }
+  }
+
+  private KeyLock lock(Key key) {
+    final KeyLock lock =
+        locks.compute(
+            key,
+            (k, existing) -> {
+              final KeyLock result = existing != null ? existing : new KeyLock();
+              ++result.users;
+              return result;
+            });
+    lock.lock();
+    return lock;
+  }
+
+  private void unlock(Key key, KeyLock lock) {
+    lock.unlock();
+    locks.computeIfPresent(key, (k, existing) -> --existing.users == 0 ? null : existing);
+  }
+
+  private static SenderKeyRecord deserialize(byte[] serialized) {
+    try {
+      return new SenderKeyRecord(serialized);
+    } catch (InvalidMessageException e) {
+      throw new AssertionError(e);
+    }
+  }
+}
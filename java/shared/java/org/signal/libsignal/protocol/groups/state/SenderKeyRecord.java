@@ -19,21 +19,17 @@ import org.signal.libsignal.protocol.InvalidMessageException;
  * @author Moxie Marlinspike
  */
 public class SenderKeyRecord extends NativeHandleGuard.SimpleOwner {
-  @Override
-  protected void release(long nativeHandle) {
-    Native.SenderKeyRecord_Destroy(nativeHandle);
-  }
-
   @CalledFromNative
   public SenderKeyRecord(long nativeHandle) {
-    super(nativeHandle);
+    super(nativeHandle, Native::SenderKeyRecord_Destroy);
   }
 
   // FIXME: This shouldn't be considered a "message".
   public SenderKeyRecord(byte[] serialized) throws InvalidMessageException {
     super(
         filterExceptions(
-            InvalidMessageException.class, () -> Native.SenderKeyRecord_Deserialize(serialized)));
+            InvalidMessageException.class, () -> Native.SenderKeyRecord_Deserialize(serialized)),
+        Native::SenderKeyRecord_Destroy);
   }
 
   public byte[] serialize() {
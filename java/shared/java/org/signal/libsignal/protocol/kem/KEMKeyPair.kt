@@ -12,6 +12,7 @@ public class KEMKeyPair(
   nativeHandle: Long,
 ) : NativeHandleGuard.SimpleOwner(
     NativeHandleGuard.SimpleOwner.throwIfNull(nativeHandle),
+    Native::KyberKeyPair_Destroy,
   ) {
   public companion object {
     @JvmStatic
@@ -21,10 +22,6 @@ public class KEMKeyPair(
       }
   }
 
-  protected override fun release(nativeHandle: Long) {
-    Native.KyberKeyPair_Destroy(nativeHandle)
-  }
-
   public val publicKey: KEMPublicKey
     get() = KEMPublicKey(guardedMap(Native::KyberKeyPair_GetPublicKey))
 
@@ -21,16 +21,16 @@ public class KEMPublicKey :
 
   @Throws(InvalidKeyException::class)
   public constructor(serialized: ByteArray, offset: Int, length: Int) :
-    super(Native.KyberPublicKey_DeserializeWithOffsetLength(serialized, offset, length))
+    super(
+      Native.KyberPublicKey_DeserializeWithOffsetLength(serialized, offset, length),
+      Native::KyberPublicKey_Destroy,
+    )
 
   @Throws(InvalidKeyException::class)
   public constructor(serialized: ByteArray) : this(serialized, 0, serialized.size)
 
-  public constructor(nativeHandle: Long) : super(NativeHandleGuard.SimpleOwner.throwIfNull(nativeHandle))
-
-  protected override fun release(nativeHandle: Long) {
-    Native.KyberPublicKey_Destroy(nativeHandle)
-  }
+  public constructor(nativeHandle: Long) :
+    super(NativeHandleGuard.SimpleOwner.throwIfNull(nativeHandle), Native::KyberPublicKey_Destroy)
 
   public fun serialize(): ByteArray = guardedMapChecked(Native::KyberPublicKey_Serialize)
 
@@ -13,15 +13,12 @@ public class KEMSecretKey(
   nativeHandle: Long,
 ) : NativeHandleGuard.SimpleOwner(
     NativeHandleGuard.SimpleOwner.throwIfNull(nativeHandle),
+    Native::KyberSecretKey_Destroy,
   ) {
   @Throws(InvalidKeyException::class)
   public constructor(privateKey: ByteArray) : this(
     Native.KyberSecretKey_Deserialize(privateKey),
   )
 
-  protected override fun release(nativeHandle: Long) {
-    Native.KyberSecretKey_Destroy(nativeHandle)
-  }
-
   public fun serialize(): ByteArray = guardedMapChecked(Native::KyberSecretKey_Serialize)
 }
@@ -16,13 +16,8 @@ import org.signal.libsignal.protocol.ecc.ECPublicKey;
 
 public final class DecryptionErrorMessage extends NativeHandleGuard.SimpleOwner {
 
-  @Override
-  protected void release(long nativeHandle) {
-    Native.DecryptionErrorMessage_Destroy(nativeHandle);
-  }
-
   DecryptionErrorMessage(long nativeHandle) {
-    super(nativeHandle);
+    super(nativeHandle, Native::DecryptionErrorMessage_Destroy);
   }
 
   public DecryptionErrorMessage(byte[] serialized)
@@ -31,7 +26,8 @@ public final class DecryptionErrorMessage extends NativeHandleGuard.SimpleOwner
         filterExceptions(
             InvalidKeyException.class,
             InvalidMessageException.class,
-            () -> Native.DecryptionErrorMessage_Deserialize(serialized)));
+            () -> Native.DecryptionErrorMessage_Deserialize(serialized)),
+        Native::DecryptionErrorMessage_Destroy);
   }
 
   public static DecryptionErrorMessage forOriginalMessage(
@@ -16,19 +16,16 @@ import org.signal.libsignal.protocol.InvalidVersionException;
 public final class PlaintextContent extends NativeHandleGuard.SimpleOwner
     implements CiphertextMessage, NativeHandleGuard.Owner {
 
-  @Override
-  protected void release(long nativeHandle) {
-    Native.PlaintextContent_Destroy(nativeHandle);
-  }
-
   @CalledFromNative
   @SuppressWarnings("unused")
   private PlaintextContent(long nativeHandle) {
-    super(nativeHandle);
+    super(nativeHandle, Native::PlaintextContent_Destroy);
   }
 
   public PlaintextContent(DecryptionErrorMessage message) {
-    super(message.guardedMap(Native::PlaintextContent_FromDecryptionErrorMessage));
+    super(
+        message.guardedMap(Native::PlaintextContent_FromDecryptionErrorMessage),
+        Native::PlaintextContent_Destroy);
   }
 
   public PlaintextContent(byte[] serialized)
@@ -37,7 +34,8 @@ public final class PlaintextContent extends NativeHandleGuard.SimpleOwner
         filterExceptions(
             InvalidMessageException.class,
             InvalidVersionException.class,
-            () -> Native.PlaintextContent_Deserialize(serialized)));
+            () -> Native.PlaintextContent_Deserialize(serialized)),
+        Native::PlaintextContent_Destroy);
   }
 
   @Override
@@ -21,11 +21,6 @@ import org.signal.libsignal.protocol.ecc.ECPublicKey;
 public class PreKeySignalMessage extends NativeHandleGuard.SimpleOwner
     implements CiphertextMessage, NativeHandleGuard.Owner {
 
-  @Override
-  protected void release(long nativeHandle) {
-    Native.PreKeySignalMessage_Destroy(nativeHandle);
-  }
-
   public PreKeySignalMessage(byte[] serialized)
       throws InvalidMessageException,
           InvalidVersionException,
@@ -37,12 +32,13 @@ public class PreKeySignalMessage extends NativeHandleGuard.SimpleOwner
             InvalidVersionException.class,
             LegacyMessageException.class,
             InvalidKeyException.class,
-            () -> Native.PreKeySignalMessage_Deserialize(serialized)));
+            () -> Native.PreKeySignalMessage_Deserialize(serialized)),
+        Native::PreKeySignalMessage_Destroy);
   }
 
   @CalledFromNative
   public PreKeySignalMessage(long nativeHandle) {
-    super(nativeHandle);
+    super(nativeHandle, Native::PreKeySignalMessage_Destroy);
   }
 
   public int getMessageVersion() {
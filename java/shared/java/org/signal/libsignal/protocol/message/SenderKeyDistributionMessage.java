@@ -18,13 +18,8 @@ import org.signal.libsignal.protocol.ecc.ECPublicKey;
 
 public class SenderKeyDistributionMessage extends NativeHandleGuard.SimpleOwner {
 
-  @Override
-  protected void release(long nativeHandle) {
-    Native.SenderKeyDistributionMessage_Destroy(nativeHandle);
-  }
-
   public SenderKeyDistributionMessage(long nativeHandle) {
-    super(nativeHandle);
+    super(nativeHandle, Native::SenderKeyDistributionMessage_Destroy);
   }
 
   public SenderKeyDistributionMessage(byte[] serialized)
@@ -38,7 +33,8 @@ public class SenderKeyDistributionMessage extends NativeHandleGuard.SimpleOwner
             InvalidVersionException.class,
             LegacyMessageException.class,
             InvalidKeyException.class,
-            () -> Native.SenderKeyDistributionMessage_Deserialize(serialized)));
+            () -> Native.SenderKeyDistributionMessage_Deserialize(serialized)),
+        Native::SenderKeyDistributionMessage_Destroy);
   }
 
   public byte[] serialize() {
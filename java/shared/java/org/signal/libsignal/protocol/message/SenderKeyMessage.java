@@ -19,14 +19,9 @@ import org.signal.libsignal.protocol.ecc.ECPublicKey;
 public class SenderKeyMessage extends NativeHandleGuard.SimpleOwner
     implements CiphertextMessage, NativeHandleGuard.Owner {
 
-  @Override
-  protected void release(long nativeHandle) {
-    Native.SenderKeyMessage_Destroy(nativeHandle);
-  }
-
   @CalledFromNative
   public SenderKeyMessage(long nativeHandle) {
-    super(nativeHandle);
+    super(nativeHandle, Native::SenderKeyMessage_Destroy);
   }
 
   public SenderKeyMessage(byte[] serialized)
@@ -36,7 +31,8 @@ public class SenderKeyMessage extends NativeHandleGuard.SimpleOwner
             InvalidMessageException.class,
             InvalidVersionException.class,
             LegacyMessageException.class,
-            () -> Native.SenderKeyMessage_Deserialize(serialized)));
+            () -> Native.SenderKeyMessage_Deserialize(serialized)),
+        Native::SenderKeyMessage_Destroy);
   }
 
   public UUID getDistributionId() {
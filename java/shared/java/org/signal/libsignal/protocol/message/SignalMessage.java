@@ -19,11 +19,6 @@ import org.signal.libsignal.protocol.util.ByteUtil;
 
 public class SignalMessage extends NativeHandleGuard.SimpleOwner
     implements CiphertextMessage, NativeHandleGuard.Owner {
-  @Override
-  protected void release(long nativeHandle) {
-    Native.SignalMessage_Destroy(nativeHandle);
-  }
-
   public SignalMessage(byte[] serialized)
       throws InvalidMessageException,
           InvalidVersionException,
@@ -35,12 +30,12 @@ public class SignalMessage extends NativeHandleGuard.SimpleOwner
             InvalidVersionException.class,
             InvalidKeyException.class,
             LegacyMessageException.class,
-            () -> Native.SignalMessage_Deserialize(serialized)));
+            () -> Native.SignalMessage_Deserialize(serialized)), Native::SignalMessage_Destroy);
   }
 
   @CalledFromNative
   public SignalMessage(long nativeHandle) {
-    super(nativeHandle);
+    super(nativeHandle, Native::SignalMessage_Destroy);
   }
 
   public ECPublicKey getSenderRatchetKey() {
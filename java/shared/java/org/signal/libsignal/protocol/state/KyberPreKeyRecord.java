@@ -14,27 +14,24 @@ import org.signal.libsignal.protocol.InvalidMessageException;
 import org.signal.libsignal.protocol.kem.KEMKeyPair;
 
 public class KyberPreKeyRecord extends NativeHandleGuard.SimpleOwner {
-  @Override
-  protected void release(long nativeHandle) {
-    Native.KyberPreKeyRecord_Destroy(nativeHandle);
-  }
-
   public KyberPreKeyRecord(int id, long timestamp, KEMKeyPair keyPair, byte[] signature) {
     super(
         keyPair.guardedMap(
             (keyPairHandle) ->
-                Native.KyberPreKeyRecord_New(id, timestamp, keyPairHandle, signature)));
+                Native.KyberPreKeyRecord_New(id, timestamp, keyPairHandle, signature)),
+        Native::KyberPreKeyRecord_Destroy);
   }
 
   // FIXME: This shouldn't be considered a "message".
   public KyberPreKeyRecord(byte[] serialized) throws InvalidMessageException {
     super(
         filterExceptions(
-            InvalidMessageException.class, () -> Native.KyberPreKeyRecord_Deserialize(serialized)));
+            InvalidMessageException.class, () -> Native.KyberPreKeyRecord_Deserialize(serialized)),
+        Native::KyberPreKeyRecord_Destroy);
   }
 
   public KyberPreKeyRecord(long nativeHandle) {
-    super(nativeHandle);
+    super(nativeHandle, Native::KyberPreKeyRecord_Destroy);
   }
 
   public int getId() {
@@ -54,11 +54,7 @@ public class PreKeyBundle : NativeHandleGuard.SimpleOwner {
 
   // Native calls this through reflection, so this doesn't need to be public
   @CalledFromNative
-  internal constructor(handle: Long) : super(handle) {
-  }
-
-  protected override fun release(nativeHandle: Long) {
-    Native.PreKeyBundle_Destroy(nativeHandle)
+  internal constructor(handle: Long) : super(handle, Native::PreKeyBundle_Destroy) {
   }
 
   /**
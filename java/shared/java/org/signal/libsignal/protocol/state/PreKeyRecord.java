@@ -16,13 +16,8 @@ import org.signal.libsignal.protocol.ecc.ECPrivateKey;
 import org.signal.libsignal.protocol.ecc.ECPublicKey;
 
 public class PreKeyRecord extends NativeHandleGuard.SimpleOwner {
-  @Override
-  protected void release(long nativeHandle) {
-    Native.PreKeyRecord_Destroy(nativeHandle);
-  }
-
   public PreKeyRecord(long nativeHandle) {
-    super(nativeHandle);
+    super(nativeHandle, Native::PreKeyRecord_Destroy);
   }
 
   public PreKeyRecord(int id, ECKeyPair keyPair) {
@@ -35,14 +30,16 @@ public class PreKeyRecord extends NativeHandleGuard.SimpleOwner {
                         .getPrivateKey()
                         .guardedMap(
                             (privateKeyHandle) ->
-                                Native.PreKeyRecord_New(id, publicKeyHandle, privateKeyHandle))));
+                                Native.PreKeyRecord_New(id, publicKeyHandle, privateKeyHandle))),
+        Native::PreKeyRecord_Destroy);
   }
 
   // FIXME: This shouldn't be considered a "message".
   public PreKeyRecord(byte[] serialized) throws InvalidMessageException {
     super(
         filterExceptions(
-            InvalidMessageException.class, () -> Native.PreKeyRecord_Deserialize(serialized)));
+            InvalidMessageException.class, () -> Native.PreKeyRecord_Deserialize(serialized)),
+        Native::PreKeyRecord_Destroy);
   }
 
   public int getId() {
@@ -24,25 +24,21 @@ import org.signal.libsignal.protocol.ecc.ECPublicKey;
  */
 public class SessionRecord extends NativeHandleGuard.SimpleOwner {
 
-  @Override
-  protected void release(long nativeHandle) {
-    Native.SessionRecord_Destroy(nativeHandle);
-  }
-
   public SessionRecord() {
-    super(Native.SessionRecord_NewFresh());
+    super(Native.SessionRecord_NewFresh(), Native::SessionRecord_Destroy);
   }
 
   @CalledFromNative
   public SessionRecord(long nativeHandle) {
-    super(nativeHandle);
+    super(nativeHandle, Native::SessionRecord_Destroy);
   }
 
   // FIXME: This shouldn't be considered a "message".
   public SessionRecord(byte[] serialized) throws InvalidMessageException {
     super(
         filterExceptions(
-            InvalidMessageException.class, () -> Native.SessionRecord_Deserialize(serialized)));
+            InvalidMessageException.class, () -> Native.SessionRecord_Deserialize(serialized)),
+        Native::SessionRecord_Destroy);
   }
 
   /**
@@ -16,11 +16,6 @@ import org.signal.libsignal.protocol.ecc.ECPrivateKey;
 import org.signal.libsignal.protocol.ecc.ECPublicKey;
 
 public class SignedPreKeyRecord extends NativeHandleGuard.SimpleOwner {
-  @Override
-  protected void release(long nativeHandle) {
-    Native.SignedPreKeyRecord_Destroy(nativeHandle);
-  }
-
   public SignedPreKeyRecord(int id, long timestamp, ECKeyPair keyPair, byte[] signature) {
     super(
         keyPair
@@ -32,7 +27,8 @@ public class SignedPreKeyRecord extends NativeHandleGuard.SimpleOwner {
                         .guardedMap(
                             (privateKeyHandle) ->
                                 Native.SignedPreKeyRecord_New(
-                                    id, timestamp, publicKeyHandle, privateKeyHandle, signature))));
+                                    id, timestamp, publicKeyHandle, privateKeyHandle, signature))),
+        Native::SignedPreKeyRecord_Destroy);
   }
 
   // FIXME: This shouldn't be considered a "message".
@@ -40,11 +36,12 @@ public class SignedPreKeyRecord extends NativeHandleGuard.SimpleOwner {
     super(
         filterExceptions(
             InvalidMessageException.class,
-            () -> Native.SignedPreKeyRecord_Deserialize(serialized)));
+            () -> Native.SignedPreKeyRecord_Deserialize(serialized)),
+        Native::SignedPreKeyRecord_Destroy);
   }
 
   public SignedPreKeyRecord(long nativeHandle) {
-    super(nativeHandle);
+    super(nativeHandle, Native::SignedPreKeyRecord_Destroy);
   }
 
   public int getId() {
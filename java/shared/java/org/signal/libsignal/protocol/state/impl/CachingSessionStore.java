@@ -0,0 +1,238 @@
+//
+// Copyright 2026 Signal Messenger, LLC.
+// SPDX-License-Identifier: AGPL-3.0-only
+//
+
+package org.signal.libsignal.protocol.state.impl;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.TreeSet;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.locks.ReentrantLock;
+import org.signal.libsignal.internal.LruCache;
+import org.signal.libsignal.protocol.InvalidMessageException;
+import org.signal.libsignal.protocol.NoSessionException;
+import org.signal.libsignal.protocol.SignalProtocolAddress;
+import org.signal.libsignal.protocol.state.SessionRecord;
+import org.signal.libsignal.protocol.state.SessionStore;
+
+/**
+ * A read-through cache of serialized sessions in front of another {@link SessionStore}.
+ *
+ * <p>Every message encrypted or decrypted loads a session, which for a store backed by a database
+ * or a file means a lookup before the record can even be deserialized. This store keeps the
+ * serialized form of the most recently used records, so loading one of them skips the underlying
+ * store. It does not skip deserialization: every load still builds a new record from bytes, and
+ * every {@link #storeSession} serializes the record once more for the cache. In front of a store
+ * that is already in memory, this only adds work.
+ *
+ * <p>Stores are written through: {@link #storeSession} saves the record in the underlying store
+ * before returning, so a crash can never roll a session back to a state whose keys have already
+ * been used. Like any other store, {@link #loadSession} returns a new record each time, and changes
+ * to it have no effect until it is stored.
+ *
+ * <p>Operations on the same recipient (any of its devices) run one at a time, including their calls
+ * to the underlying store, so the cache never holds an older record than the underlying store does.
+ * Operations on different recipients never wait for each other's calls to the underlying store.
+ */
+public class CachingSessionStore implements SessionStore {
+  /** Serializes operations on one recipient; kept only while some thread is using it. */
+  private static final class RecipientLock extends ReentrantLock {
+    // Only changed inside ConcurrentHashMap.compute for this recipient.
+    int users = 0;
+  }
+
+  private final SessionStore backing;
+  // Guarded by itself, and never held across a call to the underlying store.
+  private final LruCache<SignalProtocolAddress, byte[]> cache;
+  private final ConcurrentHashMap<String, RecipientLock> locks = new ConcurrentHashMap<>();
+
+  /**
+   * @param backing the store to load sessions from and write them to
+   * @param maxSessions the maximum number of records to keep in memory
+   * @throws IllegalArgumentException if {@code maxSessions} is not positive
+   */
+  public CachingSessionStore(SessionStore backing, int maxSessions) {
+    if (maxSessions <= 0) {
+      throw new IllegalArgumentException("maxSessions must be positive");
+    }
+    this.backing = backing;
+    this.cache = new LruCache<>(maxSessions);
+  }
+
+  @Override
+  public SessionRecord loadSession(SignalProtocolAddress address) {
+    final byte[] cached = cached(address);
+    if (cached != null) {
+      return deserialize(cached);
+    }
+    final RecipientLock lock = lock(address.getName());
+    try {
+      // Another thread may have loaded or stored it while this one waited.
+      final byte[] filled = cached(address);
+      if (filled != null) {
+        return deserialize(filled);
+      }
+      final SessionRecord record = backing.loadSession(address);
+      if (record != null) {
+        cache(address, record.serialize());
+      }
+      return record;
+    } finally {
+      unlock(address.getName(), lock);
+    }
+  }
+
+  @Override
+  public List<SessionRecord> loadExistingSessions(List<SignalProtocolAddress> addresses)
+      throws NoSessionException {
+    final List<SessionRecord> result = new ArrayList<>(addresses.size());
+    final List<SignalProtocolAddress> missing = new ArrayList<>();
+    for (SignalProtocolAddress address : addresses) {
+      final byte[] cached = cached(address);
+      if (cached != null) {
+        result.add(deserialize(cached));
+      } else {
+        result.add(null);
+        missing.add(address);
+      }
+    }
+    if (missing.isEmpty()) {
+      return result;
+    }
+
+    // Lock in a consistent order, so that two overlapping batches can't deadlock.
+    final TreeSet<String> sortedNames = new TreeSet<>();
+    for (SignalProtocolAddress address : missing) {
+      sortedNames.add(address.getName());
+    }
+    final List<String> names = new ArrayList<>(sortedNames);
+    final List<RecipientLock> held = new ArrayList<>(names.size());
+    try {
+      for (String name : names) {
+        held.add(lock(name));
+      }
+      final List<SessionRecord> loaded = backing.loadExistingSessions(missing);
+      int next = 0;
+      for (int i = 0; i < result.size(); ++i) {
+        if (result.get(i) == null) {
+          final SessionRecord record = loaded.get(next++);
+          cache(addresses.get(i), record.serialize());
+          result.set(i, record);
+        }
+      }
+      return result;
+    } finally {
+      for (int i = held.size() - 1; i >= 0; --i) {
+        unlock(names.get(i), held.get(i));
+      }
+    }
+  }
+
+  @Override
+  public List<Integer> getSubDeviceSessions(String name) {
+    return backing.getSubDeviceSessions(name);
+  }
+
+  @Override
+  public void storeSession(SignalProtocolAddress address, SessionRecord record) {
+    final byte[] serialized = record.serialize();
+    final RecipientLock lock = lock(address.getName());
+    try {
+      // If the underlying store fails, it's no longer clear what it holds, so don't cache anything.
+      uncache(address);
+      backing.storeSession(address, record);
+      cache(address, serialized);
+    } finally {
+      unlock(address.getName(), lock);
+    }
+  }
+
+  @Override
+  public boolean containsSession(SignalProtocolAddress address) {
+    return cached(address) != null || backing.containsSession(address);
+  }
+
+  @Override
+  public void deleteSession(SignalProtocolAddress address) {
+    final RecipientLock lock = lock(address.getName());
+    try {
+      uncache(address);
+      backing.deleteSession(address);
+    } finally {
+      unlock(address.getName(), lock);
+    }
+  }
+
+  @Override
+  public void deleteAllSessions(String name) {
+    final RecipientLock lock = lock(name);
+    try {
+      synchronized (cache) {
+        cache.removeIf(address -> address.getName().equals(name));
+      }
+      backing.deleteAllSessions(name);
+    } finally {
+      unlock(name, lock);
+    }
+  }
+
+  /** Drops every cached record. The underlying store is unaffected. */
+  public void clear() {
+    synchronized (cache) {
+      cache.clear();
+    }
+  }
+
+  /** Returns the number of records currently held in memory. */
+  public int cachedSessionCount() {
+    synchronized (cache) {
+      return cache.size();
+    }
+  }
+
+  private byte[] cached(SignalProtocolAddress address) {
+    synchronized (cache) {
+      return cache.get(address);
+    }
+  }
+
+  private void cache(SignalProtocolAddress address, byte[] serialized) {
+    synchronized (cache) {
+      cache.put(address, serialized);
+    }
+  }
+
+  private void uncache(SignalProtocolAddress address) {
+    synchronized (cache) {
+      cache.remove(address);
+    }
+  }
+
+  private RecipientLock lock(String name) {
+    final RecipientLock lock =
+        locks.compute(
+            name,
+            (key, existing) -> {
+              final RecipientLock result = existing != null ? existing : new RecipientLock();
+              ++result.users;
+              return result;
+            });
+    lock.lock();
+    return lock;
+  }
+
+  private void unlock(String name, RecipientLock lock) {
+    lock.unlock();
+    locks.computeIfPresent(name, (key, existing) -> --existing.users == 0 ? null : existing);
+  }
+
+  private static SessionRecord deserialize(byte[] serialized) {
+    try {
+      return new SessionRecord(serialized);
+    } catch (InvalidMessageException e) {
+      throw new AssertionError(e);
+    }
+  }
+}
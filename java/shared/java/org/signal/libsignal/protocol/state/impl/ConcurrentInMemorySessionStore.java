@@ -0,0 +1,192 @@
+//
+// Copyright 2026 Signal Messenger, LLC.
+// SPDX-License-Identifier: AGPL-3.0-only
+//
+
+package org.signal.libsignal.protocol.state.impl;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import org.signal.libsignal.protocol.InvalidMessageException;
+import org.signal.libsignal.protocol.NoSessionException;
+import org.signal.libsignal.protocol.SignalProtocolAddress;
+import org.signal.libsignal.protocol.state.SessionRecord;
+import org.signal.libsignal.protocol.state.SessionStore;
+
+/**
+ * An in-memory {@link SessionStore} for many sessions used from many threads.
+ *
+ * <p>Sessions are grouped by name, and each name's devices are kept together, so listing or
+ * deleting a recipient's sessions only touches that recipient's devices. Reads never block.
+ * Writes lock only the entry for the name being changed, so operations on different recipients
+ * don't contend (apart from the occasional hash collision).
+ *
+ * <p>Like {@link InMemorySessionStore}, records are stored serialized, and every load returns a
+ * fresh copy.
+ */
+public class ConcurrentInMemorySessionStore implements SessionStore {
+  private final ConcurrentHashMap<String, Devices> sessions;
+
+  public ConcurrentInMemorySessionStore() {
+    this.sessions = new ConcurrentHashMap<>();
+  }
+
+  /**
+   * @param expectedRecipients the number of distinct names the store should be able to hold
+   *     without resizing
+   */
+  public ConcurrentInMemorySessionStore(int expectedRecipients) {
+    this.sessions = new ConcurrentHashMap<>(expectedRecipients);
+  }
+
+  @Override
+  public SessionRecord loadSession(SignalProtocolAddress address) {
+    final byte[] serialized = find(address);
+    return serialized != null ? deserialize(serialized) : null;
+  }
+
+  @Override
+  public List<SessionRecord> loadExistingSessions(List<SignalProtocolAddress> addresses)
+      throws NoSessionException {
+    final List<SessionRecord> result = new ArrayList<>(addresses.size());
+    for (SignalProtocolAddress address : addresses) {
+      final byte[] serialized = find(address);
+      if (serialized == null) {
+        throw new NoSessionException(address, "no session for " + address);
+      }
+      result.add(deserialize(serialized));
+    }
+    return result;
+  }
+
+  @Override
+  public List<Integer> getSubDeviceSessions(String name) {
+    final Devices devices = sessions.get(name);
+    if (devices == null) {
+      return new ArrayList<>();
+    }
+    final List<Integer> result = new ArrayList<>(devices.ids.length);
+    for (byte id : devices.ids) {
+      if (id != 1) {
+        result.add((int) id);
+      }
+    }
+    return result;
+  }
+
+  @Override
+  public void storeSession(SignalProtocolAddress address, SessionRecord record) {
+    final byte[] serialized = record.serialize();
+    final byte deviceId = (byte) address.getDeviceId();
+    sessions.compute(
+        address.getName(),
+        (name, devices) ->
+            devices == null
+                ? Devices.of(deviceId, serialized)
+                : devices.with(deviceId, serialized));
+  }
+
+  @Override
+  public boolean containsSession(SignalProtocolAddress address) {
+    return find(address) != null;
+  }
+
+  @Override
+  public void deleteSession(SignalProtocolAddress address) {
+    final byte deviceId = (byte) address.getDeviceId();
+    sessions.computeIfPresent(address.getName(), (name, devices) -> devices.without(deviceId));
+  }
+
+  @Override
+  public void deleteAllSessions(String name) {
+    sessions.remove(name);
+  }
+
+  /** Returns the number of sessions currently stored, across all recipients. */
+  public int size() {
+    int size = 0;
+    for (Devices devices : sessions.values()) {
+      size += devices.ids.length;
+    }
+    return size;
+  }
+
+  private byte[] find(SignalProtocolAddress address) {
+    final Devices devices = sessions.get(address.getName());
+    return devices != null ? devices.get((byte) address.getDeviceId()) : null;
+  }
+
+  private static SessionRecord deserialize(byte[] serialized) {
+    try {
+      return new SessionRecord(serialized);
+    } catch (InvalidMessageException e) {
+      throw new AssertionError(e);
+    }
+  }
+
+  /**
+   * One recipient's sessions, sorted by device ID.
+   *
+   * <p>Immutable, so that readers can use whichever version they find without locking. A
+   * recipient rarely has more than a handful of devices, so copying on write is cheaper than any
+   * shared mutable structure would be.
+   */
+  private static final class Devices {
+    // Device IDs are always in 1..=127.
+    private final byte[] ids;
+    private final byte[][] records;
+
+    private Devices(byte[] ids, byte[][] records) {
+      this.ids = ids;
+      this.records = records;
+    }
+
+    static Devices of(byte id, byte[] record) {
+      return new Devices(new byte[] {id}, new byte[][] {record});
+    }
+
+    byte[] get(byte id) {
+      final int index = Arrays.binarySearch(ids, id);
+      return index >= 0 ? records[index] : null;
+    }
+
+    Devices with(byte id, byte[] record) {
+      final int index = Arrays.binarySearch(ids, id);
+      if (index >= 0) {
+        final byte[][] newRecords = records.clone();
+        newRecords[index] = record;
+        return new Devices(ids, newRecords);
+      }
+      final int insertAt = -index - 1;
+      final byte[] newIds = new byte[ids.length + 1];
+      final byte[][] newRecords = new byte[ids.length + 1][];
+      System.arraycopy(ids, 0, newIds, 0, insertAt);
+      System.arraycopy(records, 0, newRecords, 0, insertAt);
+      newIds[insertAt] = id;
+      newRecords[insertAt] = record;
+      System.arraycopy(ids, insertAt, newIds, insertAt + 1, ids.length - insertAt);
+      System.arraycopy(records, insertAt, newRecords, insertAt + 1, ids.length - insertAt);
+      return new Devices(newIds, newRecords);
+    }
+
+    /** Returns a copy without {@code id}, or {@code null} if that would leave no devices. */
+    Devices without(byte id) {
+      final int index = Arrays.binarySearch(ids, id);
+      if (index < 0) {
+        return this;
+      }
+      if (ids.length == 1) {
+        return null;
+      }
+      final byte[] newIds = new byte[ids.length - 1];
+      final byte[][] newRecords = new byte[ids.length - 1][];
+      System.arraycopy(ids, 0, newIds, 0, index);
+      System.arraycopy(records, 0, newRecords, 0, index);
+      System.arraycopy(ids, index + 1, newIds, index, ids.length - index - 1);
+      System.arraycopy(records, index + 1, newRecords, index, ids.length - index - 1);
+      return new Devices(newIds, newRecords);
+    }
+  }
+}
@@ -0,0 +1,511 @@
+//
+// Copyright 2026 Signal Messenger, LLC.
+// SPDX-License-Identifier: AGPL-3.0-only
+//
+
+package org.signal.libsignal.protocol.state.impl;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import org.signal.libsignal.protocol.InvalidKeyIdException;
+import org.signal.libsignal.protocol.InvalidMessageException;
+import org.signal.libsignal.protocol.NoSessionException;
+import org.signal.libsignal.protocol.ReusedBaseKeyException;
+import org.signal.libsignal.protocol.SignalProtocolAddress;
+import org.signal.libsignal.protocol.ecc.ECPublicKey;
+import org.signal.libsignal.protocol.groups.state.SenderKeyRecord;
+import org.signal.libsignal.protocol.groups.state.SenderKeyStore;
+import org.signal.libsignal.protocol.state.KyberPreKeyRecord;
+import org.signal.libsignal.protocol.state.KyberPreKeyStore;
+import org.signal.libsignal.protocol.state.PreKeyRecord;
+import org.signal.libsignal.protocol.state.PreKeyStore;
+import org.signal.libsignal.protocol.state.SessionRecord;
+import org.signal.libsignal.protocol.state.SessionStore;
+import org.signal.libsignal.protocol.state.SignedPreKeyRecord;
+import org.signal.libsignal.protocol.state.SignedPreKeyStore;
+
+/**
+ * A durable store for sessions, pre-keys, and sender keys, kept in a single file.
+ *
+ * <p>Every update is appended to the file and synced to disk before the call returns, so the store
+ * can be used directly by {@code SessionCipher} and friends without a separate database. Lookups go
+ * through an index held in memory, which is rebuilt when the store is opened. If the process dies
+ * partway through a write, that write is discarded when the file is next opened, and everything
+ * written before it is kept. Superseded records are cleaned up in the background.
+ *
+ * <p>A file may only be open in one store at a time. Failures to read or write the file are thrown
+ * as {@link IllegalStateException}s wrapping the original {@link IOException}, since the store
+ * interfaces don't allow checked exceptions.
+ *
+ * <p>Identities are not stored here; pair this with an {@code IdentityKeyStore} of your own.
+ */
+public class FileProtocolStore
+    implements SessionStore,
+        PreKeyStore,
+        SignedPreKeyStore,
+        KyberPreKeyStore,
+        SenderKeyStore,
+        Closeable {
+  private static final byte SESSION = 1;
+  private static final byte PRE_KEY = 2;
+  private static final byte SIGNED_PRE_KEY = 3;
+  private static final byte KYBER_PRE_KEY = 4;
+  private static final byte KYBER_PRE_KEY_USED = 5;
+  private static final byte KYBER_BASE_KEY_SEEN = 6;
+  private static final byte SENDER_KEY = 7;
+
+  private static final class DefaultExecutorHolder {
+    static final ExecutorService INSTANCE =
+        Executors.newSingleThreadExecutor(
+            runnable -> {
+              final Thread thread = new Thread(runnable, "libsignal-store-compaction");
+              thread.setDaemon(true);
+              return thread;
+            });
+  }
+
+  // The devices with sessions for each name, so that listing or deleting them doesn't need a scan.
+  // Kept up to date by the log itself (see keyChanged), so it changes in the same order the log
+  // does.
+  private final ConcurrentHashMap<String, Set<Integer>> sessionDevices = new ConcurrentHashMap<>();
+  private final Object kyberBaseKeyLock = new Object();
+  private final RecordLog log;
+
+  private FileProtocolStore(File file, Executor compactionExecutor) throws IOException {
+    this.log = RecordLog.open(file, compactionExecutor, this::keyChanged);
+  }
+
+  /**
+   * Opens the store kept in {@code file}, creating it if it doesn't exist.
+   *
+   * <p>Compaction happens on a single thread shared by every store opened this way.
+   *
+   * @throws IOException if the file can't be read, or wasn't created by this class
+   */
+  public static FileProtocolStore open(File file) throws IOException {
+    return open(file, DefaultExecutorHolder.INSTANCE);
+  }
+
+  /**
+   * Opens the store kept in {@code file}, creating it if it doesn't exist.
+   *
+   * @param compactionExecutor where to run the occasional compaction of the file
+   * @throws IOException if the file can't be read, or wasn't created by this class
+   */
+  public static FileProtocolStore open(File file, Executor compactionExecutor) throws IOException {
+    return new FileProtocolStore(file, compactionExecutor);
+  }
+
+  /**
+   * Rewrites the file without any superseded records.
+   *
+   * <p>This happens automatically once the file is mostly superseded records; calling it directly
+   * is only useful to reclaim space right away.
+   */
+  public void compact() throws IOException {
+    log.compact();
+  }
+
+  /** Waits for any compaction in progress, then closes the file. */
+  @Override
+  public void close() throws IOException {
+    log.close();
+  }
+
+  // SessionStore
+
+  @Override
+  public SessionRecord loadSession(SignalProtocolAddress address) {
+    final byte[] serialized = get(sessionKey(address.getName(), address.getDeviceId()));
+    if (serialized == null) {
+      return null;
+    }
+    try {
+      return new SessionRecord(serialized);
+    } catch (InvalidMessageException e) {
+      throw new AssertionError(e);
+    }
+  }
+
+  @Override
+  public List<SessionRecord> loadExistingSessions(List<SignalProtocolAddress> addresses)
+      throws NoSessionException {
+    final List<SessionRecord> result = new ArrayList<>(addresses.size());
+    for (SignalProtocolAddress address : addresses) {
+      final SessionRecord record = loadSession(address);
+      if (record == null) {
+        throw new NoSessionException(address, "no session for " + address);
+      }
+      result.add(record);
+    }
+    return result;
+  }
+
+  @Override
+  public List<Integer> getSubDeviceSessions(String name) {
+    final Set<Integer> devices = sessionDevices.get(name);
+    final List<Integer> result = new ArrayList<>();
+    if (devices != null) {
+      for (int deviceId : devices) {
+        if (deviceId != 1) {
+          result.add(deviceId);
+        }
+      }
+      Collections.sort(result);
+    }
+    return result;
+  }
+
+  @Override
+  public void storeSession(SignalProtocolAddress address, SessionRecord record) {
+    put(sessionKey(address.getName(), address.getDeviceId()), record.serialize());
+  }
+
+  @Override
+  public boolean containsSession(SignalProtocolAddress address) {
+    return log.contains(sessionKey(address.getName(), address.getDeviceId()));
+  }
+
+  @Override
+  public void deleteSession(SignalProtocolAddress address) {
+    delete(sessionKey(address.getName(), address.getDeviceId()));
+  }
+
+  @Override
+  public void deleteAllSessions(String name) {
+    final Set<Integer> devices = sessionDevices.get(name);
+    if (devices == null) {
+      return;
+    }
+    final List<RecordLog.Key> keys = new ArrayList<>(devices.size());
+    final List<byte[]> values = new ArrayList<>(devices.size());
+    for (int deviceId : devices) {
+      keys.add(sessionKey(name, deviceId));
+      values.add(null);
+    }
+    write(keys, values);
+  }
+
+  // PreKeyStore
+
+  @Override
+  public PreKeyRecord loadPreKey(int preKeyId) throws InvalidKeyIdException {
+    final byte[] serialized = get(idKey(PRE_KEY, preKeyId));
+    if (serialized == null) {
+      throw new InvalidKeyIdException("No such PreKeyRecord: " + preKeyId);
+    }
+    try {
+      return new PreKeyRecord(serialized);
+    } catch (InvalidMessageException e) {
+      throw new AssertionError(e);
+    }
+  }
+
+  @Override
+  public void storePreKey(int preKeyId, PreKeyRecord record) {
+    put(idKey(PRE_KEY, preKeyId), record.serialize());
+  }
+
+  @Override
+  public boolean containsPreKey(int preKeyId) {
+    return log.contains(idKey(PRE_KEY, preKeyId));
+  }
+
+  @Override
+  public void removePreKey(int preKeyId) {
+    delete(idKey(PRE_KEY, preKeyId));
+  }
+
+  // SignedPreKeyStore
+
+  @Override
+  public SignedPreKeyRecord loadSignedPreKey(int signedPreKeyId) throws InvalidKeyIdException {
+    final byte[] serialized = get(idKey(SIGNED_PRE_KEY, signedPreKeyId));
+    if (serialized == null) {
+      throw new InvalidKeyIdException("No such SignedPreKeyRecord: " + signedPreKeyId);
+    }
+    try {
+      return new SignedPreKeyRecord(serialized);
+    } catch (InvalidMessageException e) {
+      throw new AssertionError(e);
+    }
+  }
+
+  @Override
+  public List<SignedPreKeyRecord> loadSignedPreKeys() {
+    final List<SignedPreKeyRecord> result = new ArrayList<>();
+    try {
+      for (byte[] serialized : getAll(SIGNED_PRE_KEY)) {
+        result.add(new SignedPreKeyRecord(serialized));
+      }
+    } catch (InvalidMessageException e) {
+      throw new AssertionError(e);
+    }
+    return result;
+  }
+
+  @Override
+  public void storeSignedPreKey(int signedPreKeyId, SignedPreKeyRecord record) {
+    put(idKey(SIGNED_PRE_KEY, signedPreKeyId), record.serialize());
+  }
+
+  @Override
+  public boolean containsSignedPreKey(int signedPreKeyId) {
+    return log.contains(idKey(SIGNED_PRE_KEY, signedPreKeyId));
+  }
+
+  /** Removes a signed pre-key, along with the base keys remembered for its Kyber pre-key pairs. */
+  @Override
+  public void removeSignedPreKey(int signedPreKeyId) {
+    synchronized (kyberBaseKeyLock) {
+      removeWithBaseKeys(idKey(SIGNED_PRE_KEY, signedPreKeyId), 5, signedPreKeyId);
+    }
+  }
+
+  // KyberPreKeyStore
+
+  @Override
+  public KyberPreKeyRecord loadKyberPreKey(int kyberPreKeyId) throws InvalidKeyIdException {
+    final byte[] serialized = get(idKey(KYBER_PRE_KEY, kyberPreKeyId));
+    if (serialized == null) {
+      throw new InvalidKeyIdException("No such KyberPreKeyRecord: " + kyberPreKeyId);
+    }
+    try {
+      return new KyberPreKeyRecord(serialized);
+    } catch (InvalidMessageException e) {
+      throw new AssertionError(e);
+    }
+  }
+
+  @Override
+  public List<KyberPreKeyRecord> loadKyberPreKeys() {
+    final List<KyberPreKeyRecord> result = new ArrayList<>();
+    try {
+      for (byte[] serialized : getAll(KYBER_PRE_KEY)) {
+        result.add(new KyberPreKeyRecord(serialized));
+      }
+    } catch (InvalidMessageException e) {
+      throw new AssertionError(e);
+    }
+    return result;
+  }
+
+  @Override
+  public void storeKyberPreKey(int kyberPreKeyId, KyberPreKeyRecord record) {
+    put(idKey(KYBER_PRE_KEY, kyberPreKeyId), record.serialize());
+  }
+
+  @Override
+  public boolean containsKyberPreKey(int kyberPreKeyId) {
+    return log.contains(idKey(KYBER_PRE_KEY, kyberPreKeyId));
+  }
+
+  /**
+   * Removes a Kyber pre-key, along with its used flag and the base keys remembered for it.
+   *
+   * <p>This and {@link #removeSignedPreKey} look through every key in the store, which is fine for
+   * the occasional rotation but not for every message.
+   */
+  public void removeKyberPreKey(int kyberPreKeyId) {
+    synchronized (kyberBaseKeyLock) {
+      removeWithBaseKeys(idKey(KYBER_PRE_KEY, kyberPreKeyId), 1, kyberPreKeyId);
+    }
+  }
+
+  /**
+   * Records that a Kyber pre-key was used, and rejects reuse of a base key with the same pair of
+   * pre-keys.
+   *
+   * <p>Like {@link InMemoryKyberPreKeyStore}, this doesn't distinguish one-time and last-resort
+   * keys: every key is kept, and every base key is remembered until {@link #removeKyberPreKey} or
+   * {@link #removeSignedPreKey} removes one of its pre-keys. Callers that want one-time keys
+   * removed should do so themselves once {@code SessionCipher} returns.
+   */
+  @Override
+  public void markKyberPreKeyUsed(int kyberPreKeyId, int signedPreKeyId, ECPublicKey baseKey)
+      throws ReusedBaseKeyException {
+    final byte[] baseKeyBytes = baseKey.serialize();
+    final RecordLog.Key seenKey =
+        new RecordLog.Key(
+            ByteBuffer.allocate(9 + baseKeyBytes.length)
+                .put(KYBER_BASE_KEY_SEEN)
+                .putInt(kyberPreKeyId)
+                .putInt(signedPreKeyId)
+                .put(baseKeyBytes)
+                .array());
+    synchronized (kyberBaseKeyLock) {
+      if (log.contains(seenKey)) {
+        throw new ReusedBaseKeyException();
+      }
+      write(
+          Arrays.asList(idKey(KYBER_PRE_KEY_USED, kyberPreKeyId), seenKey),
+          Arrays.asList(new byte[0], new byte[0]));
+    }
+  }
+
+  public boolean hasKyberPreKeyBeenUsed(int kyberPreKeyId) {
+    return log.contains(idKey(KYBER_PRE_KEY_USED, kyberPreKeyId));
+  }
+
+  // SenderKeyStore
+
+  @Override
+  public void storeSenderKey(
+      SignalProtocolAddress sender, UUID distributionId, SenderKeyRecord record) {
+    put(senderKeyKey(sender, distributionId), record.serialize());
+  }
+
+  @Override
+  public SenderKeyRecord loadSenderKey(SignalProtocolAddress sender, UUID distributionId) {
+    final byte[] serialized = get(senderKeyKey(sender, distributionId));
+    if (serialized == null) {
+      return null;
+    }
+    try {
+      return new SenderKeyRecord(serialized);
+    } catch (InvalidMessageException e) {
+      throw new AssertionError(e);
+    }
+  }
+
+  // Keys are a one-byte type followed by the type's identifier.
+
+  private static RecordLog.Key idKey(byte type, int id) {
+    return new RecordLog.Key(ByteBuffer.allocate(5).put(type).putInt(id).array());
+  }
+
+  private static RecordLog.Key sessionKey(String name, int deviceId) {
+    final byte[] nameBytes = name.getBytes(StandardCharsets.UTF_8);
+    return new RecordLog.Key(
+        ByteBuffer.allocate(5 + nameBytes.length)
+            .put(SESSION)
+            .putInt(deviceId)
+            .put(nameBytes)
+            .array());
+  }
+
+  private static int sessionDeviceId(RecordLog.Key key) {
+    return ByteBuffer.wrap(key.bytes).getInt(1);
+  }
+
+  private static String sessionName(RecordLog.Key key) {
+    return new String(key.bytes, 5, key.bytes.length - 5, StandardCharsets.UTF_8);
+  }
+
+  private static RecordLog.Key senderKeyKey(SignalProtocolAddress sender, UUID distributionId) {
+    final byte[] nameBytes = sender.getName().getBytes(StandardCharsets.UTF_8);
+    return new RecordLog.Key(
+        ByteBuffer.allocate(21 + nameBytes.length)
+            .put(SENDER_KEY)
+            .putLong(distributionId.getMostSignificantBits())
+            .putLong(distributionId.getLeastSignificantBits())
+            .putInt(sender.getDeviceId())
+            .put(nameBytes)
+            .array());
+  }
+
+  private void keyChanged(RecordLog.Key key, boolean present) {
+    if (key.bytes[0] != SESSION) {
+      return;
+    }
+    final int deviceId = sessionDeviceId(key);
+    if (present) {
+      sessionDevices.compute(
+          sessionName(key),
+          (name, devices) -> {
+            if (devices == null) {
+              devices = Collections.newSetFromMap(new ConcurrentHashMap<>());
+            }
+            devices.add(deviceId);
+            return devices;
+          });
+    } else {
+      sessionDevices.computeIfPresent(
+          sessionName(key),
+          (name, devices) -> {
+            devices.remove(deviceId);
+            return devices.isEmpty() ? null : devices;
+          });
+    }
+  }
+
+  /**
+   * Deletes {@code preKey}, and every remembered base key whose pre-key ID at {@code idOffset}
+   * (1 for the Kyber pre-key, 5 for the signed pre-key) is {@code preKeyId}, in one batch.
+   *
+   * <p>Must hold {@link #kyberBaseKeyLock}.
+   */
+  private void removeWithBaseKeys(RecordLog.Key preKey, int idOffset, int preKeyId) {
+    final List<RecordLog.Key> keys = new ArrayList<>();
+    keys.add(preKey);
+    if (preKey.bytes[0] == KYBER_PRE_KEY) {
+      keys.add(idKey(KYBER_PRE_KEY_USED, preKeyId));
+    }
+    for (RecordLog.Key key : log.keys()) {
+      if (key.bytes[0] == KYBER_BASE_KEY_SEEN
+          && ByteBuffer.wrap(key.bytes).getInt(idOffset) == preKeyId) {
+        keys.add(key);
+      }
+    }
+    write(keys, Collections.nCopies(keys.size(), (byte[]) null));
+  }
+
+  private List<byte[]> getAll(byte type) {
+    final List<byte[]> result = new ArrayList<>();
+    for (RecordLog.Key key : log.keys()) {
+      if (key.bytes[0] == type) {
+        final byte[] value = get(key);
+        // Skip anything removed since the keys were listed.
+        if (value != null) {
+          result.add(value);
+        }
+      }
+    }
+    return result;
+  }
+
+  private byte[] get(RecordLog.Key key) {
+    try {
+      return log.get(key);
+    } catch (IOException e) {
+      throw new IllegalStateException("failed to read from protocol store", e);
+    }
+  }
+
+  private void put(RecordLog.Key key, byte[] value) {
+    try {
+      log.put(key, value);
+    } catch (IOException e) {
+      throw new IllegalStateException("failed to write to protocol store", e);
+    }
+  }
+
+  private void delete(RecordLog.Key key) {
+    try {
+      log.delete(key);
+    } catch (IOException e) {
+      throw new IllegalStateException("failed to write to protocol store", e);
+    }
+  }
+
+  private void write(List<RecordLog.Key> keys, List<byte[]> values) {
+    try {
+      log.write(keys, values);
+    } catch (IOException e) {
+      throw new IllegalStateException("failed to write to protocol store", e);
+    }
+  }
+}
@@ -5,14 +5,12 @@
 
 package org.signal.libsignal.protocol.state.impl;
 
-import java.util.Arrays;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.LinkedList;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
-import kotlin.Pair;
 import org.signal.libsignal.protocol.InvalidKeyIdException;
 import org.signal.libsignal.protocol.InvalidMessageException;
 import org.signal.libsignal.protocol.ReusedBaseKeyException;
@@ -24,7 +22,7 @@ public class InMemoryKyberPreKeyStore implements KyberPreKeyStore {
 
   private final Map<Integer, byte[]> store = new HashMap<>();
   private final Set<Integer> used = new HashSet<>();
-  private final Map<Pair<Integer, Integer>, Set<ECPublicKey>> baseKeysSeen = new HashMap<>();
+  private final KyberPreKeyReplayIndex baseKeysSeen = new KyberPreKeyReplayIndex();
 
   @Override
   public KyberPreKeyRecord loadKyberPreKey(int kyberPreKeyId) throws InvalidKeyIdException {
@@ -69,11 +67,7 @@ public class InMemoryKyberPreKeyStore implements KyberPreKeyStore {
       throws ReusedBaseKeyException {
     // store.remove(kyberPreKeyId);
     used.add(kyberPreKeyId);
-    final var bothKeyIds = new Pair<>(kyberPreKeyId, signedPreKeyId);
-    final var baseKeysSeen = this.baseKeysSeen.get(bothKeyIds);
-    if (baseKeysSeen == null) {
-      this.baseKeysSeen.put(bothKeyIds, new HashSet<>(Arrays.asList(baseKey)));
-    } else if (!baseKeysSeen.add(baseKey)) {
+    if (!baseKeysSeen.add(kyberPreKeyId, signedPreKeyId, baseKey)) {
       throw new ReusedBaseKeyException();
     }
   }
@@ -81,4 +75,24 @@ public class InMemoryKyberPreKeyStore implements KyberPreKeyStore {
   public boolean hasKyberPreKeyBeenUsed(int kyberPreKeyId) {
     return used.contains(kyberPreKeyId);
   }
+
+  /** Removes a Kyber pre-key, and forgets the base keys used with it. */
+  public void removeKyberPreKey(int kyberPreKeyId) {
+    store.remove(kyberPreKeyId);
+    used.remove(kyberPreKeyId);
+    baseKeysSeen.removeKyberPreKey(kyberPreKeyId);
+  }
+
+  /**
+   * Forgets the base keys used with a signed pre-key, which should be called once it has been
+   * removed from the {@link org.signal.libsignal.protocol.state.SignedPreKeyStore}.
+   */
+  public void removeBaseKeysForSignedPreKey(int signedPreKeyId) {
+    baseKeysSeen.removeSignedPreKey(signedPreKeyId);
+  }
+
+  /** The number of base keys remembered to reject reuse, across all pre-keys. */
+  public long getRememberedBaseKeyCount() {
+    return baseKeysSeen.size();
+  }
 }
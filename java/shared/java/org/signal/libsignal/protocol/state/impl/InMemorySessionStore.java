@@ -82,10 +82,6 @@ public class InMemorySessionStore implements SessionStore {
 
   @Override
   public synchronized void deleteAllSessions(String name) {
-    for (SignalProtocolAddress key : sessions.keySet()) {
-      if (key.getName().equals(name)) {
-        sessions.remove(key);
-      }
-    }
+    sessions.keySet().removeIf(key -> key.getName().equals(name));
   }
 }
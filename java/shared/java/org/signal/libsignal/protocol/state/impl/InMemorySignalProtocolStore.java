@@ -141,6 +141,7 @@ public class InMemorySignalProtocolStore implements SignalProtocolStore {
   @Override
   public void removeSignedPreKey(int signedPreKeyId) {
     signedPreKeyStore.removeSignedPreKey(signedPreKeyId);
+    kyberPreKeyStore.removeBaseKeysForSignedPreKey(signedPreKeyId);
   }
 
   @Override
@@ -183,4 +184,12 @@ public class InMemorySignalProtocolStore implements SignalProtocolStore {
   public boolean hasKyberPreKeyBeenUsed(int kyberPreKeyId) {
     return kyberPreKeyStore.hasKyberPreKeyBeenUsed(kyberPreKeyId);
   }
+
+  public void removeKyberPreKey(int kyberPreKeyId) {
+    kyberPreKeyStore.removeKyberPreKey(kyberPreKeyId);
+  }
+
+  public long getRememberedBaseKeyCount() {
+    return kyberPreKeyStore.getRememberedBaseKeyCount();
+  }
 }
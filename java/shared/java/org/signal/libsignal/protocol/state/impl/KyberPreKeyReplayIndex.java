@@ -0,0 +1,264 @@
+//
+// Copyright 2026 Signal Messenger, LLC.
+// SPDX-License-Identifier: AGPL-3.0-only
+//
+
+package org.signal.libsignal.protocol.state.impl;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.HashMap;
+import java.util.Map;
+import org.signal.libsignal.protocol.ecc.ECPublicKey;
+
+/**
+ * Remembers which {@code (kyberPreKeyId, signedPreKeyId, baseKey)} combinations have been used, so
+ * that a {@link org.signal.libsignal.protocol.state.KyberPreKeyStore} can reject reuse of a
+ * last-resort key as {@code markKyberPreKeyUsed} requires.
+ *
+ * <p>Base keys are stored as 16-byte fingerprints (a truncated SHA-256) in open-addressed tables,
+ * one per pair of pre-key IDs. Each table is kept between 3/8 and 3/4 full, so an entry costs 21
+ * to 43 bytes however many there are, and checking for one is a short scan of a single array.
+ *
+ * <p>Entries are forgotten when their Kyber pre-key or signed pre-key is removed. There's no
+ * eviction by age: an entry dropped while its keys are still in use would let that base key be
+ * replayed.
+ *
+ * <p>The index can be saved with {@link #writeTo} and restored with {@link #readFrom}.
+ *
+ * <p>This class is thread-safe.
+ */
+public final class KyberPreKeyReplayIndex {
+  private static final int SERIALIZATION_VERSION = 1;
+
+  // Keyed by the two pre-key IDs packed into one long: Kyber in the high half, signed in the low.
+  private final Map<Long, FingerprintSet> seen = new HashMap<>();
+  private long size = 0;
+
+  /**
+   * Records that {@code baseKey} was used with this pair of pre-keys.
+   *
+   * @return true if it hadn't been used with them before, false if this is a reuse
+   */
+  public boolean add(int kyberPreKeyId, int signedPreKeyId, ECPublicKey baseKey) {
+    return add(kyberPreKeyId, signedPreKeyId, baseKey.serialize());
+  }
+
+  /**
+   * Like {@link #add(int, int, ECPublicKey)}, for a base key that's already serialized.
+   *
+   * @return true if it hadn't been used with them before, false if this is a reuse
+   */
+  public synchronized boolean add(int kyberPreKeyId, int signedPreKeyId, byte[] serializedBaseKey) {
+    final byte[] fingerprint = fingerprint(serializedBaseKey);
+    final FingerprintSet set =
+        seen.computeIfAbsent(pairKey(kyberPreKeyId, signedPreKeyId), key -> new FingerprintSet());
+    if (!set.add(high(fingerprint), low(fingerprint))) {
+      return false;
+    }
+    ++size;
+    return true;
+  }
+
+  /** Whether {@code baseKey} has been used with this pair of pre-keys. */
+  public boolean contains(int kyberPreKeyId, int signedPreKeyId, ECPublicKey baseKey) {
+    return contains(kyberPreKeyId, signedPreKeyId, baseKey.serialize());
+  }
+
+  /** Whether the serialized {@code baseKey} has been used with this pair of pre-keys. */
+  public synchronized boolean contains(
+      int kyberPreKeyId, int signedPreKeyId, byte[] serializedBaseKey) {
+    final FingerprintSet set = seen.get(pairKey(kyberPreKeyId, signedPreKeyId));
+    if (set == null) {
+      return false;
+    }
+    final byte[] fingerprint = fingerprint(serializedBaseKey);
+    return set.contains(high(fingerprint), low(fingerprint));
+  }
+
+  /** Forgets every base key used with a Kyber pre-key that has been deleted. */
+  public synchronized void removeKyberPreKey(int kyberPreKeyId) {
+    seen.entrySet()
+        .removeIf(
+            entry -> {
+              if ((int) (entry.getKey() >>> 32) != kyberPreKeyId) {
+                return false;
+              }
+              size -= entry.getValue().size;
+              return true;
+            });
+  }
+
+  /** Forgets every base key used with a signed pre-key that has been deleted. */
+  public synchronized void removeSignedPreKey(int signedPreKeyId) {
+    seen.entrySet()
+        .removeIf(
+            entry -> {
+              if (entry.getKey().intValue() != signedPreKeyId) {
+                return false;
+              }
+              size -= entry.getValue().size;
+              return true;
+            });
+  }
+
+  /** The number of base keys remembered, across all pre-keys. */
+  public synchronized long size() {
+    return size;
+  }
+
+  /**
+   * Writes the index to {@code out}, in a form {@link #readFrom} understands.
+   *
+   * <p>{@code out} is not closed.
+   */
+  public synchronized void writeTo(OutputStream out) throws IOException {
+    final DataOutputStream data = new DataOutputStream(out);
+    data.writeInt(SERIALIZATION_VERSION);
+    data.writeInt(seen.size());
+    for (Map.Entry<Long, FingerprintSet> entry : seen.entrySet()) {
+      final FingerprintSet set = entry.getValue();
+      data.writeLong(entry.getKey());
+      data.writeInt(set.size);
+      for (int i = 0; i < set.slots.length; i += 2) {
+        if (set.slots[i + 1] != 0) {
+          data.writeLong(set.slots[i]);
+          data.writeLong(set.slots[i + 1]);
+        }
+      }
+    }
+    data.flush();
+  }
+
+  /**
+   * Reads an index written by {@link #writeTo}.
+   *
+   * @throws IOException if {@code in} can't be read, or doesn't hold a valid index (including one
+   *     that lists a pair of pre-keys or a base key twice)
+   */
+  public static KyberPreKeyReplayIndex readFrom(InputStream in) throws IOException {
+    final DataInputStream data = new DataInputStream(in);
+    final int version = data.readInt();
+    if (version != SERIALIZATION_VERSION) {
+      throw new IOException("unsupported replay index version " + version);
+    }
+    final KyberPreKeyReplayIndex index = new KyberPreKeyReplayIndex();
+    final int pairCount = data.readInt();
+    for (int i = 0; i < pairCount; ++i) {
+      final long pairKey = data.readLong();
+      final int count = data.readInt();
+      if (count < 0) {
+        throw new IOException("invalid replay index entry count " + count);
+      }
+      final FingerprintSet set = new FingerprintSet();
+      for (int j = 0; j < count; ++j) {
+        final long high = data.readLong();
+        final long low = data.readLong();
+        if (low == 0 || !set.add(high, low)) {
+          throw new IOException("invalid or repeated base key in replay index");
+        }
+      }
+      if (index.seen.put(pairKey, set) != null) {
+        throw new IOException("repeated pre-key pair in replay index");
+      }
+      index.size += set.size;
+    }
+    return index;
+  }
+
+  private static long pairKey(int kyberPreKeyId, int signedPreKeyId) {
+    return ((long) kyberPreKeyId << 32) | (signedPreKeyId & 0xFFFFFFFFL);
+  }
+
+  private static byte[] fingerprint(byte[] serializedBaseKey) {
+    try {
+      return MessageDigest.getInstance("SHA-256").digest(serializedBaseKey);
+    } catch (NoSuchAlgorithmException e) {
+      throw new AssertionError(e);
+    }
+  }
+
+  private static long high(byte[] fingerprint) {
+    return readLong(fingerprint, 0);
+  }
+
+  private static long low(byte[] fingerprint) {
+    final long low = readLong(fingerprint, 8);
+    // All zeros marks an empty slot.
+    return low == 0 ? 1 : low;
+  }
+
+  private static long readLong(byte[] bytes, int offset) {
+    long result = 0;
+    for (int i = 0; i < 8; ++i) {
+      result = (result << 8) | (bytes[offset + i] & 0xFF);
+    }
+    return result;
+  }
+
+  /**
+   * A set of 16-byte fingerprints, stored inline as pairs of longs and found by linear probing.
+   *
+   * <p>The fingerprints are hash outputs, so their bits can be used as table indexes directly.
+   */
+  private static final class FingerprintSet {
+    private static final int INITIAL_CAPACITY = 16;
+
+    // Slot i is slots[2 * i] (high half) and slots[2 * i + 1] (low half, never 0 when occupied).
+    long[] slots = new long[2 * INITIAL_CAPACITY];
+    int size = 0;
+
+    boolean contains(long high, long low) {
+      final int mask = slots.length / 2 - 1;
+      for (int i = (int) low & mask; ; i = (i + 1) & mask) {
+        if (slots[2 * i + 1] == 0) {
+          return false;
+        }
+        if (slots[2 * i] == high && slots[2 * i + 1] == low) {
+          return true;
+        }
+      }
+    }
+
+    boolean add(long high, long low) {
+      // Keep the table at most 3/4 full, so probes stay short.
+      if (4L * (size + 1) > 3L * (slots.length / 2)) {
+        grow();
+      }
+      if (!insert(slots, high, low)) {
+        return false;
+      }
+      ++size;
+      return true;
+    }
+
+    private void grow() {
+      final long[] bigger = new long[slots.length * 2];
+      for (int i = 0; i < slots.length; i += 2) {
+        if (slots[i + 1] != 0) {
+          insert(bigger, slots[i], slots[i + 1]);
+        }
+      }
+      slots = bigger;
+    }
+
+    private static boolean insert(long[] slots, long high, long low) {
+      final int mask = slots.length / 2 - 1;
+      for (int i = (int) low & mask; ; i = (i + 1) & mask) {
+        if (slots[2 * i + 1] == 0) {
+          slots[2 * i] = high;
+          slots[2 * i + 1] = low;
+          return true;
+        }
+        if (slots[2 * i] == high && slots[2 * i + 1] == low) {
+          return false;
+        }
+      }
+    }
+  }
+}
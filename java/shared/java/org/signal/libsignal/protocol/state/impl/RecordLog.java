@@ -0,0 +1,672 @@
+//
+// Copyright 2026 Signal Messenger, LLC.
+// SPDX-License-Identifier: AGPL-3.0-only
+//
+
+package org.signal.libsignal.protocol.state.impl;
+
+import java.io.BufferedInputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.zip.CRC32;
+import org.signal.libsignal.protocol.logging.Log;
+
+/**
+ * A durable key-value map stored as an append-only log of updates.
+ *
+ * <p>Every write appends a checksummed record to the end of the file, and an in-memory index maps
+ * each key to its latest record, so reads are a single positional read. Writes return once their
+ * records are on disk; writes from different threads that are waiting at the same time share one
+ * {@code fsync}. When a file is opened the log is replayed to rebuild the index, and anything after
+ * the last complete write (left by a crash partway through one) is discarded.
+ *
+ * <p>Once most of the file is overwritten or deleted records, it is compacted on the given
+ * executor: the live records are copied to a new file, which then replaces the old one. Reads and
+ * writes continue while the copy is made.
+ */
+final class RecordLog implements Closeable {
+  private static final String TAG = "RecordLog";
+
+  private static final int MAGIC = 0x4c53524c; // "LSRL"
+  private static final int VERSION = 1;
+  private static final int FILE_HEADER_SIZE = 8;
+
+  // Each record is a 4-byte payload length and a CRC-32 of the payload, followed by the payload:
+  // a 1-byte operation, a 4-byte key length, the key, and (for puts) the value.
+  private static final int RECORD_HEADER_SIZE = 8;
+  private static final int PAYLOAD_HEADER_SIZE = 5;
+  private static final byte OP_PUT = 1;
+  private static final byte OP_DELETE = 2;
+  // Set on every record of a batch but the last, so that recovery can tell whether a batch was
+  // written completely. Records outside a batch never have it.
+  private static final byte OP_CONTINUED = (byte) 0x80;
+
+  private static final long MIN_COMPACTION_GARBAGE_BYTES = 1 << 20;
+  private static final int COPY_CHUNK_SIZE = 64 * 1024;
+
+  /** A key, compared by contents. */
+  static final class Key {
+    final byte[] bytes;
+    private final int hash;
+
+    Key(byte[] bytes) {
+      this.bytes = bytes;
+      this.hash = Arrays.hashCode(bytes);
+    }
+
+    @Override
+    public boolean equals(Object other) {
+      return other instanceof Key && Arrays.equals(bytes, ((Key) other).bytes);
+    }
+
+    @Override
+    public int hashCode() {
+      return hash;
+    }
+  }
+
+  /** Told about keys gaining or losing their values, in the order the changes were logged. */
+  interface KeyListener {
+    /**
+     * Called while the log is locked for writing (or being recovered), so it must be quick and must
+     * not use the log.
+     */
+    void keyChanged(Key key, boolean present);
+  }
+
+  // VisibleForTesting
+  interface DirectorySync {
+    void sync(File file) throws IOException;
+  }
+
+  /** Where a key's latest record starts, and its length including the record header. */
+  private static final class Location {
+    final long offset;
+    final int length;
+
+    Location(long offset, int length) {
+      this.offset = offset;
+      this.length = length;
+    }
+  }
+
+  private final File file;
+  private final Executor compactionExecutor;
+  private final KeyListener listener;
+  private final AtomicBoolean compactionScheduled = new AtomicBoolean();
+
+  // Reads hold the read lock, and appends and swapping in a compacted file hold the write lock.
+  // Waiting for writes to reach the disk happens outside it, under syncLock.
+  private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+  private final Object syncLock = new Object();
+  // Held for all of compaction and for closing, so that compaction's reads from the old file never
+  // race with closing it.
+  private final Object compactionLock = new Object();
+
+  // Only modified while holding both the write lock and syncLock.
+  private volatile FileChannel channel;
+  // Only modified while holding the write lock.
+  private volatile long end;
+  private HashMap<Key, Location> index = new HashMap<>();
+  private long liveBytes = 0;
+  private boolean closed = false;
+  // Guarded by syncLock.
+  private long syncedTo;
+  // VisibleForTesting
+  DirectorySync directorySync = RecordLog::syncDirectory;
+
+  private RecordLog(
+      File file, FileChannel channel, Executor compactionExecutor, KeyListener listener) {
+    this.file = file;
+    this.channel = channel;
+    this.compactionExecutor = compactionExecutor;
+    this.listener = listener;
+  }
+
+  /**
+   * Opens the log at {@code file}, creating it if necessary.
+   *
+   * <p>{@code listener} is first told about every key recovered from the file, and then about
+   * every change as it is applied.
+   *
+   * @throws IOException if the file can't be read, or isn't a record log
+   */
+  static RecordLog open(File file, Executor compactionExecutor, KeyListener listener)
+      throws IOException {
+    final File leftover = compactionFile(file);
+    if (leftover.exists() && !leftover.delete()) {
+      throw new IOException("failed to delete incomplete compaction " + leftover);
+    }
+    final FileChannel channel = new RandomAccessFile(file, "rw").getChannel();
+    try {
+      final RecordLog log = new RecordLog(file, channel, compactionExecutor, listener);
+      log.recover();
+      return log;
+    } catch (IOException | RuntimeException e) {
+      channel.close();
+      throw e;
+    }
+  }
+
+  private static File compactionFile(File file) {
+    return new File(file.getPath() + ".compact");
+  }
+
+  private static ByteBuffer fileHeader() {
+    final ByteBuffer header = ByteBuffer.allocate(FILE_HEADER_SIZE);
+    header.putInt(MAGIC).putInt(VERSION).flip();
+    return header;
+  }
+
+  private void recover() throws IOException {
+    final long size = channel.size();
+    if (size < FILE_HEADER_SIZE) {
+      // Either a new file, or one whose creation was interrupted.
+      channel.truncate(0);
+      writeFully(channel, fileHeader(), 0);
+      channel.force(true);
+      end = FILE_HEADER_SIZE;
+      syncedTo = end;
+      return;
+    }
+
+    channel.position(0);
+    final DataInputStream in =
+        new DataInputStream(new BufferedInputStream(Channels.newInputStream(channel), 1 << 16));
+    if (in.readInt() != MAGIC) {
+      throw new IOException(file + " is not a record log");
+    }
+    final int version = in.readInt();
+    if (version != VERSION) {
+      throw new IOException("unsupported record log version " + version + " in " + file);
+    }
+
+    final CRC32 crc = new CRC32();
+    long offset = FILE_HEADER_SIZE;
+    // The end of the last complete batch. A batch's records are only applied once its last record
+    // has been read.
+    long committed = offset;
+    final List<Key> batchKeys = new ArrayList<>();
+    final List<Location> batchLocations = new ArrayList<>();
+    while (size - offset >= RECORD_HEADER_SIZE) {
+      final int payloadLength;
+      final int checksum;
+      final byte[] payload;
+      try {
+        payloadLength = in.readInt();
+        checksum = in.readInt();
+        if (payloadLength < PAYLOAD_HEADER_SIZE
+            || payloadLength > size - offset - RECORD_HEADER_SIZE) {
+          break;
+        }
+        payload = new byte[payloadLength];
+        in.readFully(payload);
+      } catch (EOFException e) {
+        break;
+      }
+      crc.reset();
+      crc.update(payload, 0, payloadLength);
+      if ((int) crc.getValue() != checksum
+          || !replay(payload, offset, batchKeys, batchLocations)) {
+        break;
+      }
+      offset += RECORD_HEADER_SIZE + payloadLength;
+      if ((payload[0] & OP_CONTINUED) == 0) {
+        for (int i = 0; i < batchKeys.size(); ++i) {
+          apply(batchKeys.get(i), batchLocations.get(i));
+        }
+        batchKeys.clear();
+        batchLocations.clear();
+        committed = offset;
+      }
+    }
+
+    if (committed < size) {
+      Log.w(TAG, "discarding " + (size - committed) + " bytes of incomplete writes from " + file);
+      channel.truncate(committed);
+      channel.force(true);
+    }
+    end = committed;
+    syncedTo = end;
+  }
+
+  /** Parses a record read during recovery, and adds it to the batch in progress if it's valid. */
+  private static boolean replay(
+      byte[] payload, long offset, List<Key> batchKeys, List<Location> batchLocations) {
+    final ByteBuffer buffer = ByteBuffer.wrap(payload);
+    final byte op = (byte) (buffer.get() & ~OP_CONTINUED);
+    final int keyLength = buffer.getInt();
+    if (keyLength < 0 || keyLength > buffer.remaining()) {
+      return false;
+    }
+    final Key key =
+        new Key(Arrays.copyOfRange(payload, PAYLOAD_HEADER_SIZE, PAYLOAD_HEADER_SIZE + keyLength));
+    switch (op) {
+      case OP_PUT:
+        batchKeys.add(key);
+        batchLocations.add(new Location(offset, RECORD_HEADER_SIZE + payload.length));
+        return true;
+      case OP_DELETE:
+        if (keyLength != buffer.remaining()) {
+          return false;
+        }
+        batchKeys.add(key);
+        batchLocations.add(null);
+        return true;
+      default:
+        return false;
+    }
+  }
+
+  // Must hold the write lock (or be recovering).
+  private void apply(Key key, Location location) {
+    final Location previous = location != null ? index.put(key, location) : index.remove(key);
+    if (previous != null) {
+      liveBytes -= previous.length;
+    }
+    if (location != null) {
+      liveBytes += location.length;
+    }
+    if ((previous != null) != (location != null)) {
+      listener.keyChanged(key, location != null);
+    }
+  }
+
+  /** Returns the latest value for {@code key}, or {@code null} if there isn't one. */
+  byte[] get(Key key) throws IOException {
+    lock.readLock().lock();
+    try {
+      checkOpen();
+      final Location location = index.get(key);
+      if (location == null) {
+        return null;
+      }
+      final int valueOffset = RECORD_HEADER_SIZE + PAYLOAD_HEADER_SIZE + key.bytes.length;
+      final ByteBuffer value = ByteBuffer.allocate(location.length - valueOffset);
+      readFully(channel, value, location.offset + valueOffset);
+      return value.array();
+    } finally {
+      lock.readLock().unlock();
+    }
+  }
+
+  boolean contains(Key key) {
+    lock.readLock().lock();
+    try {
+      checkOpen();
+      return index.containsKey(key);
+    } finally {
+      lock.readLock().unlock();
+    }
+  }
+
+  /** Returns a snapshot of the keys that currently have values. */
+  List<Key> keys() {
+    lock.readLock().lock();
+    try {
+      checkOpen();
+      return new ArrayList<>(index.keySet());
+    } finally {
+      lock.readLock().unlock();
+    }
+  }
+
+  void put(Key key, byte[] value) throws IOException {
+    write(Arrays.asList(key), Arrays.asList(value));
+  }
+
+  void delete(Key key) throws IOException {
+    write(Arrays.asList(key), Arrays.asList((byte[]) null));
+  }
+
+  /**
+   * Applies a batch of updates, and waits for them to reach the disk.
+   *
+   * <p>A {@code null} value deletes its key. Readers see either none of the batch or all of it, and
+   * so does recovery: if the process dies before the whole batch is on disk, none of it is kept
+   * when the file is next opened.
+   */
+  void write(List<Key> keys, List<byte[]> values) throws IOException {
+    final int[] lengths = new int[keys.size()];
+    int total = 0;
+    for (int i = 0; i < keys.size(); ++i) {
+      final byte[] value = values.get(i);
+      lengths[i] =
+          RECORD_HEADER_SIZE
+              + PAYLOAD_HEADER_SIZE
+              + keys.get(i).bytes.length
+              + (value != null ? value.length : 0);
+      total += lengths[i];
+    }
+
+    final ByteBuffer buffer = ByteBuffer.allocate(total);
+    final CRC32 crc = new CRC32();
+    for (int i = 0; i < keys.size(); ++i) {
+      final byte[] key = keys.get(i).bytes;
+      final byte[] value = values.get(i);
+      final int start = buffer.position();
+      final byte op = value != null ? OP_PUT : OP_DELETE;
+      buffer.putInt(lengths[i] - RECORD_HEADER_SIZE).putInt(0);
+      buffer.put(i < keys.size() - 1 ? (byte) (op | OP_CONTINUED) : op);
+      buffer.putInt(key.length).put(key);
+      if (value != null) {
+        buffer.put(value);
+      }
+      crc.reset();
+      crc.update(buffer.array(), start + RECORD_HEADER_SIZE, lengths[i] - RECORD_HEADER_SIZE);
+      buffer.putInt(start + 4, (int) crc.getValue());
+    }
+    buffer.flip();
+
+    final FileChannel target;
+    final long writtenTo;
+    final boolean shouldCompact;
+    lock.writeLock().lock();
+    try {
+      checkOpen();
+      final long start = end;
+      try {
+        writeFully(channel, buffer, start);
+      } catch (IOException e) {
+        // Don't leave complete records from a failed batch where a later, shorter write might not
+        // overwrite them.
+        try {
+          channel.truncate(start);
+        } catch (IOException suppressed) {
+          e.addSuppressed(suppressed);
+        }
+        throw e;
+      }
+      long offset = start;
+      for (int i = 0; i < keys.size(); ++i) {
+        apply(keys.get(i), values.get(i) != null ? new Location(offset, lengths[i]) : null);
+        offset += lengths[i];
+      }
+      end = offset;
+      target = channel;
+      writtenTo = offset;
+      final long garbage = offset - FILE_HEADER_SIZE - liveBytes;
+      shouldCompact = garbage >= MIN_COMPACTION_GARBAGE_BYTES && garbage > liveBytes;
+    } finally {
+      lock.writeLock().unlock();
+    }
+
+    awaitDurable(target, writtenTo);
+    if (shouldCompact) {
+      scheduleCompaction();
+    }
+  }
+
+  private void awaitDurable(FileChannel target, long writtenTo) throws IOException {
+    synchronized (syncLock) {
+      // If the file has been swapped out since, compaction already synced everything written to it,
+      // along with its copy in the new file and the rename (and closing syncs everything too).
+      if (target != channel || syncedTo >= writtenTo) {
+        return;
+      }
+      // Everything appended so far goes out with this sync, so that any writers queued up behind
+      // this one can return without syncing again.
+      final long appended = end;
+      target.force(false);
+      syncedTo = appended;
+    }
+  }
+
+  private void scheduleCompaction() {
+    if (!compactionScheduled.compareAndSet(false, true)) {
+      return;
+    }
+    try {
+      compactionExecutor.execute(
+          () -> {
+            try {
+              compact();
+            } catch (IOException | RuntimeException e) {
+              if (!isClosed()) {
+                Log.w(TAG, "failed to compact " + file, e);
+              }
+            } finally {
+              compactionScheduled.set(false);
+            }
+          });
+    } catch (RejectedExecutionException e) {
+      compactionScheduled.set(false);
+    }
+  }
+
+  /**
+   * Rewrites the file with only the latest value for each key.
+   *
+   * <p>If the new file can't be made durable once it has replaced the old one, the log is closed,
+   * since later writes might not survive a crash. Reopen it to continue.
+   */
+  void compact() throws IOException {
+    synchronized (compactionLock) {
+      final HashMap<Key, Location> snapshot;
+      final long snapshotEnd;
+      final FileChannel source;
+      lock.readLock().lock();
+      try {
+        checkOpen();
+        snapshot = new HashMap<>(index);
+        snapshotEnd = end;
+        source = channel;
+      } finally {
+        lock.readLock().unlock();
+      }
+
+      final File temp = compactionFile(file);
+      final FileChannel target = new RandomAccessFile(temp, "rw").getChannel();
+      boolean success = false;
+      try {
+        target.truncate(0);
+        writeFully(target, fileHeader(), 0);
+        long offset = FILE_HEADER_SIZE;
+
+        // Copy everything that was live at the snapshot, without blocking readers or writers.
+        // Anything written after the snapshot is appended to the end of the file, and so will be
+        // copied below.
+        final HashMap<Key, Location> moved = new HashMap<>(snapshot.size() * 4 / 3 + 1);
+        for (Map.Entry<Key, Location> entry : snapshot.entrySet()) {
+          final Location location = entry.getValue();
+          final ByteBuffer record = ByteBuffer.allocate(location.length);
+          readFully(source, record, location.offset);
+          record.flip();
+          endBatch(record);
+          writeFully(target, record, offset);
+          moved.put(entry.getKey(), new Location(offset, location.length));
+          offset += location.length;
+        }
+
+        lock.writeLock().lock();
+        try {
+          checkOpen();
+          final long tailStart = offset;
+          final ByteBuffer chunk = ByteBuffer.allocate(COPY_CHUNK_SIZE);
+          for (long position = snapshotEnd; position < end; ) {
+            chunk.clear();
+            chunk.limit((int) Math.min(COPY_CHUNK_SIZE, end - position));
+            readFully(source, chunk, position);
+            chunk.flip();
+            writeFully(target, chunk, offset);
+            position += chunk.limit();
+            offset += chunk.limit();
+          }
+
+          final HashMap<Key, Location> newIndex = new HashMap<>(index.size() * 4 / 3 + 1);
+          long newLiveBytes = 0;
+          for (Map.Entry<Key, Location> entry : index.entrySet()) {
+            final Location location = entry.getValue();
+            // Anything before the snapshot's end hasn't been touched since the snapshot.
+            final Location newLocation =
+                location.offset >= snapshotEnd
+                    ? new Location(tailStart + location.offset - snapshotEnd, location.length)
+                    : moved.get(entry.getKey());
+            newIndex.put(entry.getKey(), newLocation);
+            newLiveBytes += location.length;
+          }
+
+          target.force(true);
+          // Writers whose records were just copied may return without syncing once the files are
+          // swapped (see awaitDurable), so make sure they're in the old file too, in case the
+          // rename doesn't survive a crash. Then make sure it does, before any new writes go to
+          // the new file.
+          source.force(false);
+          Files.move(
+              temp.toPath(),
+              file.toPath(),
+              StandardCopyOption.ATOMIC_MOVE,
+              StandardCopyOption.REPLACE_EXISTING);
+          success = true;
+          // The old file is no longer reachable by name, so nothing may be written to it after
+          // this point.
+          synchronized (syncLock) {
+            channel = target;
+            index = newIndex;
+            end = offset;
+            liveBytes = newLiveBytes;
+            syncedTo = offset;
+          }
+          source.close();
+
+          try {
+            directorySync.sync(file);
+          } catch (IOException | RuntimeException e) {
+            // Everything so far is in both files, but if the rename is lost in a crash, so is
+            // anything written to the new file from here on. Stop accepting writes instead; the
+            // file is consistent whichever way the rename went when it's next opened.
+            closed = true;
+            synchronized (syncLock) {
+              try {
+                target.close();
+              } catch (IOException suppressed) {
+                e.addSuppressed(suppressed);
+              }
+            }
+            throw e;
+          }
+        } finally {
+          lock.writeLock().unlock();
+        }
+      } finally {
+        if (!success) {
+          target.close();
+          temp.delete();
+        }
+      }
+    }
+  }
+
+  /**
+   * Clears {@link #OP_CONTINUED} on a record being copied on its own, updating its checksum to
+   * match.
+   */
+  private static void endBatch(ByteBuffer record) {
+    final byte op = record.get(RECORD_HEADER_SIZE);
+    if ((op & OP_CONTINUED) == 0) {
+      return;
+    }
+    record.put(RECORD_HEADER_SIZE, (byte) (op & ~OP_CONTINUED));
+    final CRC32 crc = new CRC32();
+    crc.update(record.array(), RECORD_HEADER_SIZE, record.limit() - RECORD_HEADER_SIZE);
+    record.putInt(4, (int) crc.getValue());
+  }
+
+  /** Makes a rename into {@code file}'s directory durable. */
+  private static void syncDirectory(File file) throws IOException {
+    final File parent = file.getAbsoluteFile().getParentFile();
+    final FileChannel directory;
+    try {
+      directory = FileChannel.open(parent.toPath(), StandardOpenOption.READ);
+    } catch (IOException e) {
+      // Windows can't open a directory this way, and makes renames durable itself.
+      return;
+    }
+    try {
+      directory.force(true);
+    } finally {
+      directory.close();
+    }
+  }
+
+  /** Returns the size of the file, including records that have since been replaced or deleted. */
+  long fileSize() {
+    return end;
+  }
+
+  private boolean isClosed() {
+    lock.readLock().lock();
+    try {
+      return closed;
+    } finally {
+      lock.readLock().unlock();
+    }
+  }
+
+  private void checkOpen() {
+    if (closed) {
+      throw new IllegalStateException("record log is closed");
+    }
+  }
+
+  /** Waits for any compaction in progress, then syncs and closes the file. */
+  @Override
+  public void close() throws IOException {
+    synchronized (compactionLock) {
+      lock.writeLock().lock();
+      try {
+        if (closed) {
+          return;
+        }
+        closed = true;
+        synchronized (syncLock) {
+          try {
+            channel.force(false);
+            syncedTo = Long.MAX_VALUE;
+          } finally {
+            channel.close();
+          }
+        }
+      } finally {
+        lock.writeLock().unlock();
+      }
+    }
+  }
+
+  private static void readFully(FileChannel channel, ByteBuffer buffer, long position)
+      throws IOException {
+    while (buffer.hasRemaining()) {
+      final int read = channel.read(buffer, position);
+      if (read < 0) {
+        throw new EOFException("record log ended unexpectedly");
+      }
+      position += read;
+    }
+  }
+
+  private static void writeFully(FileChannel channel, ByteBuffer buffer, long position)
+      throws IOException {
+    while (buffer.hasRemaining()) {
+      position += channel.write(buffer, position);
+    }
+  }
+}
@@ -6,6 +6,25 @@
 package org.signal.libsignal.protocol.util;
 
 import java.security.SecureRandom;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.function.IntFunction;
+import org.signal.libsignal.protocol.IdentityKeyPair;
+import org.signal.libsignal.protocol.SerializablePublicKey;
+import org.signal.libsignal.protocol.SignedPublicPreKey;
+import org.signal.libsignal.protocol.ecc.ECKeyPair;
+import org.signal.libsignal.protocol.ecc.ECPrivateKey;
+import org.signal.libsignal.protocol.ecc.ECPublicKey;
+import org.signal.libsignal.protocol.kem.KEMKeyPair;
+import org.signal.libsignal.protocol.kem.KEMKeyType;
+import org.signal.libsignal.protocol.kem.KEMPublicKey;
+import org.signal.libsignal.protocol.state.KyberPreKeyRecord;
+import org.signal.libsignal.protocol.state.PreKeyRecord;
+import org.signal.libsignal.protocol.state.SignedPreKeyRecord;
 
 /**
  * Helper class for generating keys of different types.
@@ -13,6 +32,8 @@ import java.security.SecureRandom;
  * @author Moxie Marlinspike
  */
 public class KeyHelper {
+  // Enough work per task to make handing it to another thread worthwhile, even for EC keys.
+  private static final int CHUNK_SIZE = 16;
 
   private KeyHelper() {}
 
@@ -29,4 +50,193 @@ public class KeyHelper {
     if (extendedRange) return secureRandom.nextInt(Integer.MAX_VALUE - 1) + 1;
     else return secureRandom.nextInt(16380) + 1;
   }
+
+  /**
+   * A newly generated one-time pre-key.
+   *
+   * @param record the record to save in a {@link org.signal.libsignal.protocol.state.PreKeyStore}
+   * @param publicKey the public key to upload
+   */
+  public record GeneratedPreKey(PreKeyRecord record, ECPublicKey publicKey) {}
+
+  /**
+   * A newly generated signed pre-key.
+   *
+   * @param record the record to save in the corresponding store
+   * @param publicPreKey the ID, public key, and signature to upload
+   */
+  public record GeneratedSignedPreKey<StoredRecord, Key extends SerializablePublicKey>(
+      StoredRecord record, SignedPublicPreKey<Key> publicPreKey) {}
+
+  /**
+   * Generates {@code count} one-time EC pre-keys.
+   *
+   * <p>The keys get consecutive IDs starting at {@code startId}, wrapping around to 0 at {@link
+   * Medium#MAX_VALUE}.
+   */
+  public static List<GeneratedPreKey> generatePreKeys(int startId, int count) {
+    checkRange(startId, count);
+    return generateSequentially(count, i -> generatePreKey(preKeyId(startId, i)));
+  }
+
+  /**
+   * Like {@link #generatePreKeys(int, int)}, but splits the work across {@code executor}, such as
+   * a {@link java.util.concurrent.ForkJoinPool}. The keys are still returned in ID order.
+   *
+   * @throws InterruptedException if interrupted while waiting for the keys to be generated
+   */
+  public static List<GeneratedPreKey> generatePreKeys(
+      int startId, int count, ExecutorService executor) throws InterruptedException {
+    checkRange(startId, count);
+    return generateInParallel(count, i -> generatePreKey(preKeyId(startId, i)), executor);
+  }
+
+  /**
+   * Generates {@code count} EC pre-keys signed by {@code identityKeyPair}.
+   *
+   * <p>The keys get consecutive IDs starting at {@code startId}, wrapping around to 0 at {@link
+   * Medium#MAX_VALUE}.
+   */
+  public static List<GeneratedSignedPreKey<SignedPreKeyRecord, ECPublicKey>> generateSignedPreKeys(
+      IdentityKeyPair identityKeyPair, int startId, int count, long timestamp) {
+    checkRange(startId, count);
+    final ECPrivateKey signingKey = identityKeyPair.getPrivateKey();
+    return generateSequentially(
+        count, i -> generateSignedPreKey(signingKey, preKeyId(startId, i), timestamp));
+  }
+
+  /**
+   * Like {@link #generateSignedPreKeys(IdentityKeyPair, int, int, long)}, but splits the work
+   * across {@code executor}. The keys are still returned in ID order.
+   *
+   * @throws InterruptedException if interrupted while waiting for the keys to be generated
+   */
+  public static List<GeneratedSignedPreKey<SignedPreKeyRecord, ECPublicKey>> generateSignedPreKeys(
+      IdentityKeyPair identityKeyPair,
+      int startId,
+      int count,
+      long timestamp,
+      ExecutorService executor)
+      throws InterruptedException {
+    checkRange(startId, count);
+    final ECPrivateKey signingKey = identityKeyPair.getPrivateKey();
+    return generateInParallel(
+        count, i -> generateSignedPreKey(signingKey, preKeyId(startId, i), timestamp), executor);
+  }
+
+  /**
+   * Generates {@code count} Kyber pre-keys signed by {@code identityKeyPair}.
+   *
+   * <p>The keys get consecutive IDs starting at {@code startId}, wrapping around to 0 at {@link
+   * Medium#MAX_VALUE}.
+   */
+  public static List<GeneratedSignedPreKey<KyberPreKeyRecord, KEMPublicKey>> generateKyberPreKeys(
+      IdentityKeyPair identityKeyPair, int startId, int count, long timestamp) {
+    checkRange(startId, count);
+    final ECPrivateKey signingKey = identityKeyPair.getPrivateKey();
+    return generateSequentially(
+        count, i -> generateKyberPreKey(signingKey, preKeyId(startId, i), timestamp));
+  }
+
+  /**
+   * Like {@link #generateKyberPreKeys(IdentityKeyPair, int, int, long)}, but splits the work
+   * across {@code executor}. The keys are still returned in ID order.
+   *
+   * <p>Kyber key generation is much slower than EC key generation, so this is where spreading the
+   * work out helps the most.
+   *
+   * @throws InterruptedException if interrupted while waiting for the keys to be generated
+   */
+  public static List<GeneratedSignedPreKey<KyberPreKeyRecord, KEMPublicKey>> generateKyberPreKeys(
+      IdentityKeyPair identityKeyPair,
+      int startId,
+      int count,
+      long timestamp,
+      ExecutorService executor)
+      throws InterruptedException {
+    checkRange(startId, count);
+    final ECPrivateKey signingKey = identityKeyPair.getPrivateKey();
+    return generateInParallel(
+        count, i -> generateKyberPreKey(signingKey, preKeyId(startId, i), timestamp), executor);
+  }
+
+  private static GeneratedPreKey generatePreKey(int id) {
+    final ECKeyPair keyPair = ECKeyPair.generate();
+    return new GeneratedPreKey(new PreKeyRecord(id, keyPair), keyPair.getPublicKey());
+  }
+
+  private static GeneratedSignedPreKey<SignedPreKeyRecord, ECPublicKey> generateSignedPreKey(
+      ECPrivateKey signingKey, int id, long timestamp) {
+    final ECKeyPair keyPair = ECKeyPair.generate();
+    final byte[] signature = signingKey.calculateSignature(keyPair.getPublicKey().serialize());
+    return new GeneratedSignedPreKey<>(
+        new SignedPreKeyRecord(id, timestamp, keyPair, signature),
+        new SignedPublicPreKey<>(id, keyPair.getPublicKey(), signature));
+  }
+
+  private static GeneratedSignedPreKey<KyberPreKeyRecord, KEMPublicKey> generateKyberPreKey(
+      ECPrivateKey signingKey, int id, long timestamp) {
+    final KEMKeyPair keyPair = KEMKeyPair.generate(KEMKeyType.KYBER_1024);
+    final KEMPublicKey publicKey = keyPair.getPublicKey();
+    final byte[] signature = signingKey.calculateSignature(publicKey.serialize());
+    return new GeneratedSignedPreKey<>(
+        new KyberPreKeyRecord(id, timestamp, keyPair, signature),
+        new SignedPublicPreKey<>(id, publicKey, signature));
+  }
+
+  static void checkRange(int startId, int count) {
+    if (startId < 0 || startId >= Medium.MAX_VALUE) {
+      throw new IllegalArgumentException("startId out of range: " + startId);
+    }
+    if (count < 0) {
+      throw new IllegalArgumentException("count must not be negative: " + count);
+    }
+  }
+
+  static int preKeyId(int startId, int index) {
+    return (int) (((long) startId + index) % Medium.MAX_VALUE);
+  }
+
+  private static <T> List<T> generateSequentially(int count, IntFunction<T> generator) {
+    final List<T> result = new ArrayList<>(count);
+    for (int i = 0; i < count; ++i) {
+      result.add(generator.apply(i));
+    }
+    return result;
+  }
+
+  private static <T> List<T> generateInParallel(
+      int count, IntFunction<T> generator, ExecutorService executor) throws InterruptedException {
+    final List<Callable<List<T>>> chunks = new ArrayList<>();
+    for (int start = 0; start < count; start += CHUNK_SIZE) {
+      final int chunkStart = start;
+      final int chunkEnd = Math.min(count, start + CHUNK_SIZE);
+      chunks.add(
+          () -> {
+            final List<T> chunk = new ArrayList<>(chunkEnd - chunkStart);
+            for (int i = chunkStart; i < chunkEnd; ++i) {
+              chunk.add(generator.apply(i));
+            }
+            return chunk;
+          });
+    }
+
+    final List<T> result = new ArrayList<>(count);
+    for (Future<List<T>> chunk : executor.invokeAll(chunks)) {
+      try {
+        result.addAll(chunk.get());
+      } catch (ExecutionException e) {
+        // Generating keys doesn't throw checked exceptions.
+        final Throwable cause = e.getCause();
+        if (cause instanceof RuntimeException) {
+          throw (RuntimeException) cause;
+        }
+        if (cause instanceof Error) {
+          throw (Error) cause;
+        }
+        throw new AssertionError(cause);
+      }
+    }
+    return result;
+  }
 }
@@ -0,0 +1,289 @@
+//
+// Copyright 2026 Signal Messenger, LLC.
+// SPDX-License-Identifier: AGPL-3.0-only
+//
+
+package org.signal.libsignal.protocol.util;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
+import org.signal.libsignal.protocol.IdentityKeyPair;
+import org.signal.libsignal.protocol.SignedPublicPreKey;
+import org.signal.libsignal.protocol.ecc.ECKeyPair;
+import org.signal.libsignal.protocol.ecc.ECPrivateKey;
+import org.signal.libsignal.protocol.kem.KEMKeyPair;
+import org.signal.libsignal.protocol.kem.KEMKeyType;
+import org.signal.libsignal.protocol.kem.KEMPublicKey;
+import org.signal.libsignal.protocol.logging.Log;
+import org.signal.libsignal.protocol.state.KyberPreKeyRecord;
+import org.signal.libsignal.protocol.state.KyberPreKeyStore;
+import org.signal.libsignal.protocol.state.PreKeyRecord;
+import org.signal.libsignal.protocol.state.PreKeyStore;
+
+/**
+ * Keeps one-time EC and Kyber pre-keys generated ahead of time, so that handing out a batch of new
+ * pre-keys doesn't have to wait for key generation.
+ *
+ * <p>Key pairs (and, for Kyber keys, their signatures) are generated in the background until
+ * {@code capacity} of each kind are ready. Taking a key assigns it an ID, saves its record in the
+ * {@link PreKeyStore} or {@link KyberPreKeyStore}, and returns the parts to upload. Once fewer than
+ * {@code lowWatermark} keys of a kind are left, the reservoir refills itself. If it ever runs dry,
+ * keys are generated on the calling thread instead, which {@link Metrics#misses} counts.
+ *
+ * <p>Kyber pre-keys are signed with the identity key given at construction. If the identity key
+ * changes, make a new reservoir.
+ */
+public class PreKeyReservoir {
+  private static final String TAG = "PreKeyReservoir";
+
+  private static final class DefaultExecutorHolder {
+    static final ExecutorService INSTANCE =
+        Executors.newSingleThreadExecutor(
+            runnable -> {
+              final Thread thread = new Thread(runnable, "libsignal-prekey-refill");
+              thread.setDaemon(true);
+              thread.setPriority(Thread.MIN_PRIORITY);
+              return thread;
+            });
+  }
+
+  private record SignedKyberKeyPair(KEMKeyPair keyPair, byte[] signature) {}
+
+  private final PreKeyStore preKeyStore;
+  private final KyberPreKeyStore kyberPreKeyStore;
+  private final int capacity;
+  private final int lowWatermark;
+  private final Executor executor;
+
+  private final Reserve<ECKeyPair> preKeys;
+  private final Reserve<SignedKyberKeyPair> kyberPreKeys;
+
+  private final AtomicLong refills = new AtomicLong();
+  private final AtomicLong keysGenerated = new AtomicLong();
+  private final AtomicLong totalRefillNanos = new AtomicLong();
+  private final AtomicLong maxRefillNanos = new AtomicLong();
+  private final AtomicLong misses = new AtomicLong();
+
+  /**
+   * Creates a reservoir that refills on a single low-priority thread shared by every reservoir
+   * created this way.
+   *
+   * @param capacity how many keys of each kind to keep ready
+   * @param lowWatermark start refilling once fewer than this many keys of a kind are ready
+   */
+  public PreKeyReservoir(
+      PreKeyStore preKeyStore,
+      KyberPreKeyStore kyberPreKeyStore,
+      IdentityKeyPair identityKeyPair,
+      int capacity,
+      int lowWatermark) {
+    this(
+        preKeyStore,
+        kyberPreKeyStore,
+        identityKeyPair,
+        capacity,
+        lowWatermark,
+        DefaultExecutorHolder.INSTANCE);
+  }
+
+  /**
+   * @param capacity how many keys of each kind to keep ready
+   * @param lowWatermark start refilling once fewer than this many keys of a kind are ready
+   * @param refillExecutor where to generate keys; ideally low-priority, since nothing waits on it
+   */
+  public PreKeyReservoir(
+      PreKeyStore preKeyStore,
+      KyberPreKeyStore kyberPreKeyStore,
+      IdentityKeyPair identityKeyPair,
+      int capacity,
+      int lowWatermark,
+      Executor refillExecutor) {
+    if (capacity <= 0) {
+      throw new IllegalArgumentException("capacity must be positive");
+    }
+    if (lowWatermark < 0 || lowWatermark > capacity) {
+      throw new IllegalArgumentException("lowWatermark must be between 0 and capacity");
+    }
+    this.preKeyStore = preKeyStore;
+    this.kyberPreKeyStore = kyberPreKeyStore;
+    this.capacity = capacity;
+    this.lowWatermark = lowWatermark;
+    this.executor = refillExecutor;
+
+    final ECPrivateKey signingKey = identityKeyPair.getPrivateKey();
+    this.preKeys = new Reserve<>(ECKeyPair::generate);
+    this.kyberPreKeys =
+        new Reserve<>(
+            () -> {
+              final KEMKeyPair keyPair = KEMKeyPair.generate(KEMKeyType.KYBER_1024);
+              return new SignedKyberKeyPair(
+                  keyPair, signingKey.calculateSignature(keyPair.getPublicKey().serialize()));
+            });
+
+    preKeys.scheduleRefill();
+    kyberPreKeys.scheduleRefill();
+  }
+
+  /** Takes a one-time EC pre-key, gives it ID {@code id}, and saves it in the pre-key store. */
+  public KeyHelper.GeneratedPreKey takePreKey(int id) {
+    final ECKeyPair keyPair = preKeys.take();
+    final PreKeyRecord record = new PreKeyRecord(id, keyPair);
+    preKeyStore.storePreKey(id, record);
+    return new KeyHelper.GeneratedPreKey(record, keyPair.getPublicKey());
+  }
+
+  /**
+   * Takes {@code count} one-time EC pre-keys with consecutive IDs starting at {@code startId}, and
+   * saves them in the pre-key store.
+   *
+   * @see KeyHelper#generatePreKeys(int, int)
+   */
+  public List<KeyHelper.GeneratedPreKey> takePreKeys(int startId, int count) {
+    KeyHelper.checkRange(startId, count);
+    final List<KeyHelper.GeneratedPreKey> result = new ArrayList<>(count);
+    for (int i = 0; i < count; ++i) {
+      result.add(takePreKey(KeyHelper.preKeyId(startId, i)));
+    }
+    return result;
+  }
+
+  /**
+   * Takes a one-time Kyber pre-key, gives it ID {@code id}, and saves it in the Kyber pre-key
+   * store.
+   */
+  public KeyHelper.GeneratedSignedPreKey<KyberPreKeyRecord, KEMPublicKey> takeKyberPreKey(
+      int id, long timestamp) {
+    final SignedKyberKeyPair signed = kyberPreKeys.take();
+    final KyberPreKeyRecord record =
+        new KyberPreKeyRecord(id, timestamp, signed.keyPair(), signed.signature());
+    kyberPreKeyStore.storeKyberPreKey(id, record);
+    return new KeyHelper.GeneratedSignedPreKey<>(
+        record, new SignedPublicPreKey<>(id, signed.keyPair().getPublicKey(), signed.signature()));
+  }
+
+  /**
+   * Takes {@code count} one-time Kyber pre-keys with consecutive IDs starting at {@code startId},
+   * and saves them in the Kyber pre-key store.
+   *
+   * @see KeyHelper#generateKyberPreKeys(IdentityKeyPair, int, int, long)
+   */
+  public List<KeyHelper.GeneratedSignedPreKey<KyberPreKeyRecord, KEMPublicKey>> takeKyberPreKeys(
+      int startId, int count, long timestamp) {
+    KeyHelper.checkRange(startId, count);
+    final List<KeyHelper.GeneratedSignedPreKey<KyberPreKeyRecord, KEMPublicKey>> result =
+        new ArrayList<>(count);
+    for (int i = 0; i < count; ++i) {
+      result.add(takeKyberPreKey(KeyHelper.preKeyId(startId, i), timestamp));
+    }
+    return result;
+  }
+
+  /**
+   * A snapshot of the reservoir's state.
+   *
+   * @param preKeysReady one-time EC pre-keys ready to be taken
+   * @param kyberPreKeysReady one-time Kyber pre-keys ready to be taken
+   * @param refills background refills that have finished
+   * @param keysGenerated keys generated by those refills
+   * @param totalRefillNanos the total time those refills took
+   * @param maxRefillNanos the longest any one refill took
+   * @param misses keys that had to be generated on the calling thread because none were ready
+   */
+  public record Metrics(
+      int preKeysReady,
+      int kyberPreKeysReady,
+      long refills,
+      long keysGenerated,
+      long totalRefillNanos,
+      long maxRefillNanos,
+      long misses) {
+    /** The average time a refill took, or 0 if none have finished. */
+    public double meanRefillNanos() {
+      return refills == 0 ? 0 : (double) totalRefillNanos / refills;
+    }
+  }
+
+  public Metrics metrics() {
+    return new Metrics(
+        preKeys.ready.get(),
+        kyberPreKeys.ready.get(),
+        refills.get(),
+        keysGenerated.get(),
+        totalRefillNanos.get(),
+        maxRefillNanos.get(),
+        misses.get());
+  }
+
+  /** The keys of one kind, and the state of refilling them. */
+  private final class Reserve<T> implements Runnable {
+    final Supplier<T> generator;
+    final ConcurrentLinkedQueue<T> keys = new ConcurrentLinkedQueue<>();
+    // Tracked separately because ConcurrentLinkedQueue.size() walks the whole queue.
+    final AtomicInteger ready = new AtomicInteger();
+    final AtomicBoolean refilling = new AtomicBoolean();
+
+    Reserve(Supplier<T> generator) {
+      this.generator = generator;
+    }
+
+    T take() {
+      final T key = keys.poll();
+      if (key == null) {
+        misses.incrementAndGet();
+        scheduleRefill();
+        return generator.get();
+      }
+      if (ready.decrementAndGet() < lowWatermark) {
+        scheduleRefill();
+      }
+      return key;
+    }
+
+    void scheduleRefill() {
+      if (!refilling.compareAndSet(false, true)) {
+        return;
+      }
+      try {
+        executor.execute(this);
+      } catch (RejectedExecutionException e) {
+        // Keep working without a reservoir; every take will generate its own key.
+        Log.w(TAG, "Couldn't schedule a pre-key refill", e);
+        refilling.set(false);
+      }
+    }
+
+    @Override
+    public void run() {
+      final long start = System.nanoTime();
+      int generated = 0;
+      try {
+        while (ready.get() < capacity) {
+          keys.add(generator.get());
+          ready.incrementAndGet();
+          ++generated;
+        }
+      } finally {
+        final long elapsed = System.nanoTime() - start;
+        refills.incrementAndGet();
+        keysGenerated.addAndGet(generated);
+        totalRefillNanos.addAndGet(elapsed);
+        maxRefillNanos.accumulateAndGet(elapsed, Math::max);
+        refilling.set(false);
+      }
+      // Keys taken after the last check above but before the flag was cleared wouldn't have
+      // scheduled a refill of their own.
+      if (ready.get() < lowWatermark) {
+        scheduleRefill();
+      }
+    }
+  }
+}
@@ -27,11 +27,13 @@ public final class ServerSecretParams extends NativeHandleGuard.SimpleOwner {
   }
 
   public ServerSecretParams(byte[] contents) throws InvalidInputException {
-    super(filterExceptions(() -> Native.ServerSecretParams_Deserialize(contents)));
+    super(
+        filterExceptions(() -> Native.ServerSecretParams_Deserialize(contents)),
+        Native::ServerSecretParams_Destroy);
   }
 
   ServerSecretParams(long nativeHandle) {
-    super(nativeHandle);
+    super(nativeHandle, Native::ServerSecretParams_Destroy);
   }
 
   public ServerPublicParams getPublicParams() {
@@ -58,11 +60,6 @@ public final class ServerSecretParams extends NativeHandleGuard.SimpleOwner {
     }
   }
 
-  @Override
-  protected void release(long handle) {
-    Native.ServerSecretParams_Destroy(handle);
-  }
-
   public byte[] serialize() {
     return guardedMap(Native::ServerSecretParams_Serialize);
   }
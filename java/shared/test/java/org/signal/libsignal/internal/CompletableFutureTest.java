@@ -7,11 +7,18 @@ package org.signal.libsignal.internal;
 
 import static org.junit.Assert.*;
 
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
 import java.util.concurrent.CountDownLatch;
 import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.TimeoutException;
 import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicReference;
 import java.util.function.BiConsumer;
 import java.util.function.BiFunction;
 import java.util.function.Function;
@@ -657,4 +664,143 @@ public class CompletableFutureTest {
         "Future was not accessed during callback execution",
         futureAccessedWhileCallbackExecuting.get());
   }
+
+  @Test
+  public void testCallbacksRunInOrderAdded() throws Exception {
+    CompletableFuture<Integer> future = new CompletableFuture<>();
+    List<Integer> order = new ArrayList<>();
+    for (int i = 0; i < 5; ++i) {
+      final int index = i;
+      future.thenApply(value -> order.add(index));
+    }
+    future.complete(42);
+    assertEquals(List.of(0, 1, 2, 3, 4), order);
+  }
+
+  @Test
+  public void testConcurrentCallbacksAllRunOnce() throws Exception {
+    final int threadCount = 8;
+    final int callbacksPerThread = 1000;
+    CompletableFuture<Integer> future = new CompletableFuture<>();
+    List<Integer> seen = Collections.synchronizedList(new ArrayList<>());
+    CountDownLatch start = new CountDownLatch(1);
+
+    List<Thread> threads = new ArrayList<>();
+    for (int t = 0; t < threadCount; ++t) {
+      Thread thread =
+          new Thread(
+              () -> {
+                try {
+                  start.await();
+                } catch (InterruptedException e) {
+                  return;
+                }
+                for (int i = 0; i < callbacksPerThread; ++i) {
+                  future.thenApply(seen::add);
+                }
+              });
+      thread.start();
+      threads.add(thread);
+    }
+    start.countDown();
+    future.complete(7);
+    for (Thread thread : threads) {
+      thread.join();
+    }
+
+    assertEquals(threadCount * callbacksPerThread, seen.size());
+  }
+
+  @Test
+  public void testGetWakesAllWaiters() throws Exception {
+    CompletableFuture<Integer> future = new CompletableFuture<>();
+    AtomicReference<Integer> first = new AtomicReference<>();
+    AtomicReference<Integer> second = new AtomicReference<>();
+    Thread firstWaiter = new Thread(() -> first.set(getUnchecked(future)));
+    Thread secondWaiter = new Thread(() -> second.set(getUnchecked(future)));
+    firstWaiter.start();
+    secondWaiter.start();
+
+    future.complete(42);
+    firstWaiter.join(1000);
+    secondWaiter.join(1000);
+    assertEquals(42, (int) first.get());
+    assertEquals(42, (int) second.get());
+  }
+
+  @Test
+  public void testAbandonedGetsDoNotAccumulate() throws Exception {
+    CompletableFuture<Integer> future = new CompletableFuture<>();
+    for (int i = 0; i < 100; ++i) {
+      assertThrows(TimeoutException.class, () -> future.get(1, TimeUnit.NANOSECONDS));
+    }
+    Thread.currentThread().interrupt();
+    assertThrows(InterruptedException.class, () -> future.get());
+    assertFalse(Thread.interrupted());
+    assertEquals(1, future.pendingCallbackCount());
+
+    Thread waiter = new Thread(() -> getUnchecked(future));
+    waiter.start();
+    future.complete(42);
+    waiter.join(1000);
+    assertFalse(waiter.isAlive());
+    assertEquals(42, (int) future.get(1, TimeUnit.MILLISECONDS));
+  }
+
+  @Test
+  public void testCompleteWithNull() throws Exception {
+    CompletableFuture<Integer> future = new CompletableFuture<>();
+    CompletableFuture<Boolean> chained = future.thenApply(value -> value == null);
+    assertTrue(future.complete(null));
+    assertFalse(future.complete(1));
+    assertTrue(future.isDone());
+    assertNull(future.get());
+    assertTrue(chained.get());
+  }
+
+  @Test
+  public void testThenApplyAsyncRunsOnExecutor() throws Exception {
+    ExecutorService executor = Executors.newSingleThreadExecutor();
+    try {
+      Thread executorThread = executor.submit(Thread::currentThread).get();
+      CompletableFuture<Integer> future = new CompletableFuture<>();
+      CompletableFuture<Thread> ranOn =
+          future.thenApplyAsync(value -> Thread.currentThread(), executor);
+      future.complete(42);
+      assertSame(executorThread, ranOn.get(1, TimeUnit.SECONDS));
+
+      CompletableFuture<Integer> failing = new CompletableFuture<>();
+      AtomicReference<Thread> failedOn = new AtomicReference<>();
+      CompletableFuture<Integer> failed =
+          failing
+              .thenApplyAsync(value -> value + 1, executor)
+              .whenComplete((value, throwable) -> failedOn.set(Thread.currentThread()));
+      RuntimeException exception = new RuntimeException("boom");
+      failing.completeExceptionally(exception);
+      ExecutionException thrown =
+          assertThrows(ExecutionException.class, () -> failed.get(1, TimeUnit.SECONDS));
+      assertEquals(exception, thrown.getCause());
+      assertSame(executorThread, failedOn.get());
+    } finally {
+      executor.shutdown();
+    }
+  }
+
+  @Test
+  public void testThenApplyAsyncRejected() throws Exception {
+    ExecutorService executor = Executors.newSingleThreadExecutor();
+    executor.shutdown();
+    CompletableFuture<Integer> future = CompletableFuture.completedFuture(42);
+    CompletableFuture<Integer> chained = future.thenApplyAsync(value -> value + 1, executor);
+    ExecutionException thrown = assertThrows(ExecutionException.class, chained::get);
+    assertTrue(thrown.getCause() instanceof RejectedExecutionException);
+  }
+
+  private static <T> T getUnchecked(CompletableFuture<T> future) {
+    try {
+      return future.get();
+    } catch (ExecutionException | InterruptedException e) {
+      throw new AssertionError(e);
+    }
+  }
 }
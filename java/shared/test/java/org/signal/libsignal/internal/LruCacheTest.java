@@ -0,0 +1,55 @@
+//
+// Copyright 2026 Signal Messenger, LLC.
+// SPDX-License-Identifier: AGPL-3.0-only
+//
+
+package org.signal.libsignal.internal;
+
+import static org.junit.Assert.*;
+
+import org.junit.Test;
+
+public class LruCacheTest {
+  @Test
+  public void testEvictsLeastRecentlyUsed() {
+    final LruCache<String, Integer> cache = new LruCache<>(2);
+    cache.put("a", 1);
+    cache.put("b", 2);
+    // Reading "a" makes "b" the least recently used.
+    assertEquals(Integer.valueOf(1), cache.get("a"));
+    cache.put("c", 3);
+
+    assertEquals(2, cache.size());
+    assertTrue(cache.containsKey("a"));
+    assertFalse(cache.containsKey("b"));
+    assertTrue(cache.containsKey("c"));
+
+    // Replacing a value doesn't evict anything, but does count as a use.
+    cache.put("a", 4);
+    cache.put("d", 5);
+    assertEquals(Integer.valueOf(4), cache.get("a"));
+    assertNull(cache.get("c"));
+  }
+
+  @Test
+  public void testRemoval() {
+    final LruCache<String, Integer> cache = new LruCache<>(10);
+    cache.put("alice.1", 1);
+    cache.put("alice.2", 2);
+    cache.put("bob.1", 3);
+
+    cache.remove("bob.1");
+    assertNull(cache.get("bob.1"));
+    cache.removeIf(key -> key.startsWith("alice."));
+    assertEquals(0, cache.size());
+
+    cache.put("carol.1", 4);
+    cache.clear();
+    assertEquals(0, cache.size());
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void testRejectsZeroCapacity() {
+    new LruCache<String, Integer>(0);
+  }
+}
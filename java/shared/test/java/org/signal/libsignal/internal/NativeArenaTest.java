@@ -0,0 +1,168 @@
+//
+// Copyright 2026 Signal Messenger, LLC.
+// SPDX-License-Identifier: AGPL-3.0-only
+//
+
+package org.signal.libsignal.internal;
+
+import static org.junit.Assert.*;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import org.junit.Before;
+import org.junit.Test;
+
+public class NativeArenaTest {
+  private static final List<Long> released = Collections.synchronizedList(new ArrayList<>());
+
+  private static class FakeOwner extends NativeHandleGuard.SimpleOwner {
+    FakeOwner(long nativeHandle) {
+      super(nativeHandle, released::add);
+    }
+  }
+
+  private static class FakeCloseableOwner extends NativeHandleGuard.CloseableOwner {
+    FakeCloseableOwner(long nativeHandle) {
+      super(nativeHandle, released::add);
+    }
+  }
+
+  private static class LegacyOwner extends NativeHandleGuard.SimpleOwner {
+    LegacyOwner(long nativeHandle) {
+      super(nativeHandle);
+    }
+
+    @Override
+    protected void release(long nativeHandle) {
+      released.add(nativeHandle);
+    }
+  }
+
+  @Before
+  public void clearReleased() {
+    released.clear();
+  }
+
+  @Test
+  public void testReleasesInReverseOrder() {
+    FakeOwner first;
+    FakeOwner second;
+    try (NativeArena arena = NativeArena.open()) {
+      first = new FakeOwner(1);
+      second = new FakeOwner(2);
+      assertEquals(2, arena.size());
+      assertTrue(released.isEmpty());
+    }
+    assertEquals(Arrays.asList(2L, 1L), released);
+    assertEquals(0, first.unsafeNativeHandleWithoutGuard());
+    assertEquals(0, second.unsafeNativeHandleWithoutGuard());
+  }
+
+  @Test
+  public void testRetainedOwnerIsNotReleased() {
+    FakeCloseableOwner kept;
+    try (NativeArena arena = NativeArena.open()) {
+      new FakeOwner(1);
+      kept = arena.retain(new FakeCloseableOwner(2));
+    }
+    assertEquals(Arrays.asList(1L), released);
+    assertEquals(2, kept.unsafeNativeHandleWithoutGuard());
+
+    kept.close();
+    assertEquals(Arrays.asList(1L, 2L), released);
+  }
+
+  @Test
+  public void testRetainedOwnerMovesToEnclosingArena() {
+    try (NativeArena outer = NativeArena.open()) {
+      try (NativeArena inner = NativeArena.open()) {
+        inner.retain(new FakeOwner(1));
+        new FakeOwner(2);
+      }
+      assertEquals(Arrays.asList(2L), released);
+      assertEquals(1, outer.size());
+    }
+    assertEquals(Arrays.asList(2L, 1L), released);
+  }
+
+  @Test
+  public void testOwnersOutsideArenaAreUntracked() {
+    try (FakeCloseableOwner outside = new FakeCloseableOwner(1)) {
+      try (NativeArena arena = NativeArena.open()) {
+        assertEquals(0, arena.size());
+      }
+      assertTrue(released.isEmpty());
+      assertEquals(1, outside.unsafeNativeHandleWithoutGuard());
+    }
+    assertEquals(Arrays.asList(1L), released);
+  }
+
+  @Test
+  public void testSuspendedOwnersAreUntracked() {
+    FakeOwner kept;
+    try (NativeArena arena = NativeArena.open()) {
+      new FakeOwner(1);
+      try (NativeArena.Suspension ignored = NativeArena.suspend()) {
+        kept = new FakeOwner(2);
+        try (NativeArena nested = NativeArena.open()) {
+          new FakeOwner(3);
+        }
+        assertEquals(Arrays.asList(3L), released);
+      }
+      new FakeOwner(4);
+      assertEquals(2, arena.size());
+    }
+    assertEquals(Arrays.asList(3L, 4L, 1L), released);
+    assertEquals(2, kept.unsafeNativeHandleWithoutGuard());
+  }
+
+  @Test
+  public void testClosedOwnerIsReleasedOnce() {
+    try (NativeArena arena = NativeArena.open()) {
+      FakeCloseableOwner owner = new FakeCloseableOwner(1);
+      owner.close();
+      owner.close();
+      assertEquals(Arrays.asList(1L), released);
+    }
+    assertEquals(Arrays.asList(1L), released);
+  }
+
+  @Test
+  public void testLegacyOwnerIsReleasedByArena() {
+    try (NativeArena arena = NativeArena.open()) {
+      new LegacyOwner(1);
+    }
+    assertEquals(Arrays.asList(1L), released);
+  }
+
+  @Test
+  public void testArenasMustCloseInOrder() {
+    NativeArena outer = NativeArena.open();
+    NativeArena inner = NativeArena.open();
+    assertThrows(IllegalStateException.class, outer::close);
+    inner.close();
+    outer.close();
+  }
+
+  @Test
+  public void testArenaIsThreadConfined() throws Exception {
+    try (NativeArena arena = NativeArena.open()) {
+      List<Throwable> errors = new ArrayList<>();
+      Thread thread =
+          new Thread(
+              () -> {
+                try {
+                  arena.close();
+                } catch (Throwable t) {
+                  errors.add(t);
+                }
+              });
+      thread.start();
+      thread.join();
+      assertEquals(1, errors.size());
+      assertTrue(errors.get(0) instanceof IllegalStateException);
+    }
+  }
+}
@@ -0,0 +1,95 @@
+//
+// Copyright 2026 Signal Messenger, LLC.
+// SPDX-License-Identifier: AGPL-3.0-only
+//
+
+package org.signal.libsignal.internal;
+
+import static org.junit.Assert.*;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+public class NativeHandleStatsTest {
+  private static class TrackedOwner extends NativeHandleGuard.CloseableOwner {
+    TrackedOwner(long nativeHandle) {
+      super(nativeHandle, (handle) -> {});
+    }
+  }
+
+  private static class UntrackedOwner extends NativeHandleGuard.CloseableOwner {
+    UntrackedOwner(long nativeHandle) {
+      super(nativeHandle, (handle) -> {});
+    }
+  }
+
+  private static class LegacyTrackedOwner extends NativeHandleGuard.CloseableOwner {
+    LegacyTrackedOwner(long nativeHandle) {
+      super(nativeHandle);
+    }
+
+    @Override
+    protected void release(long nativeHandle) {}
+  }
+
+  private boolean wasEnabled;
+
+  @Before
+  public void enable() {
+    wasEnabled = NativeHandleStats.isEnabled();
+    NativeHandleStats.setEnabled(true);
+  }
+
+  @After
+  public void restore() {
+    NativeHandleStats.setEnabled(wasEnabled);
+  }
+
+  @Test
+  public void testCountsAllocationsAndReleases() {
+    TrackedOwner first = new TrackedOwner(1);
+    TrackedOwner second = new TrackedOwner(2);
+    TrackedOwner third = new TrackedOwner(3);
+
+    NativeHandleStats.Snapshot snapshot = NativeHandleStats.snapshot(TrackedOwner.class);
+    assertEquals(TrackedOwner.class.getName(), snapshot.type());
+    assertEquals(3, snapshot.allocated());
+    assertEquals(3, snapshot.live());
+    assertEquals(3, snapshot.peakLive());
+
+    first.close();
+    second.close();
+    second.close();
+    try (NativeArena arena = NativeArena.open()) {
+      new TrackedOwner(4);
+    }
+
+    snapshot = NativeHandleStats.snapshot(TrackedOwner.class);
+    assertEquals(4, snapshot.allocated());
+    assertEquals(3, snapshot.releasedExplicitly());
+    assertEquals(0, snapshot.releasedByCollector());
+    assertEquals(1, snapshot.live());
+    assertEquals(3, snapshot.peakLive());
+
+    third.close();
+    assertEquals(0, NativeHandleStats.snapshot(TrackedOwner.class).live());
+  }
+
+  @Test
+  public void testCountsLegacyOwners() {
+    new LegacyTrackedOwner(1).close();
+
+    NativeHandleStats.Snapshot snapshot = NativeHandleStats.snapshot(LegacyTrackedOwner.class);
+    assertEquals(1, snapshot.allocated());
+    assertEquals(1, snapshot.releasedExplicitly());
+    assertEquals(0, snapshot.live());
+  }
+
+  @Test
+  public void testDisabledTrackingRecordsNothing() {
+    NativeHandleStats.setEnabled(false);
+    new UntrackedOwner(1).close();
+    assertNull(NativeHandleStats.snapshot(UntrackedOwner.class));
+  }
+}
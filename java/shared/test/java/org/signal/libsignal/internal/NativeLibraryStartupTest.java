@@ -0,0 +1,29 @@
+//
+// Copyright 2026 Signal Messenger, LLC.
+// SPDX-License-Identifier: AGPL-3.0-only
+//
+
+package org.signal.libsignal.internal;
+
+import static org.junit.Assert.*;
+
+import java.io.File;
+import org.junit.Test;
+
+public class NativeLibraryStartupTest {
+  @Test
+  public void testTimingsAreRecorded() {
+    Native.keepAlive(null);
+
+    NativeLibraryStartup.Timings timings = NativeLibraryStartup.timings();
+    assertNotNull(timings);
+    assertTrue(timings.loadNanos() > 0);
+    assertTrue(timings.initializeNanos() >= 0);
+    if (timings.source() == NativeLibraryStartup.Source.SYSTEM) {
+      assertNull(timings.path());
+      assertEquals(0, timings.extractNanos());
+    } else {
+      assertTrue(new File(timings.path()).isFile());
+    }
+  }
+}
@@ -0,0 +1,46 @@
+//
+// Copyright 2026 Signal Messenger, LLC.
+// SPDX-License-Identifier: AGPL-3.0-only
+//
+
+package org.signal.libsignal.internal;
+
+import static org.junit.Assert.*;
+
+import org.junit.Test;
+
+public class TokioAsyncContextTest {
+  @Test
+  public void testSharedInstanceIsReused() {
+    assertSame(TokioAsyncContext.shared(), TokioAsyncContext.shared());
+  }
+
+  @Test
+  public void testSharedInstanceOutlivesArena() throws Exception {
+    final TokioAsyncContext shared;
+    try (NativeArena arena = NativeArena.open()) {
+      shared = TokioAsyncContext.shared();
+      assertEquals(0, arena.size());
+    }
+    assertEquals(Object.class, shared.loadClassAsync("java.lang.Object").get());
+  }
+
+  @Test
+  public void testBuilderConfiguresWorkers() throws Exception {
+    final TokioAsyncContext context =
+        new TokioAsyncContext.Builder().workerThreads(2).threadName("libsignal-test").build();
+    assertEquals(2, context.metrics().workerThreads());
+    assertEquals(0, context.metrics().tasksSpawned());
+
+    context.loadClassAsync("java.lang.Object").get();
+
+    final TokioAsyncContext.Metrics metrics = context.metrics();
+    assertEquals(1, metrics.tasksSpawned());
+    assertTrue(metrics.maxScheduleDelayMicros() <= metrics.totalScheduleDelayMicros());
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void testBuilderRejectsZeroWorkers() {
+    new TokioAsyncContext.Builder().workerThreads(0);
+  }
+}
@@ -0,0 +1,67 @@
+//
+// Copyright 2026 Signal Messenger, LLC.
+// SPDX-License-Identifier: AGPL-3.0-only
+//
+
+package org.signal.libsignal.protocol.state.impl;
+
+import static org.junit.Assert.*;
+
+import java.io.File;
+import java.io.IOException;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+public class RecordLogTest {
+  private static final RecordLog.Key FIRST = new RecordLog.Key(new byte[] {1});
+  private static final RecordLog.Key SECOND = new RecordLog.Key(new byte[] {2});
+
+  private File file;
+
+  @Before
+  public void setUp() throws IOException {
+    file = File.createTempFile("libsignal-record-log", ".log");
+    file.delete();
+  }
+
+  @After
+  public void tearDown() {
+    file.delete();
+    new File(file.getPath() + ".compact").delete();
+  }
+
+  private RecordLog open() throws IOException {
+    return RecordLog.open(file, Runnable::run, (key, present) -> {});
+  }
+
+  @Test
+  public void testFailedDirectorySyncClosesLog() throws Exception {
+    final RecordLog log = open();
+    log.put(FIRST, new byte[] {1});
+    log.put(FIRST, new byte[] {2});
+    log.put(SECOND, new byte[] {3});
+    final long uncompactedSize = file.length();
+
+    log.directorySync =
+        renamed -> {
+          throw new IOException("injected");
+        };
+    assertThrows(IOException.class, log::compact);
+    assertFalse(new File(file.getPath() + ".compact").exists());
+
+    // Nothing more can be written to a file whose rename might not last.
+    assertThrows(IllegalStateException.class, () -> log.put(SECOND, new byte[] {4}));
+    assertThrows(IllegalStateException.class, () -> log.get(FIRST));
+    log.close();
+
+    try (RecordLog reopened = open()) {
+      assertArrayEquals(new byte[] {2}, reopened.get(FIRST));
+      assertArrayEquals(new byte[] {3}, reopened.get(SECOND));
+      // It's the compacted file that's in place now.
+      assertTrue(file.length() < uncompactedSize);
+      reopened.put(SECOND, new byte[] {5});
+      assertArrayEquals(new byte[] {5}, reopened.get(SECOND));
+    }
+  }
+}
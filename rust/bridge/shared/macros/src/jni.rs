@@ -269,7 +269,7 @@ pub(crate) fn bridge_trait(
     let callbacks = trait_to_bridge
         .items
         .iter()
-        .map(|item| bridge_callback_item(item, &wrapper_name))
+        .map(|item| bridge_callback_item(item, &wrapper_name, java_class_path))
         .collect::<Result<Vec<_>>>()?;
     let callback_impls = callbacks.iter().map(|c| &c.implementation);
 
@@ -304,7 +304,11 @@ struct Callback {
     implementation: TokenStream2,
 }
 
-fn bridge_callback_item(item: &TraitItem, wrapper_name: &Ident) -> Result<Callback> {
+fn bridge_callback_item(
+    item: &TraitItem,
+    wrapper_name: &Ident,
+    java_class_path: &str,
+) -> Result<Callback> {
     let TraitItem::Fn(item) = item else {
         return Err(Error::new(item.span(), "only fns are supported"));
     };
@@ -320,12 +324,14 @@ fn bridge_callback_item(item: &TraitItem, wrapper_name: &Ident) -> Result<Callba
     //         let java_foo = JValueOwned::from(
     //             jni::ResultTypeInfo::convert_into(foo, env)?
     //         );
-    //         call_method_checked(
+    //         static SIGNATURE: LazyLock<RuntimeMethodSignature> = /* parsed once */;
+    //         static METHOD: CachedMethodId = CachedMethodId::new(ClassName("..."), "operation");
+    //         call_cached_method_checked(
     //             env,
     //             object,
-    //             "operation",
+    //             &METHOD,
     //             JniArgs {
-    //                 sig: concat!("(", jni::jni_signature_for::<u32>(), ")V"),
+    //                 sig: SIGNATURE.method_signature(),
     //                 args: [JValue::from(&java_foo)],
     //                 _return: PhantomData
     //             },
@@ -383,15 +389,20 @@ fn bridge_callback_item(item: &TraitItem, wrapper_name: &Ident) -> Result<Callba
                 ));
                 self.0.attach(#java_operation_name, move |env, __object| {
                     #(#arg_conversions;)*
-                    let __signature = ::jni::signature::RuntimeMethodSignature::from_str(
-                        const_str::concat!("(", #(#arg_signatures,)* ")", jni::jni_signature_for_result::<#result_ty>()),
-                    ).expect("valid jni signature");
-                    let __result = jni::call_method_checked(
+                    static __SIGNATURE: std::sync::LazyLock<::jni::signature::RuntimeMethodSignature> =
+                        std::sync::LazyLock::new(|| {
+                            ::jni::signature::RuntimeMethodSignature::from_str(
+                                const_str::concat!("(", #(#arg_signatures,)* ")", jni::jni_signature_for_result::<#result_ty>()),
+                            ).expect("valid jni signature")
+                        });
+                    static __METHOD: jni::CachedMethodId =
+                        jni::CachedMethodId::new(jni::ClassName(#java_class_path), #java_operation_name);
+                    let __result = jni::call_cached_method_checked(
                         env,
                         __object,
-                        #java_operation_name,
+                        &__METHOD,
                         jni::JniArgs {
-                            sig: __signature.method_signature(),
+                            sig: __SIGNATURE.method_signature(),
                             args: [#(jni::JValue::from(&#converted_args)),*],
                             // Some result types have 'local in them, so we have to provide that lifetime here.
                             _return: std::marker::PhantomData::<for<'local> fn(&'local ()) -> jni_arg_type!(#result_ty)>,
@@ -414,15 +425,20 @@ fn bridge_callback_item(item: &TraitItem, wrapper_name: &Ident) -> Result<Callba
                 // We can handle those some if we need them.
                 self.0.attach_and_log_on_error(#java_operation_name, move |env, __object| {
                     #(#arg_conversions;)*
-                    let __signature = ::jni::signature::RuntimeMethodSignature::from_str(
-                        const_str::concat!("(", #(#arg_signatures,)* ")V"),
-                    ).expect("valid jni signature");
-                    jni::call_method_checked(
+                    static __SIGNATURE: std::sync::LazyLock<::jni::signature::RuntimeMethodSignature> =
+                        std::sync::LazyLock::new(|| {
+                            ::jni::signature::RuntimeMethodSignature::from_str(
+                                const_str::concat!("(", #(#arg_signatures,)* ")V"),
+                            ).expect("valid jni signature")
+                        });
+                    static __METHOD: jni::CachedMethodId =
+                        jni::CachedMethodId::new(jni::ClassName(#java_class_path), #java_operation_name);
+                    jni::call_cached_method_checked(
                         env,
                         __object,
-                        #java_operation_name,
+                        &__METHOD,
                         jni::JniArgs {
-                            sig: __signature.method_signature(),
+                            sig: __SIGNATURE.method_signature(),
                             args: [#(jni::JValue::from(&#converted_args)),*],
                             _return: std::marker::PhantomData::<fn(&())>,
                         }
@@ -36,6 +36,19 @@ fn Aes256Ctr32_Process(ctr: &mut Aes256Ctr32, data: &mut [u8], offset: u32, leng
     ctr.process(&mut data[offset..offset + length]);
 }
 
+#[bridge_fn(ffi = false, node = false)]
+fn Aes256Ctr32_ProcessDirect(
+    ctr: &mut Aes256Ctr32,
+    data: jni::DirectByteBuffer,
+    offset: u32,
+    length: u32,
+) {
+    let mut data = data;
+    let offset = offset as usize;
+    let length = length as usize;
+    ctr.process(&mut data[offset..offset + length]);
+}
+
 #[bridge_fn(node = false)]
 fn Aes256GcmEncryption_New(
     key: &[u8],
@@ -57,6 +70,19 @@ fn Aes256GcmEncryption_Update(
     gcm.encrypt(&mut data[offset..offset + length]);
 }
 
+#[bridge_fn(ffi = false, node = false)]
+fn Aes256GcmEncryption_UpdateDirect(
+    gcm: &mut Aes256GcmEncryption,
+    data: jni::DirectByteBuffer,
+    offset: u32,
+    length: u32,
+) {
+    let mut data = data;
+    let offset = offset as usize;
+    let length = length as usize;
+    gcm.encrypt(&mut data[offset..offset + length]);
+}
+
 #[bridge_fn(node = false)]
 fn Aes256GcmEncryption_ComputeTag(gcm: &mut Aes256GcmEncryption) -> Vec<u8> {
     gcm.compute_tag()
@@ -83,6 +109,19 @@ fn Aes256GcmDecryption_Update(
     gcm.decrypt(&mut data[offset..offset + length]);
 }
 
+#[bridge_fn(ffi = false, node = false)]
+fn Aes256GcmDecryption_UpdateDirect(
+    gcm: &mut Aes256GcmDecryption,
+    data: jni::DirectByteBuffer,
+    offset: u32,
+    length: u32,
+) {
+    let mut data = data;
+    let offset = offset as usize;
+    let length = length as usize;
+    gcm.decrypt(&mut data[offset..offset + length]);
+}
+
 #[bridge_fn(node = false)]
 fn Aes256GcmDecryption_VerifyTag(gcm: &mut Aes256GcmDecryption, tag: &[u8]) -> Result<bool> {
     gcm.verify_tag(tag)
@@ -161,6 +200,18 @@ fn CryptographicHash_UpdateWithOffset(
     hash.update(&input[offset..(offset + len)])
 }
 
+#[bridge_fn(ffi = false, node = false)]
+fn CryptographicHash_UpdateDirect(
+    hash: &mut CryptographicHash,
+    input: jni::DirectByteBuffer,
+    offset: u32,
+    len: u32,
+) {
+    let offset = offset as usize;
+    let len = len as usize;
+    hash.update(&input[offset..(offset + len)])
+}
+
 #[bridge_fn(ffi = false, node = false)]
 fn CryptographicHash_Finalize(hash: &mut CryptographicHash) -> Vec<u8> {
     hash.finalize()
@@ -188,6 +239,18 @@ fn CryptographicMac_UpdateWithOffset(
     mac.update(&input[offset..(offset + len)])
 }
 
+#[bridge_fn(ffi = false, node = false)]
+fn CryptographicMac_UpdateDirect(
+    mac: &mut CryptographicMac,
+    input: jni::DirectByteBuffer,
+    offset: u32,
+    len: u32,
+) {
+    let offset = offset as usize;
+    let len = len as usize;
+    mac.update(&input[offset..(offset + len)])
+}
+
 #[bridge_fn(ffi = false, node = false)]
 fn CryptographicMac_Finalize(mac: &mut CryptographicMac) -> Vec<u8> {
     mac.finalize()
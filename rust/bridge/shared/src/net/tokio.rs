@@ -20,3 +20,33 @@ fn TokioAsyncContext_new() -> TokioAsyncContext {
 fn TokioAsyncContext_cancel(context: &TokioAsyncContext, raw_cancellation_id: u64) {
     context.cancel(raw_cancellation_id.into())
 }
+
+/// Creates a runtime with a custom number of worker threads (0 for one per CPU) and thread name
+/// (`None` for the default).
+#[bridge_fn(ffi = false, node = false)]
+fn TokioAsyncContext_NewWithOptions(
+    worker_threads: u32,
+    thread_name: Option<String>,
+) -> TokioAsyncContext {
+    TokioAsyncContext::with_options(
+        std::num::NonZeroUsize::new(worker_threads.try_into().expect("u32 fits in usize")),
+        thread_name,
+    )
+}
+
+/// Returns a snapshot of the runtime's metrics, all taken from one
+/// [`TokioAsyncContext::metrics`] call: the number of workers, active tasks, global queue depth,
+/// tasks spawned, and the total and maximum schedule delay in microseconds, in that order.
+#[bridge_fn(ffi = false, node = false)]
+fn TokioAsyncContext_Metrics(context: &TokioAsyncContext) -> [u64; 6] {
+    let metrics = context.metrics();
+    let micros = |delay: std::time::Duration| delay.as_micros().try_into().unwrap_or(u64::MAX);
+    [
+        metrics.num_workers,
+        metrics.active_tasks,
+        metrics.global_queue_depth,
+        metrics.tasks_spawned,
+        micros(metrics.total_schedule_delay),
+        micros(metrics.max_schedule_delay),
+    ]
+}
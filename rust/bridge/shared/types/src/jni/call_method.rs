@@ -3,10 +3,13 @@
 // SPDX-License-Identifier: AGPL-3.0-only
 //
 
-use jni::objects::{JClass, JMethodID, JObject, JStaticMethodID, JValueOwned};
+use std::sync::OnceLock;
+
+use jni::objects::{Auto, JClass, JMethodID, JObject, JStaticMethodID, JValueOwned};
+use jni::signature::MethodSignature;
 use jni::strings::JNIString;
 
-use crate::jni::{BridgeLayerError, HandleJniError as _, JniArgs};
+use crate::jni::{BridgeLayerError, ClassName, HandleJniError as _, JniArgs, find_class};
 
 /// Calls a method and translates any thrown exceptions to
 /// [`BridgeLayerError::CallbackException`].
@@ -41,6 +44,82 @@ pub fn call_method_checked<
     check_exceptions_and_convert_result(env, fn_name, result)
 }
 
+/// The ID of an instance method on a libsignal class or interface, looked up on first use.
+///
+/// Used for callbacks into Java that happen on every message, like the protocol stores, so that
+/// calling them doesn't have to find the receiver's class and look up the method by name each
+/// time. Method IDs stay valid for as long as their class is loaded, and these classes are loaded
+/// by the same class loader as libsignal itself.
+pub struct CachedMethodId {
+    class_name: ClassName<'static>,
+    name: &'static str,
+    id: OnceLock<JMethodID>,
+}
+
+impl CachedMethodId {
+    pub const fn new(class_name: ClassName<'static>, name: &'static str) -> Self {
+        Self {
+            class_name,
+            name,
+            id: OnceLock::new(),
+        }
+    }
+
+    fn get(
+        &self,
+        env: &mut jni::Env<'_>,
+        sig: &MethodSignature<'_, '_>,
+    ) -> Result<JMethodID, BridgeLayerError> {
+        if let Some(id) = self.id.get() {
+            return Ok(*id);
+        }
+        // Two threads might both get here; they'll look up the same ID, so either can win.
+        let class = Auto::new(find_class(env, self.class_name).check_exceptions(env, self.name)?);
+        let name = JNIString::new(self.name);
+        let id = env
+            .get_method_id(&class, &name, sig)
+            .check_exceptions(env, self.name)?;
+        Ok(*self.id.get_or_init(|| id))
+    }
+}
+
+/// Like [`call_method_checked`], but calls `method` through its cached ID.
+///
+/// `obj` must be an instance of the class `method` was declared with.
+pub fn call_cached_method_checked<
+    'input,
+    'output,
+    O: AsRef<JObject<'input>>,
+    R: TryFrom<JValueOwned<'output>>,
+    const LEN: usize,
+>(
+    env: &mut jni::Env<'output>,
+    obj: O,
+    method: &'static CachedMethodId,
+    args: JniArgs<R, LEN>,
+) -> Result<R, BridgeLayerError> {
+    if cfg!(feature = "jni-invoke-annotated") {
+        check_annotations::called_method(
+            env,
+            obj.as_ref(),
+            &JNIString::new(method.name),
+            &args.sig,
+        )
+        .check_exceptions(env, method.name)?
+    }
+
+    let method_id = method.get(env, &args.sig)?;
+    let jni_args = args.args.map(|arg| arg.as_jni());
+
+    // Note that we are *not* unwrapping the result yet!
+    // We need to check for exceptions *first*.
+    // SAFETY: the ID was looked up with the same signature the arguments were checked against, on
+    // a class that `obj` is an instance of (checked by GlobalAndVM::new for bridged callbacks).
+    #[allow(clippy::disallowed_methods)]
+    let result = unsafe { env.call_method_unchecked(obj, method_id, args.sig.ret(), &jni_args) };
+    check_exceptions_and_convert_result(env, method.name, result)
+}
+
 /// Calls a method and translates any thrown exceptions to
 /// [`BridgeLayerError::CallbackException`].
 ///
@@ -952,6 +952,38 @@ impl<'a> SimpleArgTypeInfo<'a> for Vec<&'a [u8]> {
     }
 }
 
+/// Borrows the storage of a direct `ByteBuffer` for the duration of the call.
+///
+/// Like `Vec<&[u8]>` above, this relies on the Java object keeping its storage alive; heap buffers
+/// have no direct address and are rejected (Java callers use the `byte[]` entry points for those).
+impl<'a> SimpleArgTypeInfo<'a> for DirectByteBuffer<'a> {
+    type ArgType = JavaByteBuffer<'a>;
+
+    fn convert_from(
+        env: &mut jni::Env<'a>,
+        JavaByteBuffer(foreign): &Self::ArgType,
+    ) -> Result<Self, BridgeLayerError> {
+        if foreign.is_null() {
+            return Err(BridgeLayerError::NullPointer(Some("ByteBuffer")));
+        }
+        let len = env
+            .get_direct_buffer_capacity(foreign)
+            .check_exceptions(env, "DirectByteBuffer::convert_from")?;
+        let addr = env
+            .get_direct_buffer_address(foreign)
+            .check_exceptions(env, "DirectByteBuffer::convert_from")?;
+        if addr.is_null() {
+            if len != 0 {
+                return Err(BridgeLayerError::NullPointer(Some("ByteBuffer direct address")));
+            }
+            return Ok(unsafe { DirectByteBuffer::new(&mut []) });
+        }
+        // SAFETY: The ByteBuffer keeps its storage alive as long as the object is live, which is at
+        // least as long as this call, and Java callers promise not to use it concurrently.
+        Ok(unsafe { DirectByteBuffer::new(std::slice::from_raw_parts_mut(addr, len)) })
+    }
+}
+
 impl<'a> SimpleArgTypeInfo<'a> for Vec<Vec<u8>> {
     type ArgType = JavaArrayOfByteArray<'a>;
 
@@ -1764,6 +1796,39 @@ impl<const LEN: usize> NiceResultConverter for [u8; LEN] {
     }
 }
 
+/// Returns a Java `long[]`, reinterpreting values above `Long.MAX_VALUE` as negative numbers.
+///
+/// For returning several related numbers from one call, rather than making a call for each.
+impl<'a, const LEN: usize> ResultTypeInfo<'a> for [u64; LEN] {
+    type ResultType = JLongArray<'a>;
+    fn convert_into(self, env: &mut jni::Env<'a>) -> Result<Self::ResultType, BridgeLayerError> {
+        let array = env
+            .new_long_array(LEN)
+            .check_exceptions(env, "[u64; LEN]::convert_into")?;
+        let mut elems = unsafe { array.get_elements(env, ReleaseMode::CopyBack) }
+            .check_exceptions(env, "[u64; LEN]::convert_into")?;
+
+        for (elem, value) in elems.iter_mut().zip(self) {
+            // Note that we don't check bounds here, as for a single u64.
+            *elem = value as jlong;
+        }
+
+        // `elems` borrows from `array`, so we have to drop it before we return.
+        drop(elems);
+        Ok(array)
+    }
+}
+#[cfg(feature = "metadata")]
+impl<const LEN: usize> NiceResultConverter for [u64; LEN] {
+    fn register_kt_result_converter(_ctx: &mut KtMetadataContext) -> KtReturnConverter {
+        KtReturnConverter {
+            nice_type: "LongArray".to_string(),
+            ffi_type: "LongArray".to_string(),
+            converter_function: "identity".to_string(),
+        }
+    }
+}
+
 impl<'a> ResultTypeInfo<'a> for uuid::Uuid {
     const JNI_SIGNATURE: &'static str = jni_sig_str!(java.util.UUID);
     type ResultType = JavaUUID<'a>;
@@ -3445,6 +3510,9 @@ macro_rules! jni_arg_type {
     (Vec<&[u8]>) => {
         jni::JavaByteBufferArray<'local>
     };
+    (jni::DirectByteBuffer) => {
+        jni::JavaByteBuffer<'local>
+    };
     (Vec<Vec<u8> >) => {
         jni::JavaArrayOfByteArray<'local>
     };
@@ -3655,6 +3723,9 @@ macro_rules! jni_result_type {
     ([u8; $len:expr]) => {
         ::jni::objects::JByteArray<'local>
     };
+    ([u64; $len:expr]) => {
+        ::jni::objects::JLongArray<'local>
+    };
     (ServiceId) => {
         ::jni::objects::JByteArray<'local>
     };
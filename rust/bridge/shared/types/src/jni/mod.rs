@@ -19,7 +19,7 @@ pub use jni::objects::{
     AutoElements, JByteArray, JClass, JLongArray, JObject, JObjectArray, JString, JValue,
     JValueOwned, ReleaseMode,
 };
-use jni::objects::{Global, JThrowable};
+use jni::objects::{Global, JByteBuffer, JThrowable};
 use jni::strings::JNIString;
 pub use jni::sys::{jboolean, jdouble, jint, jlong};
 use jni::{JavaVM, bind_java_type};
@@ -138,6 +138,8 @@ jni_custom_spellings! {
     pub struct JavaArrayOfByteArray<'a>(pub JObjectArray<'a>);
     #[kt = "Array<ByteBuffer>"]
     pub struct JavaByteBufferArray<'a>(pub JObjectArray<'a>);
+    #[kt = "ByteBuffer"]
+    pub struct JavaByteBuffer<'a>(pub JByteBuffer<'a>);
     #[kt = "UUID"]
     pub struct JavaUUID<'a>(pub JObject<'a>);
     #[kt = "CiphertextMessage"]
@@ -157,6 +159,35 @@ pub type JavaMap<'a> = JMap<'a>;
 /// when generating Native.java.
 pub type Throwing<T> = T;
 
+/// The full contents of a direct `java.nio.ByteBuffer`, from index 0 up to its capacity.
+///
+/// Unlike `&mut [u8]`, which is passed as a `byte[]` that the JVM may copy in and back out, this
+/// refers to the buffer's own storage. Java callers pass the position and length separately, and
+/// must not touch the buffer from another thread during the call.
+pub struct DirectByteBuffer<'a>(&'a mut [u8]);
+
+impl<'a> DirectByteBuffer<'a> {
+    /// # Safety
+    ///
+    /// `bytes` must not be aliased for the lifetime `'a`.
+    pub(crate) unsafe fn new(bytes: &'a mut [u8]) -> Self {
+        Self(bytes)
+    }
+}
+
+impl std::ops::Deref for DirectByteBuffer<'_> {
+    type Target = [u8];
+    fn deref(&self) -> &[u8] {
+        self.0
+    }
+}
+
+impl std::ops::DerefMut for DirectByteBuffer<'_> {
+    fn deref_mut(&mut self) -> &mut [u8] {
+        self.0
+    }
+}
+
 pub trait IsNullableReference {}
 impl<T: jni::refs::Reference> IsNullableReference for T {}
 impl<A, B> IsNullableReference for JavaPair<'_, A, B> {}
@@ -6,8 +6,10 @@
 use std::collections::HashMap;
 use std::convert::Infallible;
 use std::future::Future;
-use std::sync::atomic::AtomicU64;
+use std::num::NonZeroUsize;
+use std::sync::atomic::{AtomicU64, Ordering};
 use std::sync::{Arc, Mutex};
+use std::time::Duration;
 
 use futures_util::FutureExt as _;
 use futures_util::future::BoxFuture;
@@ -18,6 +20,44 @@ pub struct TokioAsyncContext {
     pub(crate) rt: tokio::runtime::Runtime,
     tasks: Arc<Mutex<HashMap<CancellationId, tokio::sync::oneshot::Sender<Infallible>>>>,
     next_raw_cancellation_id: AtomicU64,
+    schedule_stats: Arc<ScheduleStats>,
+}
+
+/// Counters for how long tasks spawned by [`TokioAsyncContext::run_future`] wait before they're
+/// first polled.
+///
+/// tokio only tracks poll times itself under `--cfg tokio_unstable`, so we measure the part that
+/// matters most to callers (whether the runtime is keeping up) ourselves.
+#[derive(Default)]
+struct ScheduleStats {
+    tasks_spawned: AtomicU64,
+    total_delay_micros: AtomicU64,
+    max_delay_micros: AtomicU64,
+}
+
+impl ScheduleStats {
+    fn record_first_poll(&self, delay: Duration) {
+        let micros = u64::try_from(delay.as_micros()).unwrap_or(u64::MAX);
+        self.total_delay_micros.fetch_add(micros, Ordering::Relaxed);
+        self.max_delay_micros.fetch_max(micros, Ordering::Relaxed);
+    }
+}
+
+/// A point-in-time view of a [`TokioAsyncContext`]'s runtime.
+#[derive(Clone, Copy, Debug, PartialEq, Eq)]
+pub struct TokioAsyncContextMetrics {
+    /// The number of worker threads the runtime was created with.
+    pub num_workers: u64,
+    /// The number of tasks that have been spawned but have not yet completed.
+    pub active_tasks: u64,
+    /// The number of tasks waiting in the runtime's shared injection queue.
+    pub global_queue_depth: u64,
+    /// The number of tasks started through [`AsyncRuntime::run_future`] so far.
+    pub tasks_spawned: u64,
+    /// The sum, over those tasks, of the time between being spawned and first being polled.
+    pub total_schedule_delay: Duration,
+    /// The longest any one of those tasks has waited between being spawned and first being polled.
+    pub max_schedule_delay: Duration,
 }
 
 impl TokioAsyncContext {
@@ -37,6 +77,21 @@ impl TokioAsyncContext {
         )
     }
 
+    /// Creates a runtime with `worker_threads` worker threads named `thread_name`.
+    ///
+    /// Either may be omitted to use the same defaults as [`Self::new`] (one worker per CPU, named
+    /// `libsignal-tokio-worker`).
+    pub fn with_options(worker_threads: Option<NonZeroUsize>, thread_name: Option<String>) -> Self {
+        let mut builder = Self::default_runtime_builder();
+        if let Some(worker_threads) = worker_threads {
+            builder.worker_threads(worker_threads.get());
+        }
+        if let Some(thread_name) = thread_name {
+            builder.thread_name(thread_name);
+        }
+        Self::from_runtime(&mut builder)
+    }
+
     fn default_runtime_builder() -> tokio::runtime::Builder {
         let mut builder = tokio::runtime::Builder::new_multi_thread();
         builder
@@ -51,12 +106,30 @@ impl TokioAsyncContext {
             rt: rt.build().expect("failed to create runtime"),
             tasks: Default::default(),
             next_raw_cancellation_id: AtomicU64::new(1),
+            schedule_stats: Default::default(),
         }
     }
 
     pub fn handle(&self) -> tokio::runtime::Handle {
         self.rt.handle().clone()
     }
+
+    pub fn metrics(&self) -> TokioAsyncContextMetrics {
+        let runtime_metrics = self.rt.metrics();
+        let stats = &self.schedule_stats;
+        TokioAsyncContextMetrics {
+            num_workers: runtime_metrics.num_workers() as u64,
+            active_tasks: runtime_metrics.num_alive_tasks() as u64,
+            global_queue_depth: runtime_metrics.global_queue_depth() as u64,
+            tasks_spawned: stats.tasks_spawned.load(Ordering::Relaxed),
+            total_schedule_delay: Duration::from_micros(
+                stats.total_delay_micros.load(Ordering::Relaxed),
+            ),
+            max_schedule_delay: Duration::from_micros(
+                stats.max_delay_micros.load(Ordering::Relaxed),
+            ),
+        }
+    }
 }
 
 /// Assert [`TokioAsyncContext`] is unwind-safe.
@@ -165,7 +238,7 @@ impl TokioAsyncContext {
 
         let cancellation_id = CancellationId::from(
             self.next_raw_cancellation_id
-                .fetch_add(1, std::sync::atomic::Ordering::Relaxed),
+                .fetch_add(1, Ordering::Relaxed),
         );
         debug_assert_ne!(cancellation_id, CancellationId::NotSupported);
         let previous_cancel_tx = self
@@ -182,11 +255,15 @@ impl TokioAsyncContext {
 
         let handle = self.rt.handle().clone();
         let task_map_weak = Arc::downgrade(&self.tasks);
+        let schedule_stats = Arc::clone(&self.schedule_stats);
+        schedule_stats.tasks_spawned.fetch_add(1, Ordering::Relaxed);
+        let spawn_time = std::time::Instant::now();
 
         const STALLED_FUTURE_LOG_TIMEOUT: tokio::time::Duration =
             tokio::time::Duration::from_secs(90);
 
         let _: tokio::task::JoinHandle<()> = self.rt.spawn(async move {
+            schedule_stats.record_first_poll(spawn_time.elapsed());
             let start_time = tokio::time::Instant::now();
             let deadline = start_time + STALLED_FUTURE_LOG_TIMEOUT;
             tokio::pin!(future);
@@ -324,6 +401,7 @@ mod test {
             rt: runtime,
             tasks: Default::default(),
             next_raw_cancellation_id: AtomicU64::new(1),
+            schedule_stats: Default::default(),
         };
 
         let (send_to_task, task_output, when_reporting) = {
@@ -390,6 +468,7 @@ mod test {
             rt: runtime,
             tasks: Default::default(),
             next_raw_cancellation_id: AtomicU64::new(1),
+            schedule_stats: Default::default(),
         };
 
         let (on_start_reporting1, mut when_reporting1) = oneshot::channel();
@@ -437,4 +516,37 @@ mod test {
         async_context.cancel(cancellation_id1);
         when_reporting1.blocking_recv().expect("completed");
     }
+
+    #[test]
+    fn options_and_metrics() {
+        let async_context = TokioAsyncContext::with_options(
+            Some(NonZeroUsize::new(2).expect("non-zero")),
+            Some("libsignal-test-worker".to_owned()),
+        );
+        assert_eq!(async_context.metrics().num_workers, 2);
+        assert_eq!(async_context.metrics().tasks_spawned, 0);
+
+        let (sender, receiver) = oneshot::channel::<()>();
+        let (on_start_reporting, when_reporting) = oneshot::channel();
+        async_context.run_future(
+            |_cancel| async move {
+                receiver.await.expect("sender not dropped");
+                NotifyingReporter {
+                    on_start_reporting,
+                    reporter: DiscardingReporter,
+                }
+            },
+            (),
+            "test",
+        );
+
+        let metrics = async_context.metrics();
+        assert_eq!(metrics.tasks_spawned, 1);
+        assert!(metrics.active_tasks >= 1);
+
+        sender.send(()).expect("task is running");
+        when_reporting.blocking_recv().expect("completed");
+        let metrics = async_context.metrics();
+        assert!(metrics.max_schedule_delay <= metrics.total_schedule_delay);
+    }
 }
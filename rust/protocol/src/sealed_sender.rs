@@ -1644,6 +1644,11 @@ pub struct SealedSenderV2SentMessage<'a> {
 
 impl<'a> SealedSenderV2SentMessage<'a> {
     /// Parses the message, or produces an error if the message is invalid.
+    ///
+    /// The Java server library has its own port of this parser
+    /// (`SealedSenderMultiRecipientMessage.RecipientIndex.parse`, in java/server), which indexes a
+    /// message in place without crossing into Rust. Changes to the format or to what is accepted
+    /// here must be made there too.
     pub fn parse(data: &'a [u8]) -> Result<Self> {
         if data.is_empty() {
             return Err(SignalProtocolError::InvalidSealedSenderMessage(